@@ -80,6 +80,51 @@ public class PythonConfig implements Serializable, TextConfig {
     @Builder.Default
     private String jobSuffix = "konduit_job";
 
+    /**
+     * Number of separate python worker processes to execute the python code in. Each worker has its own
+     * interpreter (and GIL), hence requests can be executed in parallel. Inputs and outputs are transferred via
+     * memory mapped files. If 0 (default), the python code is executed in the serving process.
+     */
+    private int workers;
+
+    @Builder.Default
+    private WorkerDispatch workerDispatch = WorkerDispatch.LEAST_LOADED;
+
+    /**
+     * Initial size (in bytes) of the shared memory buffers used to transfer inputs and outputs to/from each worker
+     * process. Buffers are grown as required.
+     */
+    @Builder.Default
+    private long workerBufferSize = 16L * 1024 * 1024;
+
+    /**
+     * Additional JVM arguments for the python worker processes (for example, -Xmx)
+     */
+    @Singular
+    private List<String> workerJvmArgs;
+
+    /**
+     * Maximum time (in milliseconds) a python worker process may take to execute a single request. Workers that exceed
+     * it are killed and restarted (the request fails). 0 to wait indefinitely.
+     */
+    @Builder.Default
+    private long workerExecTimeoutMs = 5 * 60 * 1000L;
+
+    /**
+     * Class path for the python worker processes. If not set, the class path is determined from the class loader (and
+     * code source) of the serving process' python module
+     */
+    private String workerClasspath;
+
+    /**
+     * If true, NDArray inputs with a direct buffer, and raw pixel images (Mat, Frame, BufferedImage), are passed to
+     * python as read-only numpy arrays over the input's memory, without copying it. Images are then passed as HWC numpy
+     * arrays in BGR order (as per cv2.imread) rather than as encoded image bytes. Python code that modifies its inputs
+     * in place, or expects image inputs as bytes, must be updated before enabling this. If false (default), inputs are
+     * copied as before.
+     */
+    private boolean zeroCopyInputs;
+
     public String resolvePythonLibrariesPath() {
         if(pythonConfigType == null) {
             log.info("Python config type not specified...");
@@ -216,4 +261,14 @@ public class PythonConfig implements Serializable, TextConfig {
         STATIC,
         DYNAMIC
     }
+
+    /**
+     * How requests are assigned to python worker processes (see {@link #getWorkers()}):<br>
+     * ROUND_ROBIN: each worker in turn<br>
+     * LEAST_LOADED: the worker with the fewest requests in progress or waiting
+     */
+    public enum WorkerDispatch {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
 }
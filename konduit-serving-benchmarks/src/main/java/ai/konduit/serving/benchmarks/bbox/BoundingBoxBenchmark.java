@@ -0,0 +1,118 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.benchmarks.bbox;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.impl.step.bbox.yolo.YoloToBoundingBoxStep;
+import ai.konduit.serving.pipeline.impl.step.ml.ssd.SSDToBoundingBoxStep;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Object detection post-processing: conversion of raw YOLO and SSD model outputs to bounding boxes.<br>
+ * YOLO: Tiny YOLO style output - 5 boxes per cell, 20 classes, 13x13 grid, with random values (so the number of boxes
+ * above the threshold - and hence the non-max suppression workload - depends on the threshold).<br>
+ * SSD: 100 detections with COCO labels.<br>
+ * The input arrays are reused between invocations; as NDArrays cache their converted formats, this measures the
+ * post-processing itself rather than the conversion of the model output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoundingBoxBenchmark {
+
+    private static final int YOLO_BOXES = 5;
+    private static final int YOLO_CLASSES = 20;
+    private static final int YOLO_GRID = 13;
+    private static final int SSD_DETECTIONS = 100;
+
+    @Param({"0.5", "0.9"})
+    public double threshold;
+
+    private PipelineExecutor yolo;
+    private PipelineExecutor ssd;
+    private Data yoloInput;
+    private Data ssdInput;
+
+    @Setup
+    public void setup(){
+        Random r = new Random(12345);
+
+        float[][][][] yoloOut = new float[1][YOLO_BOXES * (YOLO_CLASSES + 5)][YOLO_GRID][YOLO_GRID];
+        for(float[][] c : yoloOut[0]){
+            for(float[] row : c){
+                for( int i=0; i<row.length; i++ ){
+                    row[i] = r.nextFloat();
+                }
+            }
+        }
+        yoloInput = Data.singleton("output", NDArray.create(yoloOut));
+        yolo = SequencePipeline.builder()
+                .add(new YoloToBoundingBoxStep()
+                        .numClasses(YOLO_CLASSES)
+                        .threshold(threshold))
+                .build()
+                .executor();
+
+        float[][][] boxes = new float[1][SSD_DETECTIONS][4];
+        float[][] scores = new float[1][SSD_DETECTIONS];
+        float[][] classes = new float[1][SSD_DETECTIONS];
+        for( int i=0; i<SSD_DETECTIONS; i++ ){
+            float y1 = r.nextFloat() * 0.5f;
+            float x1 = r.nextFloat() * 0.5f;
+            boxes[0][i] = new float[]{y1, x1, y1 + r.nextFloat() * 0.5f, x1 + r.nextFloat() * 0.5f};
+            scores[0][i] = r.nextFloat();
+            classes[0][i] = 1 + r.nextInt(SSDToBoundingBoxStep.COCO_LABELS.length);
+        }
+        ssdInput = Data.empty();
+        ssdInput.put("detection_boxes", NDArray.create(boxes));
+        ssdInput.put("detection_scores", NDArray.create(scores));
+        ssdInput.put("detection_classes", NDArray.create(classes));
+        ssd = SequencePipeline.builder()
+                .add(new SSDToBoundingBoxStep()
+                        .classLabels(SSDToBoundingBoxStep.COCO_LABELS)
+                        .threshold(threshold))
+                .build()
+                .executor();
+    }
+
+    @TearDown
+    public void tearDown(){
+        yolo.close();
+        ssd.close();
+    }
+
+    @Benchmark
+    public Data yolo(){
+        return yolo.exec(yoloInput);
+    }
+
+    @Benchmark
+    public Data ssd(){
+        return ssd.exec(ssdInput);
+    }
+}
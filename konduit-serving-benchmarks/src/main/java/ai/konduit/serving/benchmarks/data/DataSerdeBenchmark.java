@@ -0,0 +1,94 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.benchmarks.data;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of {@link Data} instances, to and from JSON and protobuf (binary) formats.<br>
+ * The Data instance contains a float NDArray of the specified length, plus a few scalar and list values.
+ * Note that NDArrays cache their converted formats, so the serialization benchmarks measure the cost of serialization
+ * only, not the conversion of the array to a serializable format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataSerdeBenchmark {
+
+    @Param({"16", "65536"})
+    public int arrayLength;
+
+    private Data data;
+    private String json;
+    private byte[] bytes;
+
+    @Setup
+    public void setup(){
+        Random r = new Random(12345);
+        float[] f = new float[arrayLength];
+        for( int i=0; i<f.length; i++ ){
+            f[i] = r.nextFloat();
+        }
+
+        data = Data.empty();
+        data.put("array", NDArray.create(new float[][]{f}));
+        data.put("label", "some label");
+        data.put("probability", 0.75);
+        data.put("count", 10L);
+        data.putListString("classes", Arrays.asList("cat", "dog", "horse"));
+
+        json = data.toJson();
+        bytes = data.asBytes();
+    }
+
+    @Benchmark
+    public String toJson(){
+        return data.toJson();
+    }
+
+    @Benchmark
+    public Data fromJson(){
+        return Data.fromJson(json);
+    }
+
+    @Benchmark
+    public byte[] toProtobuf(){
+        return data.asBytes();
+    }
+
+    @Benchmark
+    public Data fromProtobuf(){
+        return Data.fromBytes(bytes);
+    }
+
+    @Benchmark
+    public float[][] fromProtobufAndGetArray(){
+        //Includes materializing the (lazily deserialized) array
+        return Data.fromBytes(bytes).getNDArray("array").getAs(float[][].class);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.benchmarks.image;
+
+import ai.konduit.serving.data.image.convert.ImageToNDArray;
+import ai.konduit.serving.data.image.convert.ImageToNDArrayConfig;
+import ai.konduit.serving.data.image.convert.config.AspectRatioHandling;
+import ai.konduit.serving.data.image.convert.config.NDFormat;
+import ai.konduit.serving.pipeline.api.data.Image;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.impl.data.image.Png;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image to NDArray conversion (resize/crop, channel layout conversion and normalization) via
+ * {@link ImageToNDArray#convert(Image, ImageToNDArrayConfig)}, for a 640x480 input image and a 224x224 output.<br>
+ * The PNG input case includes decoding of the image; the MAT case (an already decoded OpenCV Mat) measures only the
+ * conversion itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageToNDArrayBenchmark {
+
+    public enum Input {BUFFERED_IMAGE, PNG, MAT}
+
+    @Param({"BUFFERED_IMAGE", "PNG", "MAT"})
+    public Input input;
+
+    @Param({"CHANNELS_FIRST", "CHANNELS_LAST"})
+    public NDFormat format;
+
+    private BufferedImage bufferedImage;
+    private byte[] pngBytes;
+    private Mat mat;
+    private ImageToNDArrayConfig config;
+
+    @Setup
+    public void setup() throws IOException {
+        Random r = new Random(12345);
+        bufferedImage = new BufferedImage(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+        for( int y=0; y<bufferedImage.getHeight(); y++ ){
+            for( int x=0; x<bufferedImage.getWidth(); x++ ){
+                bufferedImage.setRGB(x, y, r.nextInt());
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, "png", baos);
+        pngBytes = baos.toByteArray();
+        mat = Image.create(bufferedImage).getAs(Mat.class);
+
+        config = new ImageToNDArrayConfig()
+                .height(224)
+                .width(224)
+                .format(format)
+                .aspectRatioHandling(AspectRatioHandling.CENTER_CROP);
+    }
+
+    @Benchmark
+    public NDArray convert(){
+        Image image;
+        switch (input){
+            case PNG:
+                image = Image.create(new Png(pngBytes));
+                break;
+            case MAT:
+                image = Image.create(mat);
+                break;
+            default:
+                image = Image.create(bufferedImage);
+        }
+        return ImageToNDArray.convert(image, config);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.benchmarks.ndarray;
+
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.format.NDArrayConverter;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.registry.NDArrayConverterRegistry;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion between NDArray formats, as implemented in {@code JavaNDArrayConverters} and {@code ND4JConverters}.<br>
+ * As NDArrays cache their converted formats, each benchmark wraps the source array in a new NDArray instance so that
+ * the conversion is actually performed on every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NDArrayConversionBenchmark {
+
+    @Param({"16", "262144"})
+    public int length;
+
+    private float[][] floatArr;
+    private SerializedNDArray serialized;
+    private INDArray indArray;
+    private NDArray lookupArr;
+
+    @Setup
+    public void setup(){
+        indArray = Nd4j.rand(DataType.FLOAT, 1, length);
+        floatArr = indArray.toFloatMatrix();
+        serialized = NDArray.create(indArray).getAs(SerializedNDArray.class);
+        lookupArr = NDArray.create(floatArr);
+    }
+
+    @Benchmark
+    public SerializedNDArray floatToSerialized(){
+        return NDArray.create(floatArr).getAs(SerializedNDArray.class);
+    }
+
+    @Benchmark
+    public float[][] serializedToFloat(){
+        return NDArray.create(serialized).getAs(float[][].class);
+    }
+
+    @Benchmark
+    public INDArray serializedToINDArray(){
+        return NDArray.create(serialized).getAs(INDArray.class);
+    }
+
+    @Benchmark
+    public SerializedNDArray indArrayToSerialized(){
+        return NDArray.create(indArray).getAs(SerializedNDArray.class);
+    }
+
+    @Benchmark
+    public INDArray floatToINDArray(){
+        return NDArray.create(floatArr).getAs(INDArray.class);
+    }
+
+    @Benchmark
+    public NDArrayConverter converterLookup(){
+        //Converter resolution only - no conversion
+        return NDArrayConverterRegistry.getConverterFor(lookupArr, INDArray.class);
+    }
+}
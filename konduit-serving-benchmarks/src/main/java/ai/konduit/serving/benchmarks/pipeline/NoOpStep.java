@@ -0,0 +1,73 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.benchmarks.pipeline;
+
+import ai.konduit.serving.pipeline.api.context.Context;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunnerFactory;
+import ai.konduit.serving.pipeline.registry.PipelineRegistry;
+import org.nd4j.common.base.Preconditions;
+
+/**
+ * A pipeline step that returns its input unchanged - used to measure pipeline executor overhead.
+ */
+public class NoOpStep implements PipelineStep {
+
+    static {
+        PipelineRegistry.registerStepRunnerFactory(new Factory());
+    }
+
+    public static class Factory implements PipelineStepRunnerFactory {
+        @Override
+        public boolean canRun(PipelineStep step) {
+            return step instanceof NoOpStep;
+        }
+
+        @Override
+        public PipelineStepRunner create(PipelineStep step) {
+            Preconditions.checkState(canRun(step), "Unable to run step: %s", step);
+            return new Runner((NoOpStep) step);
+        }
+    }
+
+    public static class Runner implements PipelineStepRunner {
+        private final NoOpStep step;
+
+        public Runner(NoOpStep step){
+            this.step = step;
+        }
+
+        @Override
+        public void close() {
+
+        }
+
+        @Override
+        public PipelineStep getPipelineStep() {
+            return step;
+        }
+
+        @Override
+        public Data exec(Context ctx, Data data) {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.benchmarks.pipeline;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.impl.pipeline.graph.GraphBuilder;
+import ai.konduit.serving.pipeline.impl.pipeline.graph.GraphStep;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the {@code SequencePipelineExecutor} and {@code GraphPipelineExecutor}, measured with pipelines made up
+ * of {@link NoOpStep}s.<br>
+ * GRAPH is a linear chain of steps; GRAPH_BRANCHED splits the input into independent branches (one per step) that are
+ * merged with an "any" step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineExecutorBenchmark {
+
+    public enum Type {SEQUENCE, GRAPH, GRAPH_BRANCHED}
+
+    @Param({"SEQUENCE", "GRAPH", "GRAPH_BRANCHED"})
+    public Type type;
+
+    @Param({"1", "10"})
+    public int numSteps;
+
+    private PipelineExecutor executor;
+    private Data input;
+
+    @Setup
+    public void setup(){
+        Pipeline p;
+        switch (type){
+            case SEQUENCE:
+                SequencePipeline.Builder b = SequencePipeline.builder();
+                for( int i=0; i<numSteps; i++ ){
+                    b.add(new NoOpStep());
+                }
+                p = b.build();
+                break;
+            case GRAPH:
+                GraphBuilder gb = new GraphBuilder();
+                GraphStep s = gb.input();
+                for( int i=0; i<numSteps; i++ ){
+                    s = s.then("step_" + i, new NoOpStep());
+                }
+                p = gb.build(s);
+                break;
+            case GRAPH_BRANCHED:
+                GraphBuilder gb2 = new GraphBuilder();
+                GraphStep in = gb2.input();
+                GraphStep[] branches = new GraphStep[numSteps];
+                for( int i=0; i<numSteps; i++ ){
+                    branches[i] = in.then("step_" + i, new NoOpStep());
+                }
+                p = gb2.build(gb2.any("any", branches));
+                break;
+            default:
+                throw new IllegalStateException("Unknown type: " + type);
+        }
+
+        executor = p.executor();
+        input = Data.singleton("key", "value");
+    }
+
+    @TearDown
+    public void tearDown(){
+        executor.close();
+    }
+
+    @Benchmark
+    public Data exec(){
+        return executor.exec(input);
+    }
+}
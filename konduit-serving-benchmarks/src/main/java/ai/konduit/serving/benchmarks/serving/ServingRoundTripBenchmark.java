@@ -0,0 +1,168 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.benchmarks.serving;
+
+import ai.konduit.serving.models.onnx.step.ONNXStep;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.vertx.api.DeployKonduitServing;
+import ai.konduit.serving.vertx.config.InferenceConfiguration;
+import ai.konduit.serving.vertx.config.InferenceDeploymentResult;
+import ai.konduit.serving.vertx.config.ServerProtocol;
+import ai.konduit.serving.vertx.protocols.grpc.api.InferenceGrpc;
+import io.grpc.ManagedChannel;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.grpc.VertxChannelBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end round trip latency against an in-process server: request serialization, transport, deserialization,
+ * pipeline execution (a tiny ONNX model that adds two arrays), and response serialization.<br>
+ * HTTP_JSON and HTTP_BINARY post to the HTTP /predict endpoint with JSON and protobuf bodies respectively; GRPC uses
+ * the unary predictMap call (DataMap in, DataMap out) of the gRPC endpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServingRoundTripBenchmark {
+
+    public enum Protocol {HTTP_JSON, HTTP_BINARY, GRPC}
+
+    private static final String JSON = "application/json";
+    private static final String BINARY = "application/octet-stream";
+
+    @Param({"HTTP_JSON", "HTTP_BINARY", "GRPC"})
+    public Protocol protocol;
+
+    private File modelFile;
+    private Vertx vertx;
+    private URL predictUrl;
+    private ManagedChannel channel;
+    private InferenceGrpc.InferenceBlockingStub grpcStub;
+
+    private String jsonRequest;
+    private byte[] binaryRequest;
+    private DataMap grpcRequest;
+
+    @Setup
+    public void setup() throws Exception {
+        modelFile = File.createTempFile("add", ".onnx");
+        try(InputStream is = ServingRoundTripBenchmark.class.getClassLoader().getResourceAsStream("add.onnx")){
+            FileUtils.copyInputStreamToFile(is, modelFile);
+        }
+
+        InferenceConfiguration configuration = new InferenceConfiguration()
+                .protocol(protocol == Protocol.GRPC ? ServerProtocol.GRPC : ServerProtocol.HTTP)
+                .pipeline(SequencePipeline.builder()
+                        .add(new ONNXStep()
+                                .modelUri(modelFile.getAbsolutePath())
+                                .inputNames("x", "y")
+                                .outputNames("z"))
+                        .build());
+
+        CompletableFuture<InferenceDeploymentResult> deployed = new CompletableFuture<>();
+        vertx = DeployKonduitServing.deploy(new VertxOptions(), new DeploymentOptions(), configuration, handler -> {
+            if(handler.succeeded()){
+                deployed.complete(handler.result());
+            } else {
+                deployed.completeExceptionally(handler.cause());
+            }
+        });
+        int port = deployed.get(1, TimeUnit.MINUTES).getActualPort();
+
+        Data input = Data.empty();
+        input.put("x", NDArray.create(new float[][]{{1.0f}}));
+        input.put("y", NDArray.create(new float[][]{{2.0f}}));
+        jsonRequest = input.toJson();
+        binaryRequest = input.asBytes();
+        grpcRequest = DataMap.parseFrom(binaryRequest);
+
+        if(protocol == Protocol.GRPC){
+            channel = VertxChannelBuilder.forAddress(vertx, "localhost", port)
+                    .usePlaintext(true)
+                    .build();
+            grpcStub = InferenceGrpc.newBlockingStub(channel);
+        } else {
+            predictUrl = new URL("http://localhost:" + port + "/predict");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if(channel != null){
+            channel.shutdownNow();
+        }
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(h -> closed.complete(null));
+        closed.get(1, TimeUnit.MINUTES);
+        FileUtils.deleteQuietly(modelFile);
+    }
+
+    @Benchmark
+    public Data roundTrip() throws IOException {
+        switch (protocol){
+            case HTTP_JSON:
+                byte[] json = post(jsonRequest.getBytes(StandardCharsets.UTF_8), JSON);
+                return Data.fromJson(new String(json, StandardCharsets.UTF_8));
+            case HTTP_BINARY:
+                return Data.fromBytes(post(binaryRequest, BINARY));
+            case GRPC:
+                return Data.fromBytes(grpcStub.predictMap(grpcRequest).toByteArray());
+            default:
+                throw new IllegalStateException("Unknown protocol: " + protocol);
+        }
+    }
+
+    private byte[] post(byte[] body, String contentType) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) predictUrl.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", contentType);
+        connection.setRequestProperty("Accept", contentType);
+        try(OutputStream os = connection.getOutputStream()){
+            os.write(body);
+        }
+
+        int code = connection.getResponseCode();
+        if(code != 200){
+            throw new IllegalStateException("Request failed with HTTP status " + code + ": " +
+                    IOUtils.toString(connection.getErrorStream(), StandardCharsets.UTF_8));
+        }
+        try(InputStream is = connection.getInputStream()){
+            //Reading the full response lets the connection be reused (keep-alive)
+            return IOUtils.toByteArray(is);
+        }
+    }
+}
@@ -207,7 +207,7 @@ public class PredictCommand extends DefaultCommand {
                                 .forAddress(vertx, inferenceConfiguration.host(), inferenceConfiguration.port())
                                 .usePlaintext(true)
                                 .build())
-                                .predict(DataProtoMessage.DataScheme.parseFrom(
+                                .predictMap(DataProtoMessage.DataMap.parseFrom(
                                         inputType.contains("file") ?
                                                 FileUtils.readFileToByteArray(new File(data)) :
                                                 data.getBytes()),
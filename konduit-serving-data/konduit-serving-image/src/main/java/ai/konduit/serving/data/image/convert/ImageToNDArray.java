@@ -27,26 +27,36 @@ import ai.konduit.serving.pipeline.api.data.Image;
 import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
 import com.google.common.primitives.Longs;
+import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.Loader;
-import org.bytedeco.javacpp.indexer.*;
-import org.bytedeco.opencv.opencv_core.Mat;
-import org.bytedeco.opencv.opencv_core.Rect;
-import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.*;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.primitives.Pair;
 
-import java.nio.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 
 /**
  * Utility method for converting Image objects to NDArrays.
- * See {@link ImageToNDArrayConfig} for more details
+ * See {@link ImageToNDArrayConfig} for more details<br>
+ * Conversion is done natively (OpenCV): crop (as a region of interest - no copy), resize, color conversion, and then
+ * normalization/type conversion fused with the layout change, written directly into the output buffer.
  *
  * @author Alex Black
  */
 public class ImageToNDArray {
 
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private ImageToNDArray() {
     }
 
@@ -102,124 +112,179 @@ public class ImageToNDArray {
 
 
     public static long[] getOutputShape(ImageToNDArrayConfig config){
-        int rank = config.includeMinibatchDim() ? 4 : 3;
-        long[] out = new long[rank];
-        out[0] = 1;
-        if(config.format() == NDFormat.CHANNELS_FIRST){
-            out[1] = config.channelLayout().numChannels();
-            out[2] = config.height();
-            out[3] = config.width();
-        } else {
-            out[1] = config.height();
-            out[2] = config.width();
-            out[3] = config.channelLayout().numChannels();
+        long[] shape = getOutputShape(config.height(), config.width(), config);
+        if(config.includeMinibatchDim())
+            shape = Longs.concat(new long[]{1}, shape);
+        return shape;
+    }
+
+    /**
+     * Convert a list of images to a single NDArray, batched along dimension 0. Images are converted in parallel, with
+     * each image written directly into its slice of the batched output buffer.<br>
+     * All images must produce the same output shape - i.e., either ImageToNDArrayConfig.height/width must be set, or
+     * all images must be the same size.
+     *
+     * @param images Images to convert. Must not be empty
+     * @param config Configuration to use
+     * @return The images converted to an NDArray with shape [images.size(), ...]
+     */
+    public static NDArray convertBatch(List<Image> images, ImageToNDArrayConfig config) {
+        Preconditions.checkArgument(!images.isEmpty(), "Unable to convert an empty list of images to a batched NDArray");
+        checkConfig(config);
+
+        long[] first = getOutputShape(images.get(0), config);
+        for(Image i : images){
+            long[] curr = getOutputShape(i, config);
+            Preconditions.checkState(Arrays.equals(first, curr), "Error in ImageToNDArrayStep:" +
+                    "ImageToNDArrayStep.config.listHandling == BATCH but at least two output NDArrays have different shapes" +
+                    "(%s vs. %s). Unable to combine multiple NDArrays according to batch dimension if they have different shapes." +
+                    " Setting ImageToNDArrayStep.config.height/width or only passing in all the same size images will solve this problem", first, curr);
         }
-        return out;
+
+        int n = images.size();
+        int bytesPerImage = lengthBytes(first, config.dataType());
+        ByteBuffer bb = allocate(n * bytesPerImage);
+
+        //Note that C order along dimension 0 means each image is a contiguous block of the output buffer
+        //Images are converted on common pool threads: use per-image scratch Mats, released once the image is converted,
+        //rather than thread-local ones that would be held by those threads indefinitely
+        IntStream.range(0, n).parallel().forEach(i -> {
+            try (Scratch s = new Scratch()) {
+                convert(images.get(i), config, bb, i * bytesPerImage, s);
+            }
+        });
+
+        long[] shape = Longs.concat(new long[]{n}, first);
+        return NDArray.create(new SerializedNDArray(config.dataType(), shape, bb));
     }
 
-    protected static Pair<NDArray,BoundingBox> convert(Image image, ImageToNDArrayConfig config, boolean withMeta) {
-        BoundingBox bbMeta = null;
+    /**
+     * Convert the provided image, writing the result directly into the provided buffer, starting at the specified byte offset
+     * (the buffer's position is ignored and not modified). The buffer must have at least
+     * {@code offset + prod(outputShape) * config.dataType().width()} bytes of capacity, and be in little endian byte order.<br>
+     * This is mainly used to write multiple images into one (batched) buffer without an extra copy.
+     *
+     * @param image  Image to convert
+     * @param config Configuration to use
+     * @param output Output buffer to write the converted image to
+     * @param offset Offset (in bytes) at which to start writing
+     * @return The region of the original image (in relative coordinates) that was used, after any cropping
+     */
+    public static BoundingBox convert(Image image, ImageToNDArrayConfig config, ByteBuffer output, int offset) {
+        return convert(image, config, output, offset, SCRATCH.get());
+    }
 
-        Integer outH = config.height();
-        Integer outW = config.width();
-        if (outH == null)
-            outH = image.height();
-        if (outW == null)
-            outW = image.width();
+    protected static BoundingBox convert(Image image, ImageToNDArrayConfig config, ByteBuffer output, int offset, Scratch s) {
+        checkConfig(config);
 
+        int outH = config.height() == null ? image.height() : config.height();
+        int outW = config.width() == null ? image.width() : config.width();
 
-        //Resize if necessary
-        boolean correctSize = outH == image.height() && outW == image.width();
         Mat m = image.getAs(Mat.class);
-        if (!correctSize) {
-            AspectRatioHandling h = config.aspectRatioHandling();
-            if (h == AspectRatioHandling.CENTER_CROP) {
-                Pair<Mat,BoundingBox> p = centerCrop(m, outH, outW, withMeta); //new Mat(m, crop);;
-                Mat cropped = p.getFirst();
-                if (cropped.cols() == outW && cropped.rows() == outH) {
-                    m = cropped;
+        Mat roi = null;
+        BoundingBox crop;
+        try {
+            //Crop (no copy - just a region of interest) and resize if necessary
+            boolean correctSize = outH == image.height() && outW == image.width();
+            if (!correctSize) {
+                AspectRatioHandling h = config.aspectRatioHandling();
+                if (h == AspectRatioHandling.CENTER_CROP) {
+                    Rect r = centerCropRect(m.rows(), m.cols(), outH, outW);
+                    if(r != null){
+                        roi = m.apply(r);
+                        m = roi;
+                    }
+                    crop = centerCropBB(image.height(), image.width(), outH, outW);
+                } else if (h == AspectRatioHandling.PAD) {
+                    throw new UnsupportedOperationException("Not yet implemented");
+                } else if (h == AspectRatioHandling.STRETCH) {
+                    crop = BoundingBox.createXY(0.0, 1.0, 0.0, 1.0);
                 } else {
-                    Mat resized = new Mat();
-                    org.bytedeco.opencv.global.opencv_imgproc.resize(cropped, resized, new Size(outW, outH));
-                    m = resized;
-                }
-
-                if(withMeta){
-                    bbMeta = p.getSecond();
+                    throw new UnsupportedOperationException("Not supported image conversion: " + h);
                 }
-            } else if (h == AspectRatioHandling.PAD) {
-                throw new UnsupportedOperationException("Not yet implemented");
-            } else if (h == AspectRatioHandling.STRETCH) {
-                Mat resized = new Mat();
-                org.bytedeco.opencv.global.opencv_imgproc.resize(m, resized, new Size(outW, outH));
-                m = resized;
 
-                if(withMeta){
-                    bbMeta = BoundingBox.createXY(0.0, 1.0, 0.0, 1.0);
+                if (m.cols() != outW || m.rows() != outH) {
+                    opencv_imgproc.resize(m, s.resized, new Size(outW, outH));
+                    m = s.resized;
                 }
             } else {
-                throw new UnsupportedOperationException("Not supported image conversion: " + h);
+                crop = BoundingBox.createXY(0.0, 1.0, 0.0, 1.0);
             }
-        } else {
-            if(withMeta){
-                bbMeta = BoundingBox.createXY(0.0, 1.0, 0.0, 1.0);
-            }
-        }
 
-        m = convertColor(m, config);
-        Preconditions.checkState(m.channels() <= 3,"Channels must not be greater than 3!");
+            boolean rgb = config.channelLayout() == NDChannelLayout.RGB;
+            boolean channelsLast = config.format() == NDFormat.CHANNELS_LAST;
+            m = convertColor(m, config, rgb && channelsLast, s);
 
-        ByteBuffer bb = toFloatBuffer(m, config);
-
-        if (config.dataType() != NDArrayType.FLOAT) //TODO there are likely more efficient ways than this!
-            bb = ImageUtils.cast(bb, NDArrayType.FLOAT, config.dataType());
+            //FLOAT and DOUBLE are written directly to the output; other types are converted to float first, then cast
+            NDArrayType dt = config.dataType();
+            boolean nativeType = dt == NDArrayType.FLOAT || dt == NDArrayType.DOUBLE;
+            int depth = dt == NDArrayType.DOUBLE ? opencv_core.CV_64F : opencv_core.CV_32F;
+            if (nativeType && output.isDirect()) {
+                toBuffer(m, config, rgb, depth, output, offset, s);
+            } else {
+                int elementBytes = dt == NDArrayType.DOUBLE ? 8 : 4;
+                ByteBuffer tmp = BufferPool.allocate((long) m.rows() * m.cols() * m.channels() * elementBytes);
+                toBuffer(m, config, rgb, depth, tmp, 0, s);
+                if (!nativeType)
+                    tmp = ImageUtils.cast(tmp, NDArrayType.FLOAT, dt);
+                ByteBuffer dup = output.duplicate();
+                dup.position(offset);
+                dup.put(tmp);
+            }
+        } finally {
+            if (roi != null)
+                roi.close();
+        }
 
-        int ch = config.channelLayout().numChannels();
+        return crop;
+    }
 
-        long[] shape;
-        if (config.format() == NDFormat.CHANNELS_FIRST) {
-            shape =  new long[]{ch, outH, outW};
-        } else {
-            shape = new long[]{outH, outW, ch};
-        }
+    protected static Pair<NDArray,BoundingBox> convert(Image image, ImageToNDArrayConfig config, boolean withMeta) {
+        checkConfig(config);
+        long[] shape = getOutputShape(image, config);
+        ByteBuffer bb = allocate(lengthBytes(shape, config.dataType()));
+        BoundingBox bbMeta = convert(image, config, bb, 0);
 
-        /*   INDArray arrCreate = Nd4j.create(ND4JUtil.typeNDArrayTypeToNd4j(config.dataType()),shape, Nd4j.getStrides(shape),'c');
-         *//**
-         * Note this logic assumes 3d arrays.
-         * Postpone reshape till after the data is filled in
-         * since the new shape is just the minibatch size.
-         *//*
-        ImageUtils.fillNDArray(m,true,arrCreate);
-        ByteBuffer bb = arrCreate.data().asNio();*/
         if(config.includeMinibatchDim()) {
             shape = Longs.concat(new long[]{1},shape);
         }
 
         SerializedNDArray arr = new SerializedNDArray(config.dataType(), shape, bb);
-
-        return new Pair<>(NDArray.create(arr), bbMeta);
+        return new Pair<>(NDArray.create(arr), withMeta ? bbMeta : null);
     }
 
     public static Pair<Mat,BoundingBox> centerCrop(Mat image, int outH, int outW, boolean withBB) {
-        int imgH = image.rows();
-        int imgW = image.cols();
+        Rect crop = centerCropRect(image.rows(), image.cols(), outH, outW);
+        if(crop == null){
+            //No crop necessary
+            return new Pair<>(image, BoundingBox.createXY(0.0, 1.0, 0.0, 1.0));
+        }
 
-        double aspectIn = image.cols() / (double)image.rows();
-        double aspectOut = outW / (double)outH;
+        BoundingBox bb = null;
+        if(withBB){
+            bb = centerCropBB(image.rows(), image.cols(), outH, outW);
+        }
+
+        Mat out = image.apply(crop);
+        return new Pair<>(out, bb);
+    }
 
+    /**
+     * @return The region to center crop, or null if no crop is necessary (the aspect ratios already match)
+     */
+    protected static Rect centerCropRect(int imgH, int imgW, int outH, int outW) {
+        double aspectIn = imgW / (double)imgH;
+        double aspectOut = outW / (double)outH;
 
         int croppedW;
         int croppedH;
         int x0;
-        int x1;
         int y0;
-        int y1;
         if(aspectIn == aspectOut){
-            //No crop necessary
-            return new Pair<>(image, BoundingBox.createXY(0.0, 1.0, 0.0, 1.0));
+            return null;
         } else if(aspectIn > aspectOut){
             //Need to crop from width dimension
-            croppedW = (int)(aspectOut * image.rows());
+            croppedW = (int)(aspectOut * imgH);
             croppedH = imgH;
             int delta = imgW - croppedW;
             x0 = delta / 2;
@@ -227,20 +292,12 @@ public class ImageToNDArray {
         } else {
             //Need to crop from the height dimension
             croppedW = imgW;
-            croppedH = (int)(image.cols() / aspectOut);
+            croppedH = (int)(imgW / aspectOut);
             int delta = imgH - croppedH;
             x0 = 0;
             y0 = delta / 2;
         }
-
-        Rect crop = new Rect(x0, y0, croppedW, croppedH);
-        BoundingBox bb = null;
-        if(withBB){
-            bb = centerCropBB(imgH, imgW, outH, outW);
-        }
-
-        Mat out = image.apply(crop);
-        return new Pair<>(out, bb);
+        return new Rect(x0, y0, croppedW, croppedH);
     }
 
     protected static BoundingBox centerCropBB(int imgH, int imgW, int outH, int outW){
@@ -283,18 +340,92 @@ public class ImageToNDArray {
         return BoundingBox.createXY(dx1, dx2, dy1, dy2);
     }
 
-    protected static Mat convertColor(Mat m, ImageToNDArrayConfig config) {
+    /**
+     * Convert the image to the number of channels required by the config, in a single native pass. Mats are assumed to
+     * be in BGR(A) order, as produced by the Image converters. If toRgb is true, the channels are also reordered to RGB
+     */
+    protected static Mat convertColor(Mat m, ImageToNDArrayConfig config, boolean toRgb, Scratch s) {
         int ch = config.channelLayout().numChannels();
         if (ch != 3 && ch != 1) {
             throw new UnsupportedOperationException("Not yet implemented: Channels != 3 support");
         }
 
-        //TODO - Actually convert color!
+        int code;
+        switch (m.channels()){
+            case 1:
+                code = ch == 1 ? -1 : (toRgb ? opencv_imgproc.COLOR_GRAY2RGB : opencv_imgproc.COLOR_GRAY2BGR);
+                break;
+            case 3:
+                code = ch == 1 ? opencv_imgproc.COLOR_BGR2GRAY : (toRgb ? opencv_imgproc.COLOR_BGR2RGB : -1);
+                break;
+            case 4:
+                code = ch == 1 ? opencv_imgproc.COLOR_BGRA2GRAY : (toRgb ? opencv_imgproc.COLOR_BGRA2RGB : opencv_imgproc.COLOR_BGRA2BGR);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unable to convert image with " + m.channels() + " channels to " + config.channelLayout());
+        }
+
+        if(code < 0)
+            return m;
+        opencv_imgproc.cvtColor(m, s.color, code);
+        return s.color;
+    }
+
+    /**
+     * Normalize the image and write it to the output buffer in the required layout. Each output channel is written
+     * in a single native pass: {@code Mat.convertTo} applies the per-channel scale and offset while converting the type,
+     * writing straight into a Mat that wraps the output buffer
+     */
+    protected static void toBuffer(Mat m, ImageToNDArrayConfig config, boolean rgb, int depth, ByteBuffer output, int offset, Scratch s) {
+        int h = m.rows();
+        int w = m.cols();
+        int ch = m.channels();
+        double[][] coeff = ImageUtils.getNormalizationCoefficients(config, rgb);
+        double[] scale = coeff[0];
+        double[] shift = coeff[1];
+
+        BytePointer ptr = new BytePointer(output);
+        if (config.format() == NDFormat.CHANNELS_FIRST && ch > 1) {
+            //Mat is HWC in BGR, we want (N)CHW: split into planes, then normalize each plane directly into the output
+            opencv_core.split(m, s.planes);
+            long planeBytes = (long) h * w * (depth == opencv_core.CV_64F ? 8 : 4);
+            for (int c = 0; c < ch; c++) {
+                int srcPlane = rgb ? ch - 1 - c : c;
+                try (Mat dst = new Mat(h, w, depth, ptr.position(offset + c * planeBytes))) {
+                    s.planes.get(srcPlane).convertTo(dst, depth, scale[c], shift[c]);
+                }
+            }
+        } else {
+            //Channels already in the required order (see convertColor), and HWC is the Mat's own layout
+            try (Mat dst = new Mat(h, w, opencv_core.CV_MAKETYPE(depth, ch), ptr.position(offset))) {
+                if (uniform(scale, ch) && uniform(shift, ch)) {
+                    m.convertTo(dst, depth, scale[0], shift[0]);
+                } else {
+                    //Per channel scale/shift: y_c = scale_c * x_c + shift_c, as a (diagonal) affine transform
+                    m.convertTo(s.floats, depth);
+                    try (Mat t = new Mat(ch, ch + 1, opencv_core.CV_64F, Scalar.all(0.0))) {
+                        DoubleIndexer idx = t.createIndexer();
+                        for (int c = 0; c < ch; c++) {
+                            idx.put(c, c, scale[c]);
+                            idx.put(c, ch, shift[c]);
+                        }
+                        idx.release();
+                        opencv_core.transform(s.floats, dst, t);
+                    }
+                }
+            }
+        }
+    }
 
-        return m;
+    private static boolean uniform(double[] values, int n){
+        for( int i=1; i<n; i++ ){
+            if(values[i] != values[0])
+                return false;
+        }
+        return true;
     }
 
-    protected static ByteBuffer toFloatBuffer(Mat m, ImageToNDArrayConfig config) {
+    private static void checkConfig(ImageToNDArrayConfig config){
         Preconditions.checkState(config.channelLayout() == NDChannelLayout.RGB ||
                         config.channelLayout() == NDChannelLayout.BGR ||
                         config.channelLayout() == NDChannelLayout.GRAYSCALE,
@@ -302,84 +433,56 @@ public class ImageToNDArray {
 
         Preconditions.checkState(config.dataType() != NDArrayType.BOOL && config.dataType() != NDArrayType.UTF8,
                 "%s datatype is not supported for ImageToNDArray", config.dataType());
+    }
 
-        boolean direct = !Loader.getPlatform().startsWith("android");
-
-        //By default, Mat stores values in channels first format - CHW
-        int h = m.rows();
-        int w = m.cols();
-        int ch = m.channels();
-
-        int lengthElements = h * w * ch;
-        int lengthBytes = lengthElements * 4;
-
-        ByteBuffer bb = direct ? ByteBuffer.allocateDirect(lengthBytes).order(ByteOrder.LITTLE_ENDIAN) : ByteBuffer.allocate(lengthBytes).order(ByteOrder.LITTLE_ENDIAN);
-        FloatBuffer fb = bb.asFloatBuffer();
-
-        boolean rgb = config.channelLayout() == NDChannelLayout.RGB;
+    /**
+     * @return The output shape for the image, excluding any minibatch dimension
+     */
+    private static long[] getOutputShape(Image image, ImageToNDArrayConfig config){
+        int outH = config.height() == null ? image.height() : config.height();
+        int outW = config.width() == null ? image.width() : config.width();
+        return getOutputShape(outH, outW, config);
+    }
 
-        ImageUtils.FloatNormalizer f = ImageUtils.getFloatNormalizer(config, rgb);
+    private static long[] getOutputShape(long outH, long outW, ImageToNDArrayConfig config){
+        int ch = config.channelLayout().numChannels();
+        if (config.format() == NDFormat.CHANNELS_FIRST) {
+            return new long[]{ch, outH, outW};
+        } else {
+            return new long[]{outH, outW, ch};
+        }
+    }
 
+    private static int lengthBytes(long[] shape, NDArrayType dataType){
+        long length = dataType.width();
+        for(long l : shape)
+            length *= l;
+        Preconditions.checkState(length <= Integer.MAX_VALUE, "Output NDArray is too large: %s bytes", length);
+        return (int) length;
+    }
 
-        Indexer imgIdx = m.createIndexer(direct);
-        if (imgIdx instanceof UByteIndexer) {
-            UByteIndexer ubIdx = (UByteIndexer) imgIdx;
-            if (config.format() == NDFormat.CHANNELS_FIRST) {
-                if (rgb) {
-                    //Mat is HWC in BGR, we want (N)CHW in RGB format
-                    int[] rgbToBgr = {2, 1, 0};
-                    for (int c = 0; c < rgbToBgr.length; c++) {
-                        for (int y = 0; y < h; y++) {
-                            for (int x = 0; x < w; x++) {
-                                //int idxBGR = (ch * w * y) + (ch * x) + rgbToBgr[c];
-                                int v = ubIdx.get(y,x,rgbToBgr[c]);
-                                float normalized = f.normalize(v, c);
-                                fb.put(normalized);
-                            }
-                        }
-                    }
-                } else {
-                    UByteRawIndexer uByteRawIndexer = (UByteRawIndexer) ubIdx;
-                    //Mat is HWC in BGR, we want (N)CHW in BGR format
-                    for (int c = 0; c < 3; c++) {
-                        for (int y = 0; y < h; y++) {
-                            for (int x = 0; x < w; x++) {
-                                int idxBGR = (ch * w * y) + (ch * x) + c;
-                                int v = uByteRawIndexer.getRaw(idxBGR);
-                                float normalized = f.normalize(v, c);
-                                fb.put(normalized);
-                            }
-                        }
-                    }
-                }
-            } else {
-                if (rgb) {
-                    //Mat is HWC in BGR, we want (N)HWC in RGB format
-                    fb.position(0);
-                    UByteRawIndexer uByteRawIndexer = (UByteRawIndexer) ubIdx;
-                    for (int i = 0; i < lengthElements; i += 3) {
-                        int b = uByteRawIndexer.getRaw(i);
-                        int g = uByteRawIndexer.getRaw(i + 1);
-                        int r = uByteRawIndexer.getRaw(i + 2);
-                        fb.put(f.normalize(r, 0));
-                        fb.put(f.normalize(g, 1));
-                        fb.put(f.normalize(b, 2));
-                    }
-                } else {
-                    //Mat is HWC in BGR, we want (N)HWC in BGR format
-                    UByteRawIndexer uByteRawIndexer = (UByteRawIndexer) ubIdx;
+    private static ByteBuffer allocate(int lengthBytes){
+        boolean direct = !Loader.getPlatform().startsWith("android");
+        return direct ? BufferPool.allocate(lengthBytes) : ByteBuffer.allocate(lengthBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
 
-                    for (int i = 0; i < lengthElements; i++) {
-                        float normalized = f.normalize(uByteRawIndexer.getRaw(i), i % 3);
-                        fb.put(normalized);
-                    }
-                }
-            }
-        } else {
-            throw new RuntimeException("Not yet implemented: " + imgIdx.getClass());
+    /**
+     * Intermediate Mats, reused between conversions. OpenCV only reallocates these when the required size
+     * or type changes. Held per thread for single image conversion, or per image (and closed after use) for batches
+     */
+    protected static class Scratch implements AutoCloseable {
+        private final Mat resized = new Mat();
+        private final Mat color = new Mat();
+        private final Mat floats = new Mat();
+        private final MatVector planes = new MatVector();
+
+        @Override
+        public void close() {
+            resized.close();
+            color.close();
+            floats.close();
+            planes.close();
         }
-
-        return bb;
     }
 
 }
@@ -28,15 +28,11 @@ import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
 import ai.konduit.serving.pipeline.impl.data.ValueNotFoundException;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
 import lombok.NonNull;
-import org.bytedeco.javacpp.Loader;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.primitives.Pair;
 
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 @CanRun(ImageToNDArrayStep.class)
@@ -111,8 +107,7 @@ public class ImageToNDArrayRunner implements PipelineStepRunner {
             boolean isList = data.type(s) == ValueType.LIST && data.listType(s) == ValueType.IMAGE;
 
             if(isList){
-                List<NDArray> l = new ArrayList<>();
-                boolean batch = false;
+                List<Image> images = data.getListImage(s);
                 switch (step.config().listHandling()){
                     default:
                     case NONE:
@@ -122,69 +117,34 @@ public class ImageToNDArrayRunner implements PipelineStepRunner {
                                 "For List<Image> --> NDArray, use ListHandling.BATCH (where arrays are batched along dimension 0)\n" +
                                 "For List<Image>.get(0) --> NDArray, use ListHandling.FIRST");
                     case FIRST:
-                        List<Image> imgList = data.getListImage(s);
-                        if(imgList.isEmpty()){
+                        if(images.isEmpty()){
                             empty(d, outNames.get(idx++));
                         } else {
-                            NDArray array = ImageToNDArray.convert(data.getListImage(s).get(0), step.config());
+                            NDArray array = ImageToNDArray.convert(images.get(0), step.config());
                             d.put(outNames.get(idx++), array);
                         }
                         return d;
                     case BATCH:
-                        batch = true;   //Fall through
+                        if(images.isEmpty()) {
+                            //Return empty NDArray
+                            empty(d, outNames.get(idx++));
+                        } else if(images.size() == 1){
+                            d.put(outNames.get(idx++), ImageToNDArray.convert(images.get(0), step.config()));
+                        } else {
+                            //Images are converted in parallel, directly into the batched output buffer
+                            d.put(outNames.get(idx++), ImageToNDArray.convertBatch(images, step.config()));
+                        }
+                        break;
                     case LIST_OUT:
-                        List<Image> images = data.getListImage(s);
+                        List<NDArray> l = new ArrayList<>(images.size());
                         for(Image i : images){
                             NDArray out = ImageToNDArray.convert(i, step.config());
                             l.add(out);
                         }
+                        d.putListNDArray(outNames.get(idx++), l);
                         break;
                 }
 
-                if(batch){
-                    if(l.size() == 0) {
-                        //Return empty NDArray
-                        empty(d, outNames.get(idx++));
-                        continue;
-                    } else if(l.size() == 1){
-                        d.put(outNames.get(idx++), l.get(0));
-                    } else {
-                        //Check that all have the same shape before combining
-                        long[] first = l.get(0).shape();
-                        for (NDArray arr : l) {
-                            long[] curr = arr.shape();
-                            Preconditions.checkState(Arrays.equals(first, curr), "Error in ImageToNDArrayStep:" +
-                                    "ImageToNDArrayStep.config.listHandling == BATCH but at least two output NDArrays have different shapes" +
-                                    "(%s vs. %s). Unable to combine multiple NDArrays according to batch dimension if they have different shapes." +
-                                    " Setting ImageToNDArrayStep.config.height/width or only passing in all the same size images will solve this problem", first, curr);
-                        }
-
-                        //Concatenate. Note that C order along dimension 0 means we can just copy buffers
-                        SerializedNDArray nd = l.get(0).getAs(SerializedNDArray.class);
-                        int size = nd.getBuffer().capacity();
-                        int newSize = size * l.size();
-                        long[] newShape = l.get(0).shape().clone();
-                        if(!step.config().includeMinibatchDim()){
-                            newShape = new long[]{0, newShape[0], newShape[1], newShape[2]};
-                        }
-
-                        newShape[0] = l.size();
-                        boolean direct = !Loader.getPlatform().startsWith("android");
-                        ByteBuffer outBuff = direct ? ByteBuffer.allocateDirect(newSize).order(ByteOrder.LITTLE_ENDIAN) : ByteBuffer.allocate(newSize).order(ByteOrder.LITTLE_ENDIAN);
-                        nd.getBuffer().rewind();
-                        outBuff.put(nd.getBuffer());
-                        for( int i=1; i<l.size(); i++ ){
-                            SerializedNDArray ndarr = l.get(i).getAs(SerializedNDArray.class);
-                            ndarr.getBuffer().rewind();
-                            outBuff.put(ndarr.getBuffer());
-                        }
-                        SerializedNDArray outArr = new SerializedNDArray(l.get(0).type(), newShape, outBuff);
-                        d.put(outNames.get(idx++), NDArray.create(outArr));
-                    }
-                } else {
-                    d.putListNDArray(outNames.get(idx++), l);
-                }
-
             } else {
                 //Single image case
 
@@ -192,6 +152,7 @@ public class ImageToNDArrayRunner implements PipelineStepRunner {
 
                 if (meta) {
                     Pair<NDArray, BoundingBox> p = ImageToNDArray.convertWithMetadata(i, step.config());
+                    d.put(outNames.get(idx++), p.getFirst());
                     cropRegionMeta.add(p.getSecond());
                     origHMeta.add((long) i.height());
                     origWMeta.add((long) i.width());
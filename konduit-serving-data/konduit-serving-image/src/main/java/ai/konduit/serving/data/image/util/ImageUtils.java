@@ -25,6 +25,7 @@ import ai.konduit.serving.pipeline.api.data.BoundingBox;
 import ai.konduit.serving.pipeline.api.data.Image;
 import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.api.data.Point;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
 import org.bytedeco.javacpp.*;
 import org.bytedeco.javacpp.indexer.*;
 import org.bytedeco.opencv.opencv_core.Mat;
@@ -40,6 +41,7 @@ import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.nativeblas.NativeOpsHolder;
 
 import java.nio.*;
+import java.util.Arrays;
 import java.util.function.IntToDoubleFunction;
 
 public class ImageUtils {
@@ -283,6 +285,68 @@ public class ImageUtils {
         return f;
     }
 
+    /**
+     * Get the normalization specified by the {@link ImageToNDArrayConfig} as a per-channel affine map:
+     * {@code normalized = scale[c] * x + offset[c]}. This is equivalent to {@link #getFloatNormalizer(ImageToNDArrayConfig, boolean)},
+     * but in a form that can be applied by native (OpenCV) conversion routines
+     * @param config the input configuration
+     * @param rgb whether the image layout is rgb or bgr
+     * @return Array of length 2: the first is the per-channel scale, the second is the per-channel offset (both of length 3)
+     */
+    public static double[][] getNormalizationCoefficients(ImageToNDArrayConfig config, boolean rgb) {
+        double[] scale = {1.0, 1.0, 1.0};
+        double[] offset = {0.0, 0.0, 0.0};
+        ImageNormalization n = config.normalization();
+        if(n == null || n.type() == ImageNormalization.Type.NONE)
+            return new double[][]{scale, offset};
+
+        double max = n.maxValue() == null ? 255.0 : n.maxValue();
+        switch (n.type()) {
+            case SCALE:
+                Arrays.fill(scale, 2.0 / max);
+                Arrays.fill(offset, -1.0);
+                break;
+            case SCALE_01:
+                Arrays.fill(scale, 1.0 / max);
+                break;
+            case SUBTRACT_MEAN:
+                Preconditions.checkState(n.meanRgb() != null, "Error during normalization: Normalization type is set to " +
+                        "SUBTRACT_MEAN but not meanRgb array is provided");
+                double[] mean = channelOrder(n.meanRgb(), rgb);
+                for( int c=0; c<3; c++ )
+                    offset[c] = -mean[c];
+                break;
+            case STANDARDIZE:
+                Preconditions.checkState(n.meanRgb() != null, "Error during normalization: Normalization type is set to " +
+                        "STANDARDIZE but not meanRgb array is provided");
+                Preconditions.checkState(n.stdRgb() != null, "Error during normalization: Normalization type is set to " +
+                        "STANDARDIZE but not stdRgb array is provided");
+                double[] mean2 = channelOrder(n.meanRgb(), rgb);
+                double[] std = channelOrder(n.stdRgb(), rgb);
+                for( int c=0; c<3; c++ ) {
+                    scale[c] = 1.0 / std[c];
+                    offset[c] = -mean2[c] / std[c];
+                }
+                break;
+            case INCEPTION:
+                Arrays.fill(scale, 2.0 / max);
+                Arrays.fill(offset, -1.0);
+                break;
+            case VGG_SUBTRACT_MEAN:
+                double[] meanVgg = channelOrder(ImageNormalization.getVggMeanRgb(), rgb);
+                for( int c=0; c<3; c++ )
+                    offset[c] = -meanVgg[c];
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported image normalization type: " + n.type());
+        }
+        return new double[][]{scale, offset};
+    }
+
+    private static double[] channelOrder(double[] valuesRgb, boolean rgb){
+        return rgb ? valuesRgb : new double[]{valuesRgb[2], valuesRgb[1], valuesRgb[0]};
+    }
+
     /**
      * Cast the given {@link ByteBuffer}
      * from the fromTYpe to the toType
@@ -344,7 +408,7 @@ public class ImageUtils {
         }
 
         int bytesLength = toType.width() * length;
-        ByteBuffer bb = direct ? ByteBuffer.allocateDirect(bytesLength).order(ByteOrder.LITTLE_ENDIAN) : ByteBuffer.allocate(bytesLength).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer bb = direct ? BufferPool.allocate(bytesLength) : ByteBuffer.allocate(bytesLength).order(ByteOrder.LITTLE_ENDIAN);
 
         switch (toType) {
             case DOUBLE:
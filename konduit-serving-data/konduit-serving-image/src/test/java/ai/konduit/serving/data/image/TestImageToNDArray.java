@@ -1,16 +1,21 @@
 package ai.konduit.serving.data.image;
 
+import ai.konduit.serving.data.image.convert.ImageToNDArray;
 import ai.konduit.serving.data.image.convert.ImageToNDArrayConfig;
 import ai.konduit.serving.data.image.convert.config.ImageNormalization;
 import ai.konduit.serving.data.image.convert.config.NDChannelLayout;
 import ai.konduit.serving.data.image.convert.config.NDFormat;
 import ai.konduit.serving.data.image.step.ndarray.ImageToNDArrayStep;
+import ai.konduit.serving.data.image.util.ImageUtils;
 import ai.konduit.serving.data.nd4j.util.ND4JUtil;
 import ai.konduit.serving.pipeline.api.data.*;
 import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
 import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
 import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import org.bytedeco.javacpp.indexer.UByteIndexer;
+import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
 import org.datavec.image.loader.NativeImageLoader;
 import org.junit.Test;
 import org.nd4j.common.primitives.Pair;
@@ -24,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -822,6 +828,89 @@ public class TestImageToNDArray {
     }
 
 
+    @Test
+    public void testNativeConversionVsReference(){
+        //Random (non-constant) image, with both crop and resize required
+        int inH = 40;
+        int inW = 60;
+        int oH = 24;
+        int oW = 20;
+        Random r = new Random(12345);
+        BufferedImage bi = new BufferedImage(inW, inH, BufferedImage.TYPE_INT_RGB);
+        for( int y=0; y<inH; y++ ){
+            for( int x=0; x<inW; x++ ){
+                bi.setRGB(x, y, r.nextInt(0xFFFFFF));
+            }
+        }
+        Image img = Image.create(bi);
+        Mat m = img.getAs(Mat.class);
+
+        ImageNormalization norm = new ImageNormalization()
+                .type(ImageNormalization.Type.STANDARDIZE)
+                .meanRgb(new double[]{128, 200, 50})
+                .stdRgb(new double[]{180, 140, 100});
+
+        for(boolean rgb : new boolean[]{true, false}) {
+            for (NDFormat f : NDFormat.values()) {
+                ImageToNDArrayConfig c = new ImageToNDArrayConfig()
+                        .height(oH)
+                        .width(oW)
+                        .channelLayout(rgb ? NDChannelLayout.RGB : NDChannelLayout.BGR)
+                        .format(f)
+                        .includeMinibatchDim(false)
+                        .dataType(NDArrayType.FLOAT)
+                        .normalization(norm);
+
+                //Reference: crop, resize, then normalize and reorder pixel by pixel
+                Mat cropped = ImageToNDArray.centerCrop(m, oH, oW, false).getFirst();
+                Mat resized = new Mat();
+                opencv_imgproc.resize(cropped, resized, new Size(oW, oH));
+                UByteIndexer idx = resized.createIndexer();
+                ImageUtils.FloatNormalizer fn = ImageUtils.getFloatNormalizer(c, rgb);
+
+                float[][][] act = ImageToNDArray.convert(img, c).getAs(float[][][].class);
+                for( int y=0; y<oH; y++ ){
+                    for( int x=0; x<oW; x++ ){
+                        for( int ch=0; ch<3; ch++ ){
+                            int bgrIdx = rgb ? 2 - ch : ch;
+                            float exp = fn.normalize(idx.get(y, x, bgrIdx), ch);
+                            float a = f == NDFormat.CHANNELS_FIRST ? act[ch][y][x] : act[y][x][ch];
+                            assertEquals(exp, a, 1e-5f);
+                        }
+                    }
+                }
+
+                //Batched conversion (written directly into the batch buffer) should match single image conversion
+                NDArray batch = ImageToNDArray.convertBatch(Arrays.asList(img, img, img), c);
+                float[][][][] b = batch.getAs(float[][][][].class);
+                assertEquals(3, b.length);
+                for(float[][][] f3 : b) {
+                    assertTrue(Arrays.deepEquals(act, f3));
+                }
+            }
+        }
+
+        //3 channel image to grayscale
+        ImageToNDArrayConfig c = new ImageToNDArrayConfig()
+                .height(inH)
+                .width(inW)
+                .channelLayout(NDChannelLayout.GRAYSCALE)
+                .includeMinibatchDim(false)
+                .dataType(NDArrayType.FLOAT)
+                .normalization(null);
+        NDArray gray = ImageToNDArray.convert(img, c);
+        assertArrayEquals(new long[]{1, inH, inW}, gray.shape());
+        Mat grayMat = new Mat();
+        opencv_imgproc.cvtColor(m, grayMat, opencv_imgproc.COLOR_BGR2GRAY);
+        UByteIndexer gIdx = grayMat.createIndexer();
+        float[][][] g = gray.getAs(float[][][].class);
+        for( int y=0; y<inH; y++ ){
+            for( int x=0; x<inW; x++ ){
+                assertEquals(gIdx.get(y, x), g[0][y][x], 0.0f);
+            }
+        }
+    }
+
     @Test
     public void testImageNormalizationNonRgb(){
         //TODO Test image normalization - RGBA, BGRA, GRAYSCALE
@@ -24,6 +24,7 @@ import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.api.format.NDArrayConverter;
 import ai.konduit.serving.pipeline.api.format.NDArrayFormat;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
 import lombok.AllArgsConstructor;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.util.ArrayUtil;
@@ -35,6 +36,7 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 
 public class ND4JConverters  {
@@ -223,6 +225,15 @@ public class ND4JConverters  {
 
             ByteBuffer bb = from.getBuffer();
             bb.rewind();
+            if(!bb.isDirect() || bb.isReadOnly()){
+                //Heap buffers can't be used by ND4J directly. Read-only buffers (such as views of deserialized protobuf
+                //messages) must not be wrapped either: steps may modify their input INDArrays in place
+                //Instead, copy the bytes straight into the (off-heap) memory of a new array
+                INDArray arr = Nd4j.createUninitialized(dt, shape);
+                ByteBuffer target = arr.data().asNio();
+                target.put(bb.duplicate());
+                return arr;
+            }
 
             DataBuffer db = Nd4j.createBuffer(bb, dt, (int)length, 0);
             INDArray arr = Nd4j.create(db, shape);
@@ -260,12 +271,20 @@ public class ND4JConverters  {
         }
 
         public SerializedNDArray convert(INDArray from){
-            if(from.isView() || from.ordering() != 'c' || !Shape.hasDefaultStridesForShape(from))
+            boolean dup = from.isView() || from.ordering() != 'c' || !Shape.hasDefaultStridesForShape(from);
+            if(dup)
                 from = from.dup('c');
 
             NDArrayType type = ND4JUtil.typeNd4jToNDArrayType(from.dataType());
             long[] shape = from.shape();
             ByteBuffer bb = from.data().asNio();
+            if(dup){
+                //The NIO view doesn't keep the duplicated array alive - copy to a buffer we own before it is deallocated
+                ByteBuffer copy = BufferPool.allocate(bb.capacity());
+                copy.put(bb);
+                copy.rewind();
+                bb = copy;
+            }
 
             return new SerializedNDArray(type, shape, bb);
         }
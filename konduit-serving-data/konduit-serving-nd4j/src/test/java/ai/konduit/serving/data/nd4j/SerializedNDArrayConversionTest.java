@@ -18,12 +18,16 @@
 
 package ai.konduit.serving.data.nd4j;
 
+import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
 import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.nio.ByteBuffer;
+
 import static org.junit.Assert.assertEquals;
 
 public class SerializedNDArrayConversionTest {
@@ -69,4 +73,33 @@ public class SerializedNDArrayConversionTest {
             assertEquals(sa, s2);
         }
     }
+
+    @Test
+    public void testProtobufConversion(){
+        INDArray exp = Nd4j.linspace(1, 12, 12, DataType.FLOAT).reshape(3, 4);
+        Data d = Data.singleton("arr", NDArray.create(exp));
+
+        //NDArrays deserialized from protobuf are read-only views of the serialized bytes
+        Data d2 = Data.fromBytes(d.asBytes());
+        INDArray out = d2.getNDArray("arr").getAs(INDArray.class);
+        assertEquals(exp, out);
+    }
+
+    @Test
+    public void testProtobufConversionWritable(){
+        INDArray exp = Nd4j.linspace(1, 12, 12, DataType.FLOAT).reshape(3, 4);
+        byte[] bytes = Data.singleton("arr", NDArray.create(exp)).asBytes();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+
+        //Parsed from heap and direct memory: in both cases, the INDArray must be writable without modifying the input
+        for(Data d : new Data[]{Data.fromBytes(bytes), Data.fromBytes((ByteBuffer) direct.duplicate().rewind())}) {
+            NDArray arr = d.getNDArray("arr");
+            INDArray out = arr.getAs(INDArray.class);
+            out.addi(1.0);
+            assertEquals(exp.add(1.0), out);
+            assertEquals(exp, Nd4j.createFromArray(arr.getAs(float[][].class)));
+        }
+        assertEquals(Data.singleton("arr", NDArray.create(exp)), Data.fromBytes(bytes));
+    }
 }
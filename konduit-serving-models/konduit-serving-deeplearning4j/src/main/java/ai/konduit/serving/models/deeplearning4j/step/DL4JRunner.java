@@ -25,6 +25,12 @@ import ai.konduit.serving.pipeline.api.protocol.URIResolver;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
 import ai.konduit.serving.pipeline.impl.data.JData;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.modelimport.keras.KerasModel;
@@ -41,10 +47,22 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Runner for {@link DL4JStep} and {@link KerasStep}.<br>
+ * The model is loaded once, and {@code replicas - 1} additional copies are created that share its parameters. Each
+ * call to {@link #exec(Context, Data)} takes a free replica from a lock-free queue (waiting if all replicas are busy)
+ * and returns it when done, so up to {@code replicas} requests can execute concurrently.<br>
+ * The replica metrics are tagged with the step name and the runner's {@link MicrometerRegistry#INSTANCE_TAG}, and are
+ * removed from the registry when the runner is closed.
+ */
 @Slf4j
 @CanRun({DL4JStep.class, KerasStep.class})
 public class DL4JRunner implements PipelineStepRunner {
@@ -56,6 +74,10 @@ public class DL4JRunner implements PipelineStepRunner {
     private KerasStep kStep;
     private MultiLayerNetwork net;
     private ComputationGraph graph;
+    private ConcurrentLinkedQueue<Replica> freeReplicas;
+    private Semaphore availableReplicas;
+    private Timer replicaWait;
+    private final List<Meter> meters = new ArrayList<>();
 
     public DL4JRunner(KerasStep step) {
         this.kStep = step;
@@ -91,7 +113,7 @@ public class DL4JRunner implements PipelineStepRunner {
                         " by DL4JRunner", t);
             }
         }
-        System.out.println();
+        initReplicas(step.replicas());
     }
 
     public DL4JRunner(DL4JStep step) {
@@ -175,11 +197,81 @@ public class DL4JRunner implements PipelineStepRunner {
                 }
             }
         }
+        initReplicas(step.replicas());
+    }
+
+    private void initReplicas(int numReplicas) {
+        Preconditions.checkState(numReplicas > 0, "Number of replicas must be positive, got %s", numReplicas);
+        String name = getPipelineStep().name();
+        String instance = MicrometerRegistry.nextInstanceId();
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+
+        freeReplicas = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < numReplicas; i++) {
+            MultiLayerNetwork n = null;
+            ComputationGraph g = null;
+            if (i == 0) {
+                n = net;
+                g = graph;
+            } else if (net != null) {
+                //Parameters are shared with the original model, not copied
+                n = new MultiLayerNetwork(net.getLayerWiseConfigurations().clone());
+                n.init(net.params(), false);
+            } else {
+                g = new ComputationGraph(graph.getConfiguration().clone());
+                g.init(graph.params(), false);
+            }
+
+            Timer busy = Timer.builder("konduit.dl4j.replica.exec")
+                    .tag("step", name)
+                    .tag("replica", String.valueOf(i))
+                    .tag(MicrometerRegistry.INSTANCE_TAG, instance)
+                    .register(registry);
+            meters.add(busy);
+            freeReplicas.add(new Replica(n, g, busy));
+        }
+        availableReplicas = new Semaphore(numReplicas);
+
+        meters.add(Gauge.builder("konduit.dl4j.replicas.busy", availableReplicas, s -> numReplicas - s.availablePermits())
+                .tag("step", name)
+                .tag(MicrometerRegistry.INSTANCE_TAG, instance)
+                .register(registry));
+        replicaWait = Timer.builder("konduit.dl4j.replica.wait")
+                .tag("step", name)
+                .tag(MicrometerRegistry.INSTANCE_TAG, instance)
+                .register(registry);
+        meters.add(replicaWait);
+        if (numReplicas > 1)
+            log.info("Created {} replicas of model {}", numReplicas, name);
+    }
+
+    private Replica acquire() {
+        long start = System.nanoTime();
+        try {
+            availableReplicas.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a free model replica", e);
+        }
+        replicaWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        //Never null: a permit is only available when a replica is in the queue
+        return freeReplicas.poll();
+    }
+
+    private void release(Replica r) {
+        freeReplicas.add(r);
+        availableReplicas.release();
     }
 
 
     @Override
     public void close() {
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        for (Meter m : meters) {
+            registry.remove(m);
+        }
+        meters.clear();
+
         try {
             if (net != null) {
                 net.close();
@@ -208,8 +300,13 @@ public class DL4JRunner implements PipelineStepRunner {
         if (net != null) {
             INDArray arr = getOnlyArray(data);
             INDArray out;
-            synchronized (net) {
-                out = net.output(arr);
+            Replica r = acquire();
+            long start = System.nanoTime();
+            try {
+                out = r.net.output(arr);
+            } finally {
+                r.busy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                release(r);
             }
 
             String outName = outputName();
@@ -244,8 +341,13 @@ public class DL4JRunner implements PipelineStepRunner {
                 }
             }
             INDArray[] out;
-            synchronized (graph) {
-                out = graph.output(input);
+            Replica r = acquire();
+            long start = System.nanoTime();
+            try {
+                out = r.graph.output(input);
+            } finally {
+                r.busy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                release(r);
             }
 
             //Work out output names
@@ -291,4 +393,11 @@ public class DL4JRunner implements PipelineStepRunner {
         INDArray out = array.getAs(INDArray.class);          //TOOD NO CAST
         return out;
     }
+
+    @AllArgsConstructor
+    private static class Replica {
+        private final MultiLayerNetwork net;
+        private final ComputationGraph graph;
+        private final Timer busy;          //Total execution time of this replica: divide by wall time for utilization
+    }
 }
@@ -51,6 +51,11 @@ public class DL4JStep implements PipelineStep {
             "Must be a java.util.Function<String,MultiLayerNetwork> or java.util.Function<String,ComputationGraph>")
     private String loaderClass;
 
+    @Schema(description = "Number of copies of the model used to execute requests concurrently. Copies share the model " +
+            "parameters, so each additional replica only requires memory for activations. If 1 (default), requests are " +
+            "executed one at a time.", defaultValue = "1")
+    private int replicas = 1;
+
     public DL4JStep(@JsonProperty("modelUri") String modelUri, @JsonProperty("inputNames") List<String> inputNames,
                     @JsonProperty("outputNames") List<String> outputNames){
         this.modelUri = modelUri;
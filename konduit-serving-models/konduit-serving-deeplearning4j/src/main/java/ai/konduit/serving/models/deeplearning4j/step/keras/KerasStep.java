@@ -51,6 +51,11 @@ public class KerasStep implements PipelineStep {
             "from the computation graph output - INDArray[] to data keys).")
     private List<String> outputNames;
 
+    @Schema(description = "Number of copies of the model used to execute requests concurrently. Copies share the model " +
+            "parameters, so each additional replica only requires memory for activations. If 1 (default), requests are " +
+            "executed one at a time.", defaultValue = "1")
+    private int replicas = 1;
+
     public KerasStep(@JsonProperty("modelUri") String modelUri, @JsonProperty("inputNames") List<String> inputNames,
                      @JsonProperty("outputNames") List<String> outputNames){
         this.modelUri = modelUri;
@@ -39,7 +39,12 @@ import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 
@@ -132,6 +137,50 @@ public class TestDL4JStep {
         }
     }
 
+    @Test
+    public void testReplicas() throws Exception {
+        for(boolean cg : new boolean[]{false, true}) {
+            File netFile = cg ? createIrisCGFile() : createIrisMLNFile();
+
+            Pipeline p = SequencePipeline.builder()
+                    .add(new DL4JStep()
+                            .modelUri(netFile.getAbsolutePath())
+                            .replicas(4))
+                    .build();
+            PipelineExecutor e = p.executor();
+
+            int numThreads = 8;
+            List<INDArray> inputs = new ArrayList<>();
+            List<INDArray> expected = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                INDArray arr = Nd4j.rand(DataType.FLOAT, 3, 4);
+                inputs.add(arr);
+                expected.add(cg ? predictFromFileCG(netFile, arr)[0] : predictFromFile(netFile, arr));
+            }
+
+            ExecutorService es = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<INDArray>> futures = new ArrayList<>();
+                for (int i = 0; i < numThreads; i++) {
+                    INDArray in = inputs.get(i);
+                    futures.add(es.submit(() -> {
+                        INDArray last = null;
+                        for (int j = 0; j < 10; j++) {
+                            last = e.exec(Data.singleton("in", NDArray.create(in))).getNDArray("default").getAs(INDArray.class);
+                        }
+                        return last;
+                    }));
+                }
+
+                for (int i = 0; i < numThreads; i++) {
+                    assertEquals(expected.get(i), futures.get(i).get());
+                }
+            } finally {
+                es.shutdown();
+            }
+        }
+    }
+
     public File createIrisMLNFile() throws Exception {
         File dir = testDir.newFolder();
         return createIrisMLNFile(dir);
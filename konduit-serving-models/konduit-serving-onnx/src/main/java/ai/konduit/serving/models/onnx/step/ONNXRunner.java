@@ -26,46 +26,66 @@ import ai.konduit.serving.models.onnx.utils.ONNXUtils;
 import ai.konduit.serving.pipeline.api.context.Context;
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bytedeco.javacpp.*;
 import org.bytedeco.onnxruntime.*;
 import org.nd4j.common.base.Preconditions;
-import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.util.*;
 
-import static ai.konduit.serving.models.onnx.utils.ONNXUtils.getDataBuffer;
 import static ai.konduit.serving.models.onnx.utils.ONNXUtils.getTensor;
 import static org.bytedeco.onnxruntime.global.onnxruntime.*;
 
+/**
+ * Runner for {@link ONNXStep}.<br>
+ * Input and output names, types and shapes are queried from the session once, when the model is loaded.
+ * Inputs backed by a direct {@link SerializedNDArray} buffer of the type expected by the model are bound to the
+ * ONNX tensor without any copy; other inputs are converted via ND4J.<br>
+ * If the shapes of the outputs are known before execution - either because they are static in the model, or because
+ * the input shapes are the same as for the previous call - each output is allocated up front as a direct buffer that
+ * ONNX Runtime writes into, and that is returned as-is. Otherwise, ONNX Runtime allocates the outputs, which are then
+ * copied once to direct buffers.
+ */
 @Slf4j
 @CanRun({ONNXStep.class})
 public class ONNXRunner implements PipelineStepRunner {
 
-    private  ONNXStep onnxStep;
-    private Session session;
-    private RunOptions runOptions;
-    private MemoryInfo memoryInfo;
-    private AllocatorWithDefaultOptions allocator;
-    private  SessionOptions sessionOptions;
-    private   static Env env;
-    private Pointer bp;
+    private static Env env;
+
+    private final ONNXStep onnxStep;
+    private final Session session;
+    private final RunOptions runOptions;
+    private final MemoryInfo memoryInfo;
+    private final AllocatorWithDefaultOptions allocator;
+    private final SessionOptions sessionOptions;
+    private final Pointer bp;
+
+    private final String[] inputNames;
+    private final int[] inputTypes;
+    private final PointerPointer<BytePointer> inputNamesPtr;
+    private final String[] outputNames;         //Outputs to fetch: the step's output names, or all model outputs if not set
+    private final int[] outputTypes;
+    private final long[][] outputShapes;        //As declared in the model. null if any dimension is dynamic
+    private final PointerPointer<BytePointer> outputNamesPtr;
+    private volatile Shapes lastShapes;         //Input and output shapes of the last call
 
     public ONNXRunner(ONNXStep onnxStep) {
         this.onnxStep = onnxStep;
-        if(env == null) {
-            env = new Env(ONNXUtils.getOnnxLogLevelFromLogger(log), new BytePointer("konduit-serving-onnx-session-" + UUID.randomUUID().toString()));
-            env.retainReference();
-        }
+        initEnv();
         sessionOptions = new SessionOptions();
         sessionOptions.SetGraphOptimizationLevel(ORT_ENABLE_EXTENDED);
-        sessionOptions.SetIntraOpNumThreads(1);
+        sessionOptions.SetIntraOpNumThreads(onnxStep.intraOpThreads());
+        sessionOptions.SetInterOpNumThreads(onnxStep.interOpThreads());
+        sessionOptions.SetExecutionMode(onnxStep.executionMode() == ONNXStep.ExecutionMode.PARALLEL ? ORT_PARALLEL : ORT_SEQUENTIAL);
         sessionOptions.retainReference();
         allocator = new AllocatorWithDefaultOptions();
         allocator.retainReference();
@@ -76,9 +96,65 @@ public class ONNXRunner implements PipelineStepRunner {
         //retain the session reference to prevent pre emptive release of the session.
         session.retainReference();
 
-    }
+        //Query the model metadata once, instead of on every call
+        int numInputs = (int) session.GetInputCount();
+        inputNames = new String[numInputs];
+        inputTypes = new int[numInputs];
+        for (int i = 0; i < numInputs; i++) {
+            inputNames[i] = session.GetInputName(i, allocator.asOrtAllocator()).getString();
+            try (TypeInfo ti = session.GetInputTypeInfo(i)) {
+                inputTypes[i] = ti.GetTensorTypeAndShapeInfo().GetElementType();
+            }
+        }
+
+        int numModelOutputs = (int) session.GetOutputCount();
+        Map<String, Integer> modelOutputs = new LinkedHashMap<>();
+        for (int i = 0; i < numModelOutputs; i++) {
+            modelOutputs.put(session.GetOutputName(i, allocator.asOrtAllocator()).getString(), i);
+        }
 
+        List<String> toFetch = onnxStep.outputNames() == null || onnxStep.outputNames().isEmpty() ?
+                new ArrayList<>(modelOutputs.keySet()) : onnxStep.outputNames();
+        outputNames = toFetch.toArray(new String[0]);
+        outputTypes = new int[outputNames.length];
+        long[][] shapes = new long[outputNames.length][];
+        for (int i = 0; i < outputNames.length; i++) {
+            Integer idx = modelOutputs.get(outputNames[i]);
+            Preconditions.checkState(idx != null, "Output name \"%s\" not found in model outputs: %s", outputNames[i], modelOutputs.keySet());
+            try (TypeInfo ti = session.GetOutputTypeInfo(idx)) {
+                UnownedTensorTypeAndShapeInfo info = ti.GetTensorTypeAndShapeInfo();
+                outputTypes[i] = info.GetElementType();
+                long[] shape = new long[(int) info.GetDimensionsCount()];
+                info.GetDimensions(shape, shape.length);
+                for (long l : shape) {
+                    if (l <= 0) {
+                        shapes = null;      //Dynamic (or unknown) dimension
+                        break;
+                    }
+                }
+                if (shapes != null)
+                    shapes[i] = shape;
+            }
+            if (shapes == null)
+                break;
+        }
+        outputShapes = shapes;
+
+        for (int i = 0; i < outputNames.length; i++) {
+            //Validate up front that all outputs can be returned as NDArrays
+            ONNXUtils.ndArrayTypeForOnnxType(outputTypes[i]);
+        }
+
+        inputNamesPtr = new PointerPointer<>(inputNames);
+        outputNamesPtr = new PointerPointer<>(outputNames);
+    }
 
+    private static synchronized void initEnv() {
+        if(env == null) {
+            env = new Env(ONNXUtils.getOnnxLogLevelFromLogger(log), new BytePointer("konduit-serving-onnx-session-" + UUID.randomUUID().toString()));
+            env.retainReference();
+        }
+    }
 
     @Override
     public void close() {
@@ -89,6 +165,8 @@ public class ONNXRunner implements PipelineStepRunner {
         sessionOptions.releaseReference();
         allocator.releaseReference();
         runOptions.releaseReference();
+        inputNamesPtr.close();
+        outputNamesPtr.close();
     }
 
     @Override
@@ -98,63 +176,114 @@ public class ONNXRunner implements PipelineStepRunner {
 
     @Override
     public Data exec(Context ctx, Data data) {
-        Data ret = Data.empty();
-        long numInputNodes = session.GetInputCount();
-        long numOutputNodes = session.GetOutputCount();
-
-
-        PointerPointer<BytePointer> inputNodeNames = new PointerPointer<>(numInputNodes);
-        PointerPointer<BytePointer> outputNodeNames = new PointerPointer<>(numOutputNodes);
-
-        Value inputVal = new Value(numInputNodes);
-
-
-        for (int i = 0; i < numInputNodes; i++) {
-            BytePointer inputName = session.GetInputName(i, allocator.asOrtAllocator());
-            inputNodeNames.put(i, inputName);
-            INDArray arr = data.getNDArray(inputName.getString()).getAs(INDArray.class);
-            Value inputTensor = getTensor(arr, memoryInfo);
-            Preconditions.checkState(inputTensor.IsTensor(),"Input must be a tensor.");
-            inputVal.position(i).put(inputTensor);
+        int numInputs = inputNames.length;
+        int numOutputs = outputNames.length;
+
+        Object[] inputArrays = new Object[numInputs];       //Keeps the input storage reachable until execution is done
+        long[][] inputShapes = new long[numInputs][];
+        Value inputVal = new Value(numInputs);
+        try {
+            for (int i = 0; i < numInputs; i++) {
+                Preconditions.checkState(data.has(inputNames[i]), "Input \"%s\" is not present in the data", inputNames[i]);
+                inputVal.position(i).put(bindInput(i, data.getNDArray(inputNames[i]), inputArrays, inputShapes));
+            }
+            //reset position after iterating
+            inputVal.position(0);
+
+            Data ret = Data.empty();
+            Shapes last = lastShapes;
+            boolean fromLastCall = outputShapes == null && last != null && Arrays.deepEquals(last.inputs, inputShapes);
+            if (outputShapes != null || fromLastCall) {
+                try {
+                    runPreallocated(inputVal, fromLastCall ? last.outputs : outputShapes, ret);
+                    return ret;
+                } catch (RuntimeException e) {
+                    if (!fromLastCall)
+                        throw e;
+                    //Output shapes depend on more than the input shapes: fall through to allocating the outputs
+                    log.debug("Execution with output shapes from previous call failed, retrying", e);
+                    ret = Data.empty();
+                }
+            }
+
+            long[][] shapes = new long[numOutputs][];
+            try (ValueVector outputVector = session.Run(runOptions, inputNamesPtr, inputVal, numInputs, outputNamesPtr, numOutputs)) {
+                for (int i = 0; i < numOutputs; i++) {
+                    SerializedNDArray out = ONNXUtils.copyToSerialized(outputVector.get(i));
+                    shapes[i] = out.getShape();
+                    ret.put(outputNames[i], NDArray.create(out));
+                }
+            }
+            lastShapes = new Shapes(inputShapes, shapes);
+            return ret;
+        } finally {
+            inputVal.close();
         }
+    }
 
-        //reset position after iterating
-        inputVal.position(0);
-
-
-
-        for (int i = 0; i < numOutputNodes; i++) {
-            BytePointer outputName = session.GetOutputName(i, allocator.asOrtAllocator());
-            outputNodeNames.put(i, outputName);
+    /**
+     * Create the tensor for the specified input. Direct serialized arrays of the correct type are used as-is
+     */
+    private Value bindInput(int i, NDArray arr, Object[] inputArrays, long[][] inputShapes) {
+        Object o = arr.get();
+        if (o instanceof SerializedNDArray && ONNXUtils.onnxTypeForNDArrayType(((SerializedNDArray) o).getType()) == inputTypes[i]) {
+            SerializedNDArray s = (SerializedNDArray) o;
+            ByteBuffer bb = s.getBuffer();
+            if (!bb.isDirect()) {
+                ByteBuffer src = bb.duplicate();
+                src.rewind();
+                bb = BufferPool.allocate(src.remaining());
+                bb.put(src);
+                bb.rewind();
+            }
+            inputArrays[i] = bb;
+            inputShapes[i] = s.getShape();
+            return getTensor(bb, s.getShape(), inputTypes[i], memoryInfo);
         }
 
-        ValueVector outputVector = session.Run(
-                runOptions,
-                inputNodeNames,
-                inputVal,
-                numInputNodes,
-                outputNodeNames,
-                numOutputNodes);
-
-        Map<String, INDArray> output = new LinkedHashMap<>();
-
-        for (int i = 0; i < numOutputNodes; i++) {
-            Value outValue = outputVector.get(i);
+        INDArray a = arr.getAs(INDArray.class);
+        DataType dt = ONNXUtils.dataTypeForOnnxType(inputTypes[i]);
+        if (a.dataType() != dt)
+            a = a.castTo(dt);
+        if (a.isView() || a.ordering() != 'c')
+            a = a.dup('c');
+        inputArrays[i] = a;
+        inputShapes[i] = a.shape();
+        return getTensor(a, memoryInfo);
+    }
 
-            DataBuffer buffer = getDataBuffer(outValue);
-            output.put((outputNodeNames.get(BytePointer.class, i)).getString(), Nd4j.create(buffer));
+    /**
+     * Execute the model, with ONNX Runtime writing the outputs directly into newly allocated direct buffers
+     */
+    private void runPreallocated(Value inputVal, long[][] shapes, Data ret) {
+        int numOutputs = outputNames.length;
+        ByteBuffer[] buffers = new ByteBuffer[numOutputs];
+        Value outputVal = new Value(numOutputs);
+        try {
+            for (int i = 0; i < numOutputs; i++) {
+                long bytes = ONNXUtils.ndArrayTypeForOnnxType(outputTypes[i]).width();
+                for (long l : shapes[i]) {
+                    bytes *= l;
+                }
+                buffers[i] = BufferPool.allocate(bytes);
+                outputVal.position(i).put(getTensor(buffers[i], shapes[i], outputTypes[i], memoryInfo));
+            }
+            outputVal.position(0);
+
+            session.Run(runOptions, inputNamesPtr, inputVal, inputNames.length, outputNamesPtr, outputVal, numOutputs);
+        } finally {
+            outputVal.close();
         }
 
-        Preconditions.checkNotNull(output,"Output must not be null!");
-        for(String outputName : onnxStep.outputNames()) {
-            Preconditions.checkNotNull(output.get(outputName),"Output name " + outputName + " not found in output!");
-            ret.put(outputName, NDArray.create(output.get(outputName)));
+        for (int i = 0; i < numOutputs; i++) {
+            NDArrayType type = ONNXUtils.ndArrayTypeForOnnxType(outputTypes[i]);
+            ret.put(outputNames[i], NDArray.create(new SerializedNDArray(type, shapes[i], buffers[i])));
         }
-
-
-        return ret;
-
-
     }
 
+    @AllArgsConstructor
+    private static class Shapes {
+        private final long[][] inputs;
+        private final long[][] outputs;
+    }
 }
@@ -34,6 +34,19 @@ public class ONNXStep implements PipelineStep {
             "Must be a java.util.Function<String,MultiLayerNetwork> or java.util.Function<String,ComputationGraph>")
     private String loaderClass;
 
+    @Schema(description = "Number of threads used to parallelize the execution of individual operators. If 0, the ONNX " +
+            "Runtime default (one thread per physical core) is used.", defaultValue = "1")
+    private int intraOpThreads = 1;
+
+    @Schema(description = "Number of threads used to execute independent operators in parallel, when executionMode is " +
+            "PARALLEL. If 0, the ONNX Runtime default is used.", defaultValue = "0")
+    private int interOpThreads = 0;
+
+    @Schema(description = "Whether the operators of the graph are executed one at a time (SEQUENTIAL), or independent " +
+            "operators are executed in parallel (PARALLEL). PARALLEL may help models with many branches.",
+            defaultValue = "SEQUENTIAL")
+    private ExecutionMode executionMode = ExecutionMode.SEQUENTIAL;
+
     public ONNXStep(@JsonProperty("modelUri") String modelUri, @JsonProperty("inputNames") List<String> inputNames,
                     @JsonProperty("outputNames") List<String> outputNames){
         this.modelUri = modelUri;
@@ -41,6 +54,9 @@ public class ONNXStep implements PipelineStep {
         this.outputNames = outputNames;
     }
 
+    @Schema(description = "Execution mode for the operators of an ONNX graph.")
+    public enum ExecutionMode {SEQUENTIAL, PARALLEL}
+
     @Tolerate
     public ONNXStep inputNames(String... inputNames) {
         return this.inputNames(Arrays.asList(inputNames));
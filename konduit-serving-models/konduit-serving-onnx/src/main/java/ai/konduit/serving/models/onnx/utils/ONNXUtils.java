@@ -15,9 +15,13 @@
  ******************************************************************************/
 package ai.konduit.serving.models.onnx.utils;
 
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
 import org.bytedeco.javacpp.*;
 import org.bytedeco.javacpp.indexer.*;
 import org.bytedeco.onnxruntime.MemoryInfo;
+import org.bytedeco.onnxruntime.TensorTypeAndShapeInfo;
 import org.bytedeco.onnxruntime.Value;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.buffer.DataBuffer;
@@ -26,6 +30,8 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.slf4j.Logger;
 
+import java.nio.ByteBuffer;
+
 import static org.bytedeco.onnxruntime.global.onnxruntime.*;
 import static org.nd4j.linalg.api.buffer.DataType.*;
 
@@ -48,7 +54,7 @@ public class ONNXUtils {
      * @return
      */
     public static DataType dataTypeForOnnxType(int dataType) {
-        if(dataType == dataType) {
+        if(dataType == ONNX_TENSOR_ELEMENT_DATA_TYPE_FLOAT) {
             return FLOAT;
         } else if(dataType == ONNX_TENSOR_ELEMENT_DATA_TYPE_INT8) {
             return INT8;
@@ -117,6 +123,101 @@ public class ONNXUtils {
     }
 
 
+    /**
+     * Return the {@link NDArrayType} for the given onnx tensor element type
+     * @param onnxType the onnx tensor element type
+     * @return the equivalent NDArrayType
+     */
+    public static NDArrayType ndArrayTypeForOnnxType(int onnxType) {
+        switch (onnxType) {
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_FLOAT: return NDArrayType.FLOAT;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_DOUBLE: return NDArrayType.DOUBLE;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_FLOAT16: return NDArrayType.FLOAT16;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_BFLOAT16: return NDArrayType.BFLOAT16;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_INT64: return NDArrayType.INT64;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_INT32: return NDArrayType.INT32;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_INT16: return NDArrayType.INT16;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_INT8: return NDArrayType.INT8;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT64: return NDArrayType.UINT64;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT32: return NDArrayType.UINT32;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT16: return NDArrayType.UINT16;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT8: return NDArrayType.UINT8;
+            case ONNX_TENSOR_ELEMENT_DATA_TYPE_BOOL: return NDArrayType.BOOL;
+            default:
+                throw new IllegalArgumentException("Unsupported ONNX tensor element type: " + onnxType);
+        }
+    }
+
+    /**
+     * Return the onnx tensor element type for the given {@link NDArrayType}
+     * @param type the NDArrayType
+     * @return the equivalent onnx tensor element type, or -1 if there is no equivalent (i.e., UTF8)
+     */
+    public static int onnxTypeForNDArrayType(NDArrayType type) {
+        switch (type) {
+            case FLOAT: return ONNX_TENSOR_ELEMENT_DATA_TYPE_FLOAT;
+            case DOUBLE: return ONNX_TENSOR_ELEMENT_DATA_TYPE_DOUBLE;
+            case FLOAT16: return ONNX_TENSOR_ELEMENT_DATA_TYPE_FLOAT16;
+            case BFLOAT16: return ONNX_TENSOR_ELEMENT_DATA_TYPE_BFLOAT16;
+            case INT64: return ONNX_TENSOR_ELEMENT_DATA_TYPE_INT64;
+            case INT32: return ONNX_TENSOR_ELEMENT_DATA_TYPE_INT32;
+            case INT16: return ONNX_TENSOR_ELEMENT_DATA_TYPE_INT16;
+            case INT8: return ONNX_TENSOR_ELEMENT_DATA_TYPE_INT8;
+            case UINT64: return ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT64;
+            case UINT32: return ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT32;
+            case UINT16: return ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT16;
+            case UINT8: return ONNX_TENSOR_ELEMENT_DATA_TYPE_UINT8;
+            case BOOL: return ONNX_TENSOR_ELEMENT_DATA_TYPE_BOOL;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Create an onnx tensor that uses the given direct buffer as its storage, without copying.
+     * The buffer must remain reachable until the returned value is no longer used.
+     * @param buffer the (direct, little endian) buffer with the tensor content
+     * @param shape the shape of the tensor
+     * @param onnxType the onnx tensor element type
+     * @param memoryInfo the {@link MemoryInfo} to use.
+     * @return the tensor
+     */
+    public static Value getTensor(ByteBuffer buffer, long[] shape, int onnxType, MemoryInfo memoryInfo) {
+        Preconditions.checkState(buffer.isDirect(), "Only direct buffers can be used as onnx tensor storage");
+        long sizeInBytes = ndArrayTypeForOnnxType(onnxType).width();
+        for(long l : shape) {
+            sizeInBytes *= l;
+        }
+        Preconditions.checkState(buffer.capacity() >= sizeInBytes, "Buffer of %s bytes is too small for tensor with shape %s",
+                buffer.capacity(), shape);
+        return Value.CreateTensor(memoryInfo.asOrtMemoryInfo(), new Pointer(buffer), sizeInBytes, shape, shape.length, onnxType);
+    }
+
+    /**
+     * Copy the content of the given onnx tensor to a new {@link SerializedNDArray}, backed by a direct buffer
+     * @param value the tensor to copy
+     * @return the copy
+     */
+    public static SerializedNDArray copyToSerialized(Value value) {
+        TensorTypeAndShapeInfo info = value.GetTensorTypeAndShapeInfo();
+        try {
+            NDArrayType type = ndArrayTypeForOnnxType(info.GetElementType());
+            long[] shape = new long[(int) info.GetDimensionsCount()];
+            info.GetDimensions(shape, shape.length);
+            long bytes = info.GetElementCount() * type.width();
+            Preconditions.checkState(bytes <= Integer.MAX_VALUE, "Tensor of %s bytes is too large", bytes);
+
+            ByteBuffer out = BufferPool.allocate(bytes);
+            if(bytes > 0) {
+                out.put(value.GetTensorMutableDataByte().capacity(bytes).asByteBuffer());
+                out.rewind();
+            }
+            return new SerializedNDArray(type, shape, out);
+        } finally {
+            info.close();
+        }
+    }
+
     /**
      * Convert an onnx {@link Value}
      *  in to an {@link INDArray}
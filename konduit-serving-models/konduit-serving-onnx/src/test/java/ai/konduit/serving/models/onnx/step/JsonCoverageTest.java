@@ -26,6 +26,9 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
         testConfigSerDe(new ONNXStep()
                 .inputNames("inputNames").loaderClass("loaderClass")
                 .modelUri("modelUri").outputNames("outputNames"));
+        testConfigSerDe(new ONNXStep()
+                .inputNames("inputNames").modelUri("modelUri").outputNames("outputNames")
+                .intraOpThreads(4).interOpThreads(2).executionMode(ONNXStep.ExecutionMode.PARALLEL));
     }
 
 
@@ -2,7 +2,9 @@ package ai.konduit.serving.models.onnx.step;
 
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
 import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
 import org.junit.Test;
 import org.nd4j.common.resources.Resources;
@@ -12,8 +14,10 @@ import org.nd4j.linalg.factory.Nd4j;
 
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 
 @NotThreadSafe
 public class ONNXStepTests {
@@ -39,7 +43,12 @@ public class ONNXStepTests {
 
         INDArray outRet = out.getNDArray("Plus214_Output_0").getAs(INDArray.class);
         assertNotNull(outRet);
+        assertArrayEquals(new long[]{1, 10}, outRet.shape());
         System.out.println(outRet);
+
+        //Second call: output buffers are preallocated based on the known shapes
+        INDArray outRet2 = e.exec(d).getNDArray("Plus214_Output_0").getAs(INDArray.class);
+        assertEquals(outRet, outRet2);
     }
 
     @Test
@@ -65,6 +74,20 @@ public class ONNXStepTests {
         INDArray outRet = out.getNDArray("z").getAs(INDArray.class);
         assertNotNull(outRet);
         System.out.println(outRet);
+        assertEquals(Nd4j.valueArrayOf(new long[]{1, 1}, 2.0f), outRet);
+
+        //Direct serialized input arrays are bound without conversion
+        SerializedNDArray s = NDArray.create(Nd4j.createFromArray(new float[][]{{3}})).getAs(SerializedNDArray.class);
+        ByteBuffer direct = ByteBuffer.allocateDirect(s.getBuffer().capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        direct.put(s.getBuffer());
+        direct.rewind();
+        Data d2 = Data.empty();
+        d2.put("x", NDArray.create(new SerializedNDArray(NDArrayType.FLOAT, new long[]{1, 1}, direct)));
+        d2.put("y", NDArray.create(Nd4j.ones(DataType.FLOAT, 1, 1)));
+        for( int i=0; i<2; i++ ) {
+            INDArray out2 = e.exec(d2).getNDArray("z").getAs(INDArray.class);
+            assertEquals(Nd4j.createFromArray(new float[][]{{4}}), out2);
+        }
     }
 
 }
@@ -24,23 +24,55 @@ import ai.konduit.serving.pipeline.api.exception.ModelLoadingException;
 import ai.konduit.serving.pipeline.api.protocol.URIResolver;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
+import org.nd4j.autodiff.samediff.internal.memory.ArrayCacheMemoryMgr;
+import org.nd4j.autodiff.samediff.internal.memory.NoOpMemoryMgr;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Runs a {@link SameDiffStep}.<br>
+ * Each thread executing the step has its own SameDiff inference session (sharing the model's weights), with its own
+ * memory manager as configured by {@link SameDiffStep#memoryMode()}: with {@link SameDiffStep.MemoryMode#CACHE}, the
+ * intermediate arrays are cached and reused across requests executed by that thread. {@link SameDiffStep#maxCacheFraction()}
+ * is split between the threads: each thread's cache may use that fraction divided by the number of processors (the
+ * default number of inference workers). The size of each thread's cache is reported via the {@value #METRIC_CACHE_BYTES}
+ * metric, tagged with the step name, the thread, and the runner's {@link MicrometerRegistry#INSTANCE_TAG}.<br>
+ * The sessions (and metrics) of threads that have terminated are closed when a session is created for a new thread, and
+ * all sessions are closed when the runner is closed.
+ */
+@Slf4j
 @CanRun(SameDiffStep.class)
 public class SameDiffRunner implements PipelineStepRunner {
 
     public static final String DEFAULT_OUT_NAME_SINGLE = "default";
+    public static final String METRIC_CACHE_BYTES = "konduit.samediff.session.cache.bytes";
+    public static final double DEFAULT_MAX_CACHE_FRACTION = 0.25;
 
+    private static final long SMALL_ARRAY_THRESHOLD = 1024;
+    private static final double LARGER_ARRAY_MAX_MULTIPLE = 2.0;
 
     private SameDiffStep step;
     private final SameDiff sd;
+    //Input and output plan: resolved once from the model and step configuration
+    private final List<String> inputs;
+    private final List<String> outNames;
+    private final Map<Long,ThreadSession> threadSessions = new HashMap<>();    //Guarded by this
+    private final String instance = MicrometerRegistry.nextInstanceId();
 
     public SameDiffRunner(SameDiffStep step) {
         this.step = step;
@@ -55,12 +87,20 @@ public class SameDiffRunner implements PipelineStepRunner {
         } catch (Throwable e) {
             throw new ModelLoadingException("Failed to load SameDiff model from URI " + step.modelUri(), e);
         }
+
+        inputs = new ArrayList<>(sd.inputs());
+        outNames = step.outputNames();
+        Preconditions.checkState(outNames != null && !outNames.isEmpty(), "No output names were provided in the SameDiffStep configuration");
     }
 
 
     @Override
-    public void close() {
-
+    public synchronized void close() {
+        for(ThreadSession ts : threadSessions.values()){
+            ts.close();
+        }
+        threadSessions.clear();
+        sd.getSessions().clear();
     }
 
     @Override
@@ -74,8 +114,7 @@ public class SameDiffRunner implements PipelineStepRunner {
         //First: Get array
         //TODO HANDLE DIFFERENT NAMES (Not hardcoded to be exactly same name as placeholder arrays)
 
-        Map<String,INDArray> m = new HashMap<>();
-        List<String> inputs = sd.inputs();
+        Map<String,INDArray> m = new HashMap<>(inputs.size() * 2);
         for(String s : inputs){
             if(!data.has(s))
                 throw new IllegalStateException("Expected to find NDArray with name \"" + s + "\" in data - not found. Data keys: " + data.keys());
@@ -84,9 +123,7 @@ public class SameDiffRunner implements PipelineStepRunner {
             m.put(s, data.getNDArray(s).getAs(INDArray.class));
         }
 
-        List<String> outNames = step.outputNames();
-        Preconditions.checkState(outNames != null && !outNames.isEmpty(), "No output names were provided in the SameDiffStep configuration");
-
+        initSession();
         Map<String,INDArray> out = sd.output(m, outNames);
 
         Data d = Data.empty();
@@ -96,4 +133,86 @@ public class SameDiffRunner implements PipelineStepRunner {
 
         return d;
     }
+
+    /**
+     * Create the inference session for the current thread, with the configured memory manager, if it doesn't exist yet
+     */
+    protected void initSession(){
+        Thread t = Thread.currentThread();
+        Map<Long,InferenceSession> sessions = sd.getSessions();
+        if(sessions.containsKey(t.getId()))
+            return;
+
+        synchronized (this) {
+            removeTerminatedSessions();
+            sessions.put(t.getId(), createSession(t));
+        }
+    }
+
+    /**
+     * Close the sessions, and remove the metrics, of threads that have terminated
+     */
+    protected synchronized void removeTerminatedSessions(){
+        Iterator<Map.Entry<Long,ThreadSession>> iter = threadSessions.entrySet().iterator();
+        while(iter.hasNext()){
+            Map.Entry<Long,ThreadSession> e = iter.next();
+            Thread owner = e.getValue().thread.get();
+            if(owner == null || !owner.isAlive()){
+                sd.getSessions().remove(e.getKey());
+                e.getValue().close();
+                iter.remove();
+                log.debug("Closed SameDiff inference session of terminated thread {}", e.getValue().threadName);
+            }
+        }
+    }
+
+    private InferenceSession createSession(Thread t){
+        Meter gauge = null;
+        InferenceSession session = new InferenceSession(sd);
+        SameDiffStep.MemoryMode mode = step.memoryMode() == null ? SameDiffStep.MemoryMode.CACHE : step.memoryMode();
+        switch (mode){
+            case NONE:
+                session.setMmgr(new NoOpMemoryMgr());
+                break;
+            case CACHE:
+            default:
+                double frac = step.maxCacheFraction() == null ? DEFAULT_MAX_CACHE_FRACTION : step.maxCacheFraction();
+                frac /= Runtime.getRuntime().availableProcessors();
+                ArrayCacheMemoryMgr mmgr = new ArrayCacheMemoryMgr(frac, SMALL_ARRAY_THRESHOLD, LARGER_ARRAY_MAX_MULTIPLE);
+                session.setMmgr(mmgr);
+                try {
+                    gauge = Gauge.builder(METRIC_CACHE_BYTES, mmgr, ArrayCacheMemoryMgr::getCurrentCacheSize)
+                            .description("Bytes of intermediate arrays cached by the SameDiff inference session of a thread")
+                            .baseUnit("bytes")
+                            .tag("step", step.name())
+                            .tag("thread", t.getName())
+                            .tag(MicrometerRegistry.INSTANCE_TAG, instance)
+                            .register(MicrometerRegistry.getRegistry());
+                } catch (Throwable e){
+                    log.warn("Unable to register SameDiff session cache metric", e);
+                }
+                break;
+        }
+        threadSessions.put(t.getId(), new ThreadSession(new WeakReference<>(t), t.getName(), session, gauge));
+        log.debug("Created SameDiff inference session for thread {} with memory mode {}", t.getName(), mode);
+        return session;
+    }
+
+    @AllArgsConstructor
+    private static class ThreadSession {
+        private final WeakReference<Thread> thread;
+        private final String threadName;
+        private final InferenceSession session;
+        private final Meter gauge;      //null if not registered
+
+        private void close(){
+            try {
+                session.getMmgr().close();
+            } catch (Throwable t){
+                log.warn("Error closing SameDiff session memory manager", t);
+            }
+            if(gauge != null)
+                MicrometerRegistry.getRegistry().remove(gauge);
+        }
+    }
 }
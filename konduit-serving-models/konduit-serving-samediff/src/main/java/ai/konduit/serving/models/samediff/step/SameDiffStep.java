@@ -42,6 +42,24 @@ public class SameDiffStep implements PipelineStep {
     @Schema(description = "A list of names of the output arrays - i.e., the names of the arrays to predict/return.")
     private List<String> outputNames;
 
+    @Schema(description = "An enum that specifies how the memory for intermediate arrays is managed. <br><br>" +
+            "CACHE -> Each thread has its own inference session, which caches the intermediate (activation) arrays " +
+            "and reuses them for subsequent requests, <br>" +
+            "NONE -> Intermediate arrays are allocated for each request, and released by the garbage collector.")
+    public enum MemoryMode {
+        CACHE,
+        NONE
+    }
+
+    @Schema(description = "Specifies how the memory for intermediate arrays is managed.", defaultValue = "CACHE")
+    private MemoryMode memoryMode;
+
+    @Schema(description = "For memory mode CACHE: the maximum fraction of the total available memory (off-heap memory " +
+            "for CPU, or device memory for GPUs) that the caches of all threads may use. It is split evenly between " +
+            "the threads: each thread's cache may use this fraction divided by the number of processors.",
+            defaultValue = "0.25")
+    private Double maxCacheFraction;
+
     public SameDiffStep(@JsonProperty("modelUri") String modelUri, @JsonProperty("outputNames") List<String> outputNames){
         this.modelUri = modelUri;
         this.outputNames = outputNames;
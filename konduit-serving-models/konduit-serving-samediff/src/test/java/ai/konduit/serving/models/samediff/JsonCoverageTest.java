@@ -44,6 +44,8 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
     public void testSameDiffStep() {
         testConfigSerDe(new SameDiffStep().outputNames("outputNames")
                 .modelUri("modelUri"));
+        testConfigSerDe(new SameDiffStep().outputNames("outputNames")
+                .modelUri("modelUri").memoryMode(SameDiffStep.MemoryMode.NONE).maxCacheFraction(0.1));
     }
 
 
@@ -18,12 +18,15 @@
 
 package ai.konduit.serving.models.samediff;
 
+import ai.konduit.serving.models.samediff.step.SameDiffRunner;
 import ai.konduit.serving.models.samediff.step.SameDiffStep;
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
 import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
 import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -34,9 +37,15 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class TestSameDiffServing {
 
@@ -80,6 +89,85 @@ public class TestSameDiffServing {
         assertEquals(outExp, outArr2);
     }
 
+    @Test
+    public void testSameDiffMultiThreaded() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = getModel();
+        File dir = testDir.newFolder();
+        File f = new File(dir, "samediff.bin");
+        sd.save(f, false);
+
+        for(SameDiffStep.MemoryMode mode : SameDiffStep.MemoryMode.values()) {
+            Pipeline p = SequencePipeline.builder()
+                    .add(SameDiffStep.builder()
+                            .modelUri(f.toURI().toString())
+                            .outputNames(Collections.singletonList("out"))
+                            .memoryMode(mode)
+                            .build())
+                    .build();
+            PipelineExecutor exec = p.executor();
+
+            int nThreads = 4;
+            INDArray[] in = new INDArray[nThreads];
+            INDArray[] exp = new INDArray[nThreads];
+            for (int i = 0; i < nThreads; i++) {
+                in[i] = Nd4j.rand(DataType.FLOAT, i + 1, 784);
+                exp[i] = sd.outputSingle(Collections.singletonMap("in", in[i]), "out");
+            }
+
+            ExecutorService es = Executors.newFixedThreadPool(nThreads);
+            try {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < nThreads; i++) {
+                    final int idx = i;
+                    results.add(es.submit(() -> {
+                        for (int j = 0; j < 10; j++) {
+                            Data out = exec.exec(Data.singleton("in", NDArray.create(in[idx])));
+                            if (!exp[idx].equals(out.getNDArray("out").getAs(INDArray.class)))
+                                return false;
+                        }
+                        return true;
+                    }));
+                }
+                for (Future<Boolean> r : results) {
+                    assertTrue(mode.toString(), r.get());
+                }
+            } finally {
+                es.shutdown();
+                exec.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCacheMetricsPerRunner() throws Exception {
+        File dir = testDir.newFolder();
+        File f = new File(dir, "samediff.bin");
+        getModel().save(f, false);
+        SameDiffStep step = SameDiffStep.builder()
+                .modelUri(f.toURI().toString())
+                .outputNames(Collections.singletonList("out"))
+                .memoryMode(SameDiffStep.MemoryMode.CACHE)
+                .build();
+        Data d = Data.singleton("in", NDArray.create(Nd4j.rand(DataType.FLOAT, 2, 784)));
+
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        String thread = Thread.currentThread().getName();
+        int before = registry.find(SameDiffRunner.METRIC_CACHE_BYTES).tag("step", step.name()).tag("thread", thread).gauges().size();
+
+        //As with a hot reload: the replacement runner is created (and used) before the old runner is closed
+        SameDiffRunner oldRunner = new SameDiffRunner(step);
+        oldRunner.exec(null, d);
+        SameDiffRunner newRunner = new SameDiffRunner(step);
+        newRunner.exec(null, d);
+        assertEquals(before + 2, registry.find(SameDiffRunner.METRIC_CACHE_BYTES).tag("step", step.name()).tag("thread", thread).gauges().size());
+
+        oldRunner.close();
+        assertEquals(before + 1, registry.find(SameDiffRunner.METRIC_CACHE_BYTES).tag("step", step.name()).tag("thread", thread).gauges().size());
+        newRunner.close();
+        assertEquals(before, registry.find(SameDiffRunner.METRIC_CACHE_BYTES).tag("step", step.name()).tag("thread", thread).gauges().size());
+    }
+
     public static SameDiff getModel(){
         Nd4j.getRandom().setSeed(12345);
         SameDiff sd = SameDiff.create();
@@ -24,13 +24,13 @@ import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.api.format.NDArrayConverter;
 import ai.konduit.serving.pipeline.api.format.NDArrayFormat;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
 import lombok.AllArgsConstructor;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.util.ArrayUtil;
 import org.tensorflow.Tensor;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 public class TensorFlowConverters {
 
@@ -108,8 +108,9 @@ public class TensorFlowConverters {
             int w = t.width();
             long length = ArrayUtil.prodLong(shape);
             long lengthBytes = w * length;
-            ByteBuffer bb = ByteBuffer.allocateDirect((int)lengthBytes).order(ByteOrder.nativeOrder());     //TODO SerializedNDArray should be in little endian...
+            ByteBuffer bb = BufferPool.allocate(lengthBytes);
             from.writeTo(bb);
+            bb.rewind();
 
             return new SerializedNDArray(t, shape, bb);
         }
@@ -19,6 +19,8 @@
 package ai.konduit.serving.models.tensorflow.step;
 
 import ai.konduit.serving.annotation.runner.CanRun;
+import ai.konduit.serving.models.tensorflow.format.TensorFlowConverters;
+import ai.konduit.serving.models.tensorflow.util.TensorFlowUtil;
 import ai.konduit.serving.pipeline.api.context.Context;
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.data.NDArray;
@@ -27,11 +29,15 @@ import ai.konduit.serving.pipeline.api.protocol.URIResolver;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
 import ai.konduit.serving.pipeline.impl.data.ValueNotFoundException;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.nd4j.common.base.Preconditions;
+import org.tensorflow.DataType;
 import org.tensorflow.Graph;
+import org.tensorflow.Operation;
+import org.tensorflow.Output;
 import org.tensorflow.SavedModelBundle;
 import org.tensorflow.Session;
 import org.tensorflow.Tensor;
@@ -44,9 +50,19 @@ import java.util.List;
 @CanRun(TensorFlowStep.class)
 public class TensorFlowRunner implements PipelineStepRunner {
 
+    private static final TensorFlowConverters.SerializedToTensorFlowConverter TO_TENSOR = new TensorFlowConverters.SerializedToTensorFlowConverter();
+    private static final TensorFlowConverters.TensorFlowToSerializedConverter FROM_TENSOR = new TensorFlowConverters.TensorFlowToSerializedConverter();
+
+    private static final String SAVED_MODEL_FILENAME = "saved_model.pb";
+
     private final TensorFlowStep step;
     private Graph graph;
     private Session sess;
+    private SavedModelBundle bundle;
+
+    //Feed/fetch plan: resolved once from the input/output names
+    private Output<?>[] feeds;
+    private Output<?>[] fetches;
 
     public TensorFlowRunner(@NonNull TensorFlowStep step) {
         this.step = step;
@@ -55,12 +71,18 @@ public class TensorFlowRunner implements PipelineStepRunner {
 
     @Override
     public void close() {
-        if(sess != null)
-            sess.close();
-
-        //TODO AB 2020/05/13 - For some reason this deadlocks, never returns :/
-//        if(graph != null )
-//            graph.close();
+        //Graph.close() blocks until all sessions using the graph have been closed: the session must be closed first
+        if(bundle != null) {
+            bundle.close();         //Closes both the session and the graph
+        } else {
+            if(sess != null)
+                sess.close();
+            if(graph != null)
+                graph.close();
+        }
+        bundle = null;
+        sess = null;
+        graph = null;
     }
 
     @Override
@@ -70,64 +92,86 @@ public class TensorFlowRunner implements PipelineStepRunner {
 
     @Override
     public Data exec(Context ctx, Data data) {
-        Preconditions.checkState(step.inputNames() != null, "TensorFlowStep input array names are not set (null)");
-
-        Session.Runner r = sess.runner();
-        for (String s : step.inputNames()) {
-            if(!data.has(s)){
-                throw new ValueNotFoundException( "Error in TensorFlowStep: Input data does not have a value corresponding to TensorFlowStep.inputNames value \"" +
-                        s + "\" - data keys = " + data.keys());
-            }
-            if(data.type(s) != ValueType.NDARRAY){
-                String listType = data.type(s) == ValueType.LIST ? data.listType(s).toString() : null;
-                throw new ValueNotFoundException( "Error in TensorFlowStep (" + name() + "): Input data value corresponding to TensorFlowStep.inputNames value \"" +
-                        s + "\" is not an NDArray type - is " + (listType == null ? data.type(s) : "List<" + listType + ">"));
-            }
-
+        List<String> inNames = step.inputNames();
+        List<String> outNames = step.outputNames();
 
-            NDArray arr = data.getNDArray(s);       //TODO checks
-            Tensor<?> t = arr.getAs(Tensor.class);  //TODO casting
-            r.feed(s, t);
-        }
+        //Tensors created here are closed once the outputs have been copied; tensors that are the input values
+        //themselves (i.e., TFNDArray) are owned by the input NDArrays
+        Tensor<?>[] created = new Tensor<?>[feeds.length];
+        List<Tensor<?>> l = null;
+        try {
+            Session.Runner r = sess.runner();
+            for (int i = 0; i < feeds.length; i++) {
+                String s = inNames.get(i);
+                if (!data.has(s)) {
+                    throw new ValueNotFoundException("Error in TensorFlowStep: Input data does not have a value corresponding to TensorFlowStep.inputNames value \"" +
+                            s + "\" - data keys = " + data.keys());
+                }
+                if (data.type(s) != ValueType.NDARRAY) {
+                    String listType = data.type(s) == ValueType.LIST ? data.listType(s).toString() : null;
+                    throw new ValueNotFoundException("Error in TensorFlowStep (" + name() + "): Input data value corresponding to TensorFlowStep.inputNames value \"" +
+                            s + "\" is not an NDArray type - is " + (listType == null ? data.type(s) : "List<" + listType + ">"));
+                }
 
-        List<String> outNames = step.outputNames();
-        for (String s : outNames) {
-            String name;
-            int idx;
-            if (s.contains(":")) {
-                //TODO checks
-                int i = s.indexOf(":");
-                name = s.substring(0, i);
-                idx = Integer.parseInt(s.substring(i + 1));
-            } else {
-                name = s;
-                idx = 0;
+                NDArray arr = data.getNDArray(s);
+                Tensor<?> t;
+                if (arr.get() instanceof Tensor) {
+                    t = (Tensor<?>) arr.get();
+                } else {
+                    t = TO_TENSOR.convert(arr.getAs(SerializedNDArray.class));
+                    created[i] = t;
+                }
+                r.feed(feeds[i], t);
             }
-            r.fetch(name, idx);
-        }
 
-        List<Tensor<?>> l;
-        try{
-            l = r.run();
-        } catch (Throwable t){
-            StringBuilder sb = new StringBuilder();
-            sb.append("TensorFlow exception in TensorFlowStep (" + name() + "). Input shapes:\n");
-            for(String s : step.inputNames()){
-                NDArray arr = data.getNDArray(s);
-                sb.append(s).append(": ").append(Arrays.toString(arr.shape())).append("\n");
+            for (Output<?> o : fetches) {
+                r.fetch(o);
             }
-            throw new RuntimeException(sb.toString(), t);
-        }
 
+            try {
+                l = r.run();
+            } catch (Throwable t) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("TensorFlow exception in TensorFlowStep (" + name() + "). Input shapes:\n");
+                for (String s : inNames) {
+                    NDArray arr = data.getNDArray(s);
+                    sb.append(s).append(": ").append(Arrays.toString(arr.shape())).append("\n");
+                }
+                throw new RuntimeException(sb.toString(), t);
+            }
 
-        Data out = Data.empty();
-        for (int i = 0; i < outNames.size(); i++) {
-            Tensor<?> t = l.get(i);
-            NDArray arr = NDArray.create(t);
-            out.put(outNames.get(i), arr);
+            Data out = Data.empty();
+            for (int i = 0; i < outNames.size(); i++) {
+                Tensor<?> t = l.get(i);
+                if (t.dataType() == DataType.STRING) {
+                    //No fixed width serialized representation: the output array owns the tensor
+                    out.put(outNames.get(i), NDArray.create(t));
+                    l.set(i, null);
+                } else {
+                    out.put(outNames.get(i), NDArray.create(FROM_TENSOR.convert(t)));
+                }
+            }
+            return out;
+        } finally {
+            for (Tensor<?> t : created) {
+                if (t != null)
+                    release(t);
+            }
+            if (l != null) {
+                for (Tensor<?> t : l) {
+                    if (t != null)
+                        release(t);
+                }
+            }
         }
+    }
 
-        return out;
+    /**
+     * Release a tensor created during {@link #exec(Context, Data)} - input tensors converted from other NDArray formats,
+     * and output tensors that have been copied - once it is no longer required
+     */
+    protected void release(Tensor<?> t) {
+        t.close();
     }
 
 
@@ -137,6 +181,7 @@ public class TensorFlowRunner implements PipelineStepRunner {
         } catch (Throwable t) {
             throw new RuntimeException("Error loading TensorFlow model", t);
         }
+        initPlan();
     }
 
     protected void initHelper() throws Exception {
@@ -144,41 +189,91 @@ public class TensorFlowRunner implements PipelineStepRunner {
         String uri = step.modelUri();
         File origFile = URIResolver.getFile(uri);
         Preconditions.checkState(origFile.exists(), "Model file does not exist: " + uri);
-
+        byte[] config = TensorFlowUtil.configProto(step);
 
         //Try to load frozen model:
         Throwable frozenErr = null;
-        try {
-            byte[] bytes = FileUtils.readFileToByteArray(origFile);
-            graph = new Graph();
-            graph.importGraphDef(bytes);
-            log.info("Loaded TensorFlow frozen model");
-        } catch (Throwable t) {
-            frozenErr = t;
-            graph = null;
+        if (origFile.isFile()) {
+            try {
+                byte[] bytes = FileUtils.readFileToByteArray(origFile);
+                graph = new Graph();
+                graph.importGraphDef(bytes);
+                this.sess = config == null ? new Session(graph) : new Session(graph, config);
+                log.info("Loaded TensorFlow frozen model");
+                return;
+            } catch (Throwable t) {
+                frozenErr = t;
+                if (graph != null)
+                    graph.close();
+                graph = null;
+            }
         }
 
 
         //Try to load saved model:
         //TF has bad API here: The DIRECTORY path is provided, and the file must be exactly "saved_model.pb" - this is hardcoded in TF
-        if (graph == null) {
-            try {
-                File dir = ai.konduit.serving.pipeline.util.FileUtils.getTempFileDir("tf_model_" + System.nanoTime());
-                File f = new File(dir, "saved_model.pb");
+        //A SavedModel directory, or a saved_model.pb file, is loaded in place (including any variables). Otherwise the
+        //file is copied to a temporary directory
+        try {
+            File dir;
+            if (origFile.isDirectory()) {
+                dir = origFile;
+            } else if (SAVED_MODEL_FILENAME.equals(origFile.getName())) {
+                dir = origFile.getAbsoluteFile().getParentFile();
+            } else {
+                dir = ai.konduit.serving.pipeline.util.FileUtils.getTempFileDir("tf_model_" + System.nanoTime());
+                File f = new File(dir, SAVED_MODEL_FILENAME);
                 FileUtils.copyFile(origFile, f);
+            }
 
-                SavedModelBundle b = SavedModelBundle.load(dir.getAbsolutePath(), "serve");
+            SavedModelBundle.Loader loader = SavedModelBundle.loader(dir.getAbsolutePath()).withTags("serve");
+            if (config != null)
+                loader.withConfigProto(config);
+            bundle = loader.load();
 
-                graph = b.graph();
-                log.info("Loaded TensorFlow SavedModel");
-            } catch (Throwable t) {
-                log.error("Error loading graph: Attempted to load as both a frozen model .pb and a SavedModel .pb - both failed");
-                log.error("Frozen model loading exception:", frozenErr);
-                log.error("SavedModel loading exception:", t);
-                throw new IllegalStateException("Unable to load TensorFlow model as either a frozen model .pb or Savedmodel .pb", t);
-            }
+            graph = bundle.graph();
+            sess = bundle.session();
+            log.info("Loaded TensorFlow SavedModel");
+        } catch (Throwable t) {
+            log.error("Error loading graph: Attempted to load as both a frozen model .pb and a SavedModel .pb - both failed");
+            log.error("Frozen model loading exception:", frozenErr);
+            log.error("SavedModel loading exception:", t);
+            throw new IllegalStateException("Unable to load TensorFlow model as either a frozen model .pb or Savedmodel .pb", t);
+        }
+    }
+
+    protected void initPlan() {
+        Preconditions.checkState(step.inputNames() != null, "TensorFlowStep input array names are not set (null)");
+        Preconditions.checkState(step.outputNames() != null, "TensorFlowStep output array names are not set (null)");
+        feeds = new Output<?>[step.inputNames().size()];
+        for (int i = 0; i < feeds.length; i++) {
+            feeds[i] = output(step.inputNames().get(i));
         }
+        fetches = new Output<?>[step.outputNames().size()];
+        for (int i = 0; i < fetches.length; i++) {
+            fetches[i] = output(step.outputNames().get(i));
+        }
+    }
 
-        this.sess = new Session(graph);
+    //Parse "name" or "name:idx"
+    private Output<?> output(String s) {
+        String name;
+        int idx;
+        int i = s.lastIndexOf(':');
+        if (i > 0) {
+            name = s.substring(0, i);
+            try {
+                idx = Integer.parseInt(s.substring(i + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Invalid TensorFlow input/output name \"" + s + "\": expected format \"name\" or \"name:index\"");
+            }
+        } else {
+            name = s;
+            idx = 0;
+        }
+        Operation op = graph.operation(name);
+        Preconditions.checkState(op != null, "No operation with name \"%s\" exists in the TensorFlow graph (from input/output name \"%s\")", name, s);
+        Preconditions.checkState(idx >= 0 && idx < op.numOutputs(), "Invalid output index %s for operation \"%s\" with %s outputs", idx, name, op.numOutputs());
+        return op.output(idx);
     }
 }
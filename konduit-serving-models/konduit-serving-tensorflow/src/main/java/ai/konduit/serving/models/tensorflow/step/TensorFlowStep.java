@@ -49,6 +49,21 @@ public class TensorFlowStep implements PipelineStep {
     @Schema(description = "Uniform Resource Identifier of model")
     private String modelUri;
 
+    @Schema(description = "Number of threads used to parallelize execution within a single operation. If not set, " +
+            "TensorFlow selects an appropriate number (usually the number of CPU cores).")
+    private Integer intraOpParallelism;
+
+    @Schema(description = "Number of threads used to execute independent operations in parallel. If not set, " +
+            "TensorFlow selects an appropriate number (usually the number of CPU cores).")
+    private Integer interOpParallelism;
+
+    @Schema(description = "If true: allocate GPU memory as required, rather than allocating most of the GPU memory " +
+            "when the model is loaded.")
+    private Boolean gpuAllowGrowth;
+
+    @Schema(description = "Fraction (0 to 1) of the memory of each GPU to allocate for this model.")
+    private Double gpuMemoryFraction;
+
 
 
     @Tolerate
@@ -18,10 +18,15 @@
 
 package ai.konduit.serving.models.tensorflow.util;
 
+import ai.konduit.serving.models.tensorflow.step.TensorFlowStep;
 import ai.konduit.serving.pipeline.api.data.NDArrayType;
+import com.google.protobuf.CodedOutputStream;
 import org.tensorflow.DataType;
 import org.tensorflow.types.UInt8;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
 public class TensorFlowUtil {
 
     private TensorFlowUtil(){ }
@@ -56,6 +61,43 @@ public class TensorFlowUtil {
         }
     }
 
+    /**
+     * Create a serialized TensorFlow ConfigProto for the session configuration of the given step.<br>
+     * The message is encoded directly (the TensorFlow proto classes are not a dependency): field numbers are as per
+     * tensorflow/core/protobuf/config.proto
+     *
+     * @return The serialized ConfigProto, or null if no session configuration is set for the step
+     */
+    public static byte[] configProto(TensorFlowStep step){
+        if(step.intraOpParallelism() == null && step.interOpParallelism() == null && step.gpuAllowGrowth() == null &&
+                step.gpuMemoryFraction() == null)
+            return null;
+
+        try {
+            ByteArrayOutputStream gpuBytes = new ByteArrayOutputStream();
+            CodedOutputStream gpu = CodedOutputStream.newInstance(gpuBytes);
+            if(step.gpuMemoryFraction() != null)
+                gpu.writeDouble(1, step.gpuMemoryFraction());           //GPUOptions.per_process_gpu_memory_fraction
+            if(step.gpuAllowGrowth() != null)
+                gpu.writeBool(4, step.gpuAllowGrowth());                //GPUOptions.allow_growth
+            gpu.flush();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodedOutputStream config = CodedOutputStream.newInstance(bytes);
+            if(step.intraOpParallelism() != null)
+                config.writeInt32(2, step.intraOpParallelism());        //ConfigProto.intra_op_parallelism_threads
+            if(step.interOpParallelism() != null)
+                config.writeInt32(5, step.interOpParallelism());        //ConfigProto.inter_op_parallelism_threads
+            if(gpuBytes.size() > 0)
+                config.writeByteArray(6, gpuBytes.toByteArray());      //ConfigProto.gpu_options
+            config.flush();
+            return bytes.toByteArray();
+        } catch (IOException e){
+            //Should never happen for in-memory streams
+            throw new RuntimeException("Error creating TensorFlow session configuration", e);
+        }
+    }
+
     public static NDArrayType fromTFType(DataType dataType){
         switch (dataType){
             case FLOAT:
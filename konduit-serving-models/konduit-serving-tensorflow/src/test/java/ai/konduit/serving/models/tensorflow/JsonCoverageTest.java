@@ -43,6 +43,9 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
     public void testTensorFlowStepStep() {
         testConfigSerDe(new TensorFlowStep().inputNames("inputNames").outputNames("outputNames")
                 .modelUri("modelUri"));
+        testConfigSerDe(new TensorFlowStep().inputNames("inputNames").outputNames("outputNames")
+                .modelUri("modelUri").intraOpParallelism(4).interOpParallelism(2).gpuAllowGrowth(true)
+                .gpuMemoryFraction(0.5));
     }
 
 
@@ -0,0 +1,142 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.models.tensorflow;
+
+import ai.konduit.serving.models.tensorflow.step.TensorFlowRunner;
+import ai.konduit.serving.models.tensorflow.step.TensorFlowStep;
+import ai.konduit.serving.models.tensorflow.util.TensorFlowUtil;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import com.google.protobuf.CodedInputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tensorflow.DataType;
+import org.tensorflow.Graph;
+import org.tensorflow.Output;
+import org.tensorflow.Tensor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestTensorFlowRunner {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    //Frozen graph: out = 2 * in
+    private File doublingModel() throws Exception {
+        byte[] graphDef;
+        try (Graph g = new Graph(); Tensor<Float> two = Tensor.create(2.0f, Float.class)) {
+            Output<?> in = g.opBuilder("Placeholder", "in").setAttr("dtype", DataType.FLOAT).build().output(0);
+            Output<?> c = g.opBuilder("Const", "two").setAttr("dtype", DataType.FLOAT).setAttr("value", two).build().output(0);
+            g.opBuilder("Mul", "out").addInput(in).addInput(c).build();
+            graphDef = g.toGraphDef();
+        }
+        File f = testDir.newFile("doubling.pb");
+        FileUtils.writeByteArrayToFile(f, graphDef);
+        return f;
+    }
+
+    private static class TrackingRunner extends TensorFlowRunner {
+        private final List<Tensor<?>> released = new ArrayList<>();
+
+        TrackingRunner(TensorFlowStep step) {
+            super(step);
+        }
+
+        @Override
+        protected void release(Tensor<?> t) {
+            released.add(t);
+            super.release(t);
+        }
+    }
+
+    private static void assertClosed(Tensor<?> t) {
+        try {
+            t.numBytes();
+        } catch (RuntimeException e) {
+            return;
+        }
+        fail("Tensor was not closed");
+    }
+
+    @Test(timeout = 60000L)
+    public void testTensorsClosed() throws Exception {
+        TensorFlowStep step = new TensorFlowStep()
+                .modelUri(doublingModel().toURI().toString())
+                .inputNames("in")
+                .outputNames("out");
+        TrackingRunner r = new TrackingRunner(step);
+
+        //Input converted to a tensor: both the input and output tensors are closed
+        Data out = r.exec(null, Data.singleton("in", NDArray.create(new float[]{1, 2, 3})));
+        assertArrayEquals(new float[]{2, 4, 6}, out.getNDArray("out").getAs(float[].class), 0.0f);
+        assertEquals(2, r.released.size());
+        for (Tensor<?> t : r.released) {
+            assertClosed(t);
+        }
+
+        //Input that is already a tensor: owned by the input NDArray, and not closed
+        r.released.clear();
+        try (Tensor<Float> in = Tensor.create(new float[]{3, 4}, Float.class)) {
+            out = r.exec(null, Data.singleton("in", NDArray.create(in)));
+            assertArrayEquals(new float[]{6, 8}, out.getNDArray("out").getAs(float[].class), 0.0f);
+            assertEquals(1, r.released.size());
+            assertNotSame(in, r.released.get(0));
+            assertEquals(2 * 4, in.numBytes());
+        }
+
+        //Closes the session and the graph, without blocking
+        r.close();
+    }
+
+    @Test(timeout = 60000L)
+    public void testSessionConfig() throws Exception {
+        TensorFlowStep step = new TensorFlowStep()
+                .modelUri(doublingModel().toURI().toString())
+                .inputNames("in")
+                .outputNames("out")
+                .intraOpParallelism(2)
+                .interOpParallelism(1)
+                .gpuAllowGrowth(true);
+
+        //Encoded as a ConfigProto: intra_op_parallelism_threads (2), inter_op_parallelism_threads (5), gpu_options (6)
+        CodedInputStream cis = CodedInputStream.newInstance(TensorFlowUtil.configProto(step));
+        assertEquals((2 << 3), cis.readTag());
+        assertEquals(2, cis.readInt32());
+        assertEquals((5 << 3), cis.readTag());
+        assertEquals(1, cis.readInt32());
+        assertEquals((6 << 3) | 2, cis.readTag());
+        CodedInputStream gpu = CodedInputStream.newInstance(cis.readByteArray());
+        assertEquals((4 << 3), gpu.readTag());
+        assertTrue(gpu.readBool());
+        assertTrue(cis.isAtEnd());
+
+        //TensorFlow rejects session configurations that can't be parsed
+        TensorFlowRunner r = new TensorFlowRunner(step);
+        Data out = r.exec(null, Data.singleton("in", NDArray.create(new float[]{5})));
+        assertArrayEquals(new float[]{10}, out.getNDArray("out").getAs(float[].class), 0.0f);
+        r.close();
+    }
+}
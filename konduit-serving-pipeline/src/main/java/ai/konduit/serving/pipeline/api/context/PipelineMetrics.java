@@ -17,45 +17,47 @@
  */
 package ai.konduit.serving.pipeline.api.context;
 
-import lombok.Setter;
-
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Metrics for one step of a pipeline. Meter ids are assembled as {@code pipelineName.instanceName.stepName.id}.<br>
+ * Meters are registered on first use and cached by id, so repeated calls with the same id return the same meter
+ * without building the id string or allocating. Instances are safe to use from multiple threads; pipeline executors
+ * create one instance per step.
+ */
 public class PipelineMetrics implements Metrics {
-    private String pipelineName;
-    @Setter
-    private String instanceName = "default";
-    @Setter
-    private String stepName = "default";
+    private final String prefix;
 
-    private Map<String,PipelineGauge> gaugeMap = new HashMap<>();
+    private final Map<String,Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String,Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String,PipelineGauge> gauges = new ConcurrentHashMap<>();
 
     public PipelineMetrics(String name) {
-        this.pipelineName = name;
+        this(name, "default", "default");
+    }
+
+    public PipelineMetrics(String pipelineName, String instanceName, String stepName) {
+        this.prefix = pipelineName + "." + instanceName + "." + stepName + ".";
     }
 
     private String assembleId(String id) {
-        String effectiveId = pipelineName + "." + instanceName + "." + stepName + "." + id;
-        return effectiveId;
+        return prefix + id;
     }
 
     @Override
     public Counter counter(String id) {
-        Counter counter = new PipelineCounter(assembleId(id));
-        return counter;
+        return counters.computeIfAbsent(id, k -> new PipelineCounter(assembleId(k)));
     }
 
     @Override
     public Timer timer(String id) {
-        Timer timer = new PipelineTimer(assembleId(id));
-        return timer;
+        return timers.computeIfAbsent(id, k -> new PipelineTimer(assembleId(k)));
     }
 
     @Override
     public Gauge gauge(String id, double number) {
-        String s = assembleId(id);
-        PipelineGauge pg = gaugeMap.computeIfAbsent(s, k -> new PipelineGauge(k, number));
+        PipelineGauge pg = gauges.computeIfAbsent(id, k -> new PipelineGauge(assembleId(k), number));
         pg.set(number);
         return pg;
     }
@@ -15,48 +15,98 @@
  ******************************************************************************/
 package ai.konduit.serving.pipeline.api.context;
 
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.io.StringUtils;
-import org.nd4j.common.primitives.AtomicBoolean;
 import org.nd4j.shade.jackson.databind.ObjectMapper;
 
 import java.io.*;
 import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A {@link Profiler} that records events with low enough overhead (well under 1 microsecond per event) to be left
+ * enabled in production.<br>
+ * Each thread records its events - a nanosecond timestamp and an interned event key id - into its own fixed size
+ * ring buffer, without locking or allocating. A background thread drains the buffers every
+ * {@link ProfilerConfig#flushIntervalMs()} and writes the events in batches to the output file, either in the Chrome
+ * trace event format or in a compact binary format ({@link ProfilerConfig#format()}).
+ * If a thread's buffer is full, its events are dropped (and the number of dropped events is logged) rather than
+ * blocking the thread.<br>
+ * Use {@link #readEvents(File)} to read the events from either format.
+ */
 @Slf4j
 public class PipelineProfiler implements Profiler {
 
-    private Writer writer;
-    private ObjectMapper json;
-    private final Thread fileWritingThread;
-    private final BlockingQueue<TraceEvent> writeQueue;
-    private final AtomicBoolean writing = new AtomicBoolean(false);
+    //Binary format: magic and version, followed by records: a record type byte, then the record content
+    private static final byte[] MAGIC = {'K', 'P', 'R', 'F'};
+    private static final int BINARY_VERSION = 1;
+    private static final byte PROCESS = 'P';      //long pid. Starts the events of a profiler instance
+    private static final byte KEY = 'K';          //int key id, UTF key. Precedes the first event with the key
+    private static final byte BEGIN = 'B';        //int key id, long tid, long timestamp (nanoseconds)
+    private static final byte END = 'E';          //As per BEGIN
 
-    private long startTime;
-    private long endTime;
+    private final ProfilerConfig profilerConfig;
     private final long pid;
-    private final long tid;
+    private final int sampleRate;
+    private final int bufferSize;
 
-    @Getter
-    private boolean logActive;
-    private ProfilerConfig profilerConfig;
+    //Interned event keys. Keys are only ever appended, under keyLock
+    private final Map<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private final Object keyLock = new Object();
+    private volatile String[] keys = new String[16];
+    private int numKeys;
+
+    private final List<ThreadBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ThreadBuffer> threadBuffer = ThreadLocal.withInitial(this::newBuffer);
+    private final ScheduledExecutorService writerThread;
+
+    //Writer state: guarded by this
     private Path currentLog;
+    private int fileNum;
+    private EventWriter writer;
+    private long droppedReported;
+    private boolean closed;
+
+    public PipelineProfiler(ProfilerConfig profilerConfig) {
+        Preconditions.checkState(profilerConfig.outputFile() != null, "Profiler output file must be set");
+        Preconditions.checkState(profilerConfig.flushIntervalMs() > 0, "Profiler flushIntervalMs must be positive, got %s", profilerConfig.flushIntervalMs());
+        this.profilerConfig = profilerConfig;
+        this.pid = getProcessId();
+        this.sampleRate = Math.max(1, profilerConfig.sampleRate());
+        //Power of 2, so positions can be mapped to buffer indices with a mask
+        int size = Math.max(2, profilerConfig.bufferSize());
+        this.bufferSize = Integer.highestOneBit(size - 1) << 1;
+
+        this.currentLog = profilerConfig.outputFile();
+        try {
+            this.writer = openWriter(currentLog);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
 
-    private Set<String> open = new HashSet<>();
+        writerThread = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "konduit-profiler-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = profilerConfig.flushIntervalMs();
+        writerThread.scheduleWithFixedDelay(() -> {
+            try {
+                drain();
+            } catch (Throwable t) {
+                log.error("Error when attempting to write profiler events to file - no further events will be written", t);
+                close();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
     private long getProcessId() {
         // Note: may fail in some JVM implementations
@@ -79,156 +129,171 @@ public class PipelineProfiler implements Profiler {
         return 0;
     }
 
-    private void fileSizeGuard() throws IOException {
-        if ((profilerConfig.splitSize() > 0) &&
-            (Files.size(currentLog) > profilerConfig.splitSize())) {
-            String baseName = FilenameUtils.removeExtension(currentLog.getFileName().toString());
-            int num = 1;
-            String counted = org.apache.commons.lang3.StringUtils.EMPTY;
-            String[] parts = baseName.split("_");
-            if (parts.length > 1) {
-                counted = parts[0] + "_" + (Integer.parseInt(parts[1]) + 1);
-            }
-            else {
-                counted = baseName + "_" + num;
-            }
-            Path nextFile = Paths.get(currentLog.getParent() + FileSystems.getDefault().getSeparator() +
-                    counted + ".json");
-            Files.createFile(nextFile);
-            this.currentLog = nextFile;
-            try {
-                this.writer.flush();
-                this.writer.close();
-                this.writer = new BufferedWriter(new FileWriter(nextFile.toString(), true));
-                this.writer.write("[");     //JSON array open (array close is optional for Chrome profiler format)
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }
+    @Override
+    public boolean profilerEnabled() {
+        return true;
     }
 
-    public void waitWriter() {
-        while ((!writeQueue.isEmpty() || writing.get()) && fileWritingThread.isAlive()) {
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
+    @Override
+    public boolean sample() {
+        if (sampleRate == 1)
+            return true;
+        //Counted per thread, so sampling doesn't add contention between threads
+        ThreadBuffer b = threadBuffer.get();
+        return b.executions++ % sampleRate == 0;
+    }
+
+    @Override
+    public void eventStart(String key) {
+        ThreadBuffer b = threadBuffer.get();
+        int id = keyId(key);
+        b.record(id, System.nanoTime());
+        b.open(id);
+    }
+
+    @Override
+    public void eventEnd(String key) {
+        ThreadBuffer b = threadBuffer.get();
+        int id = keyId(key);
+        b.record(~id, System.nanoTime());
+        b.close(id);
+    }
+
+    @Override
+    public void closeAll() {
+        ThreadBuffer b = threadBuffer.get();
+        while (b.numOpen > 0) {
+            b.record(~b.open[--b.numOpen], System.nanoTime());
         }
+    }
+
+    /**
+     * Write all events recorded so far to the output file
+     */
+    @Override
+    public void flushBlocking() {
         try {
-            writer.flush();
+            drain();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public PipelineProfiler(ProfilerConfig profilerConfig) {
-        this.profilerConfig = profilerConfig;
-        this.currentLog = profilerConfig.outputFile();
+    /**
+     * Write all events recorded so far to the output file, then close it. Events recorded after this call are
+     * discarded
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        writerThread.shutdown();
         try {
-            this.writer = new BufferedWriter(new FileWriter(this.currentLog.toString(), true));
-            this.writer.write("[");     //JSON array open (array close is optional for Chrome profiler format)
+            drain();
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            log.error("Error writing profiler events to file {}", currentLog, e);
+        }
+        closed = true;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.error("Error closing profiler output file {}", currentLog, e);
         }
-
-        this.json = new ObjectMapper();
-        this.pid = getProcessId();
-        this.tid = Thread.currentThread().getId();
-
-        //Set up a queue so file access doesn't add latency to the execution thread
-        writeQueue =
-                new LinkedBlockingDeque<>();
-        fileWritingThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    runHelper();
-                } catch (Throwable t) {
-                    log.error("Error when attempting to write results to file", t);
-                }
-            }
-
-            public void runHelper() throws Exception {
-                while (true) {
-                    fileSizeGuard();
-                    TraceEvent te = writeQueue.take();    //Blocking
-                    writing.set(true);
-                    try {
-                        String j = json.writeValueAsString(te);
-                        writer.append(j);
-                        writer.append(",\n");
-                        writer.flush();
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    } finally {
-                        writing.set(false);
-                    }
-                }
-            }
-        });
-        fileWritingThread.setDaemon(true);
-        fileWritingThread.start();
     }
 
-    @Override
-    public boolean profilerEnabled() {
-        return true;
+    private int keyId(String key) {
+        Integer id = keyIds.get(key);
+        return id != null ? id : intern(key);
     }
 
-    @Override
-    public void eventStart(String key) {
-        logActive = true;
-        startTime = System.nanoTime() / 1000;
-
-        TraceEvent event = TraceEvent.builder()
-                .name(key)
-                .cat("START")
-                .ts(startTime)
-                .ph(TraceEvent.EventType.B)
-                .pid(this.pid)
-                .tid(this.tid)
-                .build();
+    private int intern(String key) {
+        synchronized (keyLock) {
+            Integer id = keyIds.get(key);
+            if (id != null)
+                return id;
+            String[] k = keys;
+            if (numKeys == k.length)
+                k = Arrays.copyOf(k, 2 * k.length);
+            k[numKeys] = key;
+            keys = k;       //Volatile write: publishes the key before its id can be recorded
+            keyIds.put(key, numKeys);
+            return numKeys++;
+        }
+    }
 
-        writeQueue.add(event);
-        open.add(key);
+    private ThreadBuffer newBuffer() {
+        ThreadBuffer b = new ThreadBuffer(Thread.currentThread(), bufferSize);
+        buffers.add(b);
+        return b;
     }
 
-    @Override
-    public void eventEnd(String key) {
-        logActive = false;
-        endTime = System.nanoTime() / 1000;
+    private synchronized void drain() throws IOException {
+        if (closed)
+            return;
+        long dropped = 0;
+        for (ThreadBuffer b : buffers) {
+            boolean alive = b.isAlive();
+            long tail = b.tail.get();
+            long head = b.head.get();
+            String[] k = keys;      //Read after head: includes the keys of all events up to head
+            for (long p = tail; p < head; p++) {
+                int i = (int) p & b.mask;
+                int id = b.ids[i];
+                if (id >= 0) {
+                    writer.event(k[id], id, true, b.tid, b.timestamps[i]);
+                } else {
+                    writer.event(k[~id], ~id, false, b.tid, b.timestamps[i]);
+                }
+            }
+            b.tail.lazySet(head);
+            dropped += b.dropped.get();
+            if (!alive)
+                buffers.remove(b);      //Thread has terminated: no more events can be recorded
+        }
+        writer.flush();
 
-        TraceEvent event = TraceEvent.builder()
-                .name(key)
-                .cat("END")
-                .ts(endTime)
-                .ph(TraceEvent.EventType.E)
-                .pid(this.pid)
-                .tid(this.tid)
-                .build();
+        if (dropped > droppedReported) {
+            log.warn("Profiler buffers full: dropped {} events ({} in total). Increase ProfilerConfig.bufferSize, " +
+                    "reduce ProfilerConfig.flushIntervalMs or increase ProfilerConfig.sampleRate", dropped - droppedReported, dropped);
+            droppedReported = dropped;
+        }
 
-        writeQueue.add(event);
-        open.remove(key);
+        if (profilerConfig.splitSize() > 0 && writer.size() > profilerConfig.splitSize()) {
+            Path next = nextFile();
+            EventWriter w = openWriter(next);
+            writer.close();
+            writer = w;
+            currentLog = next;
+        }
     }
 
-    @Override
-    public void flushBlocking() {
-        waitWriter();
+    /**
+     * @return The next output file after the current one is full: "name_1.ext", "name_2.ext", etc
+     */
+    private Path nextFile() {
+        Path first = profilerConfig.outputFile();
+        String name = first.getFileName().toString();
+        String ext = FilenameUtils.getExtension(name);
+        String base = FilenameUtils.removeExtension(name) + "_" + (++fileNum);
+        return first.resolveSibling(ext.isEmpty() ? base : base + "." + ext);
     }
 
-    @Override
-    public void closeAll() {
-        if(open.size() > 0){
-            List<String> l = new ArrayList<>(open);
-            for(String s : l){
-                eventEnd(s);
-            }
-        }
+    private EventWriter openWriter(Path p) throws IOException {
+        if (profilerConfig.format() == ProfilerConfig.Format.BINARY)
+            return new BinaryWriter(p.toFile());
+        return new JsonWriter(p.toFile());
     }
 
-
+    /**
+     * Read the events from a profiler output file, in either format
+     */
     public static TraceEvent[] readEvents(File file) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        try (InputStream is = new FileInputStream(file)) {
+            if (is.read(magic) == MAGIC.length && Arrays.equals(magic, MAGIC))
+                return readBinaryEvents(file);
+        }
+
         String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
         content = StringUtils.trimTrailingWhitespace(content);
         if (content.endsWith(","))
@@ -238,4 +303,229 @@ public class PipelineProfiler implements Profiler {
         TraceEvent[] events = new ObjectMapper().readValue(content, TraceEvent[].class);
         return events;
     }
+
+    private static TraceEvent[] readBinaryEvents(File file) throws IOException {
+        List<TraceEvent> out = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.readFully(new byte[MAGIC.length]);
+            int version = in.readInt();
+            if (version != BINARY_VERSION)
+                throw new IOException("Unsupported profiler file version: " + version);
+
+            Map<Integer, String> keys = new HashMap<>();
+            long pid = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0)
+                    break;
+                try {
+                    switch (type) {
+                        case PROCESS:
+                            pid = in.readLong();
+                            keys.clear();
+                            break;
+                        case KEY:
+                            int id = in.readInt();
+                            keys.put(id, in.readUTF());
+                            break;
+                        case BEGIN:
+                        case END:
+                            String key = keys.get(in.readInt());
+                            long tid = in.readLong();
+                            long ts = in.readLong();
+                            out.add(TraceEvent.builder()
+                                    .name(key)
+                                    .cat(type == BEGIN ? "START" : "END")
+                                    .ts(ts / 1000)
+                                    .pid(pid)
+                                    .tid(tid)
+                                    .ph(type == BEGIN ? TraceEvent.EventType.B : TraceEvent.EventType.E)
+                                    .build());
+                            break;
+                        default:
+                            throw new IOException("Invalid profiler file " + file + ": unknown record type " + type);
+                    }
+                } catch (EOFException e) {
+                    //Last record is incomplete: the file was still being written
+                    break;
+                }
+            }
+        }
+        return out.toArray(new TraceEvent[0]);
+    }
+
+    /**
+     * Single producer (the owning thread), single consumer (the writer) ring buffer of events
+     */
+    private static class ThreadBuffer {
+        private final WeakReference<Thread> thread;
+        private final long tid;
+        private final long[] timestamps;
+        private final int[] ids;                //Key id for event start, ~(key id) for event end
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();       //Next position to record to. Written by the owning thread only
+        private final AtomicLong tail = new AtomicLong();       //Next position to write out. Written by the writer only
+        private final AtomicLong dropped = new AtomicLong();    //Written by the owning thread only
+
+        //Owning thread only
+        private int[] open = new int[8];
+        private int numOpen;
+        private long executions;
+
+        private ThreadBuffer(Thread t, int size) {
+            this.thread = new WeakReference<>(t);
+            this.tid = t.getId();
+            this.timestamps = new long[size];
+            this.ids = new int[size];
+            this.mask = size - 1;
+        }
+
+        private void record(int id, long nanos) {
+            long h = head.get();
+            if (h - tail.get() > mask) {
+                dropped.lazySet(dropped.get() + 1);
+                return;
+            }
+            int i = (int) h & mask;
+            timestamps[i] = nanos;
+            ids[i] = id;
+            head.lazySet(h + 1);    //Ordered write: publishes the event to the writer
+        }
+
+        private void open(int id) {
+            if (numOpen == open.length)
+                open = Arrays.copyOf(open, 2 * open.length);
+            open[numOpen++] = id;
+        }
+
+        private void close(int id) {
+            for (int i = numOpen - 1; i >= 0; i--) {
+                if (open[i] == id) {
+                    System.arraycopy(open, i + 1, open, i, numOpen - i - 1);
+                    numOpen--;
+                    return;
+                }
+            }
+        }
+
+        private boolean isAlive() {
+            Thread t = thread.get();
+            return t != null && t.isAlive();
+        }
+    }
+
+    private interface EventWriter extends Closeable {
+        void event(String key, int id, boolean begin, long tid, long nanos) throws IOException;
+
+        void flush() throws IOException;
+
+        /**
+         * @return Current size of the file, in bytes
+         */
+        long size();
+    }
+
+    /**
+     * Chrome trace event format: a JSON array of events, one per line. The closing bracket is optional for this
+     * format, and is not written, so events can be appended.
+     */
+    private class JsonWriter implements EventWriter {
+        private final Writer w;
+        private final List<String> escapedKeys = new ArrayList<>();
+        private final ObjectMapper json = new ObjectMapper();
+        private final StringBuilder sb = new StringBuilder();
+        private long size;
+
+        private JsonWriter(File f) throws IOException {
+            size = f.length();
+            w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, true), StandardCharsets.UTF_8), 64 * 1024);
+            if (size == 0)
+                write("[");     //JSON array open (array close is optional for Chrome profiler format)
+        }
+
+        @Override
+        public void event(String key, int id, boolean begin, long tid, long nanos) throws IOException {
+            while (escapedKeys.size() <= id)
+                escapedKeys.add(null);
+            String name = escapedKeys.get(id);
+            if (name == null) {
+                name = json.writeValueAsString(key);
+                escapedKeys.set(id, name);
+            }
+            sb.setLength(0);
+            sb.append("{\"name\":").append(name)
+                    .append(begin ? ",\"cat\":\"START\",\"ts\":" : ",\"cat\":\"END\",\"ts\":").append(nanos / 1000)
+                    .append(",\"pid\":").append(pid)
+                    .append(",\"tid\":").append(tid)
+                    .append(begin ? ",\"ph\":\"B\"},\n" : ",\"ph\":\"E\"},\n");
+            write(sb);
+        }
+
+        private void write(CharSequence s) throws IOException {
+            w.append(s);
+            size += s.length();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            w.flush();
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            w.close();
+        }
+    }
+
+    private class BinaryWriter implements EventWriter {
+        private final DataOutputStream out;
+        private final BitSet keysWritten = new BitSet();
+        private final long initialSize;
+
+        private BinaryWriter(File f) throws IOException {
+            initialSize = f.length();
+            boolean isNew = initialSize == 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f, true), 64 * 1024));
+            if (isNew) {
+                out.write(MAGIC);
+                out.writeInt(BINARY_VERSION);
+            }
+            out.writeByte(PROCESS);
+            out.writeLong(pid);
+        }
+
+        @Override
+        public void event(String key, int id, boolean begin, long tid, long nanos) throws IOException {
+            if (!keysWritten.get(id)) {
+                out.writeByte(KEY);
+                out.writeInt(id);
+                out.writeUTF(key);
+                keysWritten.set(id);
+            }
+            out.writeByte(begin ? BEGIN : END);
+            out.writeInt(id);
+            out.writeLong(tid);
+            out.writeLong(nanos);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public long size() {
+            return initialSize + out.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
 }
@@ -64,6 +64,15 @@ public interface Profiler {
      */
     boolean profilerEnabled();
 
+    /**
+     * Called by the pipeline executor once at the start of each pipeline execution, to determine whether that
+     * execution should be profiled - see {@link ProfilerConfig#sampleRate()}. If false, the executor doesn't call
+     * this profiler at all for the execution.
+     */
+    default boolean sample() {
+        return profilerEnabled();
+    }
+
     /**
      * Start the timer for the event with the specified key.
      */
@@ -85,4 +94,11 @@ public interface Profiler {
      * i.e., call eventEnd for any keys where an eventStart has been called but not a corresponding eventEnd
      */
     void closeAll();
+
+    /**
+     * Release any resources (for example, output files and threads) held by the profiler. The profiler should not be
+     * used after this is called
+     */
+    default void close() {
+    }
 }
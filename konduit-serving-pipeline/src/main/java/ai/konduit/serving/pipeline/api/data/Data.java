@@ -47,10 +47,12 @@ public interface Data {
     String RESERVED_KEY_BYTEBUFFER = "@ByteBuffer";
     String RESERVED_KEY_IMAGE_FORMAT = "@ImageFormat";
     String RESERVED_KEY_IMAGE_DATA = "@ImageData";
+    String RESERVED_KEY_IMAGE_SHAPE = "@ImageShape";
+    String RESERVED_KEY_IMAGE_LAYOUT = "@ImageLayout";
     String RESERVED_KEY_NDARRAY_SHAPE = "@NDArrayShape";
     String RESERVED_KEY_NDARRAY_TYPE = "@NDArrayType";
     String RESERVED_KEY_NDARRAY_DATA_BASE64 = "@NDArrayDataBase64";
-    String RESERVED_KEY_NDARRAY_DATA_ARRAY = "@NDArrayDataBase64";
+    String RESERVED_KEY_NDARRAY_DATA_ARRAY = "@NDArrayDataArray";
     String RESERVED_KEY_METADATA = "@Metadata";
     String RESERVED_KEY_BB_X1 = "@x1";
     String RESERVED_KEY_BB_X2 = "@x2";
@@ -69,7 +71,7 @@ public interface Data {
 
     static List<String> reservedKeywords(){
         return Arrays.asList(RESERVED_KEY_TYPE, RESERVED_KEY_BYTES_BASE64, RESERVED_KEY_BYTES_ARRAY, RESERVED_KEY_IMAGE_FORMAT,
-                RESERVED_KEY_IMAGE_DATA, RESERVED_KEY_NDARRAY_SHAPE, RESERVED_KEY_NDARRAY_TYPE, RESERVED_KEY_NDARRAY_DATA_BASE64,
+                RESERVED_KEY_IMAGE_DATA, RESERVED_KEY_IMAGE_SHAPE, RESERVED_KEY_IMAGE_LAYOUT, RESERVED_KEY_NDARRAY_SHAPE, RESERVED_KEY_NDARRAY_TYPE, RESERVED_KEY_NDARRAY_DATA_BASE64,
                 RESERVED_KEY_NDARRAY_DATA_ARRAY, RESERVED_KEY_METADATA,
                 RESERVED_KEY_BB_X1, RESERVED_KEY_BB_X2, RESERVED_KEY_BB_Y1, RESERVED_KEY_BB_Y2,
                 RESERVED_KEY_BB_CX, RESERVED_KEY_BB_CY, RESERVED_KEY_BB_H, RESERVED_KEY_BB_W,
@@ -86,6 +88,14 @@ public interface Data {
         }
     }
 
+    /**
+     * Serialize this Data instance to JSON (UTF-8), writing it directly to the stream rather than creating a String.
+     * Note that the stream is closed when done.
+     */
+    default void writeJson(OutputStream toStream) throws IOException {
+        ObjectMappers.json().writeValue(toStream, this);
+    }
+
     List<String> keys();
 
     String key(int id);
@@ -190,10 +200,28 @@ public interface Data {
         }
     }
 
+    /**
+     * Deserialize a Data instance from JSON (UTF-8) read from the stream, without first reading it into a String
+     */
+    static Data fromJsonStream(InputStream json) throws IOException {
+        return ObjectMappers.json().readValue(json, Data.class);
+    }
+
+    /**
+     * Deserialize a Data instance from the protobuf format. NDArray values in the returned Data instance may be views
+     * of the input array, hence the array must not be modified while the Data instance is in use.
+     */
     static Data fromBytes(byte[] input) {
         return new ProtoData(input);
     }
 
+    /**
+     * As per {@link #fromBytes(byte[])} but reading the remaining bytes of the buffer.
+     */
+    static Data fromBytes(ByteBuffer input) {
+        return ProtoData.fromBytes(input);
+    }
+
     static Data fromFile(File f) throws IOException {
         return new ProtoData(f);
     }
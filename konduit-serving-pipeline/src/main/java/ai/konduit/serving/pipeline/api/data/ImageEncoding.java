@@ -0,0 +1,69 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package ai.konduit.serving.pipeline.api.data;
+
+/**
+ * The encoding used for {@link Image} values when {@link Data} instances are serialized to JSON or protobuf.<br>
+ * NATIVE (the default) writes each image in the format it is already held in (PNG, JPEG, BMP or GIF file bytes), without
+ * decoding or re-encoding it. Images that are not backed by an encoded file (for example, BufferedImage, Mat or Frame)
+ * are written as PNG.<br>
+ * RAW writes the uncompressed pixels as HWC uint8 values, along with the image shape and channel layout.
+ *
+ * @see ai.konduit.serving.pipeline.impl.data.helpers.ImageSerdeUtils
+ */
+public enum ImageEncoding {
+    NATIVE(null),
+    PNG("image/png"),
+    JPEG("image/jpeg"),
+    BMP("image/bmp"),
+    GIF("image/gif"),
+    RAW(null);
+
+    private final String mediaType;
+
+    ImageEncoding(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * @return The media type (as used in HTTP Accept headers) for this encoding, or null if there is none
+     */
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Select the image encoding requested by a HTTP Accept header, if any. For example, "application/json, image/jpeg"
+     * will return JPEG.
+     *
+     * @param accept Value of the Accept header. May be null
+     * @return The requested encoding, or null if the header does not specify an image media type
+     */
+    public static ImageEncoding fromAcceptHeader(String accept) {
+        if (accept == null)
+            return null;
+        String lower = accept.toLowerCase();
+        for (ImageEncoding e : values()) {
+            if (e.mediaType != null && lower.contains(e.mediaType))
+                return e;
+        }
+        if (lower.contains("image/jpg"))
+            return JPEG;
+        return null;
+    }
+}
@@ -20,11 +20,12 @@ package ai.konduit.serving.pipeline.impl.data;
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.exception.DataLoadingException;
 import ai.konduit.serving.pipeline.impl.data.helpers.ProtobufUtils;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 @Slf4j
@@ -66,17 +67,23 @@ public class ProtoData extends JData {
 
     @Override
     public void write(OutputStream toStream) throws IOException {
+        toProtoMessage().writeTo(toStream);
+    }
 
+    /**
+     * Convert this Data instance to the protobuf message form.<br>
+     * Note that NDArray values are not copied: the returned message references the arrays' buffers directly, and the
+     * data is copied only when the message is written out.
+     */
+    public DataProtoMessage.DataMap toProtoMessage() {
         if (hasMetaData()) {
-            DataProtoMessage.DataMap pbDataMap = ProtobufUtils.serialize(getDataMap(), ((JData)getMetaData()).getDataMap());
-            pbDataMap.writeTo(toStream);
+            return ProtobufUtils.serialize(getDataMap(), ((JData)getMetaData()).getDataMap());
         }
         else {
             Map<String, DataProtoMessage.DataScheme> newItemsMap = ProtobufUtils.serializeMap(getDataMap());
-            DataProtoMessage.DataMap pbDataMap = DataProtoMessage.DataMap.newBuilder().
+            return DataProtoMessage.DataMap.newBuilder().
                     putAllMapItems(newItemsMap).
                     build();
-            pbDataMap.writeTo(toStream);
         }
     }
 
@@ -93,31 +100,43 @@ public class ProtoData extends JData {
         return ProtobufUtils.deserialize(dataMap);
     }
 
+    /**
+     * Create a Data instance from a protobuf message. NDArray values are read-only views of the message's bytes:
+     * conversions to formats that may be modified in place (such as ND4J's INDArray) copy the data.
+     */
+    public static Data fromProtoMessage(@NonNull DataProtoMessage.DataMap dataMap) {
+        return ProtobufUtils.deserialize(dataMap);
+    }
+
     public byte[] asBytes() {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            write(baos);
-        } catch (IOException e) {
-            String errorText = "Failed write to ByteArrayOutputStream";
-            log.error(errorText, e);
-            throw new DataLoadingException(errorText);
-        }
-        return baos.toByteArray();
+        //Serialize directly into an array of the exact size, rather than via a growing ByteArrayOutputStream
+        return toProtoMessage().toByteArray();
     }
 
     public static Data fromBytes(byte[] input) {
-        Data retVal = empty();
-        DataProtoMessage.DataMap.Builder builder = null;
+        return fromCodedInput(CodedInputStream.newInstance(input));
+    }
+
+    /**
+     * As per {@link #fromBytes(byte[])} but reading the remaining bytes of a ByteBuffer.
+     */
+    public static Data fromBytes(ByteBuffer input) {
+        return fromCodedInput(CodedInputStream.newInstance(input));
+    }
+
+    private static Data fromCodedInput(CodedInputStream cis) {
+        //With aliasing enabled, bytes fields (NDArray data) are views of the input rather than copies of it.
+        //Consequently the input must not be modified while the returned Data instance is in use
+        cis.enableAliasing(true);
+        DataProtoMessage.DataMap dataMap;
         try {
-            builder = DataProtoMessage.DataMap.newBuilder().mergeFrom(input);
-        } catch (InvalidProtocolBufferException e) {
+            dataMap = DataProtoMessage.DataMap.parseFrom(cis);
+        } catch (IOException e) {
             String errorText = "Error converting bytes array to data";
             log.error(errorText,e);
             throw new DataLoadingException(errorText);
         }
-        DataProtoMessage.DataMap dataMap = builder.build();
-        retVal = ProtobufUtils.deserialize(dataMap);
-        return retVal;
+        return ProtobufUtils.deserialize(dataMap);
     }
 
     @Override
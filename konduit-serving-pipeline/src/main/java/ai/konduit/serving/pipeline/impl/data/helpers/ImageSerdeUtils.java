@@ -0,0 +1,258 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.data.helpers;
+
+import ai.konduit.serving.pipeline.api.data.Image;
+import ai.konduit.serving.pipeline.api.data.ImageEncoding;
+import ai.konduit.serving.pipeline.api.exception.DataLoadingException;
+import ai.konduit.serving.pipeline.api.format.ImageConverter;
+import ai.konduit.serving.pipeline.impl.data.image.Bmp;
+import ai.konduit.serving.pipeline.impl.data.image.Gif;
+import ai.konduit.serving.pipeline.impl.data.image.Jpeg;
+import ai.konduit.serving.pipeline.impl.data.image.Png;
+import ai.konduit.serving.pipeline.impl.data.image.base.BaseImageFile;
+import ai.konduit.serving.pipeline.registry.ImageConverterRegistry;
+import ai.konduit.serving.pipeline.settings.constants.PropertiesConstants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.function.Supplier;
+
+/**
+ * Utilities for converting {@link Image} values to and from the encoded form used in the JSON and protobuf
+ * serialization formats.<br>
+ * By default images are written in their native encoding (see {@link ImageEncoding#NATIVE}), so a JPEG image is passed
+ * through as JPEG bytes rather than being decoded and re-encoded as PNG. A different default can be set using the
+ * {@link PropertiesConstants#IMAGE_ENCODING} system property, or for a single serialization call using
+ * {@link #withEncoding(ImageEncoding, Supplier)}.
+ */
+@Slf4j
+public class ImageSerdeUtils {
+
+    public static final String FORMAT_RAW = "RAW";
+
+    public static final String LAYOUT_BGR = "BGR";
+    public static final String LAYOUT_RGB = "RGB";
+    public static final String LAYOUT_GRAY = "GRAY";
+
+    private static final ImageEncoding DEFAULT_ENCODING = defaultEncoding();
+    private static final ThreadLocal<ImageEncoding> ENCODING = new ThreadLocal<>();
+
+    private ImageSerdeUtils() {
+    }
+
+    /**
+     * An encoded image: the format name (PNG, JPEG, BMP, GIF or RAW) and the image bytes.<br>
+     * For RAW images, shape is [height, width, channels] and layout is the channel order (BGR, RGB or GRAY).
+     * Both are null for all other formats.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class EncodedImage {
+        private final String format;
+        private final byte[] data;
+        private final long[] shape;
+        private final String layout;
+    }
+
+    private static ImageEncoding defaultEncoding() {
+        String s = System.getProperty(PropertiesConstants.IMAGE_ENCODING);
+        if (s == null || s.isEmpty())
+            return ImageEncoding.NATIVE;
+        try {
+            return ImageEncoding.valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid value for system property {}: \"{}\" - using NATIVE image encoding", PropertiesConstants.IMAGE_ENCODING, s);
+            return ImageEncoding.NATIVE;
+        }
+    }
+
+    /**
+     * @return The image encoding used for serialization on the current thread
+     */
+    public static ImageEncoding encoding() {
+        ImageEncoding e = ENCODING.get();
+        return e == null ? DEFAULT_ENCODING : e;
+    }
+
+    /**
+     * Run the provided serialization function with the specified image encoding. For example:
+     * {@code String json = ImageSerdeUtils.withEncoding(ImageEncoding.JPEG, data::toJson);}
+     *
+     * @param encoding Image encoding to use. If null, the default encoding is used
+     * @param fn       Function to run
+     * @return The result of the function
+     */
+    public static <T> T withEncoding(ImageEncoding encoding, Supplier<T> fn) {
+        ImageEncoding prev = ENCODING.get();
+        ENCODING.set(encoding);
+        try {
+            return fn.get();
+        } finally {
+            if (prev == null) {
+                ENCODING.remove();
+            } else {
+                ENCODING.set(prev);
+            }
+        }
+    }
+
+    /**
+     * Encode the image using the current thread's image encoding - see {@link #encoding()}
+     */
+    public static EncodedImage encode(Image image) {
+        return encode(image, encoding());
+    }
+
+    /**
+     * Encode the image using the specified encoding. Images that are already in the requested format (or any file
+     * format, for {@link ImageEncoding#NATIVE}) are passed through without decoding.
+     */
+    public static EncodedImage encode(Image image, ImageEncoding encoding) {
+        Object o = image.get();
+        switch (encoding) {
+            case NATIVE:
+                if (o instanceof BaseImageFile) {
+                    BaseImageFile f = (BaseImageFile) o;
+                    return new EncodedImage(f.formatName(), f.getBytes(), null, null);
+                }
+                return encodeAs(image, Png.class);
+            case PNG:
+                return encodeAs(image, Png.class);
+            case JPEG:
+                return encodeAs(image, Jpeg.class);
+            case BMP:
+                return encodeAs(image, Bmp.class);
+            case GIF:
+                return encodeAs(image, Gif.class);
+            case RAW:
+                return encodeRaw(image);
+            default:
+                throw new IllegalStateException("Unknown image encoding: " + encoding);
+        }
+    }
+
+    private static EncodedImage encodeAs(Image image, Class<? extends BaseImageFile> format) {
+        Object o = image.get();
+        BaseImageFile f;
+        if (format.isInstance(o)) {
+            f = (BaseImageFile) o;
+        } else {
+            ImageConverter c = ImageConverterRegistry.getConverterFor(image, format);
+            if (c != null) {
+                f = c.convert(image, format);
+            } else {
+                //No direct conversion available - go via BufferedImage
+                f = Image.create(image.getAs(BufferedImage.class)).getAs(format);
+            }
+        }
+        return new EncodedImage(f.formatName(), f.getBytes(), null, null);
+    }
+
+    private static EncodedImage encodeRaw(Image image) {
+        BufferedImage bi = image.getAs(BufferedImage.class);
+        int h = bi.getHeight();
+        int w = bi.getWidth();
+        boolean gray = bi.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        int c = gray ? 1 : 3;
+        int type = gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+
+        byte[] pixels = null;
+        if (bi.getType() == type && bi.getRaster().getParent() == null) {
+            byte[] b = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+            if (b.length == h * w * c)
+                pixels = b;
+        }
+        if (pixels == null) {
+            BufferedImage converted = new BufferedImage(w, h, type);
+            Graphics2D g = converted.createGraphics();
+            try {
+                g.drawImage(bi, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            pixels = ((DataBufferByte) converted.getRaster().getDataBuffer()).getData();
+        }
+
+        return new EncodedImage(FORMAT_RAW, pixels, new long[]{h, w, c}, gray ? LAYOUT_GRAY : LAYOUT_BGR);
+    }
+
+    /**
+     * Decode a serialized image.
+     *
+     * @param format Format name: PNG, JPEG, BMP, GIF or RAW
+     * @param data   Image bytes
+     * @param shape  Shape of the image (RAW format only): [height, width, channels]
+     * @param layout Channel layout (RAW format only): BGR, RGB or GRAY
+     */
+    public static Image decode(String format, byte[] data, long[] shape, String layout) {
+        Preconditions.checkState(format != null, "Image format must be specified");
+        switch (format.toUpperCase()) {
+            case "PNG":
+                return Image.create(new Png(data));
+            case "JPEG":
+            case "JPG":
+                return Image.create(new Jpeg(data));
+            case "BMP":
+                return Image.create(new Bmp(data));
+            case "GIF":
+                return Image.create(new Gif(data));
+            case FORMAT_RAW:
+                return Image.create(decodeRaw(data, shape, layout));
+            default:
+                throw new DataLoadingException("Unable to deserialize image: unsupported image format \"" + format +
+                        "\" - supported formats are PNG, JPEG, BMP, GIF and RAW");
+        }
+    }
+
+    private static BufferedImage decodeRaw(byte[] data, long[] shape, String layout) {
+        if (shape == null || shape.length != 3)
+            throw new DataLoadingException("Unable to deserialize RAW image: shape must be specified as [height, width, channels]");
+        int h = (int) shape[0];
+        int w = (int) shape[1];
+        int c = (int) shape[2];
+        String l = layout == null || layout.isEmpty() ? (c == 1 ? LAYOUT_GRAY : LAYOUT_BGR) : layout.toUpperCase();
+        boolean gray = LAYOUT_GRAY.equals(l);
+        if (!gray && !LAYOUT_BGR.equals(l) && !LAYOUT_RGB.equals(l))
+            throw new DataLoadingException("Unable to deserialize RAW image: unsupported layout \"" + layout + "\" - supported layouts are BGR, RGB and GRAY");
+        if (c != (gray ? 1 : 3))
+            throw new DataLoadingException("Unable to deserialize RAW image: layout " + l + " is not valid for " + c + " channels");
+        if ((long) h * w * c != data.length)
+            throw new DataLoadingException("Unable to deserialize RAW image: expected " + ((long) h * w * c) + " bytes for shape [" +
+                    h + ", " + w + ", " + c + "] but got " + data.length);
+
+        BufferedImage bi = new BufferedImage(w, h, gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+        if (LAYOUT_RGB.equals(l)) {
+            for (int i = 0; i < data.length; i += 3) {
+                pixels[i] = data[i + 2];
+                pixels[i + 1] = data[i + 1];
+                pixels[i + 2] = data[i];
+            }
+        } else {
+            System.arraycopy(data, 0, pixels, 0, data.length);
+        }
+        return bi;
+    }
+}
@@ -22,30 +22,27 @@ import ai.konduit.serving.pipeline.impl.data.JData;
 import ai.konduit.serving.pipeline.impl.data.Value;
 import ai.konduit.serving.pipeline.impl.data.box.BBoxCHW;
 import ai.konduit.serving.pipeline.impl.data.box.BBoxXY;
-import ai.konduit.serving.pipeline.impl.data.image.Png;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
 import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage;
 import ai.konduit.serving.pipeline.impl.data.wrappers.ListValue;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import lombok.val;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.*;
 
 public class ProtobufUtils {
 
-    private static String PNG = "PNG";
-
     private static List<ByteString> ndArrayToByteStringList(SerializedNDArray sn) {
-        sn.getBuffer().rewind();
-        byte[] bufferBytes = new byte[sn.getBuffer().remaining()];
-        sn.getBuffer().get(bufferBytes);
-        ByteString byteString = ByteString.copyFrom(bufferBytes);
-        List<ByteString> byteStringList = new ArrayList<>();
-        byteStringList.add(byteString);
-        return byteStringList;
+        //Wrap (not copy) the array buffer: the data is only copied once, when the message is written out
+        ByteBuffer bb = sn.getBuffer().duplicate();
+        bb.rewind();
+        ByteString byteString = UnsafeByteOperations.unsafeWrap(bb);
+        return Collections.singletonList(byteString);
     }
 
     private static DataProtoMessage.NDArray.ValueType toPbNDArrayType(NDArrayType origType) {
@@ -181,20 +178,37 @@ public class ProtobufUtils {
 
         List<ByteString> data = pbArray.getArrayList();
         DataProtoMessage.NDArray.ValueType type = pbArray.getType();
-        byte[] bytes = data.get(0).toByteArray();
-        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        ByteString bytes = data.size() == 1 ? data.get(0) : ByteString.copyFrom(data);
+        //Read-only view of the message bytes - no copy. Slice so that position 0 / capacity match the array data
+        ByteBuffer bb = bytes.asReadOnlyByteBuffer().slice().order(ByteOrder.LITTLE_ENDIAN);
         SerializedNDArray ndArray = new SerializedNDArray(fromPbNDArrayType(type), aShapes, bb);
         return NDArray.create(ndArray);
     }
 
     private static Image deserializeImage(DataProtoMessage.Image pbImage) {
-        if (!StringUtils.equals(pbImage.getType(), PNG))
-            throw new IllegalStateException("Only PNG images supported for now.");
         List<ByteString> pbData = pbImage.getDataList();
         byte[] data = pbData.get(0).toByteArray();
-        // TODO: obviously should be working for different formats
-        Png png = new Png(data);
-        return Image.create(png);
+        long[] shape = null;
+        if (pbImage.getShapeCount() > 0) {
+            List<Long> pbShape = pbImage.getShapeList();
+            shape = new long[pbShape.size()];
+            for (int i = 0; i < shape.length; i++)
+                shape[i] = pbShape.get(i);
+        }
+        return ImageSerdeUtils.decode(pbImage.getType(), data, shape, pbImage.getLayout());
+    }
+
+    private static DataProtoMessage.Image serializeImage(Image image) {
+        ImageSerdeUtils.EncodedImage e = ImageSerdeUtils.encode(image);
+        DataProtoMessage.Image.Builder b = DataProtoMessage.Image.newBuilder().
+                addData(UnsafeByteOperations.unsafeWrap(e.getData())).
+                setType(e.getFormat());
+        if (e.getShape() != null) {
+            for (long l : e.getShape())
+                b.addShape(l);
+            b.setLayout(e.getLayout());
+        }
+        return b.build();
     }
 
     public static DataProtoMessage.DataMap serialize(Map<String,Value> dataMap) {
@@ -256,13 +270,7 @@ public class ProtobufUtils {
             }
             else if (value.type() == ValueType.IMAGE) {
                 Image image = (Image) nextItem.getValue().get();
-                Png p = image.getAs(Png.class);
-                byte[] imageBytes = p.getBytes();
-                //byte[] imageBytes = new JavaImageConverters.IdentityConverter().convert(image, byte[].class);
-                DataProtoMessage.Image pbImage = DataProtoMessage.Image.newBuilder().
-                        addData(ByteString.copyFrom(imageBytes)).
-                        setType(PNG).
-                        build();
+                DataProtoMessage.Image pbImage = serializeImage(image);
 
                 item = DataProtoMessage.DataScheme.newBuilder().
                         setImValue(pbImage).
@@ -381,13 +389,7 @@ public class ProtobufUtils {
                     List<Image> images = (List<Image>)nextItem.getValue().get();
                     List<DataProtoMessage.Image> pbImages = new ArrayList<>();
                     for (val image : images) {
-                        Png p = image.getAs(Png.class);
-                        byte[] imageBytes = p.getBytes();
-                        DataProtoMessage.Image pbImage = DataProtoMessage.Image.newBuilder().
-                                addData(ByteString.copyFrom(imageBytes)).
-                                setType(PNG).
-                                build();
-                        pbImages.add(pbImage);
+                        pbImages.add(serializeImage(image));
                     }
 
                     DataProtoMessage.ImageList toAdd = DataProtoMessage.ImageList.newBuilder().addAllList(pbImages).build();
@@ -21,14 +21,29 @@ package ai.konduit.serving.pipeline.impl.data.ndarray;
 import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.api.format.NDArrayConverter;
 import ai.konduit.serving.pipeline.api.format.NDArrayFormat;
+import ai.konduit.serving.pipeline.impl.memory.BufferScope;
 import ai.konduit.serving.pipeline.registry.NDArrayConverterRegistry;
 import lombok.AllArgsConstructor;
 import org.nd4j.common.base.Preconditions;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base class for NDArray implementations.<br>
+ * Conversions performed via {@link #getAs(Class)} and {@link #getAs(NDArrayFormat)} are cached, so that (for example)
+ * multiple pipeline steps requesting the same format only perform the conversion once. Consequently, the returned
+ * objects are shared between callers, and should be treated as read-only: in-place modification of a converted array
+ * will be visible to other callers requesting the same format.<br>
+ * Conversions performed within a {@link BufferScope} may use pooled memory: these are only reused within that same
+ * scope, and until it is closed. Requests in other scopes perform (without caching) their own conversion.
+ */
 @AllArgsConstructor
 public abstract class BaseNDArray<T> implements NDArray {
 
     protected final T array;
+    //Conversions already performed for this array, keyed by target class or format
+    private final Map<Object, Object> converted = new ConcurrentHashMap<>();
 
     @Override
     public Object get() {
@@ -37,14 +52,67 @@ public abstract class BaseNDArray<T> implements NDArray {
 
     @Override
     public <T> T getAs(NDArrayFormat<T> format) {
-        return NDArrayConverterRegistry.getConverterFor(this, format).convert(this, format);
+        Object out = cached(format);
+        if(out == null){
+            out = NDArrayConverterRegistry.getConverterFor(this, format).convert(this, format);
+            out = cache(format, out);
+        }
+        return (T) out;
     }
 
     @Override
     public <T> T getAs(Class<T> type) {
-        NDArrayConverter converter = NDArrayConverterRegistry.getConverterFor(this, type);
-        Preconditions.checkState(converter != null, "No converter found for converting from %s to %s", array.getClass(), type);
-        return converter.convert(this, type);
+        if(type.isInstance(array))
+            return (T) array;
+
+        Object out = cached(type);
+        if(out == null) {
+            NDArrayConverter converter = NDArrayConverterRegistry.getConverterFor(this, type);
+            Preconditions.checkState(converter != null, "No converter found for converting from %s to %s", array.getClass(), type);
+            out = cache(type, converter.convert(this, type));
+        }
+        return (T) out;
+    }
+
+    private Object cached(Object key){
+        Object o = converted.get(key);
+        if(o instanceof ScopedValue){
+            ScopedValue sv = (ScopedValue) o;
+            if(sv.scope.isClosed()){
+                //May have been backed by pooled buffers that have since been reused
+                converted.remove(key, o);
+                return null;
+            }
+            //Pooled buffers of another (request) scope are only valid until that scope is closed, which may happen
+            // while the current request is still using them
+            return sv.scope == BufferScope.current() ? sv.value : null;
+        }
+        return o;
+    }
+
+    private Object cache(Object key, Object value){
+        //Not computeIfAbsent: conversions may recursively call getAs on this array (for example, X -> SerializedNDArray -> Y)
+        //If two threads race on the same conversion, both return the first stored value
+        if(value == null)
+            return null;
+        BufferScope scope = BufferScope.current();
+        Object toStore = scope == null ? value : new ScopedValue(value, scope);
+        while(true) {
+            Object prev = converted.putIfAbsent(key, toStore);
+            if(prev == null)
+                return value;
+            if(prev instanceof ScopedValue){
+                ScopedValue sv = (ScopedValue) prev;
+                if(sv.scope.isClosed()){
+                    if(converted.replace(key, prev, toStore))
+                        return value;
+                    continue;
+                }
+                //Conversion cached by another scope that is still open: use (but don't cache) this one
+                return sv.scope == scope ? sv.value : value;
+            }
+            return prev;
+        }
     }
 
     @Override
@@ -72,4 +140,10 @@ public abstract class BaseNDArray<T> implements NDArray {
 
         return thisArr.equals(other);
     }
+
+    @AllArgsConstructor
+    private static class ScopedValue {
+        private final Object value;
+        private final BufferScope scope;
+    }
 }
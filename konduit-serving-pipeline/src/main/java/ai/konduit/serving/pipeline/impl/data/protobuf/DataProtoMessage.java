@@ -10434,6 +10434,41 @@ public final class DataProtoMessage {
      * <code>repeated bytes data = 2;</code>
      */
     com.google.protobuf.ByteString getData(int index);
+
+    /**
+     * <pre>
+     *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+     * </pre>
+     *
+     * <code>repeated int64 shape = 3;</code>
+     */
+    java.util.List<java.lang.Long> getShapeList();
+    /**
+     * <pre>
+     *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+     * </pre>
+     *
+     * <code>repeated int64 shape = 3;</code>
+     */
+    int getShapeCount();
+    /**
+     * <pre>
+     *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+     * </pre>
+     *
+     * <code>repeated int64 shape = 3;</code>
+     */
+    long getShape(int index);
+
+    /**
+     * <code>string layout = 4;</code>
+     */
+    java.lang.String getLayout();
+    /**
+     * <code>string layout = 4;</code>
+     */
+    com.google.protobuf.ByteString
+        getLayoutBytes();
   }
   /**
    * Protobuf type {@code ai.konduit.serving.Image}
@@ -10450,6 +10485,8 @@ public final class DataProtoMessage {
     private Image() {
       type_ = "";
       data_ = java.util.Collections.emptyList();
+      shape_ = emptyLongList();
+      layout_ = "";
     }
 
     @java.lang.Override
@@ -10497,6 +10534,33 @@ public final class DataProtoMessage {
               data_.add(input.readBytes());
               break;
             }
+            case 24: {
+              if (!((mutable_bitField0_ & 0x00000002) != 0)) {
+                shape_ = newLongList();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              shape_.addLong(input.readInt64());
+              break;
+            }
+            case 26: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000002) != 0) && input.getBytesUntilLimit() > 0) {
+                shape_ = newLongList();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                shape_.addLong(input.readInt64());
+              }
+              input.popLimit(limit);
+              break;
+            }
+            case 34: {
+              java.lang.String s = input.readStringRequireUtf8();
+
+              layout_ = s;
+              break;
+            }
             default: {
               if (!parseUnknownField(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -10515,6 +10579,9 @@ public final class DataProtoMessage {
         if (((mutable_bitField0_ & 0x00000001) != 0)) {
           data_ = java.util.Collections.unmodifiableList(data_); // C
         }
+        if (((mutable_bitField0_ & 0x00000002) != 0)) {
+          shape_.makeImmutable(); // C
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -10588,6 +10655,75 @@ public final class DataProtoMessage {
       return data_.get(index);
     }
 
+    public static final int SHAPE_FIELD_NUMBER = 3;
+    private com.google.protobuf.Internal.LongList shape_;
+    /**
+     * <pre>
+     *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+     * </pre>
+     *
+     * <code>repeated int64 shape = 3;</code>
+     */
+    public java.util.List<java.lang.Long>
+        getShapeList() {
+      return shape_;
+    }
+    /**
+     * <pre>
+     *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+     * </pre>
+     *
+     * <code>repeated int64 shape = 3;</code>
+     */
+    public int getShapeCount() {
+      return shape_.size();
+    }
+    /**
+     * <pre>
+     *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+     * </pre>
+     *
+     * <code>repeated int64 shape = 3;</code>
+     */
+    public long getShape(int index) {
+      return shape_.getLong(index);
+    }
+    private int shapeMemoizedSerializedSize = -1;
+
+    public static final int LAYOUT_FIELD_NUMBER = 4;
+    private volatile java.lang.Object layout_;
+    /**
+     * <code>string layout = 4;</code>
+     */
+    public java.lang.String getLayout() {
+      java.lang.Object ref = layout_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
+      } else {
+        com.google.protobuf.ByteString bs = 
+            (com.google.protobuf.ByteString) ref;
+        java.lang.String s = bs.toStringUtf8();
+        layout_ = s;
+        return s;
+      }
+    }
+    /**
+     * <code>string layout = 4;</code>
+     */
+    public com.google.protobuf.ByteString
+        getLayoutBytes() {
+      java.lang.Object ref = layout_;
+      if (ref instanceof java.lang.String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
+        layout_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -10602,12 +10738,23 @@ public final class DataProtoMessage {
     @java.lang.Override
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
+      getSerializedSize();
       if (!getTypeBytes().isEmpty()) {
         com.google.protobuf.GeneratedMessageV3.writeString(output, 1, type_);
       }
       for (int i = 0; i < data_.size(); i++) {
         output.writeBytes(2, data_.get(i));
       }
+      if (getShapeList().size() > 0) {
+        output.writeUInt32NoTag(26);
+        output.writeUInt32NoTag(shapeMemoizedSerializedSize);
+      }
+      for (int i = 0; i < shape_.size(); i++) {
+        output.writeInt64NoTag(shape_.getLong(i));
+      }
+      if (!getLayoutBytes().isEmpty()) {
+        com.google.protobuf.GeneratedMessageV3.writeString(output, 4, layout_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -10629,6 +10776,23 @@ public final class DataProtoMessage {
         size += dataSize;
         size += 1 * getDataList().size();
       }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < shape_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeInt64SizeNoTag(shape_.getLong(i));
+        }
+        size += dataSize;
+        if (!getShapeList().isEmpty()) {
+          size += 1;
+          size += com.google.protobuf.CodedOutputStream
+              .computeInt32SizeNoTag(dataSize);
+        }
+        shapeMemoizedSerializedSize = dataSize;
+      }
+      if (!getLayoutBytes().isEmpty()) {
+        size += com.google.protobuf.GeneratedMessageV3.computeStringSize(4, layout_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -10648,6 +10812,10 @@ public final class DataProtoMessage {
           .equals(other.getType())) return false;
       if (!getDataList()
           .equals(other.getDataList())) return false;
+      if (!getShapeList()
+          .equals(other.getShapeList())) return false;
+      if (!getLayout()
+          .equals(other.getLayout())) return false;
       if (!unknownFields.equals(other.unknownFields)) return false;
       return true;
     }
@@ -10665,6 +10833,12 @@ public final class DataProtoMessage {
         hash = (37 * hash) + DATA_FIELD_NUMBER;
         hash = (53 * hash) + getDataList().hashCode();
       }
+      if (getShapeCount() > 0) {
+        hash = (37 * hash) + SHAPE_FIELD_NUMBER;
+        hash = (53 * hash) + getShapeList().hashCode();
+      }
+      hash = (37 * hash) + LAYOUT_FIELD_NUMBER;
+      hash = (53 * hash) + getLayout().hashCode();
       hash = (29 * hash) + unknownFields.hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -10802,6 +10976,10 @@ public final class DataProtoMessage {
 
         data_ = java.util.Collections.emptyList();
         bitField0_ = (bitField0_ & ~0x00000001);
+        shape_ = emptyLongList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        layout_ = "";
+
         return this;
       }
 
@@ -10835,6 +11013,12 @@ public final class DataProtoMessage {
           bitField0_ = (bitField0_ & ~0x00000001);
         }
         result.data_ = data_;
+        if (((bitField0_ & 0x00000002) != 0)) {
+          shape_.makeImmutable();
+          bitField0_ = (bitField0_ & ~0x00000002);
+        }
+        result.shape_ = shape_;
+        result.layout_ = layout_;
         onBuilt();
         return result;
       }
@@ -10897,6 +11081,20 @@ public final class DataProtoMessage {
           }
           onChanged();
         }
+        if (!other.shape_.isEmpty()) {
+          if (shape_.isEmpty()) {
+            shape_ = other.shape_;
+            bitField0_ = (bitField0_ & ~0x00000002);
+          } else {
+            ensureShapeIsMutable();
+            shape_.addAll(other.shape_);
+          }
+          onChanged();
+        }
+        if (!other.getLayout().isEmpty()) {
+          layout_ = other.layout_;
+          onChanged();
+        }
         this.mergeUnknownFields(other.unknownFields);
         onChanged();
         return this;
@@ -11068,6 +11266,170 @@ public final class DataProtoMessage {
         onChanged();
         return this;
       }
+
+      private com.google.protobuf.Internal.LongList shape_ = emptyLongList();
+      private void ensureShapeIsMutable() {
+        if (!((bitField0_ & 0x00000002) != 0)) {
+          shape_ = mutableCopy(shape_);
+          bitField0_ |= 0x00000002;
+         }
+      }
+      /**
+       * <pre>
+       *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+       * </pre>
+       *
+       * <code>repeated int64 shape = 3;</code>
+       */
+      public java.util.List<java.lang.Long>
+          getShapeList() {
+        return ((bitField0_ & 0x00000002) != 0) ?
+                 java.util.Collections.unmodifiableList(shape_) : shape_;
+      }
+      /**
+       * <pre>
+       *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+       * </pre>
+       *
+       * <code>repeated int64 shape = 3;</code>
+       */
+      public int getShapeCount() {
+        return shape_.size();
+      }
+      /**
+       * <pre>
+       *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+       * </pre>
+       *
+       * <code>repeated int64 shape = 3;</code>
+       */
+      public long getShape(int index) {
+        return shape_.getLong(index);
+      }
+      /**
+       * <pre>
+       *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+       * </pre>
+       *
+       * <code>repeated int64 shape = 3;</code>
+       */
+      public Builder setShape(
+          int index, long value) {
+        ensureShapeIsMutable();
+        shape_.setLong(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+       * </pre>
+       *
+       * <code>repeated int64 shape = 3;</code>
+       */
+      public Builder addShape(long value) {
+        ensureShapeIsMutable();
+        shape_.addLong(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+       * </pre>
+       *
+       * <code>repeated int64 shape = 3;</code>
+       */
+      public Builder addAllShape(
+          java.lang.Iterable<? extends java.lang.Long> values) {
+        ensureShapeIsMutable();
+        com.google.protobuf.AbstractMessageLite.Builder.addAll(
+            values, shape_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       *Shape ([height, width, channels]) and channel layout (BGR, RGB or GRAY), for RAW images only
+       * </pre>
+       *
+       * <code>repeated int64 shape = 3;</code>
+       */
+      public Builder clearShape() {
+        shape_ = emptyLongList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        onChanged();
+        return this;
+      }
+
+      private java.lang.Object layout_ = "";
+      /**
+       * <code>string layout = 4;</code>
+       */
+      public java.lang.String getLayout() {
+        java.lang.Object ref = layout_;
+        if (!(ref instanceof java.lang.String)) {
+          com.google.protobuf.ByteString bs =
+              (com.google.protobuf.ByteString) ref;
+          java.lang.String s = bs.toStringUtf8();
+          layout_ = s;
+          return s;
+        } else {
+          return (java.lang.String) ref;
+        }
+      }
+      /**
+       * <code>string layout = 4;</code>
+       */
+      public com.google.protobuf.ByteString
+          getLayoutBytes() {
+        java.lang.Object ref = layout_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          layout_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>string layout = 4;</code>
+       */
+      public Builder setLayout(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  
+        layout_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>string layout = 4;</code>
+       */
+      public Builder clearLayout() {
+        
+        layout_ = getDefaultInstance().getLayout();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>string layout = 4;</code>
+       */
+      public Builder setLayoutBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  checkByteStringIsUtf8(value);
+        
+        layout_ = value;
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -15422,32 +15784,32 @@ public final class DataProtoMessage {
       " \001(\0132\037.ai.konduit.serving.NDArrayListH\000\022" +
       "9\n\010bboxList\030\007 \001(\0132%.ai.konduit.serving.B" +
       "oundingBoxesListH\000\022.\n\005pList\030\010 \001(\0132\035.ai.k" +
-      "onduit.serving.PointListH\000B\006\n\004list\"#\n\005Im" +
-      "age\022\014\n\004type\030\001 \001(\t\022\014\n\004data\030\002 \003(\014\"\212\002\n\007NDAr" +
-      "ray\022\r\n\005shape\030\001 \003(\003\022\r\n\005array\030\003 \003(\014\0223\n\004typ" +
-      "e\030\002 \001(\0162%.ai.konduit.serving.NDArray.Val" +
-      "ueType\"\253\001\n\tValueType\022\n\n\006DOUBLE\020\000\022\t\n\005FLOA" +
-      "T\020\001\022\013\n\007FLOAT16\020\002\022\014\n\010BFLOAT16\020\003\022\t\n\005INT64\020" +
-      "\004\022\t\n\005INT32\020\005\022\t\n\005INT16\020\006\022\010\n\004INT8\020\007\022\n\n\006UIN" +
-      "T64\020\010\022\n\n\006UINT32\020\t\022\n\n\006UINT16\020\n\022\t\n\005UINT8\020\013" +
-      "\022\010\n\004BOOL\020\014\022\010\n\004UTF8\020\r\"\342\001\n\013BoundingBox\022\n\n\002" +
-      "x0\030\001 \001(\001\022\n\n\002x1\030\002 \001(\001\022\n\n\002y0\030\003 \001(\001\022\n\n\002y1\030\004" +
-      " \001(\001\022\n\n\002cx\030\005 \001(\001\022\n\n\002cy\030\006 \001(\001\022\t\n\001h\030\007 \001(\001\022" +
-      "\t\n\001w\030\010 \001(\001\022\r\n\005label\030\t \001(\t\022\023\n\013probability" +
-      "\030\n \001(\001\0225\n\004type\030\013 \001(\0162\'.ai.konduit.servin" +
-      "g.BoundingBox.BoxType\"\032\n\007BoxType\022\007\n\003CHW\020" +
-      "\000\022\006\n\002XY\020\001\"\245\002\n\007DataMap\022;\n\010mapItems\030\001 \003(\0132" +
-      ").ai.konduit.serving.DataMap.MapItemsEnt" +
-      "ry\022;\n\010metaData\030\002 \003(\0132).ai.konduit.servin" +
-      "g.DataMap.MetaDataEntry\032O\n\rMapItemsEntry" +
-      "\022\013\n\003key\030\001 \001(\t\022-\n\005value\030\002 \001(\0132\036.ai.kondui" +
-      "t.serving.DataScheme:\0028\001\032O\n\rMetaDataEntr" +
-      "y\022\013\n\003key\030\001 \001(\t\022-\n\005value\030\002 \001(\0132\036.ai.kondu" +
-      "it.serving.DataScheme:\0028\001\";\n\005Point\022\r\n\005la" +
-      "bel\030\001 \001(\t\022\023\n\013probability\030\002 \001(\001\022\016\n\006coords" +
-      "\030\003 \003(\001BB\n.ai.konduit.serving.pipeline.im" +
-      "pl.data.protobufB\020DataProtoMessageb\006prot" +
-      "o3"
+      "onduit.serving.PointListH\000B\006\n\004list\"B\n\005Im" +
+      "age\022\014\n\004type\030\001 \001(\t\022\014\n\004data\030\002 \003(\014\022\r\n\005shape" +
+      "\030\003 \003(\003\022\016\n\006layout\030\004 \001(\t\"\212\002\n\007NDArray\022\r\n\005sh" +
+      "ape\030\001 \003(\003\022\r\n\005array\030\003 \003(\014\0223\n\004type\030\002 \001(\0162%" +
+      ".ai.konduit.serving.NDArray.ValueType\"\253\001" +
+      "\n\tValueType\022\n\n\006DOUBLE\020\000\022\t\n\005FLOAT\020\001\022\013\n\007FL" +
+      "OAT16\020\002\022\014\n\010BFLOAT16\020\003\022\t\n\005INT64\020\004\022\t\n\005INT3" +
+      "2\020\005\022\t\n\005INT16\020\006\022\010\n\004INT8\020\007\022\n\n\006UINT64\020\010\022\n\n\006" +
+      "UINT32\020\t\022\n\n\006UINT16\020\n\022\t\n\005UINT8\020\013\022\010\n\004BOOL\020" +
+      "\014\022\010\n\004UTF8\020\r\"\342\001\n\013BoundingBox\022\n\n\002x0\030\001 \001(\001\022" +
+      "\n\n\002x1\030\002 \001(\001\022\n\n\002y0\030\003 \001(\001\022\n\n\002y1\030\004 \001(\001\022\n\n\002c" +
+      "x\030\005 \001(\001\022\n\n\002cy\030\006 \001(\001\022\t\n\001h\030\007 \001(\001\022\t\n\001w\030\010 \001(" +
+      "\001\022\r\n\005label\030\t \001(\t\022\023\n\013probability\030\n \001(\001\0225\n" +
+      "\004type\030\013 \001(\0162\'.ai.konduit.serving.Boundin" +
+      "gBox.BoxType\"\032\n\007BoxType\022\007\n\003CHW\020\000\022\006\n\002XY\020\001" +
+      "\"\245\002\n\007DataMap\022;\n\010mapItems\030\001 \003(\0132).ai.kond" +
+      "uit.serving.DataMap.MapItemsEntry\022;\n\010met" +
+      "aData\030\002 \003(\0132).ai.konduit.serving.DataMap" +
+      ".MetaDataEntry\032O\n\rMapItemsEntry\022\013\n\003key\030\001" +
+      " \001(\t\022-\n\005value\030\002 \001(\0132\036.ai.konduit.serving" +
+      ".DataScheme:\0028\001\032O\n\rMetaDataEntry\022\013\n\003key\030" +
+      "\001 \001(\t\022-\n\005value\030\002 \001(\0132\036.ai.konduit.servin" +
+      "g.DataScheme:\0028\001\";\n\005Point\022\r\n\005label\030\001 \001(\t" +
+      "\022\023\n\013probability\030\002 \001(\001\022\016\n\006coords\030\003 \003(\001BB\n" +
+      ".ai.konduit.serving.pipeline.impl.data.p" +
+      "rotobufB\020DataProtoMessageb\006proto3"
     };
     descriptor = com.google.protobuf.Descriptors.FileDescriptor
       .internalBuildGeneratedFileFrom(descriptorData,
@@ -15518,7 +15880,7 @@ public final class DataProtoMessage {
     internal_static_ai_konduit_serving_Image_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_ai_konduit_serving_Image_descriptor,
-        new java.lang.String[] { "Type", "Data", });
+        new java.lang.String[] { "Type", "Data", "Shape", "Layout", });
     internal_static_ai_konduit_serving_NDArray_descriptor =
       getDescriptor().getMessageTypes().get(11);
     internal_static_ai_konduit_serving_NDArray_fieldAccessorTable = new
@@ -40,6 +40,7 @@ public class JavaImageFactory implements ImageFactory {
         s.add(Png.class);
         s.add(Jpeg.class);
         s.add(Bmp.class);
+        s.add(Gif.class);
         s.add(BufferedImage.class);
     }
 
@@ -71,6 +72,8 @@ public class JavaImageFactory implements ImageFactory {
                 return new JpegImage(new Jpeg(f));
             } else if(name.endsWith(".bmp")){
                 return new BmpImage(new Bmp(f));
+            } else if(name.endsWith(".gif")){
+                return new GifImage(new Gif(f));
             }
             throw new DataLoadingException("Unable to create Image object: unable to guess image file format from File" +
                     " path/filename, or format not supported - " + f.getAbsolutePath());
@@ -80,6 +83,8 @@ public class JavaImageFactory implements ImageFactory {
             return new JpegImage((Jpeg)o);
         } else if(o instanceof Bmp){
             return new BmpImage((Bmp)o);
+        } else if(o instanceof Gif){
+            return new GifImage((Gif)o);
         } else if(o instanceof BufferedImage){
             return new BImage((BufferedImage) o);
         } else {
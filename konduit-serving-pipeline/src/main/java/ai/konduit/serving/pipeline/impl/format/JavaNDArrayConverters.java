@@ -22,6 +22,7 @@ import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.api.data.ValueType;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
 import ai.konduit.serving.pipeline.api.format.NDArrayConverter;
 import ai.konduit.serving.pipeline.api.format.NDArrayFormat;
 import lombok.AllArgsConstructor;
@@ -107,7 +108,7 @@ public class JavaNDArrayConverters {
             long bufferLength = prod * 4L;  //Float = 4 bytes per element
             Preconditions.checkState(prod < Integer.MAX_VALUE, "More than 2 billion bytes in Java float array - unable to convert to SerializedNDArray");
 
-            ByteBuffer bb = ByteBuffer.allocateDirect((int)bufferLength).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer bb = BufferPool.allocate(bufferLength);
             FloatBuffer fb = bb.asFloatBuffer();
 
             int rank = rank(o);
@@ -240,7 +241,7 @@ public class JavaNDArrayConverters {
             long bufferLength = prod * 8L;  //Double = 8 bytes per element
             Preconditions.checkState(prod < Integer.MAX_VALUE, "More than 2 billion bytes in Java double array - unable to convert to SerializedNDArray");
 
-            ByteBuffer bb = ByteBuffer.allocateDirect((int)bufferLength).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer bb = BufferPool.allocate(bufferLength);
             DoubleBuffer fb = bb.asDoubleBuffer();
 
             int rank = rank(o);
@@ -373,7 +374,7 @@ public class JavaNDArrayConverters {
             long bufferLength = prod * 1L;  //Float = 4 bytes per element
             Preconditions.checkState(prod < Integer.MAX_VALUE, "More than 2 billion bytes in Java byte array - unable to convert to SerializedNDArray");
 
-            ByteBuffer bb = ByteBuffer.allocateDirect((int)bufferLength).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer bb = BufferPool.allocate(bufferLength);
             //ByteBuffer byteBuffer = bb.asReadOnlyBuffer();
 
             int rank = rank(o);
@@ -506,7 +507,7 @@ public class JavaNDArrayConverters {
             long bufferLength = prod * 4L;  //Float = 4 bytes per element
             Preconditions.checkState(prod < Integer.MAX_VALUE, "More than 2 billion bytes in Java short array - unable to convert to SerializedNDArray");
 
-            ByteBuffer bb = ByteBuffer.allocateDirect((int)bufferLength).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer bb = BufferPool.allocate(bufferLength);
             ShortBuffer sb = bb.asShortBuffer();
 
             int rank = rank(o);
@@ -639,7 +640,7 @@ public class JavaNDArrayConverters {
             long bufferLength = prod * 32L;  //Float = 4 bytes per element
             Preconditions.checkState(prod < Integer.MAX_VALUE, "More than 2 billion bytes in Java int array - unable to convert to SerializedNDArray");
 
-            ByteBuffer bb = ByteBuffer.allocateDirect((int)bufferLength).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer bb = BufferPool.allocate(bufferLength);
             IntBuffer ib = bb.asIntBuffer();
 
             int rank = rank(o);
@@ -772,7 +773,7 @@ public class JavaNDArrayConverters {
             long bufferLength = prod * 64L;  //Float = 4 bytes per element
             Preconditions.checkState(prod < Integer.MAX_VALUE, "More than 2 billion bytes in Java long array - unable to convert to SerializedNDArray");
 
-            ByteBuffer bb = ByteBuffer.allocateDirect((int)bufferLength).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer bb = BufferPool.allocate(bufferLength);
             LongBuffer lb = bb.asLongBuffer();
 
             int rank = rank(o);
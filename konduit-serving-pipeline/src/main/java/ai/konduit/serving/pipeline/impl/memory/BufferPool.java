@@ -0,0 +1,289 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.memory;
+
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import ai.konduit.serving.pipeline.settings.constants.PropertiesConstants;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of direct (little endian) byte buffers, used for NDArray data (see
+ * {@link ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray}).<br>
+ * Direct buffers are otherwise only freed by the garbage collector, which at high request rates results in off-heap
+ * memory growth, OutOfMemoryErrors due to -XX:MaxDirectMemorySize, and bursts of GC activity to free them.<br>
+ * <br>
+ * Buffers are only pooled while a {@link BufferScope} is attached to the allocating thread: the scope determines when
+ * they are returned to the pool. Otherwise, {@link #allocate(long)} simply allocates a new buffer.<br>
+ * Pooled buffers are organized by size class (powers of 2, from {@value #MIN_BUFFER_BYTES} bytes), with a cache per
+ * thread (used when buffers are released on the thread that pooled them previously) and a shared arena.<br>
+ * Limits can be set using the system properties {@link PropertiesConstants#BUFFER_POOL_ENABLED},
+ * {@link PropertiesConstants#BUFFER_POOL_MAX_BYTES}, {@link PropertiesConstants#BUFFER_POOL_THREAD_CACHE_BYTES} and
+ * {@link PropertiesConstants#BUFFER_POOL_MAX_BUFFER_BYTES}.<br>
+ * Pool hits, misses, outstanding (allocated and not yet released) and idle bytes are reported as metrics.<br>
+ * Note that the contents of a pooled buffer are undefined (not zeroed) when allocated.
+ */
+@Slf4j
+public class BufferPool {
+
+    public static final String METRIC_HITS = "konduit.buffer.pool.hits";
+    public static final String METRIC_MISSES = "konduit.buffer.pool.misses";
+    public static final String METRIC_OUTSTANDING_BYTES = "konduit.buffer.pool.outstanding.bytes";
+    public static final String METRIC_IDLE_BYTES = "konduit.buffer.pool.idle.bytes";
+
+    public static final int MIN_BUFFER_BYTES = 1024;
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_THREAD_CACHE_BYTES = 16L * 1024 * 1024;
+    public static final long DEFAULT_MAX_BUFFER_BYTES = 64L * 1024 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_BYTES);
+
+    private static final boolean enabled = Boolean.parseBoolean(System.getProperty(PropertiesConstants.BUFFER_POOL_ENABLED, "true"));
+    private static final long maxBytes = longProperty(PropertiesConstants.BUFFER_POOL_MAX_BYTES, DEFAULT_MAX_BYTES);
+    private static final long threadCacheBytes = longProperty(PropertiesConstants.BUFFER_POOL_THREAD_CACHE_BYTES, DEFAULT_THREAD_CACHE_BYTES);
+    private static final int maxBufferBytes = (int) Math.min(1 << 30, longProperty(PropertiesConstants.BUFFER_POOL_MAX_BUFFER_BYTES, DEFAULT_MAX_BUFFER_BYTES));
+    private static final int numSizeClasses = Math.max(1, sizeClass(maxBufferBytes) + 1);
+
+    private static final ConcurrentLinkedDeque<ByteBuffer>[] shared = newDeques(numSizeClasses);
+    private static final AtomicLong sharedBytes = new AtomicLong();
+    //Thread caches are only created by threads that allocate pooled buffers
+    private static final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong outstandingBytes = new AtomicLong();
+    private static final AtomicLong idleBytes = new AtomicLong();
+
+    static {
+        try {
+            MeterRegistry registry = MicrometerRegistry.getRegistry();
+            FunctionCounter.builder(METRIC_HITS, hits, AtomicLong::get)
+                    .description("Number of buffer allocations served from the buffer pool")
+                    .register(registry);
+            FunctionCounter.builder(METRIC_MISSES, misses, AtomicLong::get)
+                    .description("Number of pooled buffer allocations that required allocating a new buffer")
+                    .register(registry);
+            Gauge.builder(METRIC_OUTSTANDING_BYTES, outstandingBytes, AtomicLong::get)
+                    .description("Bytes of pooled buffers in use, not yet released to the pool")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder(METRIC_IDLE_BYTES, idleBytes, AtomicLong::get)
+                    .description("Bytes of buffers held by the pool, available for reuse")
+                    .baseUnit("bytes")
+                    .register(registry);
+        } catch (Throwable t) {
+            log.warn("Unable to register buffer pool metrics", t);
+        }
+    }
+
+    private BufferPool() {
+    }
+
+    /**
+     * Allocate a direct buffer with the specified capacity, in little endian byte order, with position 0 and limit
+     * equal to the capacity. If a {@link BufferScope} is attached to the current thread, the buffer is taken from the
+     * pool, and is only valid until the scope is closed.
+     *
+     * @param bytes Capacity of the buffer, in bytes
+     * @return The buffer
+     */
+    public static ByteBuffer allocate(long bytes) {
+        Preconditions.checkArgument(bytes >= 0 && bytes <= Integer.MAX_VALUE, "Invalid buffer size: %s bytes", bytes);
+        int length = (int) bytes;
+        BufferScope scope = BufferScope.current();
+        if (!enabled || scope == null || length == 0)
+            return ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (length > maxBufferBytes) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int sizeClass = sizeClass(length);
+        ThreadCache tc = threadCache.get();
+        if (tc == null) {
+            tc = new ThreadCache(numSizeClasses);
+            threadCache.set(tc);
+        }
+
+        ByteBuffer pooled = tc.poll(sizeClass);
+        if (pooled == null) {
+            pooled = shared[sizeClass].pollFirst();
+            if (pooled != null) {
+                sharedBytes.addAndGet(-pooled.capacity());
+                idleBytes.addAndGet(-pooled.capacity());
+            }
+        }
+
+        if (pooled == null) {
+            misses.incrementAndGet();
+            pooled = ByteBuffer.allocateDirect(MIN_BUFFER_BYTES << sizeClass);
+        } else {
+            hits.incrementAndGet();
+        }
+
+        if (!scope.add(pooled)) {
+            //Scope was closed concurrently: don't pool this buffer
+            return ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        outstandingBytes.addAndGet(pooled.capacity());
+
+        ByteBuffer out = pooled.duplicate();
+        out.clear().limit(length);
+        return out.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Return buffers to the pool: to the current thread's cache if it has one with space, otherwise to the shared arena.
+     * Buffers beyond the pool limits are left to the garbage collector.
+     */
+    static void release(List<ByteBuffer> buffers) {
+        ThreadCache tc = threadCache.get();
+        for (ByteBuffer b : buffers) {
+            int capacity = b.capacity();
+            outstandingBytes.addAndGet(-capacity);
+            int sizeClass = sizeClass(capacity);
+            if (tc != null && tc.offer(sizeClass, b)) {
+                idleBytes.addAndGet(capacity);
+            } else if (sharedBytes.addAndGet(capacity) <= maxBytes) {
+                shared[sizeClass].offerFirst(b);
+                idleBytes.addAndGet(capacity);
+            } else {
+                sharedBytes.addAndGet(-capacity);
+            }
+        }
+    }
+
+    /**
+     * Remove all idle buffers from the shared arena and from the current thread's cache, leaving them to the garbage
+     * collector. Buffers that are currently in use are not affected.
+     */
+    public static void clear() {
+        for (ConcurrentLinkedDeque<ByteBuffer> d : shared) {
+            ByteBuffer b;
+            while ((b = d.pollFirst()) != null) {
+                sharedBytes.addAndGet(-b.capacity());
+                idleBytes.addAndGet(-b.capacity());
+            }
+        }
+        ThreadCache tc = threadCache.get();
+        if (tc != null) {
+            idleBytes.addAndGet(-tc.bytes);
+            threadCache.remove();
+        }
+    }
+
+    /**
+     * @return Number of pooled allocations served by reusing a buffer
+     */
+    public static long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of pooled allocations that required allocating a new buffer
+     */
+    public static long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of bytes of pooled buffers currently in use (allocated within a scope that is not yet closed)
+     */
+    public static long outstandingBytes() {
+        return outstandingBytes.get();
+    }
+
+    /**
+     * @return Number of bytes of idle buffers available for reuse
+     */
+    public static long idleBytes() {
+        return idleBytes.get();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    //Size class for the given number of bytes: index of the smallest power of 2 (>= MIN_BUFFER_BYTES) that fits it
+    private static int sizeClass(int bytes) {
+        if (bytes <= MIN_BUFFER_BYTES)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(bytes - 1) - MIN_SHIFT;
+    }
+
+    private static long longProperty(String name, long defaultValue) {
+        String s = System.getProperty(name);
+        if (s == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for system property {}: \"{}\" - using default value {}", name, s, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ConcurrentLinkedDeque<T>[] newDeques(int n) {
+        ConcurrentLinkedDeque<T>[] out = new ConcurrentLinkedDeque[n];
+        for (int i = 0; i < n; i++)
+            out[i] = new ConcurrentLinkedDeque<>();
+        return out;
+    }
+
+    private static class ThreadCache {
+        private final ArrayDeque<ByteBuffer>[] buffers;
+        private long bytes;
+
+        @SuppressWarnings("unchecked")
+        private ThreadCache(int numSizeClasses) {
+            buffers = new ArrayDeque[numSizeClasses];
+            for (int i = 0; i < numSizeClasses; i++)
+                buffers[i] = new ArrayDeque<>();
+        }
+
+        private ByteBuffer poll(int sizeClass) {
+            ByteBuffer b = buffers[sizeClass].pollFirst();
+            if (b != null) {
+                bytes -= b.capacity();
+                idleBytes.addAndGet(-b.capacity());
+            }
+            return b;
+        }
+
+        private boolean offer(int sizeClass, ByteBuffer b) {
+            if (bytes + b.capacity() > threadCacheBytes)
+                return false;
+            buffers[sizeClass].offerFirst(b);
+            bytes += b.capacity();
+            return true;
+        }
+    }
+}
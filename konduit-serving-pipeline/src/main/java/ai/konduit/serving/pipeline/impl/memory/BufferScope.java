@@ -0,0 +1,119 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.memory;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The lifetime of the buffers allocated via {@link BufferPool#allocate(long)} - usually a single request.<br>
+ * While a scope is attached to a thread, buffers allocated on that thread are taken from the pool, and are returned to
+ * it when the scope is closed. Allocations on threads without an attached scope are not pooled.<br>
+ * Usage:
+ * <pre>
+ * {@code
+ * try(BufferScope scope = BufferScope.open()){
+ *     Data out = executor.exec(in);
+ *     byte[] response = out.asBytes();
+ * }
+ * }</pre>
+ * A scope may also be opened on one thread and closed on another: {@link #detach()} it from the thread that executed
+ * the pipeline, and {@link #close()} it once the response has been written.<br>
+ * <b>Note</b>: Closing the scope invalidates all NDArrays backed by buffers allocated within it, including conversions
+ * of other arrays performed within it. Any values that must outlive the scope (caches, state kept between requests)
+ * must be copied.
+ */
+public class BufferScope implements Closeable {
+
+    private static final ThreadLocal<BufferScope> CURRENT = new ThreadLocal<>();
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private volatile boolean closed;
+    private BufferScope previous;
+
+    /**
+     * Create a new scope, and attach it to the current thread
+     */
+    public static BufferScope open() {
+        return new BufferScope().attach();
+    }
+
+    /**
+     * @return The scope attached to the current thread, or null if no scope is attached
+     */
+    public static BufferScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attach this scope to the current thread. Any scope already attached to the thread is restored on {@link #detach()}
+     */
+    public BufferScope attach() {
+        previous = CURRENT.get();
+        CURRENT.set(this);
+        return this;
+    }
+
+    /**
+     * Detach this scope from the current thread, if attached. Buffers allocated within the scope remain valid until
+     * {@link #close()} is called
+     */
+    public void detach() {
+        if (CURRENT.get() == this) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            previous = null;
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Track a pooled buffer
+     * @return False if the scope is already closed - in which case the buffer should not be pooled
+     */
+    synchronized boolean add(ByteBuffer buffer) {
+        if (closed)
+            return false;
+        buffers.add(buffer);
+        return true;
+    }
+
+    /**
+     * Detach the scope (if attached to the current thread), and return all buffers allocated within it to the pool
+     */
+    @Override
+    public void close() {
+        detach();
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        BufferPool.release(buffers);
+        buffers.clear();
+    }
+}
@@ -25,10 +25,13 @@ import ai.konduit.serving.pipeline.api.pipeline.Trigger;
 import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
 import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 @Slf4j
 public class AsyncPipelineExecutor implements PipelineExecutor {
@@ -36,6 +39,7 @@ public class AsyncPipelineExecutor implements PipelineExecutor {
     protected final AsyncPipeline pipeline;
     protected final Trigger trigger;
     protected final PipelineExecutor underlyingExec;
+    protected final List<Consumer<Data>> listeners = new CopyOnWriteArrayList<>();
 
 
     public AsyncPipelineExecutor(AsyncPipeline pipeline){
@@ -44,7 +48,39 @@ public class AsyncPipelineExecutor implements PipelineExecutor {
         this.underlyingExec = pipeline.underlying().executor();
 
         //Set up trigger callback:
-        trigger.setCallback(underlyingExec::exec);
+        trigger.setCallback(this::execUnderlying);
+    }
+
+    /**
+     * Add a listener that is called with each output of the underlying pipeline, as it is produced by the trigger.
+     * This allows outputs to be pushed to consumers, instead of being polled via {@link #exec(Data)}.<br>
+     * Note that listeners are called from the trigger's execution thread, and should not block.
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(@NonNull Consumer<Data> listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener previously added via {@link #addListener(Consumer)}
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(@NonNull Consumer<Data> listener){
+        listeners.remove(listener);
+    }
+
+    protected Data execUnderlying(Data data){
+        Data out = underlyingExec.exec(data);
+        for(Consumer<Data> l : listeners){
+            try {
+                l.accept(out);
+            } catch (Throwable t){
+                log.error("Error in AsyncPipelineExecutor listener", t);
+            }
+        }
+        return out;
     }
 
     @Override
@@ -35,7 +35,7 @@ import java.util.List;
 public abstract class BasePipelineExecutor implements PipelineExecutor {
 
 
-    PipelineStepRunner getRunner(@NonNull PipelineStep step) {
+    public static PipelineStepRunner getRunner(@NonNull PipelineStep step) {
 
         List<PipelineStepRunnerFactory> factories = PipelineRegistry.getStepRunnerFactories();
 
@@ -46,7 +46,7 @@ import java.util.UUID;
  */
 @Data
 @Accessors(fluent = true)
-@JsonPropertyOrder({"outputStep", "steps"})
+@JsonPropertyOrder({"outputStep", "steps", "parallelism"})
 @Schema(description = "A type of pipeline that defines the execution flow in a directed acyclic graph (DAG) of configurable steps. " +
         "The execution flow can also contain optional steps.")
 @JsonName("GRAPH_PIPELINE")
@@ -64,12 +64,24 @@ public class GraphPipeline implements Pipeline {
     @EqualsAndHashCode.Exclude
     private String id;
 
+    @Schema(description = "Maximum number of independent branches of the graph to execute in parallel. If 0 or 1 (default), " +
+            "all steps are executed sequentially on the calling thread. If greater than 1, ready pipeline steps are " +
+            "dispatched to a dedicated fork-join pool with this parallelism, joining at merge and any steps.",
+            defaultValue = "0")
+    private int parallelism;
+
+    public GraphPipeline(Map<String, GraphStep> steps, String outputStep, String id){
+        this(steps, outputStep, id, 0);
+    }
+
     public GraphPipeline(@JsonProperty("steps") Map<String, GraphStep> steps,
                          @JsonProperty("outputStep") String outputStep,
-                         @JsonProperty("id") String id){
+                         @JsonProperty("id") String id,
+                         @JsonProperty("parallelism") int parallelism){
         this.steps = steps;
         this.outputStep = outputStep;
         this.id = id;
+        this.parallelism = parallelism;
     }
 
     @Override
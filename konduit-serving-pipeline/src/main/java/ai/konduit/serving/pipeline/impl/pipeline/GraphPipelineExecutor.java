@@ -18,64 +18,260 @@
 
 package ai.konduit.serving.pipeline.impl.pipeline;
 
-import ai.konduit.serving.pipeline.api.context.Profiler;
-import ai.konduit.serving.pipeline.api.context.ProfilerConfig;
+import ai.konduit.serving.pipeline.api.context.*;
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.impl.context.DefaultContext;
 import ai.konduit.serving.pipeline.impl.pipeline.graph.*;
-import ai.konduit.serving.pipeline.impl.pipeline.graph.SwitchOutput;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.nd4j.common.base.Preconditions;
 import org.slf4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * An executer for {@link GraphPipeline} instances
+ * An executer for {@link GraphPipeline} instances.<br>
+ * The graph is compiled once, at construction, into an integer-indexed execution plan: steps are assigned indices in
+ * topological order (index 0 being the graph input), and the inputs, consumers and fan-in count of every step are
+ * precomputed as arrays. Each call to {@link #exec(Data)} then only allocates a few small arrays sized by the number of
+ * steps, instead of rescanning the graph and populating maps after every step.
+ * <p>
+ * By default all steps are executed sequentially on the calling thread. If {@link GraphPipeline#parallelism()} is
+ * greater than 1 (or a {@link #branchExecutor(ExecutorService)} is set), independent branches are executed in parallel:
+ * ready {@link PipelineGraphStep}s are dispatched to the branch executor, while the cheap Merge/Switch/Any steps are
+ * executed on the calling thread as their inputs complete. Once the output step has been executed - or once an
+ * {@link AnyStep} has fired and the other branches feeding into it are no longer needed - any steps still in flight are
+ * cancelled, by interrupting the threads executing them. With an executor set via
+ * {@link #branchExecutor(ExecutorService)} this depends on the executor: {@link ForkJoinPool} tasks, for example, are not
+ * interrupted when cancelled, and run to completion. Profiler events are recorded on the thread each step is executed
+ * on, so each branch shows up separately.
+ * The latency of each {@link PipelineGraphStep} is recorded to {@link SequencePipelineExecutor#STEP_LATENCY_TIMER},
+ * with the same tags as for sequence pipelines: pipeline, step name and step index (here, the topological index).
  *
  * @author Alex Black
  */
 @Slf4j
-@AllArgsConstructor
 public class GraphPipelineExecutor extends BasePipelineExecutor {
 
+    private static final int INPUT = 0;
+    private static final int PIPELINE_STEP = 1;
+    private static final int MERGE = 2;
+    private static final int SWITCH = 3;
+    private static final int SWITCH_OUTPUT = 4;
+    private static final int ANY = 5;
+
     private final GraphPipeline pipeline;
-    private Map<String,PipelineStepRunner> runners;
-    private Map<String,List<String>> inputsFor;     //Key: a step. Value: The steps that this is an input for: i.e., key -> X exists
+    private final String[] names;               //Step names, in topological order. Index 0 is always the graph input
+    private final int[] kinds;                  //One of INPUT, PIPELINE_STEP, etc
+    private final int[][] inputs;               //Indices of the inputs for each step
+    private final int[][] consumers;            //Indices of the steps that each step is an input for; repeated if used as an input multiple times
+    private final int[] fanIn;                  //Number of input arrivals required before each step can be executed
+    private final int[] switchOutputNum;        //For SwitchOutput steps: the switch output number. -1 otherwise
+    private final SwitchFn[] switchFns;         //For SwitchStep steps: the switch function. null otherwise
+    private final PipelineStepRunner[] runners; //For PipelineGraphStep steps: the runner. null otherwise
+    private final Metrics[] metrics;            //For PipelineGraphStep steps: the metrics for the step. null otherwise
+    private final io.micrometer.core.instrument.Timer[] stepTimers;    //For PipelineGraphStep steps: step latency. null otherwise
+    private final int outputIdx;
+    private volatile Context[] contexts;
+    private final Context[] unprofiledContexts;     //For executions that aren't sampled by the profiler
     private ProfilerConfig profilerConfig;
+    private Profiler profiler = new NoOpProfiler();
+    private ExecutorService branchExecutor;
+    private boolean ownsBranchExecutor;
 
     public GraphPipelineExecutor(GraphPipeline pipeline){
         this.pipeline = pipeline;
 
         Map<String, GraphStep> steps = pipeline.steps();
+        List<String> order = topologicalOrder(steps);
+        int n = order.size();
 
-        inputsFor = new HashMap<>();
-        for(Map.Entry<String, GraphStep> e : steps.entrySet()){
-            GraphStep g = e.getValue();
-            List<String> inputs = g.inputs();
-            for(String s : inputs){
-                List<String> l = inputsFor.computeIfAbsent(s, x -> new ArrayList<>());
-                l.add(e.getKey());
+        Map<String,Integer> indices = new HashMap<>();
+        for( int i=0; i<n; i++ ){
+            indices.put(order.get(i), i);
+        }
+
+        names = order.toArray(new String[n]);
+        kinds = new int[n];
+        inputs = new int[n][0];
+        consumers = new int[n][0];
+        fanIn = new int[n];
+        switchOutputNum = new int[n];
+        switchFns = new SwitchFn[n];
+        runners = new PipelineStepRunner[n];
+        metrics = new Metrics[n];
+        stepTimers = new io.micrometer.core.instrument.Timer[n];
+        Arrays.fill(switchOutputNum, -1);
+        int[] numConsumers = new int[n];
+
+        for( int i=1; i<n; i++ ){
+            GraphStep g = steps.get(names[i]);
+            List<String> in = g.inputs();
+            inputs[i] = new int[in.size()];
+            for( int j=0; j<in.size(); j++ ){
+                inputs[i][j] = indices.get(in.get(j));
+                numConsumers[inputs[i][j]]++;
+            }
+
+            if(g instanceof MergeStep){
+                kinds[i] = MERGE;
+                fanIn[i] = inputs[i].length;
+            } else if(g instanceof SwitchStep){
+                kinds[i] = SWITCH;
+                fanIn[i] = 1;
+                switchFns[i] = ((SwitchStep) g).switchFn();
+            } else if(g instanceof AnyStep){
+                //Can execute the Any step as soon as any one of the inputs is available
+                kinds[i] = ANY;
+                fanIn[i] = 1;
+            } else if(g instanceof SwitchOutput){
+                kinds[i] = SWITCH_OUTPUT;
+                fanIn[i] = 1;
+                switchOutputNum[i] = ((SwitchOutput) g).outputNum();
+            } else if(g instanceof PipelineGraphStep){
+                Preconditions.checkState(in.size() == 1, "PipelineSteps should only have 1 input: got inputs %s", in);
+                kinds[i] = PIPELINE_STEP;
+                fanIn[i] = 1;
+                runners[i] = getRunner(g.getStep());
+                metrics[i] = new PipelineMetrics(pipeline.id(), names[i], g.getStep().name());
+                stepTimers[i] = io.micrometer.core.instrument.Timer.builder(SequencePipelineExecutor.STEP_LATENCY_TIMER)
+                        .tag("pipeline", pipeline.id())
+                        .tag("step", names[i])
+                        .tag("index", String.valueOf(i))
+                        .register(MicrometerRegistry.getRegistry());
+            } else {
+                throw new UnsupportedOperationException("Execution support not yet implemented: " + g);
+            }
+        }
+
+        for( int i=0; i<n; i++ ){
+            consumers[i] = new int[numConsumers[i]];
+        }
+        int[] pos = new int[n];
+        for( int i=1; i<n; i++ ){
+            for(int in : inputs[i]){
+                consumers[in][pos[in]++] = i;
             }
         }
 
-        //Initialize runners:
-        runners = new HashMap<>();
+        String out = pipeline.outputStep();
+        Preconditions.checkState(out != null && indices.containsKey(out), "Output step \"%s\" is not present in the graph", out);
+        outputIdx = indices.get(out);
+        contexts = createContexts(profiler);
+        unprofiledContexts = contexts;
+
+        if(pipeline.parallelism() > 1){
+            String prefix = "konduit-graph-" + pipeline.id() + "-";
+            AtomicInteger threadIdx = new AtomicInteger();
+            //A thread pool (not a ForkJoinPool) so that cancelling a step interrupts the thread executing it
+            branchExecutor = Executors.newFixedThreadPool(pipeline.parallelism(), r -> {
+                Thread t = new Thread(r, prefix + threadIdx.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+            ownsBranchExecutor = true;
+        }
+    }
+
+    private Context[] createContexts(Profiler profiler){
+        Context[] c = new Context[names.length];
+        for( int i=0; i<c.length; i++ ){
+            if(metrics[i] != null)
+                c[i] = new DefaultContext(metrics[i], profiler);
+        }
+        return c;
+    }
+
+    /**
+     * Set the executor used to execute independent branches of the graph in parallel, replacing the one (if any)
+     * created for {@link GraphPipeline#parallelism()}. The provided executor is not shut down when this executor is
+     * closed.
+     *
+     * @param executor Executor for the pipeline steps. If null: execute all steps sequentially on the calling thread
+     */
+    public synchronized void branchExecutor(ExecutorService executor){
+        if(ownsBranchExecutor)
+            branchExecutor.shutdown();
+        branchExecutor = executor;
+        ownsBranchExecutor = false;
+    }
+
+    /**
+     * Order the steps of the graph such that every step comes after all of its inputs. The graph input is always first.
+     */
+    private static List<String> topologicalOrder(Map<String, GraphStep> steps){
+        Map<String,Integer> remaining = new LinkedHashMap<>();
+        Map<String,List<String>> inputsFor = new HashMap<>();     //Key: a step. Value: The steps that this is an input for: i.e., key -> X exists
         for(Map.Entry<String, GraphStep> e : steps.entrySet()){
-            GraphStep g = e.getValue();
-            if(g.hasStep()){
-                PipelineStep s = g.getStep();
-                PipelineStepRunner r = getRunner(s);
-                runners.put(e.getKey(), r);
+            if(GraphPipeline.INPUT_KEY.equals(e.getKey()))
+                continue;
+            List<String> in = e.getValue().inputs();
+            for(String s : in){
+                if(!GraphPipeline.INPUT_KEY.equals(s) && !steps.containsKey(s))
+                    throw new IllegalStateException("Step \"" + e.getKey() + "\" has input \"" + s + "\" which is not present in the graph");
+                inputsFor.computeIfAbsent(s, x -> new ArrayList<>()).add(e.getKey());
             }
+            remaining.put(e.getKey(), in.size());
+        }
 
-            if(g instanceof MergeStep || g instanceof SwitchStep || g instanceof AnyStep){
-                runners.put(e.getKey(), null);
+        List<String> order = new ArrayList<>(remaining.size() + 1);
+        order.add(GraphPipeline.INPUT_KEY);
+        for( int i=0; i<order.size(); i++ ){
+            List<String> next = inputsFor.get(order.get(i));
+            if(next == null)
+                continue;
+            for(String s : next){
+                int r = remaining.get(s) - 1;
+                remaining.put(s, r);
+                if(r == 0)
+                    order.add(s);
             }
         }
+
+        if(order.size() != remaining.size() + 1){
+            //Either some steps can't be reached from the input, or (if all can) some are part of - or depend on - a cycle
+            Set<String> ordered = new HashSet<>(order);
+            Set<String> reachable = reachableFromInput(inputsFor);
+            List<String> unreachable = new ArrayList<>();
+            List<String> blocked = new ArrayList<>();
+            for(String s : remaining.keySet()){
+                if(!reachable.contains(s)) {
+                    unreachable.add(s);
+                } else if(!ordered.contains(s)){
+                    blocked.add(s);
+                }
+            }
+            if(!unreachable.isEmpty())
+                throw new IllegalStateException("Graph steps " + unreachable + " are not reachable from the graph input \"" + GraphPipeline.INPUT_KEY + "\"");
+            throw new IllegalStateException("Graph contains a cycle: could not determine an execution order for steps " + blocked);
+        }
+        return order;
+    }
+
+    /**
+     * @return The names of all steps that can be reached from the graph input, including the input itself
+     */
+    private static Set<String> reachableFromInput(Map<String,List<String>> inputsFor){
+        Set<String> reachable = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        reachable.add(GraphPipeline.INPUT_KEY);
+        toVisit.add(GraphPipeline.INPUT_KEY);
+        while(!toVisit.isEmpty()){
+            List<String> next = inputsFor.get(toVisit.poll());
+            if(next == null)
+                continue;
+            for(String s : next){
+                if(reachable.add(s))
+                    toVisit.add(s);
+            }
+        }
+        return reachable;
     }
 
     @Override
@@ -85,147 +281,266 @@ public class GraphPipelineExecutor extends BasePipelineExecutor {
 
     @Override
     public List<PipelineStepRunner> getRunners() {
-        return new ArrayList<>(runners.values());
+        List<PipelineStepRunner> l = new ArrayList<>();
+        for(PipelineStepRunner r : runners){
+            if(r != null)
+                l.add(r);
+        }
+        return l;
     }
 
     @Override
     public Data exec(Data in) {
+        if(outputIdx == 0){
+            //No steps other than input - no-op
+            return in;
+        }
 
-        Queue<String> canExec = new LinkedList<>();
-        Set<String> canExecSet = new HashSet<>();
+        Context[] ctxs = profiler.sample() ? contexts : unprofiledContexts;
+        ExecutorService e = branchExecutor;
+        if(e != null)
+            return new ParallelExecution(in, e, ctxs).exec();
+
+        int n = names.length;
+        Data[] stepOutputData = new Data[n];
+        int[] remaining = fanIn.clone();
+        int[] canExec = new int[n];         //FIFO queue of the steps that can be executed. Each step is added at most once
+        int head = 0;
+        int tail = 0;
+
+        stepOutputData[0] = in;
+        tail = markReady(0, in, remaining, canExec, tail);
+
+        while(head < tail){
+            int next = canExec[head++];
+            Data stepOut = execStep(next, stepOutputData, ctxs);
+            if(next == outputIdx)
+                return stepOut;
+
+            stepOutputData[next] = stepOut;
+            tail = markReady(next, stepOut, remaining, canExec, tail);
+        }
 
-        Map<String,Data> stepOutputData = new HashMap<>();
-        stepOutputData.put(GraphPipeline.INPUT_KEY, in);
+        throw new IllegalStateException("Could not get output");
+    }
 
-        Map<String,GraphStep> m = pipeline.steps();
+    /**
+     * Execute the specified step on the current thread, given the outputs of all steps executed so far
+     */
+    private Data execStep(int next, Data[] stepOutputData, Context[] ctxs){
+        log.trace("Executing step: {}", names[next]);
 
-        for(Map.Entry<String, GraphStep> e : m.entrySet()){
-            List<String> inputs = e.getValue().inputs();
-            if(inputs != null && inputs.size() == 1 && inputs.get(0).equals(GraphPipeline.INPUT_KEY)){
-                canExec.add(e.getKey());
-                canExecSet.add(e.getKey());
-            }
+        int[] stepInputs = inputs[next];
+        Data stepOut = null;
+        switch (kinds[next]){
+            case MERGE:
+                stepOut = Data.empty();
+                for(int s : stepInputs){
+                    stepOut.merge(false, stepOutputData[s]);
+                }
+                break;
+            case ANY:
+                for(int s : stepInputs){
+                    if(stepOutputData[s] != null){
+                        stepOut = stepOutputData[s];
+                        break;
+                    }
+                }
+                break;
+            case SWITCH:
+            case SWITCH_OUTPUT:
+                stepOut = stepOutputData[stepInputs[0]];
+                break;
+            case PIPELINE_STEP:
+                stepOut = runStep(next, stepOutputData[stepInputs[0]], ctxs);
+                break;
         }
 
-        Data out = null;
+        if(stepOut == null)
+            throw new IllegalStateException("Got null output from step \"" + names[next] + "\"");
+        return stepOut;
+    }
 
-        if(m.size() == 1){
-            //No steps other than input - no-op
-            out = in;
+    /**
+     * Execute the runner for the specified PipelineGraphStep on the current thread
+     */
+    private Data runStep(int next, Data inData, Context[] ctxs){
+        Preconditions.checkState(inData != null, "Input data is null for step %s - input %s", names[next], 0);
+        PipelineStepRunner exec = runners[next];
+        Context ctx = ctxs[next];
+        Profiler p = ctx.profiler();
+        p.eventStart(names[next]);
+        long start = System.nanoTime();
+        try {
+            Data out = exec.exec(ctx, inData);
+            stepTimers[next].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return out;
+        } catch (Throwable t){
+            throw new RuntimeException("Execution failed in pipeline step \"" + names[next] + "\" of type " + exec.getPipelineStep().getClass().getSimpleName(), t);
+        } finally {
+            p.eventEnd(names[next]);
+            //Ensure that the step didn't open but not close any profiles
+            p.closeAll();
         }
+    }
 
-        while(!canExec.isEmpty()){
-            String next = canExec.remove();
+    /**
+     * Add to the queue all steps that can now be executed, given that the specified step has just been executed
+     * @return The new tail of the queue
+     */
+    private int markReady(int executed, Data stepOut, int[] remaining, int[] canExec, int tail){
+        int switchOut = kinds[executed] == SWITCH ? switchFns[executed].selectOutput(stepOut) : -1;
+        for(int c : consumers[executed]){
+            if(kinds[c] == SWITCH_OUTPUT && switchOutputNum[c] != switchOut)
+                continue;
+            if(remaining[c] > 0 && --remaining[c] == 0)
+                canExec[tail++] = c;
+        }
+        return tail;
+    }
 
-            log.trace("Executing step: {}", next);
+    /**
+     * State for a single execution of the graph in parallel mode. The calling thread acts as the coordinator: it owns
+     * all of the state below, and executes Merge/Switch/Any steps directly, while pipeline steps are executed by the
+     * branch executor and report back via the completion queue.
+     */
+    private class ParallelExecution {
+        private final ExecutorService executor;
+        private final Context[] ctxs;
+        private final Data[] stepOutputData = new Data[names.length];
+        private final int[] remaining = fanIn.clone();
+        private final int[] canExec = new int[names.length];
+        private final int[] liveConsumers = new int[names.length];     //Number of consumers that may still need the output of each step
+        private final boolean[] cancelled = new boolean[names.length];
+        private final Future<?>[] inFlight = new Future<?>[names.length];
+        private final BlockingQueue<Completion> completed = new LinkedBlockingQueue<>();
+        private int head;
+        private int tail;
+        private int numInFlight;
+
+        private ParallelExecution(Data in, ExecutorService executor, Context[] ctxs){
+            this.executor = executor;
+            this.ctxs = ctxs;
+            for( int i=0; i<names.length; i++ ){
+                liveConsumers[i] = consumers[i].length;
+            }
+            stepOutputData[0] = in;
+            tail = markReady(0, in, remaining, canExec, tail);
+        }
 
-            canExecSet.remove(next);
-            GraphStep gs = m.get(next);
-            List<String> inputs = gs.inputs();
+        private Data exec(){
+            try {
+                while (true) {
+                    while (head < tail) {
+                        int next = canExec[head++];
+                        if (cancelled[next])
+                            continue;
+
+                        if (kinds[next] == PIPELINE_STEP && (numInFlight > 0 || head < tail)) {
+                            //Other branches are (or will be) running concurrently - dispatch this one
+                            submit(next);
+                            continue;
+                        }
 
-            int switchOut = -1;
-            Data stepOut = null;
-            if(gs instanceof MergeStep) {
-                stepOut = Data.empty();
-                for (String s : inputs) {
-                    Data d = stepOutputData.get(s);
-                    stepOut.merge(false, d);
-                }
-            } else if(gs instanceof SwitchStep) {
-                SwitchStep s = (SwitchStep)gs;
-                Data inData = stepOutputData.get(inputs.get(0));
-                switchOut = s.switchFn().selectOutput(inData);
-                stepOut = inData;
-            } else if(gs instanceof AnyStep) {
-                List<String> stepInputs = gs.inputs();
-                for (String s : stepInputs) {
-                    if (stepOutputData.containsKey(s)) {
-                        stepOut = stepOutputData.get(s);
-                        break;
+                        //Only one branch is active, or a cheap Merge/Switch/Any step: execute on the calling thread
+                        Data stepOut = execStep(next, stepOutputData, ctxs);
+                        if (next == outputIdx)
+                            return stepOut;
+                        onComplete(next, stepOut);
                     }
+
+                    if (numInFlight == 0)
+                        break;
+
+                    Completion c = completed.take();
+                    if (inFlight[c.idx] == null)
+                        continue;       //Cancelled after it started executing
+                    inFlight[c.idx] = null;
+                    numInFlight--;
+
+                    if (c.error != null)
+                        throw c.error;
+                    if (c.output == null)
+                        throw new IllegalStateException("Got null output from step \"" + names[c.idx] + "\"");
+                    if (c.idx == outputIdx)
+                        return c.output;
+                    onComplete(c.idx, c.output);
                 }
-                System.out.println();
-            } else if(gs instanceof SwitchOutput){
-                stepOut = stepOutputData.get(gs.input());
-            } else if(gs instanceof PipelineGraphStep){
-                Preconditions.checkState(inputs.size() == 1, "PipelineSteps should only have 1 input: got inputs %s", inputs);;
-                if (inputs.size() != 1 && !GraphPipeline.INPUT_KEY.equals(next))
-                    throw new IllegalStateException("Execution of steps with numInputs != 1 is not supported: " + next + ".numInputs=" + inputs.size());
-
-                PipelineStepRunner exec = runners.get(next);
-                Data inData = stepOutputData.get(inputs.get(0));
-                Preconditions.checkState(inData != null, "Input data is null for step %s - input %s", next, 0);
-                try {
-                    stepOut = exec.exec(null, inData);
-                } catch (Throwable t){
-                    throw new RuntimeException("Execution failed in pipeline step \"" + next + "\" of type " + exec.getPipelineStep().getClass().getSimpleName(), t);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for graph pipeline steps to complete", e);
+            } finally {
+                //Output is available or execution failed: nothing still executing is needed
+                for( int i=0; i<inFlight.length; i++ ){
+                    if(inFlight[i] != null)
+                        inFlight[i].cancel(true);
                 }
-            } else {
-                throw new UnsupportedOperationException("Execution support not yet implemented: " + gs);
             }
 
-            if(stepOut == null)
-                throw new IllegalStateException("Got null output from step \"" + next + "\"");
-
-            if(next.equals(pipeline.outputStep())){
-                out = stepOut;
-                break;
-            }
+            throw new IllegalStateException("Could not get output");
+        }
 
-            stepOutputData.put(next, stepOut);
-
-            //Check what can now be executed
-            //TODO This should be optimized
-            Map<String, GraphStep> steps = pipeline.steps();
-            for(String s : steps.keySet()){
-                if(canExecSet.contains(s))
-                    continue;
-                if(stepOutputData.containsKey(s))
-                    continue;
-
-                GraphStep currStep = steps.get(s);
-                List<String> stepInputs = currStep.inputs();
-                boolean allSeen;
-                if(currStep instanceof SwitchOutput) {
-                    allSeen = false;
-                    SwitchOutput so = (SwitchOutput) currStep;
-                    String switchIn = so.input();
-                    if (switchIn.equals(next) && so.outputNum() == switchOut) {
-                        //Just executed the switch this iteration
-                        allSeen = true;
-                    }
-                } else if(currStep instanceof AnyStep ){
-                    //Can execute the Any step if at least one of the inputs are available
-                    allSeen = false;
-                    for (String inName : stepInputs) {
-                        if (stepOutputData.containsKey(inName)) {
-                            allSeen = true;
-                            break;
-                        }
-                    }
-                } else {
-                    //StandardPipelineStep, MergeStep
-                    allSeen = true;
-                    for (String inName : stepInputs) {
-                        if (!stepOutputData.containsKey(inName)) {
-                            allSeen = false;
-                            break;
-                        }
-                    }
+        private void submit(int idx){
+            Data inData = stepOutputData[inputs[idx][0]];
+            inFlight[idx] = executor.submit(() -> {
+                try {
+                    completed.add(new Completion(idx, runStep(idx, inData, ctxs), null));
+                } catch (RuntimeException e){
+                    completed.add(new Completion(idx, null, e));
                 }
+            });
+            numInFlight++;
+        }
+
+        private void onComplete(int idx, Data stepOut){
+            stepOutputData[idx] = stepOut;
 
-                if(allSeen) {
-                    canExec.add(s);
-                    canExecSet.add(s);
-                    //log.info("Can now exec: {}", s);
+            if(kinds[idx] == ANY){
+                //Other inputs of the Any step are no longer required by it
+                for(int in : inputs[idx]){
+                    if(stepOutputData[in] == null)
+                        release(in);
                 }
             }
+
+            tail = markReady(idx, stepOut, remaining, canExec, tail);
         }
 
-        if(out == null)
-            throw new IllegalStateException("Could not get output");
+        private void release(int idx){
+            if(--liveConsumers[idx] == 0 && idx != outputIdx && stepOutputData[idx] == null && !cancelled[idx])
+                cancel(idx);
+        }
 
-        return out;
+        private void cancel(int idx){
+            log.trace("Cancelling step: {}", names[idx]);
+            cancelled[idx] = true;
+            if(inFlight[idx] != null){
+                inFlight[idx].cancel(true);
+                inFlight[idx] = null;
+                numInFlight--;
+            }
+            for(int in : inputs[idx]){
+                if(stepOutputData[in] == null)
+                    release(in);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Completion {
+        private final int idx;
+        private final Data output;
+        private final RuntimeException error;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        profiler.close();
+        synchronized (this) {
+            if (ownsBranchExecutor)
+                branchExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -235,11 +550,19 @@ public class GraphPipelineExecutor extends BasePipelineExecutor {
 
     @Override
     public void profilerConfig(ProfilerConfig profilerConfig) {
-		this.profilerConfig = profilerConfig;
+        this.profilerConfig = profilerConfig;
+        Profiler old = this.profiler;
+        if (profilerConfig != null) {
+            this.profiler = new PipelineProfiler(profilerConfig);
+        } else {
+            this.profiler = new NoOpProfiler();
+        }
+        this.contexts = createContexts(profiler);
+        old.close();
     }
 
     @Override
     public Profiler profiler() {
-        throw new UnsupportedOperationException("Not yet implemented");
+        return profiler;
     }
 }
@@ -21,28 +21,36 @@ import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
 import ai.konduit.serving.pipeline.impl.context.DefaultContext;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
- * An executor for {@link SequencePipeline}s
+ * An executor for {@link SequencePipeline}s.<br>
+ * Each step has its own {@link Context} and {@link PipelineMetrics}, created once, so concurrent calls to
+ * {@link #exec(Data)} never share mutable metrics state. The latency of every step is also recorded to a timer
+ * registered up front ({@link #STEP_LATENCY_TIMER}, tagged by pipeline, step name and step index).
  *
  * @author Alex Black
  */
 @Slf4j
 public class SequencePipelineExecutor extends BasePipelineExecutor {
+    public static final String STEP_LATENCY_TIMER = "konduit.pipeline.step.latency";
 
     private SequencePipeline pipeline;
     private List<PipelineStepRunner> runners;
+    private final String[] names;
+    private final Metrics[] metrics;
+    private final io.micrometer.core.instrument.Timer[] stepTimers;
     private ProfilerConfig profilerConfig;
     private Profiler profiler = new NoOpProfiler();
-    private Metrics metrics;
-    private Context ctx;
+    private volatile Context[] contexts;
+    private final Context[] unprofiledContexts;     //For executions that aren't sampled by the profiler
 
     public SequencePipelineExecutor(@NonNull SequencePipeline p) {
         this.pipeline = p;
@@ -55,6 +63,31 @@ public class SequencePipelineExecutor extends BasePipelineExecutor {
             PipelineStepRunner r = getRunner(ps);
             runners.add(r);
         }
+
+        int n = runners.size();
+        names = new String[n];
+        metrics = new Metrics[n];
+        stepTimers = new io.micrometer.core.instrument.Timer[n];
+        for (int i = 0; i < n; i++) {
+            PipelineStepRunner psr = runners.get(i);
+            names[i] = psr.name();
+            metrics[i] = new PipelineMetrics(pipeline.id(), names[i], psr.getPipelineStep().name());
+            stepTimers[i] = io.micrometer.core.instrument.Timer.builder(STEP_LATENCY_TIMER)
+                    .tag("pipeline", pipeline.id())
+                    .tag("step", names[i])
+                    .tag("index", String.valueOf(i))
+                    .register(MicrometerRegistry.getRegistry());
+        }
+        contexts = createContexts(profiler);
+        unprofiledContexts = contexts;
+    }
+
+    private Context[] createContexts(Profiler profiler) {
+        Context[] c = new Context[metrics.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = new DefaultContext(metrics[i], profiler);
+        }
+        return c;
     }
 
 
@@ -70,19 +103,18 @@ public class SequencePipelineExecutor extends BasePipelineExecutor {
 
     @Override
     public Data exec(Data data) {
-        if (ctx == null) {
-            metrics = new PipelineMetrics(pipeline.id());
-            ctx = new DefaultContext(metrics, profiler);
-        }
+        Context[] ctxs = profiler.sample() ? contexts : unprofiledContexts;
 
         Data current = data;
-        for (PipelineStepRunner psr : runners) {
-            String name = psr.name();
+        for (int i = 0; i < ctxs.length; i++) {
+            Context ctx = ctxs[i];
+            Profiler profiler = ctx.profiler();
+            String name = names[i];
             profiler.eventStart(name);
-            ((PipelineMetrics)metrics).setInstanceName(name);
-            ((PipelineMetrics)metrics).setStepName(psr.getPipelineStep().name());
 
-            current = psr.exec(ctx, current);
+            long start = System.nanoTime();
+            current = runners.get(i).exec(ctx, current);
+            stepTimers[i].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
             profiler.eventEnd(name);
 
@@ -100,11 +132,20 @@ public class SequencePipelineExecutor extends BasePipelineExecutor {
     @Override
     public void profilerConfig(ProfilerConfig profilerConfig) {
         this.profilerConfig = profilerConfig;
+        Profiler old = this.profiler;
         if (profilerConfig != null) {
             this.profiler = new PipelineProfiler(profilerConfig);
         } else {
             this.profiler = new NoOpProfiler();
         }
+        this.contexts = createContexts(profiler);
+        old.close();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        profiler.close();
     }
 
     @Override
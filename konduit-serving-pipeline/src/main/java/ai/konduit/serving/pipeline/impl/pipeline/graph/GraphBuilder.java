@@ -41,6 +41,7 @@ public class GraphBuilder {
     private List<GraphStep> steps = new ArrayList<>();
     private final GraphStep input = new Input(this);
     private String id;
+    private int parallelism;
 
     public GraphStep input() {
         return input;
@@ -51,6 +52,14 @@ public class GraphBuilder {
         return this;
     }
 
+    /**
+     * @param parallelism Maximum number of independent branches to execute in parallel. See {@link GraphPipeline#parallelism()}
+     */
+    public GraphBuilder parallelism(int parallelism){
+        this.parallelism = parallelism;
+        return this;
+    }
+
     public GraphStep[] switchOp(String name, SwitchFn fn, GraphStep step) {
         int nOut = fn.numOutputs();
 
@@ -97,7 +106,7 @@ public class GraphBuilder {
             m.put(g.name(), g);
         }
         m.put(outputStep.name(), outputStep);
-        return new GraphPipeline(m, outputStep.name(), id);
+        return new GraphPipeline(m, outputStep.name(), id, parallelism);
     }
 
 }
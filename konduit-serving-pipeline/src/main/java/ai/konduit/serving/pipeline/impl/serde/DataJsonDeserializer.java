@@ -20,8 +20,9 @@ package ai.konduit.serving.pipeline.impl.serde;
 
 import ai.konduit.serving.pipeline.api.data.*;
 import ai.konduit.serving.pipeline.impl.data.JData;
-import ai.konduit.serving.pipeline.impl.data.image.Png;
+import ai.konduit.serving.pipeline.impl.data.helpers.ImageSerdeUtils;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
 import lombok.SneakyThrows;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.primitives.Pair;
@@ -42,11 +43,16 @@ import java.util.List;
 
 /**
  * Custom JSON deserializer for Data instances<br>
- * See {@link DataJsonSerializer} for further details
+ * See {@link DataJsonSerializer} for further details<br>
+ * NDArray and ByteBuffer values are decoded into direct buffers allocated via {@link BufferPool}.
  *
  * @author Alex Black
  */
 public class DataJsonDeserializer extends JsonDeserializer<Data> {
+
+    //Must be a multiple of 4, so that chunks can be decoded independently
+    private static final int BASE64_CHUNK_CHARS = 64 * 1024;
+
     @Override
     public Data deserialize(JsonParser jp, DeserializationContext dc) throws IOException, JsonProcessingException {
         JsonNode n = jp.getCodec().readTree(jp);
@@ -87,10 +93,7 @@ public class DataJsonDeserializer extends JsonDeserializer<Data> {
                         byte[] bytes = deserializeBytes(n2);
                         d.put(s, bytes);
                     } else   if (n2.has(Data.RESERVED_KEY_BYTEBUFFER) || n2.has(Data.RESERVED_KEY_BYTEBUFFER_BASE64)) {
-                        //byte[] stored in base64 or byte[] as JSON array
-                        byte[] bytes = deserializeBytes(n2);
-                        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-                        d.put(s, byteBuffer);
+                        d.put(s, deserializeByteBuffer(n2));
                     } else if (n2.has(Data.RESERVED_KEY_NDARRAY_TYPE)) {
                         //NDArray
                         d.put(s, deserializeNDArray(n2));
@@ -123,22 +126,128 @@ public class DataJsonDeserializer extends JsonDeserializer<Data> {
         long[] shape = new long[shapeNode.size()];
         for (int i = 0; i < shape.length; i++)
             shape[i] = shapeNode.get(i).asLong();
-        String base64 = n.get(Data.RESERVED_KEY_NDARRAY_DATA_BASE64).textValue();
-        byte[] bytes = Base64.getDecoder().decode(base64);
-        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        ByteBuffer bb;
+        if (n.has(Data.RESERVED_KEY_NDARRAY_DATA_ARRAY)) {
+            bb = deserializeNumericArray(type, shape, (ArrayNode) n.get(Data.RESERVED_KEY_NDARRAY_DATA_ARRAY));
+        } else {
+            bb = decodeBase64(n.get(Data.RESERVED_KEY_NDARRAY_DATA_BASE64).textValue());
+        }
         SerializedNDArray ndArray = new SerializedNDArray(type, shape, bb);
         return NDArray.create(ndArray);
     }
 
+    /**
+     * Convert a flat JSON array of numbers (or booleans, for BOOL arrays) to a little endian buffer of the given type
+     */
+    protected ByteBuffer deserializeNumericArray(NDArrayType type, long[] shape, ArrayNode values){
+        long length = 1;
+        for (long l : shape)
+            length *= l;
+        Preconditions.checkState(length == values.size(), "Unable to deserialize NDArray from JSON: array with shape %s " +
+                "should have %s values, got %s", shape, length, values.size());
+        Preconditions.checkState(type.width() > 0 && type != NDArrayType.FLOAT16 && type != NDArrayType.BFLOAT16,
+                "Unable to deserialize NDArray of type %s from a JSON array of values", type);
+
+        ByteBuffer bb = BufferPool.allocate(length * type.width());
+        for (JsonNode v : values) {
+            switch (type) {
+                case DOUBLE:
+                    bb.putDouble(v.asDouble());
+                    break;
+                case FLOAT:
+                    bb.putFloat((float) v.asDouble());
+                    break;
+                case INT64:
+                case UINT64:
+                    bb.putLong(v.isBigInteger() ? v.bigIntegerValue().longValue() : v.asLong());
+                    break;
+                case INT32:
+                case UINT32:
+                    bb.putInt((int) v.asLong());
+                    break;
+                case INT16:
+                case UINT16:
+                    bb.putShort((short) v.asInt());
+                    break;
+                case INT8:
+                case UINT8:
+                    bb.put((byte) v.asInt());
+                    break;
+                case BOOL:
+                    bb.put((byte) (v.isBoolean() ? (v.booleanValue() ? 1 : 0) : (v.asDouble() != 0 ? 1 : 0)));
+                    break;
+                default:
+                    throw new IllegalStateException("Unable to deserialize NDArray of type " + type + " from a JSON array of values");
+            }
+        }
+        bb.rewind();
+        return bb;
+    }
+
+    protected ByteBuffer deserializeByteBuffer(JsonNode n2){
+        if (n2.has(Data.RESERVED_KEY_BYTEBUFFER_BASE64)) {
+            return decodeBase64(n2.get(Data.RESERVED_KEY_BYTEBUFFER_BASE64).textValue());
+        }
+        //byte[] stored as JSON array
+        return ByteBuffer.wrap(deserializeBytes(n2));
+    }
+
+    /**
+     * Decode a base64 string into a direct buffer allocated via {@link BufferPool}. The string is decoded in chunks,
+     * so no heap array with the full decoded content (or a byte[] copy of the encoded content) is created.<br>
+     * Note that the base64 string itself is still held on the heap: the JSON tree is parsed before the values are
+     * decoded, so the full encoded content is materialized as a String by Jackson
+     */
+    public static ByteBuffer decodeBase64(String base64){
+        int len = base64.length();
+        int padding = 0;
+        if (len > 0 && base64.charAt(len - 1) == '=') {
+            padding++;
+            if (len > 1 && base64.charAt(len - 2) == '=')
+                padding++;
+        }
+        //Unpadded input is also accepted, as per Base64.getDecoder()
+        int rem = len % 4;
+        Preconditions.checkArgument(rem != 1, "Invalid base64 string: length %s", len);
+        long decodedLength = (len / 4) * 3L - padding + (rem == 0 ? 0 : rem - 1);
+
+        ByteBuffer out = BufferPool.allocate(decodedLength);
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] src = null;
+        byte[] dst = new byte[BASE64_CHUNK_CHARS / 4 * 3];
+        for (int i = 0; i < len; i += BASE64_CHUNK_CHARS) {
+            int n = Math.min(BASE64_CHUNK_CHARS, len - i);
+            if (src == null || src.length != n)
+                src = new byte[n];
+            for (int j = 0; j < n; j++) {
+                char c = base64.charAt(i + j);
+                if (c > 0x7F)
+                    throw new IllegalArgumentException("Illegal base64 character: " + Integer.toHexString(c));
+                src[j] = (byte) c;
+            }
+            int decoded = decoder.decode(src, dst);
+            out.put(dst, 0, decoded);
+        }
+        out.rewind();
+        return out;
+    }
+
     protected Image deserializeImage(JsonNode n2){
         String format = n2.get(Data.RESERVED_KEY_IMAGE_FORMAT).textValue();
-        if(!"PNG".equalsIgnoreCase(format)){
-            throw new UnsupportedOperationException("Deserialization of formats other than PNG not yet implemented");
-        }
         String base64Data = n2.get(Data.RESERVED_KEY_IMAGE_DATA).textValue();
         byte[] bytes = Base64.getDecoder().decode(base64Data);
-        Png png = new Png(bytes);
-        return Image.create(png);
+        long[] shape = null;
+        String layout = null;
+        if(n2.has(Data.RESERVED_KEY_IMAGE_SHAPE)){
+            ArrayNode shapeNode = (ArrayNode) n2.get(Data.RESERVED_KEY_IMAGE_SHAPE);
+            shape = new long[shapeNode.size()];
+            for (int i = 0; i < shape.length; i++)
+                shape[i] = shapeNode.get(i).asLong();
+        }
+        if(n2.has(Data.RESERVED_KEY_IMAGE_LAYOUT)){
+            layout = n2.get(Data.RESERVED_KEY_IMAGE_LAYOUT).textValue();
+        }
+        return ImageSerdeUtils.decode(format, bytes, shape, layout);
     }
 
     public static BoundingBox deserializeBB(JsonNode n2){
@@ -237,7 +346,7 @@ public class DataJsonDeserializer extends JsonDeserializer<Data> {
         switch (listType){
             case BYTEBUFFER:
                 for( int i = 0; i < size; i++) {
-                    list.add(ByteBuffer.wrap(deserializeBytes(n.get(i))));
+                    list.add(deserializeByteBuffer(n.get(i)));
                 }
                 break;
             case NDARRAY:
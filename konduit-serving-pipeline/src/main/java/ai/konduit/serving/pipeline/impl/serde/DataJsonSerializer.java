@@ -20,15 +20,19 @@ package ai.konduit.serving.pipeline.impl.serde;
 
 import ai.konduit.serving.pipeline.api.data.*;
 import ai.konduit.serving.pipeline.impl.data.box.BBoxCHW;
-import ai.konduit.serving.pipeline.impl.data.image.Png;
+import ai.konduit.serving.pipeline.impl.data.helpers.ImageSerdeUtils;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.settings.constants.PropertiesConstants;
+import lombok.extern.slf4j.Slf4j;
 import org.nd4j.shade.jackson.core.JsonGenerator;
 import org.nd4j.shade.jackson.databind.JsonSerializer;
-import org.nd4j.shade.jackson.databind.ObjectMapper;
 import org.nd4j.shade.jackson.databind.SerializerProvider;
+import org.nd4j.shade.jackson.databind.util.ByteBufferBackedInputStream;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 
@@ -41,11 +45,43 @@ import java.util.List;
  * a custom JSON serializer to precisely control the format.<br>
  * Other JSON options exist (using standard Jackson serializers/deserializers, or Protobuf's JSON format) but a manual approach
  * provides full control over the exact format
+ * <p>
+ * Binary values (NDArray data, bytes and images) are base64 encoded directly into the generator's output, without
+ * intermediate copies. Optionally, small NDArrays can be written as a flat JSON array of numbers instead
+ * (see {@link PropertiesConstants#JSON_NDARRAY_ARRAY_MAX_ELEMENTS}).
  *
  * @author Alex Black
  */
+@Slf4j
 public class DataJsonSerializer extends JsonSerializer<Data> {
 
+    private static volatile long numericArrayMaxElements = defaultNumericArrayMaxElements();
+
+    /**
+     * Set the maximum number of elements for NDArrays to be serialized as a JSON array of numbers rather than base64.
+     * 0 (the default, unless set via {@link PropertiesConstants#JSON_NDARRAY_ARRAY_MAX_ELEMENTS}) to always use base64.
+     * FLOAT16, BFLOAT16 and UTF8 arrays are always serialized as base64.
+     */
+    public static void setNumericArrayMaxElements(long maxElements) {
+        numericArrayMaxElements = maxElements;
+    }
+
+    public static long getNumericArrayMaxElements() {
+        return numericArrayMaxElements;
+    }
+
+    private static long defaultNumericArrayMaxElements() {
+        String s = System.getProperty(PropertiesConstants.JSON_NDARRAY_ARRAY_MAX_ELEMENTS);
+        if (s == null || s.isEmpty())
+            return 0;
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for system property {}: \"{}\" - NDArrays will be serialized as base64", PropertiesConstants.JSON_NDARRAY_ARRAY_MAX_ELEMENTS, s);
+            return 0;
+        }
+    }
+
     @Override
     public void serialize(Data data, JsonGenerator jg, SerializerProvider sp) throws IOException {
         //TODO do we serialize in any particular order?
@@ -123,39 +159,58 @@ public class DataJsonSerializer extends JsonSerializer<Data> {
     }
 
     private void writeNestedData(JsonGenerator jg, Data data) throws IOException {
-        ObjectMapper om = (ObjectMapper) jg.getCodec();
-        String dataStr = om.writeValueAsString(data);
-        jg.writeRawValue(dataStr);
+        //Written directly to the same generator: no intermediate string for nested values
+        serialize(data, jg, null);
     }
 
     private void writeBytes(JsonGenerator jg, ByteBuffer bytes) throws IOException {
         //TODO add option to do raw bytes array - [0, 1, 2, ...] style
         jg.writeStartObject();
         jg.writeFieldName(Data.RESERVED_KEY_BYTEBUFFER_BASE64);
-        if(bytes.hasArray()) {
-            String base64 = Base64.getEncoder().encodeToString(bytes.array());
-            jg.writeString(base64);
-            jg.writeEndObject();
-        }
-        else {
-            byte[] bytesArr = new byte[bytes.capacity()];
-            bytes.get(bytesArr.length);
-            String base64 = Base64.getEncoder().encodeToString(bytesArr);
-            jg.writeString(base64);
-            jg.writeEndObject();
-        }
-
+        writeBase64(jg, bytes);
+        jg.writeEndObject();
     }
 
     private void writeBytes(JsonGenerator jg, byte[] bytes) throws IOException {
         //TODO add option to do raw bytes array - [0, 1, 2, ...] style
         jg.writeStartObject();
         jg.writeFieldName(Data.RESERVED_KEY_BYTES_BASE64);
-        String base64 = Base64.getEncoder().encodeToString(bytes);
-        jg.writeString(base64);
+        writeBase64(jg, bytes);
         jg.writeEndObject();
     }
 
+    /**
+     * Write the content of the buffer (from position 0 to its limit) as a base64 string. The base64 characters are
+     * encoded directly into the generator's output, without creating a copy of the buffer or of the encoded string
+     */
+    protected static void writeBase64(JsonGenerator jg, ByteBuffer bytes) throws IOException {
+        ByteBuffer bb = bytes.duplicate();
+        bb.rewind();
+        if (bb.hasArray()) {
+            writeBase64(jg, bb.array(), bb.arrayOffset(), bb.remaining());
+        } else if (jg.canWriteBinaryNatively()) {
+            //Format with a native binary representation (i.e., YAML): keep the base64 string representation instead
+            byte[] array = new byte[bb.remaining()];
+            bb.get(array);
+            writeBase64(jg, array, 0, array.length);
+        } else {
+            jg.writeBinary(new ByteBufferBackedInputStream(bb), bb.remaining());
+        }
+    }
+
+    protected static void writeBase64(JsonGenerator jg, byte[] bytes) throws IOException {
+        writeBase64(jg, bytes, 0, bytes.length);
+    }
+
+    protected static void writeBase64(JsonGenerator jg, byte[] bytes, int offset, int length) throws IOException {
+        if (jg.canWriteBinaryNatively()) {
+            jg.writeString(Base64.getEncoder().encodeToString(Arrays.copyOfRange(bytes, offset, offset + length)));
+        } else {
+            //Jackson's default base64 variant is standard (RFC 4648) base64 without line feeds, as per java.util.Base64
+            jg.writeBinary(bytes, offset, length);
+        }
+    }
+
     private void writeDouble(JsonGenerator jg, double d) throws IOException {
         jg.writeNumber(d);
     }
@@ -165,14 +220,19 @@ public class DataJsonSerializer extends JsonSerializer<Data> {
     }
 
     private void writeImage(JsonGenerator jg, Image i) throws IOException {
-        Png png = i.getAs(Png.class);
-        byte[] imgData = png.getBytes();
+        ImageSerdeUtils.EncodedImage e = ImageSerdeUtils.encode(i);
         jg.writeStartObject();
         jg.writeFieldName(Data.RESERVED_KEY_IMAGE_FORMAT);
-        jg.writeString("PNG");      //TODO No magic constant
+        jg.writeString(e.getFormat());
+        if (e.getShape() != null) {
+            jg.writeFieldName(Data.RESERVED_KEY_IMAGE_SHAPE);
+            long[] shape = e.getShape();
+            jg.writeArray(shape, 0, shape.length);
+            jg.writeFieldName(Data.RESERVED_KEY_IMAGE_LAYOUT);
+            jg.writeString(e.getLayout());
+        }
         jg.writeFieldName(Data.RESERVED_KEY_IMAGE_DATA);
-        String base64 = Base64.getEncoder().encodeToString(imgData);
-        jg.writeString(base64);
+        writeBase64(jg, e.getData());
         jg.writeEndObject();
     }
 
@@ -188,24 +248,77 @@ public class DataJsonSerializer extends JsonSerializer<Data> {
         jg.writeArray(shape, 0, shape.length);
 
         ByteBuffer bb = sn.getBuffer();
-        bb.rewind();
-        byte[] array;
-        if (bb.hasArray()) {
-            array = bb.array();
+        long length = length(shape);
+        if (length <= numericArrayMaxElements && isNumericArrayType(type)) {
+            jg.writeFieldName(Data.RESERVED_KEY_NDARRAY_DATA_ARRAY);
+            writeNumericArray(jg, type, bb, (int) length);
         } else {
-            int size = bb.remaining();
-            array = new byte[size];
-            for (int i = 0; i < size; i++) {
-                array[i] = bb.get(i);
-            }
+            jg.writeFieldName(Data.RESERVED_KEY_NDARRAY_DATA_BASE64);
+            writeBase64(jg, bb);
         }
-
-        String base64 = Base64.getEncoder().encodeToString(array);
-        jg.writeFieldName(Data.RESERVED_KEY_NDARRAY_DATA_ARRAY);
-        jg.writeString(base64);
         jg.writeEndObject();
     }
 
+    private static boolean isNumericArrayType(NDArrayType type) {
+        return type != NDArrayType.FLOAT16 && type != NDArrayType.BFLOAT16 && type != NDArrayType.UTF8;
+    }
+
+    private static long length(long[] shape) {
+        long length = 1;
+        for (long l : shape)
+            length *= l;
+        return length;
+    }
+
+    /**
+     * Write the NDArray values as a flat (row major) JSON array of numbers (or booleans, for BOOL arrays)
+     */
+    private static void writeNumericArray(JsonGenerator jg, NDArrayType type, ByteBuffer buffer, int length) throws IOException {
+        ByteBuffer bb = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        bb.rewind();
+        jg.writeStartArray(length);
+        for (int i = 0; i < length; i++) {
+            switch (type) {
+                case DOUBLE:
+                    jg.writeNumber(bb.getDouble());
+                    break;
+                case FLOAT:
+                    jg.writeNumber(bb.getFloat());
+                    break;
+                case INT64:
+                    jg.writeNumber(bb.getLong());
+                    break;
+                case INT32:
+                    jg.writeNumber(bb.getInt());
+                    break;
+                case INT16:
+                    jg.writeNumber(bb.getShort());
+                    break;
+                case INT8:
+                    jg.writeNumber(bb.get());
+                    break;
+                case UINT64:
+                    jg.writeNumber(Long.toUnsignedString(bb.getLong()));
+                    break;
+                case UINT32:
+                    jg.writeNumber(bb.getInt() & 0xFFFFFFFFL);
+                    break;
+                case UINT16:
+                    jg.writeNumber(bb.getShort() & 0xFFFF);
+                    break;
+                case UINT8:
+                    jg.writeNumber(bb.get() & 0xFF);
+                    break;
+                case BOOL:
+                    jg.writeBoolean(bb.get() != 0);
+                    break;
+                default:
+                    throw new IllegalStateException("NDArray type " + type + " can't be serialized as a JSON array");
+            }
+        }
+        jg.writeEndArray();
+    }
+
     public static void writeBB(JsonGenerator jg, BoundingBox bb) throws IOException {
         //We'll keep it in the original format, if possible - but encode it as a X/Y format otherwise
         jg.writeStartObject();
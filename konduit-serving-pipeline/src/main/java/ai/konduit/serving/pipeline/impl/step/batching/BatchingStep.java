@@ -0,0 +1,74 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step.batching;
+
+import ai.konduit.serving.annotation.json.JsonName;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import lombok.experimental.Tolerate;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BatchingStep wraps another pipeline step (usually a model step such as ONNX, TensorFlow or SameDiff) and executes
+ * concurrent requests for that step together as a single batch.<br>
+ * Requests are collected until either maxBatchSize requests are available, or maxLatencyMs milliseconds have passed
+ * since the first request of the batch arrived. The NDArray values of the collected Data instances are then
+ * concatenated along dimension 0, the wrapped step is executed once, and its NDArray outputs are split along dimension
+ * 0 and returned to each caller.<br>
+ * Note that batches form naturally under load: requests that arrive while a batch is executing are queued, and are
+ * dispatched as the next batch without further waiting if their maxLatencyMs has already passed.<br>
+ * Only NDArray values (all of them, or those in inputNames if set) are batched. Other input values are taken from the
+ * first request of the batch, hence should be the same for all requests. Output values other than NDArrays with
+ * size(0) equal to the total batch size are returned unchanged to every caller.
+ *
+ * @see BatchingStepRunner
+ */
+@Data
+@Accessors(fluent = true)
+@JsonName("BATCHING")
+@Schema(description = "A pipeline step that wraps another pipeline step (usually a model step) and executes concurrent " +
+        "requests for that step together as a single batch. Requests are collected until either maxBatchSize requests " +
+        "are available, or maxLatencyMs milliseconds have passed since the first request of the batch arrived. " +
+        "NDArray values are concatenated along dimension 0 before execution, and the NDArray outputs of the wrapped " +
+        "step are split along dimension 0 and returned to each caller.")
+public class BatchingStep implements PipelineStep {
+
+    @Schema(description = "The pipeline step to execute on the batched inputs.")
+    private PipelineStep step;
+
+    @Schema(description = "Maximum number of requests to combine into a single batch.", defaultValue = "32")
+    private int maxBatchSize = 32;
+
+    @Schema(description = "Maximum amount of time, in milliseconds, to wait for a batch to fill up after the first " +
+            "request of the batch arrived.", defaultValue = "10")
+    private long maxLatencyMs = 10;
+
+    @Schema(description = "Names of the NDArray input values to batch. If not set, all NDArray values are batched.")
+    private List<String> inputNames;
+
+    @Tolerate
+    public BatchingStep inputNames(String... inputNames) {
+        this.inputNames = Arrays.asList(inputNames);
+        return this;
+    }
+}
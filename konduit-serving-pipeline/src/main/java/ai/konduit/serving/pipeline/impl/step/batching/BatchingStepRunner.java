@@ -0,0 +1,340 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step.batching;
+
+import ai.konduit.serving.annotation.runner.CanRun;
+import ai.konduit.serving.pipeline.api.context.Context;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.data.ValueType;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.impl.pipeline.BasePipelineExecutor;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import ai.konduit.serving.pipeline.util.NDArrayUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runner for {@link BatchingStep}.<br>
+ * Callers of {@link #exec(Context, Data)} add their request to a queue and block until it has been executed. A single
+ * background thread takes requests from the queue, forms batches, and executes the wrapped step's runner.<br>
+ * The following metrics are reported, tagged with the wrapped step's name and the runner's
+ * {@link MicrometerRegistry#INSTANCE_TAG}:<br>
+ * - konduit.batching.queue.depth: number of requests waiting to be batched<br>
+ * - konduit.batching.batch.size: histogram of the executed batch sizes<br>
+ * - konduit.batching.queue.wait: time requests spend in the queue before their batch is executed
+ */
+@Slf4j
+@CanRun(BatchingStep.class)
+public class BatchingStepRunner implements PipelineStepRunner {
+
+    private final BatchingStep step;
+    private final PipelineStepRunner runner;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private final Thread batchingThread;
+
+    private final DistributionSummary batchSizes;
+    private final Timer queueWait;
+    private final Gauge queueDepth;
+
+    public BatchingStepRunner(@NonNull BatchingStep step) {
+        Preconditions.checkState(step.step() != null, "BatchingStep.step must be set");
+        Preconditions.checkState(step.maxBatchSize() > 0, "BatchingStep.maxBatchSize must be positive, got %s", step.maxBatchSize());
+        Preconditions.checkState(step.maxLatencyMs() >= 0, "BatchingStep.maxLatencyMs must not be negative, got %s", step.maxLatencyMs());
+        this.step = step;
+        this.runner = BasePipelineExecutor.getRunner(step.step());
+
+        String name = step.step().name();
+        Tags tags = Tags.of("step", name, MicrometerRegistry.INSTANCE_TAG, MicrometerRegistry.nextInstanceId());
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        queueDepth = Gauge.builder("konduit.batching.queue.depth", queue, Collection::size)
+                .tags(tags)
+                .register(registry);
+        batchSizes = DistributionSummary.builder("konduit.batching.batch.size")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+        queueWait = Timer.builder("konduit.batching.queue.wait")
+                .tags(tags)
+                .register(registry);
+
+        batchingThread = new Thread(this::runBatching, "konduit-batching-" + name);
+        batchingThread.setDaemon(true);
+        batchingThread.start();
+    }
+
+    @Override
+    public void close() {
+        stop.set(true);
+        batchingThread.interrupt();
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        registry.remove(queueDepth);
+        registry.remove(batchSizes);
+        registry.remove(queueWait);
+        runner.close();
+    }
+
+    @Override
+    public PipelineStep getPipelineStep() {
+        return step;
+    }
+
+    @Override
+    public Data exec(Context ctx, Data data) {
+        return await(submit(ctx, data));
+    }
+
+    @Override
+    public Data[] exec(Context ctx, Data... data) {
+        //Submit all before waiting, so the instances can be executed as part of the same batch
+        Request[] requests = new Request[data.length];
+        for (int i = 0; i < data.length; i++) {
+            requests[i] = submit(ctx, data[i]);
+        }
+
+        Data[] out = new Data[data.length];
+        for (int i = 0; i < data.length; i++) {
+            out[i] = await(requests[i]);
+        }
+        return out;
+    }
+
+    protected Request submit(Context ctx, Data data) {
+        if (stop.get())
+            throw new IllegalStateException("Unable to execute: BatchingStepRunner has been closed");
+        Request r = new Request(ctx, data, System.nanoTime());
+        queue.add(r);
+        return r;
+    }
+
+    protected Data await(Request r) {
+        try {
+            return r.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for batched execution of step " + step.step().name(), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error during batched execution of step " + step.step().name(), e.getCause());
+        }
+    }
+
+    protected void runBatching() {
+        int maxBatchSize = step.maxBatchSize();
+        long maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(step.maxLatencyMs());
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!stop.get()) {
+                batch.add(queue.take());
+                long deadline = batch.get(0).arrivalNanos + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0)
+                        break;
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+
+                execBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            if (!stop.get()) {
+                log.error("Batching thread for step {} was interrupted", step.step().name(), e);
+            }
+        } catch (Throwable t) {
+            log.error("Uncaught exception in batching thread for step {}", step.step().name(), t);
+        } finally {
+            //Fail anything still pending, so that callers don't block forever
+            queue.drainTo(batch);
+            IllegalStateException e = new IllegalStateException("BatchingStepRunner was closed before the request was executed");
+            for (Request r : batch) {
+                r.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    protected void execBatch(List<Request> batch) {
+        long now = System.nanoTime();
+        for (Request r : batch) {
+            queueWait.record(now - r.arrivalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        //Only requests with the same keys, types and shapes (other than dimension 0) can be concatenated
+        Map<String, List<Request>> groups = new LinkedHashMap<>();
+        for (Request r : batch) {
+            String key = batchKey(r.data);
+            if (key == null) {
+                execSingle(r);
+            } else {
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(r);
+            }
+        }
+
+        for (List<Request> group : groups.values()) {
+            if (group.size() == 1) {
+                execSingle(group.get(0));
+            } else {
+                execGroup(group);
+            }
+        }
+    }
+
+    protected void execSingle(Request r) {
+        batchSizes.record(1);
+        try {
+            r.result.complete(runner.exec(r.ctx, r.data));
+        } catch (Throwable t) {
+            r.result.completeExceptionally(t);
+        }
+    }
+
+    protected void execGroup(List<Request> group) {
+        batchSizes.record(group.size());
+        try {
+            Data first = group.get(0).data;
+            List<String> batchNames = batchNames(first);
+
+            long[] sizes = new long[group.size()];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = group.get(i).data.getNDArray(batchNames.get(0)).size(0);
+            }
+            long total = 0;
+            for (long l : sizes)
+                total += l;
+
+            Data in = Data.empty();
+            for (String s : first.keys()) {
+                if (!batchNames.contains(s)) {
+                    in.copyFrom(s, first);
+                }
+            }
+            List<NDArray> toConcat = new ArrayList<>(group.size());
+            for (String s : batchNames) {
+                for (Request r : group) {
+                    toConcat.add(r.data.getNDArray(s));
+                }
+                in.put(s, NDArrayUtils.concat(toConcat));
+                toConcat.clear();
+            }
+
+            Data out = runner.exec(group.get(0).ctx, in);
+
+            Data[] split = new Data[group.size()];
+            for (int i = 0; i < split.length; i++) {
+                split[i] = Data.empty();
+            }
+            for (String s : out.keys()) {
+                if (out.type(s) == ValueType.NDARRAY && out.getNDArray(s).rank() > 0 && out.getNDArray(s).size(0) == total) {
+                    NDArray[] arrays = NDArrayUtils.split(out.getNDArray(s), sizes);
+                    for (int i = 0; i < split.length; i++) {
+                        split[i].put(s, arrays[i]);
+                    }
+                } else {
+                    for (Data d : split) {
+                        d.copyFrom(s, out);
+                    }
+                }
+            }
+
+            for (int i = 0; i < split.length; i++) {
+                group.get(i).result.complete(split[i]);
+            }
+        } catch (Throwable t) {
+            for (Request r : group) {
+                r.result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * @return Names of the values to concatenate for the specified Data instance
+     */
+    protected List<String> batchNames(Data data) {
+        if (step.inputNames() != null)
+            return step.inputNames();
+
+        List<String> out = new ArrayList<>();
+        for (String s : data.keys()) {
+            if (data.type(s) == ValueType.NDARRAY)
+                out.add(s);
+        }
+        return out;
+    }
+
+    /**
+     * @return A key that is equal for Data instances that can be concatenated together, or null if the instance can't
+     * be batched (for example, due to missing values or scalar arrays)
+     */
+    protected String batchKey(Data data) {
+        List<String> names = batchNames(data);
+        if (names.isEmpty())
+            return null;
+
+        StringBuilder sb = new StringBuilder();
+        long size0 = -1;
+        for (String s : names) {
+            if (!data.has(s) || data.type(s) != ValueType.NDARRAY)
+                return null;
+            NDArray arr = data.getNDArray(s);
+            long[] shape = arr.shape();
+            if (shape.length == 0 || (size0 >= 0 && shape[0] != size0))
+                return null;
+            size0 = shape[0];
+
+            sb.append(s).append(':').append(arr.type());
+            for (int i = 1; i < shape.length; i++) {
+                sb.append(',').append(shape[i]);
+            }
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    protected static class Request {
+        private final Context ctx;
+        private final Data data;
+        private final long arrivalNanos;
+        private final CompletableFuture<Data> result = new CompletableFuture<>();
+
+        protected Request(Context ctx, Data data, long arrivalNanos) {
+            this.ctx = ctx;
+            this.data = data;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
+}
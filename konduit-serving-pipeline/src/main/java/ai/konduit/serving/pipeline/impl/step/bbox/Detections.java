@@ -0,0 +1,194 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step.bbox;
+
+import org.nd4j.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * A list of candidate object detections - box coordinates, score and class index - stored in primitive arrays, with
+ * class aware non-max suppression.<br>
+ * Used by the bounding box decoding steps so that {@link ai.konduit.serving.pipeline.api.data.BoundingBox} objects are
+ * only created for the detections that remain after thresholding and non-max suppression.<br>
+ * Box coordinates are stored as provided: either center format (cx, cy, w, h) or corner format (x1, y1, x2, y2), as
+ * specified when the list is created.
+ */
+public class Detections {
+
+    private final boolean centerFormat;
+    private float[] coords;
+    private float[] scores;
+    private int[] classes;
+    private int size;
+
+    /**
+     * @param centerFormat    If true: coordinates are (cx, cy, w, h). If false: (x1, y1, x2, y2)
+     * @param initialCapacity Initial capacity (number of detections)
+     */
+    public Detections(boolean centerFormat, int initialCapacity) {
+        this.centerFormat = centerFormat;
+        int c = Math.max(1, initialCapacity);
+        coords = new float[4 * c];
+        scores = new float[c];
+        classes = new int[c];
+    }
+
+    public void add(float c0, float c1, float c2, float c3, float score, int cls) {
+        if (size == scores.length) {
+            int newCapacity = 2 * size;
+            coords = Arrays.copyOf(coords, 4 * newCapacity);
+            scores = Arrays.copyOf(scores, newCapacity);
+            classes = Arrays.copyOf(classes, newCapacity);
+        }
+        int o = 4 * size;
+        coords[o] = c0;
+        coords[o + 1] = c1;
+        coords[o + 2] = c2;
+        coords[o + 3] = c3;
+        scores[size] = score;
+        classes[size] = cls;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return Coordinate j (0 to 3) of detection i, in the format the detections were added with
+     */
+    public float coord(int i, int j) {
+        return coords[4 * i + j];
+    }
+
+    public float score(int i) {
+        return scores[i];
+    }
+
+    public int classIdx(int i) {
+        return classes[i];
+    }
+
+    /**
+     * @return Indices of all detections, in the order they were added
+     */
+    public int[] all() {
+        int[] out = new int[size];
+        for (int i = 0; i < size; i++)
+            out[i] = i;
+        return out;
+    }
+
+    /**
+     * Greedy, class aware non-max suppression: detections are processed in order of decreasing score, and a detection
+     * is removed if its intersection over union (IOU) with an already selected detection of the same class is greater
+     * than the threshold.
+     *
+     * @param iouThreshold  IOU threshold, 0.0 to 1.0. Values of 1.0 or more disable suppression (only sorting is done)
+     * @param maxDetections Maximum number of detections to return. Processing stops once this many have been selected.
+     *                      0 or less for no limit
+     * @return Indices of the selected detections, in order of decreasing score
+     */
+    public int[] nms(double iouThreshold, int maxDetections) {
+        Preconditions.checkArgument(iouThreshold >= 0.0, "IOU threshold must be >= 0.0, got %s", iouThreshold);
+        int max = maxDetections <= 0 ? size : Math.min(size, maxDetections);
+        long[] order = sortedByScore();
+        boolean suppress = iouThreshold < 1.0;
+
+        float[] area = new float[size];
+        float[] corners = suppress ? corners() : null;
+        if (suppress) {
+            for (int i = 0; i < size; i++) {
+                int o = 4 * i;
+                area[i] = Math.max(0f, corners[o + 2] - corners[o]) * Math.max(0f, corners[o + 3] - corners[o + 1]);
+            }
+        }
+
+        int[] selected = new int[max];
+        int count = 0;
+        for (int k = 0; k < size && count < max; k++) {
+            int i = (int) order[k];
+            boolean keep = true;
+            if (suppress) {
+                int oi = 4 * i;
+                for (int s = 0; s < count; s++) {
+                    int j = selected[s];
+                    if (classes[j] != classes[i])
+                        continue;
+                    int oj = 4 * j;
+                    float iw = Math.min(corners[oi + 2], corners[oj + 2]) - Math.max(corners[oi], corners[oj]);
+                    if (iw <= 0)
+                        continue;
+                    float ih = Math.min(corners[oi + 3], corners[oj + 3]) - Math.max(corners[oi + 1], corners[oj + 1]);
+                    if (ih <= 0)
+                        continue;
+                    float inter = iw * ih;
+                    float union = area[i] + area[j] - inter;
+                    if (union > 0 && inter > iouThreshold * union) {
+                        keep = false;
+                        break;
+                    }
+                }
+            }
+            if (keep)
+                selected[count++] = i;
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Sort the detection indices by decreasing score (ties: in the order they were added). Each key packs the inverted
+     * score bits in the upper and the index in the lower 32 bits, so a primitive sort can be used.
+     * Scores are assumed to be non-negative (NaN and negative scores are treated as 0)
+     */
+    private long[] sortedByScore() {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            float s = scores[i] > 0 ? scores[i] : 0f;     //Also handles NaN
+            //For non-negative floats, the int bits are ordered the same as the values
+            long inv = Integer.MAX_VALUE - Float.floatToIntBits(s);
+            keys[i] = (inv << 32) | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; i++)
+            keys[i] &= 0xFFFFFFFFL;
+        return keys;
+    }
+
+    private float[] corners() {
+        if (!centerFormat)
+            return coords;
+        float[] out = new float[4 * size];
+        for (int i = 0; i < size; i++) {
+            int o = 4 * i;
+            float hw = coords[o + 2] / 2f;
+            float hh = coords[o + 3] / 2f;
+            out[o] = coords[o] - hw;
+            out[o + 1] = coords[o + 1] - hh;
+            out[o + 2] = coords[o] + hw;
+            out[o + 3] = coords[o + 1] + hh;
+        }
+        return out;
+    }
+}
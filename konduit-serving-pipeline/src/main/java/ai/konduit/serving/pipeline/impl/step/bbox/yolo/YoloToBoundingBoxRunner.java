@@ -26,16 +26,22 @@ import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.api.data.ValueType;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
-import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.step.bbox.Detections;
 import ai.konduit.serving.pipeline.util.DataUtils;
 import ai.konduit.serving.pipeline.util.NDArrayUtils;
 import lombok.AllArgsConstructor;
 import org.nd4j.common.base.Preconditions;
 
-import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Runs a {@link YoloToBoundingBoxStep}.<br>
+ * Candidate boxes are decoded directly from the array buffer (in either NCHW or NHWC format), thresholded by object
+ * confidence, and filtered using class aware non-max suppression before any {@link BoundingBox} objects are created.
+ * Output boxes are in order of decreasing probability for each example.
+ */
 @CanRun(YoloToBoundingBoxStep.class)
 @AllArgsConstructor
 public class YoloToBoundingBoxRunner implements PipelineStepRunner {
@@ -75,40 +81,40 @@ public class YoloToBoundingBoxRunner implements PipelineStepRunner {
         int numClasses = step.numClasses() != null ? step.numClasses() : step.classLabels().size();
         Preconditions.checkState(numClasses > 0, "YoloToBoundingboxStep: Number of classes must be > 0");
 
-        if(!step.nchw()){
-            arr = NDArray.create(NDArrayUtils.nhwcToNchw(arr.getAs(float[][][][].class)));
-        }
-
-        //Activation have format: [mb, B*(5+C), H, W]
-        long n = arr.size(0);
-        long b5c = arr.size(1);
-        long h = arr.size(2);
-        long w = arr.size(3);
+        //Activations have format: [mb, B*(5+C), H, W] (nchw) or [mb, H, W, B*(5+C)] (nhwc)
+        long[] shape = arr.shape();
+        int n = (int) shape[0];
+        int b5c = (int) (step.nchw() ? shape[1] : shape[3]);
+        int h = (int) (step.nchw() ? shape[2] : shape[1]);
+        int w = (int) (step.nchw() ? shape[3] : shape[2]);
 
-        int b = (int) (b5c / (numClasses + 5));
-        int c = (int) (b5c / b - 5);
+        int b = b5c / (numClasses + 5);
+        int c = b5c / b - 5;
 
-        //Reshape to [mb, B, 5+C, H, W]
-        SerializedNDArray sa = arr.getAs(SerializedNDArray.class);
-        ByteBuffer bb = sa.getBuffer();
-        SerializedNDArray sa5 = new SerializedNDArray(sa.getType(), new long[]{n, b, 5+c, h, w}, bb);
-        float[][][][][] f5 = NDArray.create(sa5).getAs(float[][][][][].class);
+        //Values are read directly from the array buffer: for channel k of box prior "box" at position (y,x) of
+        //example i, the index is base(i,y,x) + (box*(5+C) + k) * channelStride
+        FloatBuffer fb = NDArrayUtils.asFloatBuffer(arr);
+        int channelStride = step.nchw() ? h * w : 1;
+        float threshold = (float) step.threshold();
 
         List<String> classLabels = step.classLabels();
-
+        Detections detections = new Detections(true, 64);
         List<BoundingBox> out = new ArrayList<>();
         for( int i=0; i<n; i++ ) {
-            for (int x = 0; x < w; x++) {
-                for (int y = 0; y < h; y++) {
+            detections.clear();
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int base = step.nchw() ? i * b5c * h * w + y * w + x : ((i * h + y) * w + x) * b5c;
                     for (int box = 0; box < b; box++) {
-                        float conf = f5[i][box][4][y][x];
-                        if(conf < step.threshold())
+                        int boxBase = base + box * (5 + c) * channelStride;
+                        float conf = fb.get(boxBase + 4 * channelStride);
+                        if(conf < threshold)
                             continue;
 
-                        float px = f5[i][box][0][y][x]; //Originally: in 0 to 1 in grid cell
-                        float py = f5[i][box][1][y][x]; //Originally: in 0 to 1 in grid cell
-                        float pw = f5[i][box][2][y][x]; //In grid units (for example, 0 to 13)
-                        float ph = f5[i][box][3][y][x]; //In grid units (for example, 0 to 13)
+                        float px = fb.get(boxBase); //Originally: in 0 to 1 in grid cell
+                        float py = fb.get(boxBase + channelStride); //Originally: in 0 to 1 in grid cell
+                        float pw = fb.get(boxBase + 2 * channelStride); //In grid units (for example, 0 to 13)
+                        float ph = fb.get(boxBase + 3 * channelStride); //In grid units (for example, 0 to 13)
 
                         //Convert the "position in grid cell" to "position in image (in grid cell units)"
                         px += x;
@@ -117,25 +123,34 @@ public class YoloToBoundingBoxRunner implements PipelineStepRunner {
                         //Probabilities
                         float prob = 0.0f;
                         int pIdx = 0;
+                        int probBase = boxBase + 5 * channelStride;
                         for( int cl=0; cl<c; cl++){
-                            float f = f5[i][box][5+cl][y][x];
+                            float f = fb.get(probBase + cl * channelStride);
                             if(f > prob){
                                 prob = f;
                                 pIdx = cl;
                             }
                         }
 
-                        String lbl;
-                        if(classLabels == null || pIdx >= classLabels.size()){
-                            lbl = String.valueOf(pIdx);
-                        } else {
-                            lbl = classLabels.get(pIdx);
-                        }
-
-                        out.add(BoundingBox.create(px/w, py/h, ph/h, pw/w, lbl, (double)prob));
+                        detections.add(px/w, py/h, pw/w, ph/h, prob, pIdx);
                     }
                 }
             }
+
+            //Non-max suppression per example - BoundingBox objects are created only for the selected detections
+            int maxDetections = step.maxDetections() == null ? 0 : step.maxDetections();
+            for(int idx : detections.nms(step.nmsThreshold(), maxDetections)){
+                int pIdx = detections.classIdx(idx);
+                String lbl;
+                if(classLabels == null || pIdx >= classLabels.size()){
+                    lbl = String.valueOf(pIdx);
+                } else {
+                    lbl = classLabels.get(pIdx);
+                }
+
+                out.add(BoundingBox.create(detections.coord(idx, 0), detections.coord(idx, 1), detections.coord(idx, 3),
+                        detections.coord(idx, 2), lbl, (double) detections.score(idx)));
+            }
         }
 
         Data dOut;
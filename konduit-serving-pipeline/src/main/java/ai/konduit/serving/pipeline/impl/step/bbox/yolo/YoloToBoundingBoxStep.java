@@ -89,9 +89,14 @@ public class YoloToBoundingBoxStep implements PipelineStep {
     @Schema(description = "The threshold, in range 0.0 to 1.0. Any boxes with object confidence less than this will be ignored")
     protected double threshold = 0.5;
 
-    @Schema(description = "Non-max suppression threshold to use, to filter closely overlapping objects")
+    @Schema(description = "Non-max suppression threshold to use, to filter closely overlapping objects: a box is removed if its " +
+            "intersection over union with a higher probability box of the same class is above this threshold. 1.0 to disable")
     protected double nmsThreshold = 0.5;
 
+    @Schema(description = "Optional - the maximum number of bounding boxes to return for each example (highest probability first). " +
+            "If not set, all boxes remaining after non-max suppression are returned")
+    protected Integer maxDetections;
+
     @Schema(description = "Number of classes. Not required if classLabels are provided")
     protected Integer numClasses;
 
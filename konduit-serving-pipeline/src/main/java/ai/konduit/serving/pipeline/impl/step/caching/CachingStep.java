@@ -0,0 +1,80 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step.caching;
+
+import ai.konduit.serving.annotation.json.JsonName;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import lombok.experimental.Tolerate;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CachingStep wraps another pipeline step (usually a model step) and caches its outputs, keyed by a hash of the
+ * content of its inputs. Repeated requests with identical inputs are answered from the cache without executing the
+ * wrapped step.<br>
+ * The cache key is a 128-bit hash (see {@link DataHasher}) of the input values listed in inputNames (or all input
+ * values if not set). The cache is bounded both by the number of entries (maxEntries) and by the approximate size of
+ * the cached outputs (maxSizeBytes); the least recently used entries are evicted first. Entries older than ttlMs are
+ * not returned.<br>
+ * If coalesce is true, concurrent requests with identical inputs are coalesced: only one of them executes the wrapped
+ * step, and the others wait for and share its result.<br>
+ * Note that the wrapped step must be deterministic for caching to be valid.
+ *
+ * @see CachingStepRunner
+ */
+@Data
+@Accessors(fluent = true)
+@JsonName("CACHING")
+@Schema(description = "A pipeline step that wraps another pipeline step (usually a model step) and caches its " +
+        "outputs, keyed by a hash of the content of its inputs. Repeated requests with identical inputs are answered " +
+        "from the cache without executing the wrapped step. The cache is bounded by number of entries and total size, " +
+        "with least recently used entries evicted first, and entries may optionally expire. Concurrent identical " +
+        "requests can be coalesced so that the wrapped step is only executed once.")
+public class CachingStep implements PipelineStep {
+
+    @Schema(description = "The pipeline step whose outputs should be cached.")
+    private PipelineStep step;
+
+    @Schema(description = "Names of the input values used to compute the cache key. If not set, all input values " +
+            "are used.")
+    private List<String> inputNames;
+
+    @Schema(description = "Maximum number of entries in the cache.", defaultValue = "1000")
+    private int maxEntries = 1000;
+
+    @Schema(description = "Maximum approximate total size, in bytes, of the cached outputs.", defaultValue = "268435456")
+    private long maxSizeBytes = 256L * 1024 * 1024;
+
+    @Schema(description = "Time, in milliseconds, after which cache entries expire. 0 for no expiry.", defaultValue = "0")
+    private long ttlMs = 0;
+
+    @Schema(description = "If true: concurrent requests with identical inputs are coalesced, so that the wrapped " +
+            "step is only executed once for them.", defaultValue = "true")
+    private boolean coalesce = true;
+
+    @Tolerate
+    public CachingStep inputNames(String... inputNames) {
+        this.inputNames = Arrays.asList(inputNames);
+        return this;
+    }
+}
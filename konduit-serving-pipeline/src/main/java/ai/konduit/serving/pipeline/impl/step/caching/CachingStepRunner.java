@@ -0,0 +1,443 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step.caching;
+
+import ai.konduit.serving.annotation.runner.CanRun;
+import ai.konduit.serving.pipeline.api.context.Context;
+import ai.konduit.serving.pipeline.api.data.*;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.impl.data.image.Bmp;
+import ai.konduit.serving.pipeline.impl.data.image.Gif;
+import ai.konduit.serving.pipeline.impl.data.image.Jpeg;
+import ai.konduit.serving.pipeline.impl.data.image.Png;
+import ai.konduit.serving.pipeline.impl.data.image.base.BaseImageFile;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.pipeline.BasePipelineExecutor;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runner for {@link CachingStep}.<br>
+ * Cached outputs are deep copies of the wrapped step's outputs, with NDArray and ByteBuffer values copied to heap
+ * buffers: outputs may be backed by buffers from {@link ai.konduit.serving.pipeline.impl.memory.BufferPool} that are
+ * released once the request that produced them completes. Cache hits return a new Data instance with views of the
+ * cached buffers (no copy is made), hence the outputs of this step should not be modified in place.<br>
+ * Images are the exception: as these are commonly modified in place, each cache hit returns a new image. Encoded images
+ * (PNG, JPEG, etc) share the cached bytes, {@link BufferedImage}s are copied, and other formats (such as OpenCV Mats)
+ * are cached in (lossless) PNG format.<br>
+ * Outputs whose approximate size exceeds {@link CachingStep#maxSizeBytes()} are not cached (and not copied).<br>
+ * Only the 128-bit hash of the inputs is stored, not the inputs themselves.<br>
+ * The following metrics are reported, tagged with the wrapped step's name and the runner's
+ * {@link MicrometerRegistry#INSTANCE_TAG}:<br>
+ * - konduit.cache.hits, konduit.cache.misses: number of requests answered from / not found in the cache<br>
+ * - konduit.cache.coalesced: number of requests that waited for an identical in-progress request<br>
+ * - konduit.cache.evictions, konduit.cache.expirations: number of entries removed due to size limits / expiry<br>
+ * - konduit.cache.entries, konduit.cache.size.bytes: current number of entries and their approximate total size
+ */
+@Slf4j
+@CanRun(CachingStep.class)
+public class CachingStepRunner implements PipelineStepRunner {
+
+    //Approximate per-value and per-entry overhead, for size estimates
+    private static final long VALUE_OVERHEAD = 64;
+    private static final long ENTRY_OVERHEAD = 128;
+
+    private final CachingStep step;
+    private final PipelineStepRunner runner;
+    private final long ttlNanos;
+
+    //Access ordered: iteration order is least recently used first
+    private final LinkedHashMap<DataHasher.Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<DataHasher.Key, CompletableFuture<Entry>> inProgress = new ConcurrentHashMap<>();
+    private long sizeBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+    private final Counter expirations;
+    private final List<Meter> meters;
+
+    public CachingStepRunner(@NonNull CachingStep step) {
+        Preconditions.checkState(step.step() != null, "CachingStep.step must be set");
+        Preconditions.checkState(step.maxEntries() > 0, "CachingStep.maxEntries must be positive, got %s", step.maxEntries());
+        Preconditions.checkState(step.maxSizeBytes() > 0, "CachingStep.maxSizeBytes must be positive, got %s", step.maxSizeBytes());
+        Preconditions.checkState(step.ttlMs() >= 0, "CachingStep.ttlMs must not be negative, got %s", step.ttlMs());
+        this.step = step;
+        this.runner = BasePipelineExecutor.getRunner(step.step());
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(step.ttlMs());
+
+        Tags tags = Tags.of("step", step.step().name(), MicrometerRegistry.INSTANCE_TAG, MicrometerRegistry.nextInstanceId());
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        hits = Counter.builder("konduit.cache.hits").tags(tags).register(registry);
+        misses = Counter.builder("konduit.cache.misses").tags(tags).register(registry);
+        coalesced = Counter.builder("konduit.cache.coalesced").tags(tags).register(registry);
+        evictions = Counter.builder("konduit.cache.evictions").tags(tags).register(registry);
+        expirations = Counter.builder("konduit.cache.expirations").tags(tags).register(registry);
+        Gauge entries = Gauge.builder("konduit.cache.entries", this, CachingStepRunner::size)
+                .tags(tags)
+                .register(registry);
+        Gauge size = Gauge.builder("konduit.cache.size.bytes", this, CachingStepRunner::sizeBytes)
+                .tags(tags)
+                .baseUnit("bytes")
+                .register(registry);
+        meters = Arrays.asList(hits, misses, coalesced, evictions, expirations, entries, size);
+    }
+
+    @Override
+    public void close() {
+        synchronized (cache) {
+            cache.clear();
+            sizeBytes = 0;
+        }
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        for (Meter m : meters) {
+            registry.remove(m);
+        }
+        runner.close();
+    }
+
+    @Override
+    public PipelineStep getPipelineStep() {
+        return step;
+    }
+
+    @Override
+    public Data exec(Context ctx, Data data) {
+        DataHasher.Key key = DataHasher.hash(data, step.inputNames());
+        Entry e = get(key);
+        if (e != null) {
+            hits.increment();
+            return e.view();
+        }
+        misses.increment();
+
+        if (!step.coalesce()) {
+            Data out = runner.exec(ctx, data);
+            put(key, newEntry(out));
+            return out;
+        }
+
+        CompletableFuture<Entry> f = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = inProgress.putIfAbsent(key, f);
+        if (existing != null) {
+            coalesced.increment();
+            Entry shared = await(existing);
+            if (shared != null)
+                return shared.view();
+            //Output was too large to cache: execute this request separately
+            return runner.exec(ctx, data);
+        }
+
+        try {
+            //An identical request may have completed between the cache lookup and registering this request
+            e = get(key);
+            if (e != null) {
+                f.complete(e);
+                return e.view();
+            }
+
+            Data out = runner.exec(ctx, data);
+            e = newEntry(out);
+            put(key, e);
+            f.complete(e);
+            return out;
+        } catch (Throwable t) {
+            f.completeExceptionally(t);
+            throw t;
+        } finally {
+            inProgress.remove(key, f);
+        }
+    }
+
+    protected Entry await(CompletableFuture<Entry> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for identical request to step " + step.step().name(), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error during execution of step " + step.step().name(), e.getCause());
+        }
+    }
+
+    /**
+     * @return Number of entries currently in the cache
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return Approximate total size of the cached entries, in bytes
+     */
+    public long sizeBytes() {
+        synchronized (cache) {
+            return sizeBytes;
+        }
+    }
+
+    protected Entry get(DataHasher.Key key) {
+        synchronized (cache) {
+            Entry e = cache.get(key);
+            if (e != null && ttlNanos > 0 && System.nanoTime() - e.createdNanos > ttlNanos) {
+                cache.remove(key);
+                sizeBytes -= e.sizeBytes;
+                expirations.increment();
+                return null;
+            }
+            return e;
+        }
+    }
+
+    /**
+     * @return A new cache entry for the given output, or null if its approximate size exceeds the maximum cache size
+     */
+    protected Entry newEntry(Data output) {
+        long size = ENTRY_OVERHEAD + estimateSize(output);
+        if (size > step.maxSizeBytes()) {
+            log.debug("Not caching output of step {}: approximate size {} bytes exceeds maxSizeBytes", step.step().name(), size);
+            return null;
+        }
+        return new Entry(output);
+    }
+
+    protected void put(DataHasher.Key key, Entry e) {
+        if (e == null)
+            return;
+        if (e.sizeBytes > step.maxSizeBytes()) {
+            log.debug("Not caching output of step {}: approximate size {} bytes exceeds maxSizeBytes", step.step().name(), e.sizeBytes);
+            return;
+        }
+        synchronized (cache) {
+            Entry prev = cache.put(key, e);
+            if (prev != null)
+                sizeBytes -= prev.sizeBytes;
+            sizeBytes += e.sizeBytes;
+
+            Iterator<Map.Entry<DataHasher.Key, Entry>> iter = cache.entrySet().iterator();
+            while ((cache.size() > step.maxEntries() || sizeBytes > step.maxSizeBytes()) && iter.hasNext()) {
+                Entry toRemove = iter.next().getValue();
+                iter.remove();
+                sizeBytes -= toRemove.sizeBytes;
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Copy the Data instance. NDArray and ByteBuffer values are either copied to new heap buffers (deep == true) or
+     * returned as views of the original buffers. Images are always copied - see {@link #copy(Image, boolean)}
+     */
+    protected static Data copy(Data data, boolean deep) {
+        Data out = Data.empty();
+        for (String s : data.keys()) {
+            ValueType vt = data.type(s);
+            switch (vt) {
+                case NDARRAY:
+                    out.put(s, copy(data.getNDArray(s), deep));
+                    break;
+                case BYTEBUFFER:
+                    out.put(s, copy(data.getByteBuffer(s), deep));
+                    break;
+                case BYTES:
+                    byte[] b = data.getBytes(s);
+                    out.put(s, deep ? b.clone() : b);
+                    break;
+                case IMAGE:
+                    out.put(s, copy(data.getImage(s), deep));
+                    break;
+                case DATA:
+                    out.put(s, copy(data.getData(s), deep));
+                    break;
+                case LIST:
+                    ValueType lt = data.listType(s);
+                    List<?> l = data.getList(s, lt);
+                    if (lt == ValueType.NDARRAY || lt == ValueType.BYTEBUFFER || lt == ValueType.IMAGE || lt == ValueType.DATA) {
+                        List<Object> lc = new ArrayList<>(l.size());
+                        for (Object o : l) {
+                            if (o instanceof NDArray) {
+                                lc.add(copy((NDArray) o, deep));
+                            } else if (o instanceof ByteBuffer) {
+                                lc.add(copy((ByteBuffer) o, deep));
+                            } else if (o instanceof Image) {
+                                lc.add(copy((Image) o, deep));
+                            } else {
+                                lc.add(copy((Data) o, deep));
+                            }
+                        }
+                        out.putList(s, lc, lt);
+                    } else {
+                        out.copyFrom(s, data);
+                    }
+                    break;
+                default:
+                    //Other value types are immutable
+                    out.copyFrom(s, data);
+            }
+        }
+        if (data.hasMetaData())
+            out.setMetaData(copy(data.getMetaData(), deep));
+        return out;
+    }
+
+    protected static NDArray copy(NDArray arr, boolean deep) {
+        SerializedNDArray sa = arr.getAs(SerializedNDArray.class);
+        return NDArray.create(new SerializedNDArray(sa.getType(), sa.getShape().clone(), copy(sa.getBuffer(), deep)));
+    }
+
+    /**
+     * Copy the image. Unlike NDArrays, a new image is returned even if deep == false, as images are commonly modified
+     * in place by downstream steps.<br>
+     * Encoded images (PNG, JPEG, etc) are copied as a new image file with the same format, with either a copy or a view
+     * of the file bytes. BufferedImages are always copied. Other formats (such as OpenCV Mats, which aren't available
+     * in this module) are converted to PNG, which is lossless.
+     */
+    protected static Image copy(Image image, boolean deep) {
+        Object o = image.get();
+        if (o instanceof BufferedImage) {
+            BufferedImage bi = (BufferedImage) o;
+            ColorModel cm = bi.getColorModel();
+            WritableRaster raster = bi.copyData(bi.getRaster().createCompatibleWritableRaster());
+            return Image.create(new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null));
+        }
+
+        BaseImageFile f = o instanceof BaseImageFile ? (BaseImageFile) o : image.getAs(Png.class);
+        ByteBuffer bytes = copy(f.getFileBytes(), deep);
+        if (f instanceof Jpeg) {
+            return Image.create(new Jpeg(bytes));
+        } else if (f instanceof Bmp) {
+            return Image.create(new Bmp(bytes));
+        } else if (f instanceof Gif) {
+            return Image.create(new Gif(bytes));
+        } else if (f instanceof Png) {
+            return Image.create(new Png(bytes));
+        }
+        return Image.create(image.getAs(Png.class));
+    }
+
+    protected static ByteBuffer copy(ByteBuffer bb, boolean deep) {
+        ByteBuffer src = bb.duplicate();
+        src.rewind();
+        if (!deep)
+            return src.order(bb.order());
+        ByteBuffer out = ByteBuffer.allocate(src.remaining()).order(bb.order());
+        out.put(src);
+        out.rewind();
+        return out;
+    }
+
+    /**
+     * @return Approximate size of the Data instance's values, in bytes
+     */
+    protected static long estimateSize(Data data) {
+        long size = 0;
+        for (String s : data.keys()) {
+            size += VALUE_OVERHEAD + 2L * s.length();
+            ValueType vt = data.type(s);
+            switch (vt) {
+                case NDARRAY:
+                    size += data.getNDArray(s).getAs(SerializedNDArray.class).getBuffer().capacity();
+                    break;
+                case BYTEBUFFER:
+                    size += data.getByteBuffer(s).capacity();
+                    break;
+                case BYTES:
+                    size += data.getBytes(s).length;
+                    break;
+                case STRING:
+                    size += 2L * data.getString(s).length();
+                    break;
+                case IMAGE:
+                    size += estimateSize(data.getImage(s));
+                    break;
+                case DATA:
+                    size += estimateSize(data.getData(s));
+                    break;
+                case LIST:
+                    ValueType lt = data.listType(s);
+                    for (Object o : data.getList(s, lt)) {
+                        size += VALUE_OVERHEAD;
+                        if (o instanceof NDArray) {
+                            size += ((NDArray) o).getAs(SerializedNDArray.class).getBuffer().capacity();
+                        } else if (o instanceof ByteBuffer) {
+                            size += ((ByteBuffer) o).capacity();
+                        } else if (o instanceof byte[]) {
+                            size += ((byte[]) o).length;
+                        } else if (o instanceof String) {
+                            size += 2L * ((String) o).length();
+                        } else if (o instanceof Image) {
+                            size += estimateSize((Image) o);
+                        } else if (o instanceof Data) {
+                            size += estimateSize((Data) o);
+                        }
+                    }
+                    break;
+                default:
+                    //Fixed size values: included in the overhead
+            }
+        }
+        if (data.hasMetaData())
+            size += estimateSize(data.getMetaData());
+        return size;
+    }
+
+    protected static long estimateSize(Image image) {
+        Object o = image.get();
+        if (o instanceof BaseImageFile)
+            return ((BaseImageFile) o).getBytes().length;
+        return (long) image.height() * image.width() * image.channels();
+    }
+
+    protected static class Entry {
+        private final Data data;
+        private final long sizeBytes;
+        private final long createdNanos;
+
+        protected Entry(Data output) {
+            this.data = copy(output, true);
+            this.sizeBytes = ENTRY_OVERHEAD + estimateSize(data);
+            this.createdNanos = System.nanoTime();
+        }
+
+        protected Data view() {
+            return copy(data, false);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step.caching;
+
+import ai.konduit.serving.pipeline.api.data.*;
+import ai.konduit.serving.pipeline.impl.data.helpers.ImageSerdeUtils;
+import ai.konduit.serving.pipeline.impl.data.image.base.BaseImageFile;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Computes a 128-bit content hash (MurmurHash3, x64 128-bit variant) of the values of a {@link Data} instance, for use
+ * as a cache key.<br>
+ * Values are hashed in place - NDArray and ByteBuffer content is read directly from the (heap or direct) buffers,
+ * 16 bytes at a time - so hashing allocates almost nothing beyond the buffer views.<br>
+ * The key name, value type and (for NDArrays) data type and shape are included in the hash, so that for example
+ * arrays with the same content but different shapes have different hashes.<br>
+ * Images that are not already encoded (for example, OpenCV Mat or BufferedImage) are hashed using their raw pixel
+ * values, which requires a conversion.
+ */
+public class DataHasher {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1;
+    private long h2;
+    //Bytes not yet processed (less than one 16 byte block), little endian
+    private long t1;
+    private long t2;
+    private int tailLength;
+    private long length;
+
+    /**
+     * A 128-bit hash value
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static class Key {
+        private final long h1;
+        private final long h2;
+
+        public Key(long h1, long h2) {
+            this.h1 = h1;
+            this.h2 = h2;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", h1, h2);
+        }
+    }
+
+    /**
+     * Hash the specified values of the Data instance
+     *
+     * @param data  Data to hash
+     * @param names Names of the values to hash. If null, all values are hashed (but not the metadata)
+     * @return The hash
+     */
+    public static Key hash(Data data, List<String> names) {
+        DataHasher h = new DataHasher();
+        h.putData(data, names);
+        return h.finish();
+    }
+
+    public void putData(Data data, List<String> names) {
+        List<String> keys = names == null ? data.keys() : names;
+        putInt(keys.size());
+        for (String s : keys) {
+            putString(s);
+            if (!data.has(s)) {
+                putInt(-1);
+                continue;
+            }
+            ValueType vt = data.type(s);
+            putInt(vt.ordinal());
+            switch (vt) {
+                case NDARRAY:
+                    putNDArray(data.getNDArray(s));
+                    break;
+                case STRING:
+                    putString(data.getString(s));
+                    break;
+                case BYTES:
+                    putBytes(data.getBytes(s));
+                    break;
+                case BYTEBUFFER:
+                    putBuffer(data.getByteBuffer(s));
+                    break;
+                case IMAGE:
+                    putImage(data.getImage(s));
+                    break;
+                case DOUBLE:
+                    putLong(Double.doubleToLongBits(data.getDouble(s)));
+                    break;
+                case INT64:
+                    putLong(data.getLong(s));
+                    break;
+                case BOOLEAN:
+                    putByte(data.getBoolean(s) ? 1 : 0);
+                    break;
+                case DATA:
+                    putData(data.getData(s), null);
+                    break;
+                case LIST:
+                    ValueType lt = data.listType(s);
+                    putInt(lt.ordinal());
+                    putList(data.getList(s, lt), lt);
+                    break;
+                case BOUNDING_BOX:
+                    putBoundingBox(data.getBoundingBox(s));
+                    break;
+                case POINT:
+                    putPoint(data.getPoint(s));
+                    break;
+                default:
+                    throw new IllegalStateException("Unable to hash value of type " + vt + " for key \"" + s + "\"");
+            }
+        }
+    }
+
+    protected void putList(List<?> list, ValueType type) {
+        putInt(list.size());
+        for (Object o : list) {
+            switch (type) {
+                case NDARRAY:
+                    putNDArray((NDArray) o);
+                    break;
+                case STRING:
+                    putString((String) o);
+                    break;
+                case BYTES:
+                    putBytes((byte[]) o);
+                    break;
+                case BYTEBUFFER:
+                    putBuffer((ByteBuffer) o);
+                    break;
+                case IMAGE:
+                    putImage((Image) o);
+                    break;
+                case DOUBLE:
+                    putLong(Double.doubleToLongBits((Double) o));
+                    break;
+                case INT64:
+                    putLong((Long) o);
+                    break;
+                case BOOLEAN:
+                    putByte((Boolean) o ? 1 : 0);
+                    break;
+                case DATA:
+                    putData((Data) o, null);
+                    break;
+                case BOUNDING_BOX:
+                    putBoundingBox((BoundingBox) o);
+                    break;
+                case POINT:
+                    putPoint((Point) o);
+                    break;
+                default:
+                    throw new IllegalStateException("Unable to hash list with values of type " + type);
+            }
+        }
+    }
+
+    protected void putNDArray(NDArray arr) {
+        SerializedNDArray sa = arr.getAs(SerializedNDArray.class);
+        putInt(sa.getType().ordinal());
+        long[] shape = sa.getShape();
+        putInt(shape.length);
+        for (long l : shape)
+            putLong(l);
+        putBuffer(sa.getBuffer());
+    }
+
+    protected void putImage(Image image) {
+        //Encoded images are hashed as-is; other formats via their raw pixels (avoids PNG encoding them)
+        boolean isFile = image.get() instanceof BaseImageFile;
+        ImageSerdeUtils.EncodedImage e = ImageSerdeUtils.encode(image, isFile ? ImageEncoding.NATIVE : ImageEncoding.RAW);
+        putString(e.getFormat());
+        if (e.getShape() != null) {
+            for (long l : e.getShape())
+                putLong(l);
+            putString(e.getLayout());
+        }
+        putBytes(e.getData());
+    }
+
+    protected void putBoundingBox(BoundingBox bb) {
+        putLong(Double.doubleToLongBits(bb.x1()));
+        putLong(Double.doubleToLongBits(bb.x2()));
+        putLong(Double.doubleToLongBits(bb.y1()));
+        putLong(Double.doubleToLongBits(bb.y2()));
+        putString(bb.label());
+        putLong(bb.probability() == null ? 0 : Double.doubleToLongBits(bb.probability()));
+    }
+
+    protected void putPoint(Point p) {
+        putInt(p.dimensions());
+        for (int i = 0; i < p.dimensions(); i++)
+            putLong(Double.doubleToLongBits(p.get(i)));
+        putString(p.label());
+        putLong(p.probability() == null ? 0 : Double.doubleToLongBits(p.probability()));
+    }
+
+    public void putString(String s) {
+        if (s == null) {
+            putInt(-1);
+            return;
+        }
+        int n = s.length();
+        putInt(n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            putByte(c);
+            putByte(c >>> 8);
+        }
+    }
+
+    public void putBytes(byte[] bytes) {
+        putBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Hash the content of the buffer, from position 0 to its limit
+     */
+    public void putBuffer(ByteBuffer buffer) {
+        ByteBuffer bb = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        bb.rewind();
+        int n = bb.remaining();
+        putLong(n);
+        int i = 0;
+        while (tailLength != 0 && i < n)
+            putByte(bb.get(i++));
+        for (; i + 16 <= n; i += 16) {
+            block(bb.getLong(i), bb.getLong(i + 8));
+            length += 16;
+        }
+        for (; i < n; i++)
+            putByte(bb.get(i));
+    }
+
+    public void putInt(int v) {
+        for (int i = 0; i < 4; i++)
+            putByte(v >>> (8 * i));
+    }
+
+    public void putLong(long v) {
+        if (tailLength == 0) {
+            t1 = v;
+            tailLength = 8;
+            length += 8;
+        } else if (tailLength == 8) {
+            block(t1, v);
+            length += 8;
+            t1 = 0;
+            tailLength = 0;
+        } else {
+            for (int i = 0; i < 8; i++)
+                putByte((int) (v >>> (8 * i)));
+        }
+    }
+
+    public void putByte(int b) {
+        long v = b & 0xFFL;
+        if (tailLength < 8) {
+            t1 |= v << (8 * tailLength);
+        } else {
+            t2 |= v << (8 * (tailLength - 8));
+        }
+        tailLength++;
+        length++;
+        if (tailLength == 16) {
+            block(t1, t2);
+            t1 = 0;
+            t2 = 0;
+            tailLength = 0;
+        }
+    }
+
+    private void block(long k1, long k2) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    /**
+     * @return The hash of all values added so far
+     */
+    public Key finish() {
+        long k1 = t1;
+        long k2 = t2;
+        long f1 = h1;
+        long f2 = h2;
+        if (tailLength > 8) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            f2 ^= k2;
+        }
+        if (tailLength > 0) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            f1 ^= k1;
+        }
+
+        f1 ^= length;
+        f2 ^= length;
+        f1 += f2;
+        f2 += f1;
+        f1 = fmix(f1);
+        f2 = fmix(f2);
+        f1 += f2;
+        f2 += f1;
+        return new Key(f1, f2);
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
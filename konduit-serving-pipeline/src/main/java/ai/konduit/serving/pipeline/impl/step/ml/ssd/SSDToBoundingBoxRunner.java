@@ -26,15 +26,19 @@ import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.api.data.ValueType;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
-import io.micrometer.core.instrument.util.IOUtils;
+import ai.konduit.serving.pipeline.impl.step.bbox.Detections;
+import ai.konduit.serving.pipeline.util.NDArrayUtils;
 import lombok.AllArgsConstructor;
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.exception.OutOfRangeException;
 
-import java.io.InputStream;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Runs a {@link SSDToBoundingBoxStep}.<br>
+ * Detections are read directly from the array buffers and thresholded - and optionally filtered using class aware
+ * non-max suppression - before any {@link BoundingBox} objects are created.
+ */
 @AllArgsConstructor
 @CanRun(SSDToBoundingBoxStep.class)
 public class SSDToBoundingBoxRunner implements PipelineStepRunner {
@@ -55,131 +59,93 @@ public class SSDToBoundingBoxRunner implements PipelineStepRunner {
     @Override
     public Data exec(Context ctx, Data data) {
 
-        double threshold = step.threshold();
+        float threshold = (float) step.threshold();
         String key = "detection_boxes";     //TODO
         String prob = "detection_scores";
         NDArray bND = data.getNDArray(key);
         NDArray pND = data.getNDArray(prob);
-        float[][][] bArr = bND.getAs(float[][][].class);        //Batch, num, xy
-        float[][] pArr = pND.getAs(float[][].class);            //Batch, num
-
-        if (step.classLabels != null) {
-
-
+        //Values are read directly from the array buffers - only the first example is used
+        FloatBuffer bArr = NDArrayUtils.asFloatBuffer(bND);        //Batch, num, xy
+        FloatBuffer pArr = NDArrayUtils.asFloatBuffer(pND);        //Batch, num
+        int num = (int) pND.shape()[1];
+
+        boolean hasLabels = step.classLabels != null;
+        FloatBuffer lArr = null;
+        if (hasLabels) {
             String labels = "detection_classes";
             NDArray lND = data.getNDArray(labels);
-            float[][] lArr = lND.getAs(float[][].class);
-
-            List<BoundingBox> l = new ArrayList<>();
-            for (int i = 0; i < bArr[0].length; i++) {
-                //SSD order usually: [y1, x1, y2, x2]
-                double y1 = bArr[0][i][0];
-                double x1 = bArr[0][i][1];
-                double y2 = bArr[0][i][2];
-                double x2 = bArr[0][i][3];
-                double p = pArr[0][i];
-
-                if(p < threshold)
-                    continue;
-
-                if(step.aspectRatio() != null){
-                    double[] d = adjustAspect(x1, x2, y1, y2, step.aspectRatio());
-                    x1 = d[0];
-                    x2 = d[1];
-                    y1 = d[2];
-                    y2 = d[3];
-                }
-
-                if(step.scale() != null && step.scale() != 1.0){
-                    double s = step.scale();
-                    double cx = (x1+x2) / 2.0;
-                    double cy = (y1+y2) / 2.0;
-                    x1 = cx - (cx-x1) * s;
-                    x2 = cx + (x2-cx) * s;
-                    y1 = cy - (cy-y1) * s;
-                    y2 = cy + (y2-cy) * s;
-                }
+            lArr = NDArrayUtils.asFloatBuffer(lND);
+        }
 
+        Detections detections = new Detections(false, 16);
+        for (int i = 0; i < num; i++) {
+            float p = pArr.get(i);
+            if(p < threshold)
+                continue;
 
-                float label = lArr[0][i];
-                if (step.classLabels.size() > 0 && (int) label > step.classLabels.size()) {
-                    throw new ArrayIndexOutOfBoundsException(String.format("Predicted label index was %s but only %s labels were provided", (int) label, step.classLabels.size()));
-                }
+            //SSD order usually: [y1, x1, y2, x2]
+            int o = 4 * i;
+            int label = hasLabels ? (int) lArr.get(i) : 0;
+            detections.add(bArr.get(o + 1), bArr.get(o), bArr.get(o + 3), bArr.get(o + 2), p, label);
+        }
 
-                l.add(BoundingBox.createXY(x1, x2, y1, y2, !step.classLabels.isEmpty() ? step.classLabels.get((int) label - 1) : "no label provided", p));
+        int[] selected = step.nmsThreshold() == null ? detections.all() : detections.nms(step.nmsThreshold(), 0);
+
+        List<BoundingBox> l = new ArrayList<>(selected.length);
+        for (int i : selected) {
+            double x1 = detections.coord(i, 0);
+            double y1 = detections.coord(i, 1);
+            double x2 = detections.coord(i, 2);
+            double y2 = detections.coord(i, 3);
+            double p = detections.score(i);
+
+            if(step.aspectRatio() != null){
+                double[] d = adjustAspect(x1, x2, y1, y2, step.aspectRatio());
+                x1 = d[0];
+                x2 = d[1];
+                y1 = d[2];
+                y2 = d[3];
             }
 
-            //TODO copy other data to output
-
-            String outName = step.outputName();
-            if (outName == null)
-                outName = SSDToBoundingBoxStep.DEFAULT_OUTPUT_NAME;
-
-            Data d = Data.singletonList(outName, l, ValueType.BOUNDING_BOX);
-
-            if (step.keepOtherValues()) {
-                for (String s : data.keys()) {
-                    if (!key.equals(s) && !prob.equals(s)) {
-                        d.copyFrom(s, data);
-                    }
-                }
+            if(step.scale() != null && step.scale() != 1.0){
+                double s = step.scale();
+                double cx = (x1+x2) / 2.0;
+                double cy = (y1+y2) / 2.0;
+                x1 = cx - (cx-x1) * s;
+                x2 = cx + (x2-cx) * s;
+                y1 = cy - (cy-y1) * s;
+                y2 = cy + (y2-cy) * s;
             }
 
-            return d;
-        } else {
-
-            List<BoundingBox> l = new ArrayList<>();
-            for (int i = 0; i < bArr[0].length; i++) {
-                //SSD order usually: [y1, x1, y2, x2]
-                double y1 = bArr[0][i][0];
-                double x1 = bArr[0][i][1];
-                double y2 = bArr[0][i][2];
-                double x2 = bArr[0][i][3];
-                double p = pArr[0][i];
-
-                if(p < threshold)
-                    continue;
-
-                if(step.aspectRatio() != null){
-                    double[] d = adjustAspect(x1, x2, y1, y2, step.aspectRatio());
-                    x1 = d[0];
-                    x2 = d[1];
-                    y1 = d[2];
-                    y2 = d[3];
-                }
-
-
-                if(step.scale() != null && step.scale() != 1.0){
-                    double s = step.scale();
-                    double cx = (x1+x2) / 2.0;
-                    double cy = (y1+y2) / 2.0;
-                    x1 = cx - (cx-x1) * s;
-                    x2 = cx + (x2-cx) * s;
-                    y1 = cy - (cy-y1) * s;
-                    y2 = cy + (y2-cy) * s;
+            String lbl = null;
+            if (hasLabels) {
+                int label = detections.classIdx(i);
+                if (step.classLabels.size() > 0 && label > step.classLabels.size()) {
+                    throw new ArrayIndexOutOfBoundsException(String.format("Predicted label index was %s but only %s labels were provided", label, step.classLabels.size()));
                 }
-
-                l.add(BoundingBox.createXY(x1, x2, y1, y2, null, p));
+                lbl = !step.classLabels.isEmpty() ? step.classLabels.get(label - 1) : "no label provided";
             }
 
-            //TODO copy other data to output
+            l.add(BoundingBox.createXY(x1, x2, y1, y2, lbl, p));
+        }
+
+        //TODO copy other data to output
 
-            String outName = step.outputName();
-            if (outName == null)
-                outName = SSDToBoundingBoxStep.DEFAULT_OUTPUT_NAME;
+        String outName = step.outputName();
+        if (outName == null)
+            outName = SSDToBoundingBoxStep.DEFAULT_OUTPUT_NAME;
 
-            Data d = Data.singletonList(outName, l, ValueType.BOUNDING_BOX);
+        Data d = Data.singletonList(outName, l, ValueType.BOUNDING_BOX);
 
-            if (step.keepOtherValues()) {
-                for (String s : data.keys()) {
-                    if (!key.equals(s) && !prob.equals(s)) {
-                        d.copyFrom(s, data);
-                    }
+        if (step.keepOtherValues()) {
+            for (String s : data.keys()) {
+                if (!key.equals(s) && !prob.equals(s)) {
+                    d.copyFrom(s, data);
                 }
             }
-
-            return d;
         }
+
+        return d;
     }
 
     protected double[] adjustAspect(double x1, double x2, double y1, double y2, double aspect){
@@ -86,6 +86,11 @@ public class SSDToBoundingBoxStep implements PipelineStep {
             "fully within the output box")
     protected Double aspectRatio = null;
 
+    @Schema(description = "Optional - non-max suppression threshold: a box is removed if its intersection over union with a higher " +
+            "probability box of the same class is above this threshold. If not set, no non-max suppression is performed " +
+            "(SSD models usually include it already) and boxes are returned in the order output by the model")
+    protected Double nmsThreshold = null;
+
 
     
     @Schema(description = "Output key name where the bounding box will be contained in.",
@@ -27,9 +27,21 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 public class MicrometerRegistry {
+    /**
+     * Tag that distinguishes the meters of different instances of the same component. Meters are identified by their
+     * name and tags only: without it, two instances reporting the same metric for steps with the same name (for example,
+     * two pipelines that use the same step name, or a runner and its replacement during a hot reload) would share one
+     * meter, and closing one instance would remove the meters of the other.<br>
+     * Components that register meters per instance tag them with {@link #nextInstanceId()}, and remove them from the
+     * registry when closed.
+     */
+    public static final String INSTANCE_TAG = "instance";
+
+    private static final AtomicLong INSTANCE_COUNTER = new AtomicLong();
     private static List<io.micrometer.core.instrument.MeterRegistry> registries;
 
     static {
@@ -46,6 +58,13 @@ public class MicrometerRegistry {
         return registries.get(0);
     }
 
+    /**
+     * @return A new value for the {@link #INSTANCE_TAG} tag, unique within this process
+     */
+    public static String nextInstanceId() {
+        return String.valueOf(INSTANCE_COUNTER.getAndIncrement());
+    }
+
     public static synchronized void initRegistries() {
         if(registries == null) {
             registries = new ArrayList<>();
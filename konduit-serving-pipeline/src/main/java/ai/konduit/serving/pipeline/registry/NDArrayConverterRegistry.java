@@ -18,23 +18,37 @@
 
 package ai.konduit.serving.pipeline.registry;
 
-import ai.konduit.serving.pipeline.api.data.Image;
 import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.api.format.*;
-import ai.konduit.serving.pipeline.impl.data.image.Png;
 import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import lombok.Value;
 import org.nd4j.common.primitives.Pair;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link NDArrayConverter}s.<br>
+ * Converter resolution is memoized: the converter (or converter chain) found for a given source array class, data type,
+ * rank and target class/format is cached, as is the absence of a converter. Whether a converter can be used is assumed
+ * to depend only on those properties of the source array. The cache is cleared whenever a converter is added via
+ * {@link #addConverter(NDArrayConverter)}.
+ */
 public class NDArrayConverterRegistry extends AbstractRegistry<NDArrayConverter> {
 
     private static final NDArrayConverterRegistry INSTANCE = new NDArrayConverterRegistry();
 
+    //Sentinel for negative caching - ConcurrentHashMap does not allow null values
+    private static final NDArrayConverter NONE = new TwoStepNDArrayConverter(Void.class, Void.class, null, null);
+
+    private final Map<ConversionKey, NDArrayConverter> cache = new ConcurrentHashMap<>();
+
     protected NDArrayConverterRegistry(){
         super(NDArrayConverter.class);
     }
@@ -74,6 +88,17 @@ public class NDArrayConverterRegistry extends AbstractRegistry<NDArrayConverter>
         if(factories == null)
             init();
 
+        ConversionKey key = ConversionKey.of(arr, type);
+        NDArrayConverter c = cache.get(key);
+        if(c != null && (c == NONE || c.canConvert(arr, type)))
+            return c == NONE ? null : c;
+
+        c = resolveForClass(arr, type);
+        cache.put(key, c == null ? NONE : c);
+        return c;
+    }
+
+    protected NDArrayConverter resolveForClass(NDArray arr, Class<?> type){
         if(factoriesMap.containsKey(type)){
             return factoriesMap.get(type).get(0);       //TODO multiple converters
         }
@@ -88,9 +113,12 @@ public class NDArrayConverterRegistry extends AbstractRegistry<NDArrayConverter>
         if(type != SerializedNDArray.class && !(arr.get() instanceof SerializedNDArray)){
             NDArrayConverter c1 = getConverterForClass(arr, SerializedNDArray.class);
             if(c1 != null){
-                NDArray arr2 = NDArray.create(c1.convert(arr, SerializedNDArray.class));            //TODO this is ugly - we throw this result away!
+                //Note that the intermediate array is retained by the source array (when it caches conversions, as
+                // BaseNDArray does), hence the conversion we do here to find the second converter isn't wasted
+                NDArray arr2 = NDArray.create(arr.getAs(SerializedNDArray.class));
                 NDArrayConverter c2 = getConverterForClass(arr2, type);
-                return new TwoStepNDArrayConverter(arr.get().getClass(), type, c1, c2);
+                if(c2 != null)
+                    return new TwoStepNDArrayConverter(arr.get().getClass(), type, c1, c2);
             }
         }
 
@@ -101,16 +129,37 @@ public class NDArrayConverterRegistry extends AbstractRegistry<NDArrayConverter>
         if(factories == null)
             init();
 
-        for(NDArrayConverter c : factories){
-            if(c.canConvert(arr, type)){
-                return c;
+        ConversionKey key = ConversionKey.of(arr, type);
+        NDArrayConverter c = cache.get(key);
+        if(c != null && (c == NONE || c.canConvert(arr, type)))
+            return c == NONE ? null : c;
+
+        c = null;
+        for(NDArrayConverter conv : factories){
+            if(conv.canConvert(arr, type)){
+                c = conv;
+                break;
             }
         }
-        return null;
+        cache.put(key, c == null ? NONE : c);
+        return c;
     }
 
     public static void addConverter(NDArrayConverter f){
         INSTANCE.addFactoryInstance(f);
+        INSTANCE.cache.clear();
+    }
+
+    @Value
+    private static class ConversionKey {
+        private Class<?> from;
+        private NDArrayType type;
+        private int rank;
+        private Object to;
+
+        private static ConversionKey of(NDArray arr, Object to){
+            return new ConversionKey(arr.get().getClass(), arr.type(), arr.rank(), to);
+        }
     }
 
     @AllArgsConstructor
@@ -137,7 +186,8 @@ public class NDArrayConverterRegistry extends AbstractRegistry<NDArrayConverter>
 
         @Override
         public <T> T convert(NDArray from, Class<T> to) {
-            NDArray sArr = NDArray.create(c1.convert(from, SerializedNDArray.class));
+            //Use getAs rather than c1 directly, so an intermediate array already materialized by the source is reused
+            NDArray sArr = NDArray.create(from.getAs(SerializedNDArray.class));
             return (T) c2.convert(sArr, cTo);
         }
     }
@@ -66,4 +66,38 @@ public class PropertiesConstants {
      * Sets the directory where the file uploads are kept for Vertx BodyHandler
      */
     public static final String FILE_UPLOADS_DIR = "konduit.file.uploads.dir";
+
+    /**
+     * The default encoding for images in serialized (JSON and protobuf) Data instances. One of NATIVE (the default),
+     * PNG, JPEG, BMP, GIF or RAW. See {@link ai.konduit.serving.pipeline.api.data.ImageEncoding}
+     */
+    public static final String IMAGE_ENCODING = "konduit.image.encoding";
+
+    /**
+     * Whether NDArray buffers allocated while serving a request are pooled and reused (true by default).
+     * See {@link ai.konduit.serving.pipeline.impl.memory.BufferPool}
+     */
+    public static final String BUFFER_POOL_ENABLED = "konduit.buffer.pool.enabled";
+
+    /**
+     * Maximum number of bytes of idle buffers kept in the shared buffer pool. Released buffers beyond this limit are
+     * left to the garbage collector
+     */
+    public static final String BUFFER_POOL_MAX_BYTES = "konduit.buffer.pool.max.bytes";
+
+    /**
+     * Maximum number of bytes of idle buffers cached by each thread, in addition to the shared buffer pool
+     */
+    public static final String BUFFER_POOL_THREAD_CACHE_BYTES = "konduit.buffer.pool.thread.cache.bytes";
+
+    /**
+     * Largest buffer (in bytes) that is pooled. Larger allocations always allocate a new buffer
+     */
+    public static final String BUFFER_POOL_MAX_BUFFER_BYTES = "konduit.buffer.pool.max.buffer.bytes";
+
+    /**
+     * NDArrays with at most this number of elements are serialized to JSON as a flat array of numbers
+     * ("@NDArrayDataArray") rather than as base64 ("@NDArrayDataBase64"). 0 (the default) to always use base64.
+     */
+    public static final String JSON_NDARRAY_ARRAY_MAX_ELEMENTS = "konduit.json.ndarray.array.max.elements";
 }
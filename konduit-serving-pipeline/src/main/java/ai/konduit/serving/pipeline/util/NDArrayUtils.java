@@ -20,6 +20,16 @@ package ai.konduit.serving.pipeline.util;
 
 import ai.konduit.serving.pipeline.api.data.NDArray;
 import ai.konduit.serving.pipeline.api.data.NDArrayType;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
+import lombok.NonNull;
+import org.nd4j.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.List;
 
 public class NDArrayUtils {
 
@@ -117,4 +127,130 @@ public class NDArrayUtils {
 
         return nchw;
     }
+
+    /**
+     * Get the values of the NDArray as a flat (row major) FloatBuffer. For FLOAT arrays, this is a view of the array's
+     * buffer (no copy); DOUBLE arrays are converted
+     *
+     * @param arr Array to get the values of. Must be FLOAT or DOUBLE type
+     * @return FloatBuffer with the array values, from index 0
+     */
+    public static FloatBuffer asFloatBuffer(@NonNull NDArray arr){
+        SerializedNDArray sa = arr.getAs(SerializedNDArray.class);
+        ByteBuffer bb = sa.getBuffer().duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        bb.rewind();
+        switch (sa.getType()){
+            case FLOAT:
+                return bb.asFloatBuffer();
+            case DOUBLE:
+                DoubleBuffer db = bb.asDoubleBuffer();
+                FloatBuffer fb = FloatBuffer.allocate(db.remaining());
+                while(db.hasRemaining())
+                    fb.put((float) db.get());
+                fb.rewind();
+                return fb;
+            default:
+                throw new IllegalStateException("Unable to get values of NDArray of type " + sa.getType() + " as floats: only FLOAT and DOUBLE are supported");
+        }
+    }
+
+    /**
+     * Concatenate the specified NDArrays along dimension 0. All arrays must have the same data type, the same rank (at
+     * least 1), and the same size for all dimensions other than dimension 0.<br>
+     * For example, arrays with shapes [1,3,224,224] and [2,3,224,224] are concatenated to shape [3,3,224,224]
+     *
+     * @param arrays Arrays to concatenate
+     * @return The concatenated array
+     * @see #split(NDArray, long[])
+     */
+    public static NDArray concat(@NonNull List<NDArray> arrays){
+        Preconditions.checkState(!arrays.isEmpty(), "Unable to concatenate an empty list of arrays");
+        if(arrays.size() == 1)
+            return arrays.get(0);
+
+        SerializedNDArray first = arrays.get(0).getAs(SerializedNDArray.class);
+        NDArrayType type = first.getType();
+        long[] shape = first.getShape();
+        Preconditions.checkState(type.isFixedWidth(), "Unable to concatenate arrays of type %s", type);
+        Preconditions.checkState(shape.length > 0, "Unable to concatenate scalar (rank 0) arrays");
+
+        SerializedNDArray[] toConcat = new SerializedNDArray[arrays.size()];
+        toConcat[0] = first;
+        long size0 = shape[0];
+        long bytes = first.getBuffer().capacity();
+        for( int i=1; i<toConcat.length; i++ ){
+            SerializedNDArray a = arrays.get(i).getAs(SerializedNDArray.class);
+            Preconditions.checkState(a.getType() == type, "Unable to concatenate arrays with different data types: got %s and %s", type, a.getType());
+            Preconditions.checkState(sameExceptFirst(shape, a.getShape()), "Unable to concatenate arrays along dimension 0: " +
+                    "shapes %s and %s differ in dimensions other than dimension 0", shape, a.getShape());
+            toConcat[i] = a;
+            size0 += a.getShape()[0];
+            bytes += a.getBuffer().capacity();
+        }
+        Preconditions.checkState(bytes < Integer.MAX_VALUE, "More than 2 billion bytes in concatenated array - unable to concatenate");
+
+        ByteBuffer bb = BufferPool.allocate(bytes);
+        for(SerializedNDArray a : toConcat){
+            ByteBuffer src = a.getBuffer().duplicate();
+            src.clear();
+            bb.put(src);
+        }
+        bb.rewind();
+
+        long[] outShape = shape.clone();
+        outShape[0] = size0;
+        return NDArray.create(new SerializedNDArray(type, outShape, bb));
+    }
+
+    /**
+     * Split the specified NDArray along dimension 0 - the inverse of {@link #concat(List)}.
+     * For example, an array with shape [3,10] split with sizes [1,2] gives arrays with shapes [1,10] and [2,10]
+     *
+     * @param array The array to split
+     * @param sizes Size along dimension 0 of each of the returned arrays. Must sum to the size of dimension 0 of the array
+     * @return The split arrays
+     */
+    public static NDArray[] split(@NonNull NDArray array, @NonNull long[] sizes){
+        SerializedNDArray sa = array.getAs(SerializedNDArray.class);
+        long[] shape = sa.getShape();
+        Preconditions.checkState(shape.length > 0, "Unable to split scalar (rank 0) array");
+        long sum = 0;
+        for(long l : sizes)
+            sum += l;
+        Preconditions.checkState(sum == shape[0], "Unable to split array with shape %s into sizes %s: sizes must sum to %s",
+                shape, sizes, shape[0]);
+
+        long bytesPerExample = sa.getType().width();
+        for( int i=1; i<shape.length; i++ )
+            bytesPerExample *= shape[i];
+
+        NDArray[] out = new NDArray[sizes.length];
+        ByteBuffer src = sa.getBuffer().duplicate();
+        int pos = 0;
+        for( int i=0; i<sizes.length; i++ ){
+            int length = (int)(sizes[i] * bytesPerExample);
+            src.clear();
+            src.position(pos);
+            src.limit(pos + length);
+            ByteBuffer bb = BufferPool.allocate(length);
+            bb.put(src);
+            bb.rewind();
+            pos += length;
+
+            long[] outShape = shape.clone();
+            outShape[0] = sizes[i];
+            out[i] = NDArray.create(new SerializedNDArray(sa.getType(), outShape, bb));
+        }
+        return out;
+    }
+
+    private static boolean sameExceptFirst(long[] s1, long[] s2){
+        if(s1.length != s2.length)
+            return false;
+        for( int i=1; i<s1.length; i++ ){
+            if(s1[i] != s2[i])
+                return false;
+        }
+        return true;
+    }
 }
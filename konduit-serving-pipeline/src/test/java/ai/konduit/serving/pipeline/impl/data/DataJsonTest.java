@@ -19,15 +19,22 @@
 package ai.konduit.serving.pipeline.impl.data;
 
 import ai.konduit.serving.pipeline.api.data.*;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.serde.DataJsonDeserializer;
+import ai.konduit.serving.pipeline.impl.serde.DataJsonSerializer;
 import org.junit.Test;
 import org.nd4j.common.resources.Resources;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DataJsonTest {
 
@@ -215,4 +222,80 @@ public class DataJsonTest {
         Data meta2 = d2.getMetaData();
         assertEquals(meta ,meta2);
     }
+
+    @Test
+    public void testDirectBuffers() throws Exception {
+        //Large enough to be encoded/decoded in several chunks
+        ByteBuffer bb = ByteBuffer.allocateDirect(4 * 100_000).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 100_000; i++)
+            bb.putFloat(i);
+        bb.rewind();
+        Data d = Data.singleton("arr", NDArray.create(new SerializedNDArray(NDArrayType.FLOAT, new long[]{100, 1000}, bb)));
+        d.put("bytes", ByteBuffer.allocateDirect(12345));
+
+        String json = d.toJson();
+        Data d2 = Data.fromJson(json);
+        assertEquals(d, d2);
+        assertTrue(d2.getNDArray("arr").getAs(SerializedNDArray.class).getBuffer().isDirect());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        d.writeJson(baos);
+        assertEquals(json, new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(d, Data.fromJsonStream(new ByteArrayInputStream(baos.toByteArray())));
+    }
+
+    @Test
+    public void testDecodeBase64() {
+        Random r = new Random(12345);
+        for (int length : new int[]{0, 1, 2, 3, 4, 100, 64 * 1024, 64 * 1024 + 1, 200_000}) {
+            byte[] bytes = new byte[length];
+            r.nextBytes(bytes);
+            String padded = Base64.getEncoder().encodeToString(bytes);
+            String unpadded = Base64.getEncoder().withoutPadding().encodeToString(bytes);
+            for (String s : new String[]{padded, unpadded}) {
+                ByteBuffer bb = DataJsonDeserializer.decodeBase64(s);
+                assertEquals(length, bb.remaining());
+                assertEquals(ByteBuffer.wrap(bytes), bb);
+            }
+        }
+    }
+
+    @Test
+    public void testNumericArrayFormat() {
+        long prev = DataJsonSerializer.getNumericArrayMaxElements();
+        DataJsonSerializer.setNumericArrayMaxElements(10);
+        try {
+            Data d = Data.singleton("double", NDArray.create(new double[]{0, -1.5, 2}));
+            d.put("float", NDArray.create(new float[][]{{0, 1.5f}, {-2, 3}}));
+            ByteBuffer lb = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN).putLong(Long.MIN_VALUE).putLong(0).putLong(Long.MAX_VALUE);
+            d.put("long", NDArray.create(new SerializedNDArray(NDArrayType.INT64, new long[]{3}, (ByteBuffer) lb.rewind())));
+            ByteBuffer ib = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putInt(Integer.MIN_VALUE).putInt(0).putInt(Integer.MAX_VALUE);
+            d.put("int", NDArray.create(new SerializedNDArray(NDArrayType.INT32, new long[]{3}, (ByteBuffer) ib.rewind())));
+            ByteBuffer sb = ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN).putShort(Short.MIN_VALUE).putShort((short) 0).putShort(Short.MAX_VALUE);
+            d.put("short", NDArray.create(new SerializedNDArray(NDArrayType.INT16, new long[]{3}, (ByteBuffer) sb.rewind())));
+            d.put("byte", NDArray.create(new SerializedNDArray(NDArrayType.INT8, new long[]{3}, ByteBuffer.wrap(new byte[]{Byte.MIN_VALUE, 0, Byte.MAX_VALUE}))));
+            d.put("bool", NDArray.create(new SerializedNDArray(NDArrayType.BOOL, new long[]{2}, ByteBuffer.wrap(new byte[]{1, 0}))));
+            for (NDArrayType t : new NDArrayType[]{NDArrayType.UINT8, NDArrayType.UINT16, NDArrayType.UINT32, NDArrayType.UINT64}) {
+                ByteBuffer bb = ByteBuffer.allocate(2 * t.width()).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < bb.capacity(); i++)
+                    bb.put((byte) -1);      //Max value
+                bb.rewind();
+                d.put(t.toString(), NDArray.create(new SerializedNDArray(t, new long[]{2}, bb)));
+            }
+            //Too large: base64 format
+            d.put("large", NDArray.create(new float[11]));
+
+            String json = d.toJson();
+            assertTrue(json.contains("[ 0.0, -1.5, 2.0 ]"));
+            assertTrue(json.contains("[ 255, 255 ]"));
+            assertTrue(json.contains("[ 18446744073709551615, 18446744073709551615 ]"));
+            assertTrue(json.contains("[ true, false ]"));
+            assertEquals(1, json.split(Data.RESERVED_KEY_NDARRAY_DATA_BASE64, -1).length - 1);
+
+            Data d2 = Data.fromJson(json);
+            assertEquals(d, d2);
+        } finally {
+            DataJsonSerializer.setNumericArrayMaxElements(prev);
+        }
+    }
 }
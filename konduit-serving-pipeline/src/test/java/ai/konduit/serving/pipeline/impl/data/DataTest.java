@@ -31,6 +31,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -363,6 +364,27 @@ public class DataTest {
         assertEquals(ndData, restoredData);
     }
 
+    @Test
+    public void testNDArrayZeroCopySerde() {
+        float[] rawData = {1, 3, 6, 7, 8, 10, 4, 3, 2, 4};
+        Data ndData = Data.singleton(KEY, NDArray.create(rawData));
+        ndData.put("other", "value");
+
+        //Parse from a buffer with an offset: the array must be a view of exactly the array bytes
+        byte[] bytes = ndData.asBytes();
+        byte[] padded = new byte[bytes.length + 7];
+        System.arraycopy(bytes, 0, padded, 5, bytes.length);
+        ByteBuffer bb = ByteBuffer.wrap(padded, 5, bytes.length);
+
+        for (Data restored : new Data[]{Data.fromBytes(bytes), Data.fromBytes(bb),
+                ProtoData.fromProtoMessage(ndData.toProtoData().toProtoMessage())}) {
+            SerializedNDArray sn = restored.getNDArray(KEY).getAs(SerializedNDArray.class);
+            assertEquals(rawData.length * 4, sn.getBuffer().capacity());
+            assertArrayEquals(rawData, restored.getNDArray(KEY).getAs(float[].class), 0.0f);
+            assertEquals(ndData, restored);
+        }
+    }
+
     @Test
     public void testImageListSerde() throws IOException {
         List<Image> imageList = new ArrayList<>();
@@ -20,9 +20,14 @@ package ai.konduit.serving.pipeline.impl.data;
 
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.data.Image;
+import ai.konduit.serving.pipeline.api.data.ImageEncoding;
+import ai.konduit.serving.pipeline.api.data.ValueType;
 import ai.konduit.serving.pipeline.api.format.ImageFactory;
+import ai.konduit.serving.pipeline.impl.data.helpers.ImageSerdeUtils;
+import ai.konduit.serving.pipeline.impl.data.image.Jpeg;
 import ai.konduit.serving.pipeline.impl.data.image.base.BaseImage;
 import ai.konduit.serving.pipeline.impl.data.image.Png;
+import ai.konduit.serving.pipeline.impl.data.image.base.BaseImageFile;
 import ai.konduit.serving.pipeline.impl.data.image.PngImage;
 import ai.konduit.serving.pipeline.impl.format.JavaImageConverters;
 import ai.konduit.serving.pipeline.registry.ImageConverterRegistry;
@@ -36,7 +41,9 @@ import org.nd4j.common.resources.Resources;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -92,6 +99,92 @@ public class ImageTests {
         assertTrue("Images differ after conversion to/from PNG", eq2);
     }
 
+    @Test
+    public void testNativeEncodingPassthrough() throws Exception {
+        File f = Resources.asFile("data/5_32x32.png");
+        BufferedImage bi = ImageIO.read(f);
+        Jpeg jpeg = Image.create(bi).getAs(Jpeg.class);
+        byte[] jpegBytes = jpeg.getBytes();
+
+        Data d = Data.singleton("myImage", Image.create(jpeg));
+
+        //JSON: JPEG bytes should be passed through without re-encoding
+        String json = d.toJson();
+        assertTrue(json.contains("\"JPEG\""));
+        Data dJson = Data.fromJson(json);
+        Image iJson = dJson.getImage("myImage");
+        assertTrue(iJson.get() instanceof Jpeg);
+        assertArrayEquals(jpegBytes, ((Jpeg) iJson.get()).getBytes());
+
+        //Protobuf
+        Data dProto = Data.fromBytes(d.asBytes());
+        Image iProto = dProto.getImage("myImage");
+        assertTrue(iProto.get() instanceof Jpeg);
+        assertArrayEquals(jpegBytes, ((Jpeg) iProto.get()).getBytes());
+
+        //Lists
+        Data dList = Data.singletonList("myImages", Arrays.asList(Image.create(jpeg), Image.create(f)), ValueType.IMAGE);
+        for(Data dl : new Data[]{Data.fromJson(dList.toJson()), Data.fromBytes(dList.asBytes())}) {
+            List<Image> l = dl.getListImage("myImages");
+            assertTrue(l.get(0).get() instanceof Jpeg);
+            assertTrue(l.get(1).get() instanceof Png);
+        }
+
+        //Non-file images are encoded as PNG by default
+        Data dBi = Data.fromJson(Data.singleton("myImage", Image.create(bi)).toJson());
+        assertTrue(dBi.getImage("myImage").get() instanceof Png);
+    }
+
+    @Test
+    public void testRequestedEncoding() throws Exception {
+        File f = Resources.asFile("data/5_32x32.png");
+        Data d = Data.singleton("myImage", Image.create(f));
+
+        for(ImageEncoding e : new ImageEncoding[]{ImageEncoding.JPEG, ImageEncoding.BMP, ImageEncoding.GIF}) {
+            Data dJson = Data.fromJson(ImageSerdeUtils.withEncoding(e, d::toJson));
+            assertEquals(e.name(), ((BaseImageFile) dJson.getImage("myImage").get()).formatName());
+
+            Data dProto = Data.fromBytes(ImageSerdeUtils.withEncoding(e, d::asBytes));
+            assertEquals(e.name(), ((BaseImageFile) dProto.getImage("myImage").get()).formatName());
+        }
+
+        //Encoding override is scoped to the call
+        assertEquals(ImageEncoding.NATIVE, ImageSerdeUtils.encoding());
+
+        assertEquals(ImageEncoding.JPEG, ImageEncoding.fromAcceptHeader("application/json, image/jpeg"));
+        assertNull(ImageEncoding.fromAcceptHeader("application/json"));
+    }
+
+    @Test
+    public void testRawEncoding() throws Exception {
+        File f = Resources.asFile("data/5_32x32.png");
+        BufferedImage bi = ImageIO.read(f);
+        Data d = Data.singleton("myImage", Image.create(f));
+
+        String json = ImageSerdeUtils.withEncoding(ImageEncoding.RAW, d::toJson);
+        assertTrue(json.contains(Data.RESERVED_KEY_IMAGE_SHAPE));
+        Data dJson = Data.fromJson(json);
+        Data dProto = Data.fromBytes(ImageSerdeUtils.withEncoding(ImageEncoding.RAW, d::asBytes));
+
+        for(Data dRaw : new Data[]{dJson, dProto}) {
+            BufferedImage out = dRaw.getImage("myImage").getAs(BufferedImage.class);
+            assertEquals(bi.getWidth(), out.getWidth());
+            assertEquals(bi.getHeight(), out.getHeight());
+            for (int y = 0; y < bi.getHeight(); y++) {
+                for (int x = 0; x < bi.getWidth(); x++) {
+                    assertEquals(bi.getRGB(x, y) & 0xFFFFFF, out.getRGB(x, y) & 0xFFFFFF);
+                }
+            }
+        }
+
+        //RGB layout from clients
+        byte[] rgb = {(byte) 255, 0, 0, 0, (byte) 255, 0};
+        Image img = ImageSerdeUtils.decode("RAW", rgb, new long[]{1, 2, 3}, "RGB");
+        BufferedImage b = img.getAs(BufferedImage.class);
+        assertEquals(0xFF0000, b.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0x00FF00, b.getRGB(1, 0) & 0xFFFFFF);
+    }
+
     protected static boolean equalPngs(Png png1, Png png2){
         try {
             BufferedImage bi1 = ImageIO.read(new ByteArrayInputStream(png1.getBytes()));
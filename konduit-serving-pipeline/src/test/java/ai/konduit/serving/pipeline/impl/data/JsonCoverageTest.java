@@ -31,6 +31,8 @@ import ai.konduit.serving.pipeline.impl.pipeline.loop.TimeLoopTrigger;
 import ai.konduit.serving.pipeline.impl.step.bbox.filter.BoundingBoxFilterStep;
 import ai.konduit.serving.pipeline.impl.step.bbox.point.BoundingBoxToPointStep;
 import ai.konduit.serving.pipeline.impl.step.bbox.yolo.YoloToBoundingBoxStep;
+import ai.konduit.serving.pipeline.impl.step.batching.BatchingStep;
+import ai.konduit.serving.pipeline.impl.step.caching.CachingStep;
 import ai.konduit.serving.pipeline.impl.step.logging.LoggingStep;
 import ai.konduit.serving.pipeline.impl.step.ml.classifier.ClassifierOutputStep;
 import ai.konduit.serving.pipeline.impl.step.ml.regression.RegressionOutputStep;
@@ -86,6 +88,26 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
                 .outputName("bar"));
     }
 
+    @Test
+    public void testBatchingStep() {
+        testConfigSerDe(new BatchingStep()
+                .step(new LoggingStep().log(LoggingStep.Log.KEYS))
+                .maxBatchSize(8)
+                .maxLatencyMs(5)
+                .inputNames("in1", "in2"));
+    }
+
+    @Test
+    public void testCachingStep() {
+        testConfigSerDe(new CachingStep()
+                .step(new LoggingStep().log(LoggingStep.Log.KEYS))
+                .inputNames("in1", "in2")
+                .maxEntries(100)
+                .maxSizeBytes(1024 * 1024)
+                .ttlMs(60_000)
+                .coalesce(false));
+    }
+
     @Test
     public void testLoggingStep() {
         testConfigSerDe(new LoggingStep().log(LoggingStep.Log.KEYS_AND_VALUES).logLevel(Level.INFO).keyFilterRegex("\\d{3}"));
@@ -109,6 +131,7 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
                 .classLabels("a","b","c")
                 .keepOtherValues(false)
                 .scale(0.5)
+                .nmsThreshold(0.4)
                 .threshold(0.5));
 
     }
@@ -133,6 +156,7 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
                 .keepOtherValues(false)
                 .nchw(false)
                 .nmsThreshold(0.2)
+                .maxDetections(10)
                 .numClasses(3)
                 .input("foo")
                 .threshold(0.5));
@@ -204,6 +228,7 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
     public void testGraphPipeline() {
         Map<String, GraphStep> steps = new HashMap<String, GraphStep>();
         testConfigSerDe(new GraphPipeline(steps, "foo", "myGraphPipeline"));
+        testConfigSerDe(new GraphPipeline(steps, "foo", "myGraphPipeline", 4));
     }
 
     @Test
@@ -36,7 +36,7 @@ import java.nio.FloatBuffer;
 import java.util.Collections;
 import java.util.Set;
 
-import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.*;
 
 public class NDArrayTests {
 
@@ -67,6 +67,34 @@ public class NDArrayTests {
         assertArrayEquals(f, outF, 0.0f);
     }
 
+    @Test
+    public void testConversionCaching(){
+        NDArray nd = NDArray.create(new float[][]{{1,2},{3,4}});
+
+        //Conversion should happen only once per target format
+        SerializedNDArray s1 = nd.getAs(SerializedNDArray.class);
+        SerializedNDArray s2 = nd.getAs(SerializedNDArray.class);
+        assertSame(s1, s2);
+
+        //Identity conversion returns the underlying array
+        assertSame(nd.get(), nd.getAs(float[][].class));
+
+        //Converter resolution is memoized, including when no converter exists
+        NDArrayConverter c1 = NDArrayConverterRegistry.getConverterFor(nd, SerializedNDArray.class);
+        NDArrayConverter c2 = NDArrayConverterRegistry.getConverterFor(NDArray.create(new float[][]{{5,6}}), SerializedNDArray.class);
+        assertSame(c1, c2);
+        assertNull(NDArrayConverterRegistry.getConverterFor(nd, String.class));
+        assertNull(NDArrayConverterRegistry.getConverterFor(nd, String.class));
+        assertFalse(nd.canGetAs(String.class));
+
+        //Same source class but different rank must not reuse a converter that can't handle it
+        NDArray rank1 = NDArray.create(NDArray.create(new float[]{1,2,3,4}).getAs(SerializedNDArray.class));
+        assertArrayEquals(new float[]{1,2,3,4}, rank1.getAs(float[].class), 0.0f);
+        NDArray rank2 = NDArray.create(s1);
+        assertFalse(rank2.canGetAs(float[].class));
+        assertTrue(rank2.canGetAs(float[][].class));
+    }
+
     @AllArgsConstructor
     @lombok.Data
     public static class TestNDArrayObject {
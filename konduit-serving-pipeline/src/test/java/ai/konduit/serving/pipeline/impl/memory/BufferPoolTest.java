@@ -0,0 +1,149 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.memory;
+
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testPooling() {
+        BufferPool.clear();
+
+        //No scope: not pooled
+        long hits = BufferPool.hits();
+        long misses = BufferPool.misses();
+        ByteBuffer b = BufferPool.allocate(100);
+        assertTrue(b.isDirect());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, b.order());
+        assertEquals(100, b.capacity());
+        assertEquals(hits, BufferPool.hits());
+        assertEquals(misses, BufferPool.misses());
+
+        long outstanding = BufferPool.outstandingBytes();
+        ByteBuffer first;
+        try (BufferScope scope = BufferScope.open()) {
+            assertSame(scope, BufferScope.current());
+            first = BufferPool.allocate(3000);
+            assertEquals(3000, first.capacity());
+            assertEquals(0, first.position());
+            assertEquals(3000, first.limit());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, first.order());
+            assertEquals(misses + 1, BufferPool.misses());
+            assertEquals(outstanding + 4096, BufferPool.outstandingBytes());      //Rounded up to size class
+        }
+        assertNull(BufferScope.current());
+        assertEquals(outstanding, BufferPool.outstandingBytes());
+        assertEquals(4096, BufferPool.idleBytes());
+
+        //Same size class: memory is reused
+        try (BufferScope scope = BufferScope.open()) {
+            ByteBuffer second = BufferPool.allocate(2500);
+            assertEquals(2500, second.capacity());
+            assertEquals(hits + 1, BufferPool.hits());
+            assertEquals(0, BufferPool.idleBytes());
+
+            first.putInt(0, 12345);
+            assertEquals(12345, second.getInt(0));
+
+            //Different size class: new buffer
+            BufferPool.allocate(10000);
+            assertEquals(misses + 2, BufferPool.misses());
+        }
+
+        //Released on another thread: goes to the shared arena
+        BufferScope scope = BufferScope.open();
+        BufferPool.allocate(2000);
+        BufferPool.allocate(2000);
+        scope.detach();
+        assertNull(BufferScope.current());
+        Thread t = new Thread(scope::close);
+        t.start();
+        try {
+            t.join();
+        } catch (InterruptedException e){
+            throw new RuntimeException(e);
+        }
+        assertTrue(scope.isClosed());
+        assertEquals(outstanding, BufferPool.outstandingBytes());
+
+        BufferPool.clear();
+        assertEquals(0, BufferPool.idleBytes());
+    }
+
+    @Test
+    public void testConversionCacheInvalidatedOnClose() {
+        float[] values = {1, 2, 3};
+        NDArray arr = NDArray.create(values);
+
+        SerializedNDArray s1;
+        try (BufferScope scope = BufferScope.open()) {
+            s1 = arr.getAs(SerializedNDArray.class);
+            //Cached within the scope
+            assertSame(s1, arr.getAs(SerializedNDArray.class));
+        }
+
+        //Pooled buffer may have been reused: the conversion is performed again
+        SerializedNDArray s2 = arr.getAs(SerializedNDArray.class);
+        assertNotSame(s1, s2);
+        assertEquals(2.0f, s2.getBuffer().getFloat(4), 0.0f);
+        assertSame(s2, arr.getAs(SerializedNDArray.class));
+    }
+
+    @Test
+    public void testConversionCacheNotSharedBetweenScopes() {
+        BufferPool.clear();
+        float[] values = {1, 2, 3};
+        NDArray arr = NDArray.create(values);
+
+        //First request: converted within scope A, which remains open
+        BufferScope a = BufferScope.open();
+        SerializedNDArray sa = arr.getAs(SerializedNDArray.class);
+        a.detach();
+
+        try (BufferScope b = BufferScope.open()) {
+            //Second request must not use A's pooled conversion
+            SerializedNDArray sb = arr.getAs(SerializedNDArray.class);
+            assertNotSame(sa, sb);
+
+            //First request completes: A's buffer is returned to the pool, and reused (and overwritten) within B
+            a.close();
+            ByteBuffer reused = BufferPool.allocate(values.length * 4);
+            for (int i = 0; i < values.length; i++) {
+                reused.putFloat(4 * i, -1.0f);
+            }
+
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], sb.getBuffer().getFloat(4 * i), 0.0f);
+            }
+            SerializedNDArray sb2 = arr.getAs(SerializedNDArray.class);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], sb2.getBuffer().getFloat(4 * i), 0.0f);
+            }
+            assertSame(sb2, arr.getAs(SerializedNDArray.class));
+        }
+    }
+}
@@ -34,9 +34,13 @@ import org.junit.Test;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 public class AsyncPipelineTest {
@@ -71,6 +75,37 @@ public class AsyncPipelineTest {
         assertEquals(count, cs.count);
     }
 
+    @Test
+    public void testAsyncPipelineListener() throws Exception {
+        CountStep cs = new CountStep();
+        Pipeline p = SequencePipeline.builder()
+                .add(cs)
+                .add(new TimeStep())
+                .build();
+
+        Trigger t = new SimpleLoopTrigger(100L);
+        try (AsyncPipeline a = new AsyncPipeline(p, t)) {
+            AsyncPipelineExecutor exec = (AsyncPipelineExecutor) a.executor();
+
+            BlockingQueue<Data> received = new LinkedBlockingQueue<>();
+            Consumer<Data> listener = received::add;
+            exec.addListener(listener);
+
+            //Outputs should be pushed to the listener as they are produced, without calling exec
+            for (int i = 0; i < 3; i++) {
+                Data d = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(d);
+                assertTrue(d.has("time"));
+            }
+
+            exec.removeListener(listener);
+            Thread.sleep(300);
+            received.clear();
+            Thread.sleep(300);
+            assertTrue(received.isEmpty());
+        }
+    }
+
     @Test
     public void testSimpleLoopTriggerWithDelay() throws Exception {
         for( int run=0; run<3; run++ ) {
@@ -26,6 +26,8 @@ import ai.konduit.serving.pipeline.api.serde.JsonSubType;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.impl.pipeline.graph.GraphBuilder;
 import ai.konduit.serving.pipeline.impl.pipeline.graph.GraphStep;
+import ai.konduit.serving.pipeline.impl.pipeline.graph.MergeStep;
+import ai.konduit.serving.pipeline.impl.pipeline.graph.PipelineGraphStep;
 import ai.konduit.serving.pipeline.impl.pipeline.graph.SwitchFn;
 import ai.konduit.serving.pipeline.impl.pipeline.graph.switchfn.DataIntSwitchFn;
 import ai.konduit.serving.pipeline.impl.pipeline.graph.switchfn.DataStringSwitchFn;
@@ -38,10 +40,14 @@ import org.junit.Test;
 import org.nd4j.shade.jackson.databind.ObjectMapper;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class GraphPipelineTest {
 
@@ -253,4 +259,188 @@ public class GraphPipelineTest {
             assertEquals(outRight, outRight2);
         }
     }
+
+    @Test
+    public void testDiamondExecOrder(){
+        //input -> a -> c -> merge
+        //input -> b ------> merge
+        GraphBuilder b = new GraphBuilder();
+        GraphStep input = b.input();
+
+        List<String> execOrder = new ArrayList<>();
+        GraphStep a = input.then("a", new FunctionStep(d -> {
+            execOrder.add("a");
+            return Data.singleton("a", d.getString("input") + "_a");
+        }));
+        GraphStep bStep = input.then("b", new FunctionStep(d -> {
+            execOrder.add("b");
+            return Data.singleton("b", d.getString("input") + "_b");
+        }));
+        GraphStep c = a.then("c", new FunctionStep(d -> {
+            execOrder.add("c");
+            return Data.singleton("c", d.getString("a") + "_c");
+        }));
+        GraphStep merge = c.mergeWith("merge", bStep);
+
+        PipelineExecutor exec = b.build(merge).executor();
+        Data exp = Data.singleton("c", "in_a_c");
+        exp.put("b", "in_b");
+
+        for( int i=0; i<3; i++ ) {
+            execOrder.clear();
+            Data out = exec.exec(Data.singleton("input", "in"));
+            assertEquals(exp, out);
+
+            //Each step should be executed exactly once, after its inputs
+            assertEquals(3, execOrder.size());
+            assertTrue(execOrder.containsAll(Arrays.asList("a", "b", "c")));
+            assertTrue(execOrder.indexOf("a") < execOrder.indexOf("c"));
+        }
+    }
+
+    @Test
+    public void testCycleDetected(){
+        //input -> merge -> a -> merge
+        GraphBuilder b = new GraphBuilder();
+        Map<String,GraphStep> steps = new LinkedHashMap<>();
+        steps.put(GraphPipeline.INPUT_KEY, b.input());
+        steps.put("merge", new MergeStep(b, Arrays.asList(GraphPipeline.INPUT_KEY, "a"), "merge"));
+        steps.put("a", new PipelineGraphStep(b, new FunctionStep(d -> d), "a", "merge"));
+
+        try {
+            new GraphPipeline(steps, "a", "cycle").executor();
+            fail("Expected exception");
+        } catch (IllegalStateException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("cycle"));
+            assertTrue(e.getMessage(), e.getMessage().contains("merge") && e.getMessage().contains("a"));
+        }
+    }
+
+    @Test
+    public void testUnreachableStepsDetected(){
+        //input -> a, and a (non-cyclic) chain u -> v that doesn't depend on the input
+        GraphBuilder b = new GraphBuilder();
+        Map<String,GraphStep> steps = new LinkedHashMap<>();
+        steps.put(GraphPipeline.INPUT_KEY, b.input());
+        steps.put("a", new PipelineGraphStep(b, new FunctionStep(d -> d), "a", GraphPipeline.INPUT_KEY));
+        steps.put("u", new MergeStep(b, Collections.emptyList(), "u"));
+        steps.put("v", new PipelineGraphStep(b, new FunctionStep(d -> d), "v", "u"));
+
+        try {
+            new GraphPipeline(steps, "a", "unreachable").executor();
+            fail("Expected exception");
+        } catch (IllegalStateException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("not reachable"));
+            assertTrue(e.getMessage(), e.getMessage().contains("[u, v]"));
+            assertTrue(e.getMessage(), !e.getMessage().contains("cycle"));
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testParallelBranches() throws Exception {
+        //Two independent branches, each of which waits for the other to start: only completes if executed in parallel
+        GraphBuilder b = new GraphBuilder().parallelism(2);
+        GraphStep input = b.input();
+
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        GraphStep left = input.then("left", new FunctionStep(d -> {
+            threads.add(Thread.currentThread().getName());
+            await(barrier);
+            return Data.singleton("left", d.getString("input"));
+        }));
+        GraphStep right = input.then("right", new FunctionStep(d -> {
+            threads.add(Thread.currentThread().getName());
+            await(barrier);
+            return Data.singleton("right", d.getString("input"));
+        }));
+        GraphStep merge = left.mergeWith("merge", right);
+
+        GraphPipeline p = b.build(merge);
+        assertEquals(2, p.parallelism());
+
+        PipelineExecutor exec = p.executor();
+        Data exp = Data.singleton("left", "in");
+        exp.put("right", "in");
+        try {
+            for (int i = 0; i < 3; i++) {
+                threads.clear();
+                Data out = exec.exec(Data.singleton("input", "in"));
+                assertEquals(exp, out);
+                assertEquals(2, threads.size());
+            }
+        } finally {
+            exec.close();
+        }
+    }
+
+    @Test
+    public void testParallelAnyCancelsBranches() throws Exception {
+        //Uses the executor created for the parallelism setting, to check that its cancellation interrupts steps
+        GraphBuilder b = new GraphBuilder().parallelism(2);
+        GraphStep input = b.input();
+
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch slowInterrupted = new CountDownLatch(1);
+        GraphStep fast = input.then("fast", new FunctionStep(d -> {
+            try {
+                slowStarted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e){
+                throw new RuntimeException(e);
+            }
+            return Data.singleton("out", "fast");
+        }));
+        GraphStep slow = input.then("slow", new FunctionStep(d -> {
+            slowStarted.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e){
+                slowInterrupted.countDown();
+            }
+            return Data.singleton("out", "slow");
+        }));
+        GraphStep any = b.any("any", fast, slow);
+        GraphStep after = any.then("after", new FunctionStep(d -> Data.singleton("after", d.getString("out"))));
+
+        PipelineExecutor exec = b.build(after).executor();
+        try {
+            long start = System.currentTimeMillis();
+            Data out = exec.exec(Data.singleton("input", "in"));
+            long time = System.currentTimeMillis() - start;
+            assertEquals(Data.singleton("after", "fast"), out);
+            assertTrue("Took " + time + "ms", time < 5000);
+
+            //Slow branch is no longer needed once the any step fires, and should have been cancelled
+            assertTrue(slowInterrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            exec.close();
+        }
+    }
+
+    @Test
+    public void testParallelFailure(){
+        GraphBuilder b = new GraphBuilder().parallelism(2);
+        GraphStep input = b.input();
+        GraphStep ok = input.then("ok", new FunctionStep(d -> Data.singleton("ok", true)));
+        GraphStep fail = input.then("fail", new FunctionStep(d -> {
+            throw new IllegalStateException("Failure in branch");
+        }));
+        PipelineExecutor exec = b.build(ok.mergeWith("merge", fail)).executor();
+        try {
+            exec.exec(Data.singleton("input", "in"));
+            fail("Expected exception");
+        } catch (RuntimeException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("\"fail\""));
+        } finally {
+            exec.close();
+        }
+    }
+
+    private static void await(CyclicBarrier barrier){
+        try {
+            barrier.await(30, TimeUnit.SECONDS);
+        } catch (Exception e){
+            throw new RuntimeException("Branches were not executed in parallel", e);
+        }
+    }
 }
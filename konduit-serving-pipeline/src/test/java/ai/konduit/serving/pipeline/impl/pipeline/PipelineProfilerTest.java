@@ -39,9 +39,11 @@ import org.slf4j.event.Level;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class PipelineProfilerTest {
     @Rule
@@ -112,6 +114,94 @@ public class PipelineProfilerTest {
         // Assume no race condition or I/O failures if we are here.
     }
 
+    private static Pipeline threeStepPipeline() {
+        return SequencePipeline.builder()
+                .add(new CallbackStep(d -> { }))
+                .add(new LoggingStep().log(LoggingStep.Log.KEYS).logLevel(Level.INFO))
+                .add(new CallbackStep(d -> { }))
+                .build();
+    }
+
+    @Test
+    public void testBinaryFormat() throws IOException {
+        File logFile = new File(testDir.newFolder(), "test.bin");
+        PipelineExecutor pe = threeStepPipeline().executor();
+        pe.profilerConfig(new ProfilerConfig()
+                .outputFile(logFile)
+                .format(ProfilerConfig.Format.BINARY));
+        pe.exec(Data.singleton("someKey", "someValue"));
+        pe.exec(Data.singleton("someKey", "someValue"));
+        pe.profiler().flushBlocking();
+
+        TraceEvent[] events = PipelineProfiler.readEvents(logFile);
+        assertEquals(12, events.length);
+        assertEquals("Runner", events[0].getName());
+        assertEquals(TraceEvent.EventType.B, events[0].getPh());
+        assertEquals(TraceEvent.EventType.E, events[1].getPh());
+        assertEquals("LoggingRunner", events[2].getName());
+        assertEquals(Thread.currentThread().getId(), events[2].getTid());
+        assertTrue(events[1].getTs() >= events[0].getTs());
+        pe.close();
+    }
+
+    @Test
+    public void testSampling() throws IOException {
+        File logFile = new File(testDir.newFolder(), "test.json");
+        PipelineExecutor pe = threeStepPipeline().executor();
+        pe.profilerConfig(new ProfilerConfig()
+                .outputFile(logFile)
+                .sampleRate(4));
+        for (int i = 0; i < 8; i++) {
+            pe.exec(Data.singleton("someKey", "someValue"));
+        }
+        pe.profiler().flushBlocking();
+
+        //2 of 8 executions profiled, 6 events each
+        assertEquals(12, PipelineProfiler.readEvents(logFile).length);
+        pe.close();
+    }
+
+    @Test(timeout = 60000L)
+    public void testMultiThreaded() throws Exception {
+        File logFile = new File(testDir.newFolder(), "test.json");
+        PipelineExecutor pe = threeStepPipeline().executor();
+        pe.profilerConfig(new ProfilerConfig()
+                .outputFile(logFile)
+                .flushIntervalMs(1));
+
+        int nThreads = 4;
+        int nExec = 100;
+        List<Thread> threads = new ArrayList<>();
+        Set<Long> tids = Collections.synchronizedSet(new HashSet<>());
+        for (int i = 0; i < nThreads; i++) {
+            Thread t = new Thread(() -> {
+                tids.add(Thread.currentThread().getId());
+                for (int j = 0; j < nExec; j++) {
+                    pe.exec(Data.singleton("someKey", "someValue"));
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        pe.profiler().flushBlocking();
+
+        TraceEvent[] events = PipelineProfiler.readEvents(logFile);
+        assertEquals(nThreads * nExec * 6, events.length);
+        //Events are recorded with the ID of the thread that executed the step, and are in order for each thread
+        Map<Long, Integer> open = new HashMap<>();
+        for (TraceEvent e : events) {
+            assertTrue(tids.contains(e.getTid()));
+            int o = open.getOrDefault(e.getTid(), 0) + (e.getPh() == TraceEvent.EventType.B ? 1 : -1);
+            assertTrue(o == 0 || o == 1);
+            open.put(e.getTid(), o);
+        }
+        assertEquals(tids, open.keySet());
+        pe.close();
+    }
+
     @Test
     public void testEventsJson() throws JsonProcessingException {
         String content = "[{\"name\":\"Runner\",\"cat\":\"START\",\"ts\":577532080904,\"pid\":17104,\"tid\":1,\"ph\":\"B\"},\n" +
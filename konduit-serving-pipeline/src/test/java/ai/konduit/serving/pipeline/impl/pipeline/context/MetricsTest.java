@@ -18,19 +18,30 @@
 package ai.konduit.serving.pipeline.impl.pipeline.context;
 
 import ai.konduit.serving.pipeline.api.context.*;
+import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipelineExecutor;
+import ai.konduit.serving.pipeline.impl.pipeline.graph.GraphBuilder;
+import ai.konduit.serving.pipeline.impl.pipeline.graph.GraphStep;
 import ai.konduit.serving.pipeline.impl.step.logging.LoggingStep;
 import ai.konduit.serving.pipeline.impl.util.CallbackStep;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.event.Level;
 
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class MetricsTest {
@@ -84,4 +95,79 @@ public class MetricsTest {
         long ret = timer.start().stop(timer);
         assertTrue(ret > 0);
     }
+
+    @Test
+    public void testMeterCaching() {
+        assertSame(m.counter("cached.counter"), m.counter("cached.counter"));
+        assertSame(m.timer("cached.timer"), m.timer("cached.timer"));
+        assertSame(m.gauge("cached.gauge", 1.0), m.gauge("cached.gauge", 2.0));
+        assertEquals(2.0, m.gauge("cached.gauge", 2.0).value(), 1e-6);
+    }
+
+    @Test
+    public void testStepLatencyTimers() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        Pipeline p = SequencePipeline.builder()
+                .add(new CallbackStep(d -> count.getAndIncrement()))
+                .add(new LoggingStep().log(LoggingStep.Log.KEYS).logLevel(Level.INFO))
+                .id("testStepLatencyTimers")
+                .build();
+
+        PipelineExecutor exec = p.executor();
+        int numThreads = 4;
+        int numIter = 25;
+        ExecutorService es = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(es.submit(() -> {
+                    for (int j = 0; j < numIter; j++) {
+                        exec.exec(Data.singleton("key", "value"));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+        assertEquals(numThreads * numIter, count.get());
+
+        Collection<io.micrometer.core.instrument.Timer> timers = MicrometerRegistry.getRegistry()
+                .find(SequencePipelineExecutor.STEP_LATENCY_TIMER)
+                .tag("pipeline", "testStepLatencyTimers")
+                .timers();
+        assertEquals(2, timers.size());
+        for (io.micrometer.core.instrument.Timer t : timers) {
+            assertEquals(numThreads * numIter, t.count());
+        }
+    }
+
+    @Test
+    public void testStepLatencyTimerTagsConsistent() {
+        //Prometheus requires all meters with the same name to have the same tag keys
+        SequencePipeline.builder()
+                .add(new CallbackStep(d -> { }))
+                .id("testTagsSequence")
+                .build()
+                .executor();
+
+        GraphBuilder b = new GraphBuilder().id("testTagsGraph");
+        GraphStep step = b.input().then("step", new CallbackStep(d -> { }));
+        b.build(step).executor();
+
+        Collection<io.micrometer.core.instrument.Timer> timers = MicrometerRegistry.getRegistry()
+                .find(SequencePipelineExecutor.STEP_LATENCY_TIMER)
+                .timers();
+        assertTrue(timers.size() >= 2);
+        Set<String> expKeys = new HashSet<>(Arrays.asList("pipeline", "step", "index"));
+        for (io.micrometer.core.instrument.Timer t : timers) {
+            Set<String> keys = new HashSet<>();
+            for (io.micrometer.core.instrument.Tag tag : t.getId().getTags()) {
+                keys.add(tag.getKey());
+            }
+            assertEquals(t.getId().toString(), expKeys, keys);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.impl.step.batching.BatchingStep;
+import ai.konduit.serving.pipeline.impl.step.batching.BatchingStepRunner;
+import ai.konduit.serving.pipeline.impl.testpipelines.fn.FunctionStep;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestBatchingStep {
+
+    private static FunctionStep doublingStep(List<Long> batchSizes){
+        return new FunctionStep(d -> {
+            NDArray arr = d.getNDArray("in");
+            batchSizes.add(arr.size(0));
+            float[][] f = arr.getAs(float[][].class);
+            for (float[] row : f) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] *= 2;
+                }
+            }
+            Data out = Data.singleton("out", NDArray.create(f));
+            out.put("other", "value");
+            return out;
+        });
+    }
+
+    @Test
+    public void testBatching() {
+        List<Long> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        PipelineStepRunner r = new BatchingStepRunner(new BatchingStep()
+                .step(doublingStep(batchSizes))
+                .maxBatchSize(4)
+                .maxLatencyMs(10_000));
+
+        try {
+            Data[] in = new Data[4];
+            for (int i = 0; i < in.length; i++) {
+                //Last instance has a minibatch size of 2
+                float[][] arr = i == 3 ? new float[][]{{i, i}, {i + 1, i + 1}} : new float[][]{{i, i}};
+                in[i] = Data.singleton("in", NDArray.create(arr));
+            }
+
+            Data[] out = r.exec(null, in);
+
+            assertEquals(Collections.singletonList(5L), batchSizes);
+            for (int i = 0; i < in.length; i++) {
+                float[][] exp = in[i].getNDArray("in").getAs(float[][].class);
+                for (float[] row : exp) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] *= 2;
+                    }
+                }
+
+                float[][] act = out[i].getNDArray("out").getAs(float[][].class);
+                assertEquals(exp.length, act.length);
+                for (int j = 0; j < exp.length; j++) {
+                    assertArrayEquals(exp[j], act[j], 0.0f);
+                }
+                assertEquals("value", out[i].getString("other"));
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testIncompatibleShapes() {
+        List<Long> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        PipelineStepRunner r = new BatchingStepRunner(new BatchingStep()
+                .step(doublingStep(batchSizes))
+                .maxBatchSize(2)
+                .maxLatencyMs(10_000));
+
+        try {
+            //Different sizes for dimension 1: can't be concatenated, hence should be executed separately
+            Data in1 = Data.singleton("in", NDArray.create(new float[][]{{1, 2}}));
+            Data in2 = Data.singleton("in", NDArray.create(new float[][]{{1, 2, 3}}));
+
+            Data[] out = r.exec(null, in1, in2);
+
+            assertEquals(2, batchSizes.size());
+            assertArrayEquals(new float[]{2, 4}, out[0].getNDArray("out").getAs(float[][].class)[0], 0.0f);
+            assertArrayEquals(new float[]{2, 4, 6}, out[1].getNDArray("out").getAs(float[][].class)[0], 0.0f);
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testMetricsPerInstance() {
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        FunctionStep s = doublingStep(new ArrayList<>());
+        int before = registry.find("konduit.batching.queue.depth").tag("step", s.name()).gauges().size();
+
+        //Two batching steps wrapping steps with the same name: separate meters
+        PipelineStepRunner r1 = new BatchingStepRunner(new BatchingStep().step(doublingStep(new ArrayList<>())));
+        PipelineStepRunner r2 = new BatchingStepRunner(new BatchingStep().step(doublingStep(new ArrayList<>())));
+        try {
+            assertEquals(before + 2, registry.find("konduit.batching.queue.depth").tag("step", s.name()).gauges().size());
+            assertEquals(before + 2, registry.find("konduit.batching.batch.size").tag("step", s.name()).summaries().size());
+        } finally {
+            r1.close();
+            r2.close();
+        }
+        //Meters are removed on close
+        assertEquals(before, registry.find("konduit.batching.queue.depth").tag("step", s.name()).gauges().size());
+    }
+}
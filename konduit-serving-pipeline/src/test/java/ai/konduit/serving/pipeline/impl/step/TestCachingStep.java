@@ -0,0 +1,251 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.Image;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.impl.step.caching.CachingStep;
+import ai.konduit.serving.pipeline.impl.step.caching.CachingStepRunner;
+import ai.konduit.serving.pipeline.impl.step.caching.DataHasher;
+import ai.konduit.serving.pipeline.impl.testpipelines.fn.FunctionStep;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestCachingStep {
+
+    private static FunctionStep countingStep(AtomicInteger count) {
+        return new FunctionStep(d -> {
+            count.incrementAndGet();
+            float[] f = d.getNDArray("in").getAs(float[].class);
+            for (int i = 0; i < f.length; i++) {
+                f[i] *= 2;
+            }
+            return Data.singleton("out", NDArray.create(f));
+        });
+    }
+
+    private static Data input(float... values) {
+        Data d = Data.singleton("in", NDArray.create(values));
+        d.put("other", "value");
+        return d;
+    }
+
+    @Test
+    public void testHash() {
+        Data d1 = input(1, 2, 3);
+        assertEquals(DataHasher.hash(d1, null), DataHasher.hash(input(1, 2, 3), null));
+        assertNotEquals(DataHasher.hash(d1, null), DataHasher.hash(input(1, 2, 4), null));
+        assertNotEquals(DataHasher.hash(d1, null), DataHasher.hash(Data.singleton("in", NDArray.create(new float[][]{{1, 2, 3}})), null));
+
+        //Only the selected keys are hashed
+        Data d2 = input(1, 2, 3);
+        d2.put("other", "different value");
+        assertNotEquals(DataHasher.hash(d1, null), DataHasher.hash(d2, null));
+        assertEquals(DataHasher.hash(d1, Collections.singletonList("in")), DataHasher.hash(d2, Collections.singletonList("in")));
+
+        //Heap and direct buffers with the same content have the same hash, regardless of length (tail handling)
+        for (int n = 0; n < 40; n++) {
+            byte[] b = new byte[n];
+            for (int i = 0; i < n; i++)
+                b[i] = (byte) (31 * i);
+            ByteBuffer direct = ByteBuffer.allocateDirect(n).order(ByteOrder.LITTLE_ENDIAN);
+            direct.put(b);
+            Data heap = Data.singleton("b", ByteBuffer.wrap(b));
+            assertEquals(DataHasher.hash(heap, null), DataHasher.hash(Data.singleton("b", direct), null));
+            if (n > 0) {
+                b[n - 1]++;
+                assertNotEquals(DataHasher.hash(heap, null), DataHasher.hash(Data.singleton("b", direct), null));
+            }
+        }
+    }
+
+    @Test
+    public void testCaching() {
+        AtomicInteger count = new AtomicInteger();
+        CachingStepRunner r = new CachingStepRunner(new CachingStep()
+                .step(countingStep(count))
+                .inputNames("in")
+                .maxEntries(2));
+
+        Data exp = Data.singleton("out", NDArray.create(new float[]{2, 4, 6}));
+        assertEquals(exp, r.exec(null, input(1, 2, 3)));
+        assertEquals(exp, r.exec(null, input(1, 2, 3)));
+        assertEquals(1, count.get());
+
+        r.exec(null, input(4));
+        r.exec(null, input(1, 2, 3));       //Now most recently used
+        assertEquals(2, count.get());
+        r.exec(null, input(5));             //Evicts [4]
+        assertEquals(3, count.get());
+        assertEquals(2, r.size());
+
+        r.exec(null, input(1, 2, 3));
+        assertEquals(3, count.get());
+        r.exec(null, input(4));
+        assertEquals(4, count.get());
+        r.close();
+    }
+
+    @Test
+    public void testSizeLimit() {
+        AtomicInteger count = new AtomicInteger();
+        CachingStepRunner r = new CachingStepRunner(new CachingStep()
+                .step(countingStep(count))
+                .maxSizeBytes(1000));
+
+        //Too large to be cached
+        float[] large = new float[1000];
+        r.exec(null, input(large));
+        r.exec(null, input(large));
+        assertEquals(2, count.get());
+        assertEquals(0, r.size());
+
+        r.exec(null, input(1));
+        r.exec(null, input(1));
+        assertEquals(3, count.get());
+        assertEquals(1, r.size());
+        assertTrue(r.sizeBytes() > 0 && r.sizeBytes() <= 1000);
+        r.close();
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CachingStepRunner r = new CachingStepRunner(new CachingStep()
+                .step(countingStep(count))
+                .ttlMs(100));
+
+        r.exec(null, input(1));
+        r.exec(null, input(1));
+        assertEquals(1, count.get());
+        Thread.sleep(200);
+        r.exec(null, input(1));
+        assertEquals(2, count.get());
+        r.close();
+    }
+
+    @Test(timeout = 60000L)
+    public void testCoalescing() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CachingStepRunner r = new CachingStepRunner(new CachingStep()
+                .step(new FunctionStep(d -> {
+                    count.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return Data.singleton("out", d.getNDArray("in"));
+                })));
+
+        int nThreads = 4;
+        List<Data> results = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            Thread t = new Thread(() -> results.add(r.exec(null, input(1, 2))));
+            threads.add(t);
+            t.start();
+            if (i == 0)
+                started.await();
+        }
+        //Wait for the other threads to be waiting on the first request
+        Thread.sleep(500);
+        release.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(1, count.get());
+        assertEquals(nThreads, results.size());
+        for (Data d : results) {
+            assertArrayEquals(new float[]{1, 2}, d.getNDArray("out").getAs(float[].class), 0f);
+        }
+        r.close();
+    }
+
+    @Test
+    public void testImageOutputsCopied() {
+        AtomicInteger count = new AtomicInteger();
+        CachingStepRunner r = new CachingStepRunner(new CachingStep()
+                .step(new FunctionStep(d -> {
+                    count.incrementAndGet();
+                    BufferedImage bi = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+                    bi.setRGB(0, 0, 0x123456);
+                    return Data.singleton("out", Image.create(bi));
+                })));
+
+        Data first = r.exec(null, input(1));
+        Data second = r.exec(null, input(1));
+        Data third = r.exec(null, input(1));
+        assertEquals(1, count.get());
+
+        //Cache hits return separate images: modifying one in place doesn't affect the cached entry
+        BufferedImage b2 = second.getImage("out").getAs(BufferedImage.class);
+        BufferedImage b3 = third.getImage("out").getAs(BufferedImage.class);
+        assertNotSame(b2, b3);
+        assertNotSame(first.getImage("out").get(), b2);
+        b2.setRGB(0, 0, 0xFFFFFF);
+        assertEquals(0x123456, b3.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0x123456, r.exec(null, input(1)).getImage("out").getAs(BufferedImage.class).getRGB(0, 0) & 0xFFFFFF);
+        r.close();
+    }
+
+    @Test
+    public void testMetricsPerInstance() {
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        FunctionStep s = countingStep(new AtomicInteger());
+        int before = registry.find("konduit.cache.size.bytes").tag("step", s.name()).gauges().size();
+
+        //Two caches wrapping steps with the same name: separate meters
+        CachingStepRunner r1 = new CachingStepRunner(new CachingStep().step(countingStep(new AtomicInteger())));
+        CachingStepRunner r2 = new CachingStepRunner(new CachingStep().step(countingStep(new AtomicInteger())));
+        assertEquals(before + 2, registry.find("konduit.cache.size.bytes").tag("step", s.name()).gauges().size());
+        r1.exec(null, input(1));
+        r1.exec(null, input(1));
+        r2.exec(null, input(1));
+        double hits = 0;
+        for (Counter c : registry.find("konduit.cache.hits").tag("step", s.name()).counters()) {
+            assertTrue(c.count() <= 1);
+            hits += c.count();
+        }
+        assertEquals(1, hits, 0.0);
+
+        //Meters are removed on close
+        r1.close();
+        r2.close();
+        assertEquals(before, registry.find("konduit.cache.size.bytes").tag("step", s.name()).gauges().size());
+    }
+}
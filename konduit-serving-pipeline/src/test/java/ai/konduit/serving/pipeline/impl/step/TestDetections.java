@@ -0,0 +1,98 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.pipeline.impl.step;
+
+import ai.konduit.serving.pipeline.impl.step.bbox.Detections;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class TestDetections {
+
+    @Test
+    public void testNmsMatchesNaive(){
+        Random r = new Random(12345);
+        for( int t=0; t<20; t++ ){
+            Detections d = new Detections(t % 2 == 0, 4);
+            int n = 1 + r.nextInt(200);
+            for( int i=0; i<n; i++ ){
+                float a = r.nextFloat();
+                float b = r.nextFloat();
+                float c = 0.05f + 0.3f * r.nextFloat();
+                float e = 0.05f + 0.3f * r.nextFloat();
+                if(t % 2 == 0){
+                    d.add(a, b, c, e, r.nextFloat(), r.nextInt(3));
+                } else {
+                    d.add(a, b, a + c, b + e, r.nextFloat(), r.nextInt(3));
+                }
+            }
+
+            double threshold = 0.1 + 0.1 * (t % 5);
+            assertArrayEquals(naiveNms(d, t % 2 == 0, threshold), d.nms(threshold, 0));
+
+            int[] limited = d.nms(threshold, 5);
+            assertArrayEquals(Arrays.copyOf(naiveNms(d, t % 2 == 0, threshold), limited.length), limited);
+        }
+    }
+
+    private static int[] naiveNms(Detections d, boolean center, double threshold){
+        List<Integer> order = new ArrayList<>();
+        for( int i=0; i<d.size(); i++ )
+            order.add(i);
+        order.sort(Comparator.comparingDouble((Integer i) -> -d.score(i)).thenComparingInt(i -> i));
+
+        boolean[] removed = new boolean[d.size()];
+        List<Integer> out = new ArrayList<>();
+        for( int k=0; k<order.size(); k++ ){
+            int i = order.get(k);
+            if(removed[i])
+                continue;
+            out.add(i);
+            for( int k2=k+1; k2<order.size(); k2++ ){
+                int j = order.get(k2);
+                if(d.classIdx(i) == d.classIdx(j) && iou(corners(d, center, i), corners(d, center, j)) > threshold)
+                    removed[j] = true;
+            }
+        }
+        return out.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static double[] corners(Detections d, boolean center, int i){
+        if(center){
+            double hw = d.coord(i, 2) / 2, hh = d.coord(i, 3) / 2;
+            return new double[]{d.coord(i, 0) - hw, d.coord(i, 1) - hh, d.coord(i, 0) + hw, d.coord(i, 1) + hh};
+        }
+        return new double[]{d.coord(i, 0), d.coord(i, 1), d.coord(i, 2), d.coord(i, 3)};
+    }
+
+    private static double iou(double[] a, double[] b){
+        double iw = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        double ih = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        if(iw <= 0 || ih <= 0)
+            return 0;
+        double inter = iw * ih;
+        return inter / ((a[2]-a[0])*(a[3]-a[1]) + (b[2]-b[0])*(b[3]-b[1]) - inter);
+    }
+}
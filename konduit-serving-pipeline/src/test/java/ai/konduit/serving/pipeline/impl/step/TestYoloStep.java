@@ -129,4 +129,56 @@ public class TestYoloStep {
 
         }
     }
+
+    @Test
+    public void testYoloNms(){
+        int cl = 2;
+        int b = 2;
+        int h = 3;
+        int w = 3;
+
+        //Two heavily overlapping boxes of class 0 in cell (1,1) - one for each prior - and one of class 1 at the same
+        //location: the lower probability class 0 box should be suppressed
+        float[][][][][] f = new float[1][b][cl+5][h][w];
+        setBox(f, 0, 1, 1, 0.5f, 0.5f, 2.0f, 2.0f, 0.9f, 0.8f, 0.2f);
+        setBox(f, 1, 1, 1, 0.55f, 0.5f, 2.0f, 2.1f, 0.9f, 0.7f, 0.3f);
+        setBox(f, 0, 2, 0, 0.5f, 0.5f, 1.0f, 1.0f, 0.9f, 0.1f, 0.9f);
+
+        NDArray arr = NDArray.create(f);
+        SerializedNDArray sa = arr.getAs(SerializedNDArray.class);
+        sa = new SerializedNDArray(NDArrayType.FLOAT, new long[]{1, b * (cl + 5), h, w}, sa.getBuffer());
+        Data in = Data.singleton("in", NDArray.create(sa));
+
+        Data out = SequencePipeline.builder()
+                .add(new YoloToBoundingBoxStep().classLabels("a", "b"))
+                .build().executor().exec(in);
+        List<BoundingBox> act = out.getListBoundingBox(YoloToBoundingBoxStep.DEFAULT_OUTPUT_NAME);
+        List<BoundingBox> exp = new ArrayList<>();
+        exp.add(BoundingBox.create(2.5f / 3, 0.5f / 3, 1.0f / 3, 1.0f / 3, "b", (double) 0.9f));
+        exp.add(BoundingBox.create(1.5f / 3, 1.5f / 3, 2.0f / 3, 2.0f / 3, "a", (double) 0.8f));
+        assertEquals(exp, act);
+
+        //NMS disabled: all 3 boxes, highest probability first
+        out = SequencePipeline.builder()
+                .add(new YoloToBoundingBoxStep().classLabels("a", "b").nmsThreshold(1.0))
+                .build().executor().exec(in);
+        assertEquals(3, out.getListBoundingBox(YoloToBoundingBoxStep.DEFAULT_OUTPUT_NAME).size());
+
+        //Max detections
+        out = SequencePipeline.builder()
+                .add(new YoloToBoundingBoxStep().classLabels("a", "b").maxDetections(1))
+                .build().executor().exec(in);
+        assertEquals(exp.subList(0, 1), out.getListBoundingBox(YoloToBoundingBoxStep.DEFAULT_OUTPUT_NAME));
+    }
+
+    private static void setBox(float[][][][][] f, int box, int x, int y, float px, float py, float pw, float ph, float conf, float... probs){
+        f[0][box][0][y][x] = px;
+        f[0][box][1][y][x] = py;
+        f[0][box][2][y][x] = pw;
+        f[0][box][3][y][x] = ph;
+        f[0][box][4][y][x] = conf;
+        for( int i=0; i<probs.length; i++ ){
+            f[0][box][5+i][y][x] = probs[i];
+        }
+    }
 }
@@ -0,0 +1,269 @@
+/* ******************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package ai.konduit.serving.python;
+
+import ai.konduit.serving.data.image.data.FrameImage;
+import ai.konduit.serving.data.image.data.MatImage;
+import ai.konduit.serving.pipeline.api.data.Image;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
+import ai.konduit.serving.pipeline.impl.data.image.BImage;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bytedeco.cpython.PyObject;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacv.Java2DFrameConverter;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.nd4j.python4j.PythonException;
+import org.nd4j.python4j.PythonObject;
+import org.nd4j.python4j.PythonType;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import static org.bytedeco.cpython.global.python.*;
+
+/**
+ * Native memory - a direct NDArray buffer, or the pixels of an OpenCV {@link Mat} - that is exposed to python as a
+ * numpy array over the same memory (via a memoryview, using the buffer protocol), without copying it.<br>
+ * The numpy array is read only, and is only valid while the owner of the memory (the input {@link NDArray} or
+ * {@link Image}) is: python code that modifies the array or keeps it (or a view of it) between executions should copy
+ * it first. {@link PythonRunner} removes the input variables from the globals after each execution.<br>
+ * NumpyBuffers are only used for inputs when {@link ai.konduit.serving.model.PythonConfig#isZeroCopyInputs()} is set.<br>
+ * Images are exposed as HWC arrays in BGR(A) channel order - i.e., the same format as arrays returned by cv2.imread.
+ * Single channel images are exposed with shape [height, width].
+ */
+@AllArgsConstructor
+@Getter
+public class NumpyBuffer {
+
+    public static final Type TYPE = new Type();
+
+    private static final int PYBUF_READ = 0x100;
+
+    private final BytePointer pointer;
+    private final long length;
+    private final String dtype;
+    private final long[] shape;
+    //Keeps the memory reachable while the buffer is in use
+    private final Object owner;
+
+    /**
+     * Create a NumpyBuffer for the given NDArray, if it is backed by a direct buffer of a type supported by numpy
+     *
+     * @param ndArray NDArray to create the buffer for
+     * @return The NumpyBuffer, or null if the array can't be exposed without a copy (in which case it should be
+     * converted to an INDArray instead)
+     */
+    public static NumpyBuffer fromNDArray(NDArray ndArray) {
+        Object o = ndArray.get();
+        if (!(o instanceof SerializedNDArray))
+            return null;
+        SerializedNDArray sa = (SerializedNDArray) o;
+        String dtype = dtype(sa.getType());
+        ByteBuffer bb = sa.getBuffer();
+        if (dtype == null || !bb.isDirect())
+            return null;
+
+        long length = sa.getType().width();
+        for (long l : sa.getShape())
+            length *= l;
+        if (bb.remaining() < length)
+            return null;
+
+        return new NumpyBuffer(new BytePointer(bb), length, dtype, sa.getShape(), sa);
+    }
+
+    /**
+     * Create a NumpyBuffer for the given image, if it is a raw pixel image ({@link MatImage}, {@link FrameImage} or
+     * {@link BImage}). Other formats (PNG, JPEG, etc) are already encoded, and are passed to python as bytes.
+     *
+     * @param image Image to create the buffer for
+     * @return The NumpyBuffer, or null if the image is not a raw pixel image
+     */
+    public static NumpyBuffer fromImage(Image image) {
+        if (image instanceof MatImage || image instanceof FrameImage) {
+            return fromMat(image.getAs(Mat.class));
+        } else if (image instanceof BImage) {
+            //No direct Mat converter for BufferedImage: convert via Frame rather than encoding it
+            BufferedImage bi = image.getAs(BufferedImage.class);
+            Mat m = new OpenCVFrameConverter.ToMat().convert(new Java2DFrameConverter().convert(bi));
+            return fromMat(m.clone());
+        }
+        return null;
+    }
+
+    /**
+     * Create a NumpyBuffer for the pixels of the given Mat. Non-continuous Mats (for example, ROIs) are copied
+     */
+    public static NumpyBuffer fromMat(Mat mat) {
+        if (!mat.isContinuous())
+            mat = mat.clone();
+
+        String dtype;
+        switch (mat.depth()) {
+            case opencv_core.CV_8U:
+                dtype = "|u1";
+                break;
+            case opencv_core.CV_8S:
+                dtype = "|i1";
+                break;
+            case opencv_core.CV_16U:
+                dtype = "<u2";
+                break;
+            case opencv_core.CV_16S:
+                dtype = "<i2";
+                break;
+            case opencv_core.CV_32S:
+                dtype = "<i4";
+                break;
+            case opencv_core.CV_32F:
+                dtype = "<f4";
+                break;
+            case opencv_core.CV_64F:
+                dtype = "<f8";
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported Mat depth for conversion to numpy: " + mat.depth());
+        }
+
+        int c = mat.channels();
+        long[] shape = c == 1 ? new long[]{mat.rows(), mat.cols()} : new long[]{mat.rows(), mat.cols(), c};
+        long length = mat.total() * mat.elemSize();
+        return new NumpyBuffer(mat.data(), length, dtype, shape, mat);
+    }
+
+    /**
+     * @return The numpy dtype for the given NDArray type, or null if numpy has no equivalent type
+     */
+    public static String dtype(NDArrayType type) {
+        switch (type) {
+            case DOUBLE:
+                return "<f8";
+            case FLOAT:
+                return "<f4";
+            case FLOAT16:
+                return "<f2";
+            case INT64:
+                return "<i8";
+            case INT32:
+                return "<i4";
+            case INT16:
+                return "<i2";
+            case INT8:
+                return "|i1";
+            case UINT64:
+                return "<u8";
+            case UINT32:
+                return "<u4";
+            case UINT16:
+                return "<u2";
+            case UINT8:
+                return "|u1";
+            case BOOL:
+                return "|b1";
+            case BFLOAT16:
+            case UTF8:
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Create the numpy array for this buffer. The GIL must be held by the caller.
+     *
+     * @return A new reference to the numpy array
+     */
+    public PyObject toNumpy() {
+        PyObject view = PyMemoryView_FromMemory(pointer, length, PYBUF_READ);
+        if (view == null)
+            throw pythonError("Unable to create memoryview for buffer of length " + length);
+
+        PyObject numpy = null;
+        PyObject flat = null;
+        try {
+            numpy = PyImport_ImportModule("numpy");
+            if (numpy == null)
+                throw pythonError("Unable to import numpy");
+
+            PyObject fromBufferArgs = PyTuple_New(2);
+            Py_IncRef(view);
+            PyTuple_SetItem(fromBufferArgs, 0, view);                     //Steals the reference
+            PyTuple_SetItem(fromBufferArgs, 1, PyUnicode_FromString(dtype));
+            flat = call(numpy, "frombuffer", fromBufferArgs);
+
+            PyObject shapeArgs = PyTuple_New(1);
+            PyObject shapeTuple = PyTuple_New(shape.length);
+            for (int i = 0; i < shape.length; i++)
+                PyTuple_SetItem(shapeTuple, i, PyLong_FromLongLong(shape[i]));
+            PyTuple_SetItem(shapeArgs, 0, shapeTuple);
+            return call(flat, "reshape", shapeArgs);
+        } finally {
+            Py_DecRef(view);
+            if (numpy != null)
+                Py_DecRef(numpy);
+            if (flat != null)
+                Py_DecRef(flat);
+        }
+    }
+
+    //Call the method with the given name, consuming the arguments tuple
+    private static PyObject call(PyObject obj, String method, PyObject args) {
+        PyObject m = PyObject_GetAttrString(obj, method);
+        if (m == null) {
+            Py_DecRef(args);
+            throw pythonError("Unable to get attribute: " + method);
+        }
+        PyObject out = PyObject_CallObject(m, args);
+        Py_DecRef(m);
+        Py_DecRef(args);
+        if (out == null)
+            throw pythonError("Call to " + method + " failed");
+        return out;
+    }
+
+    private static PythonException pythonError(String message) {
+        if (PyErr_Occurred() != null)
+            PyErr_Print();
+        return new PythonException(message);
+    }
+
+    /**
+     * {@link PythonType} for {@link NumpyBuffer} inputs.<br>
+     * Note that {@link ai.konduit.serving.python.PythonRunner} sets NumpyBuffer variables directly using
+     * {@link NumpyBuffer#toNumpy()}, rather than via {@link #toPython(NumpyBuffer)}. Numpy outputs are converted via
+     * python4j's NumpyArray type instead.
+     */
+    public static class Type extends PythonType<NumpyBuffer> {
+
+        private Type() {
+            super("numpy.ndarray", NumpyBuffer.class);
+        }
+
+        @Override
+        public NumpyBuffer toJava(PythonObject pythonObject) {
+            throw new UnsupportedOperationException("NumpyBuffer is only supported for inputs to python");
+        }
+
+        @Override
+        public PythonObject toPython(NumpyBuffer buffer) {
+            return new PythonObject(buffer.toNumpy());
+        }
+    }
+}
@@ -28,8 +28,10 @@ import ai.konduit.serving.python.util.KonduitPythonUtils;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.bytedeco.cpython.PyObject;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.python4j.PythonException;
 import org.nd4j.python4j.PythonExecutioner;
 import org.nd4j.python4j.PythonGIL;
 import org.nd4j.python4j.PythonVariable;
@@ -38,10 +40,11 @@ import org.nd4j.python4j.PythonVariables;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import static org.bytedeco.cpython.global.python.PyGILState_Check;
+import static org.bytedeco.cpython.global.python.*;
 
 @CanRun(PythonStep.class)
 @Slf4j
@@ -49,6 +52,8 @@ public class PythonRunner implements PipelineStepRunner {
 
     private PythonStep pythonStep;
     private String code;
+    //The code, compiled once at construction - executed in the __main__ module for each request
+    private PyObject compiledCode;
 
 
     @SneakyThrows
@@ -92,16 +97,30 @@ public class PythonRunner implements PipelineStepRunner {
             log.info("Resolving import code from " + pythonStep.pythonConfig().getImportCodePath());
         }
 
-        if(importCode != null) {
-            try(PythonGIL ignored = PythonGIL.lock()) {
+        Preconditions.checkState(this.code != null, "No python code available to execute");
+        String codeName = pythonStep.pythonConfig().getPythonCode() == null && pythonStep.pythonConfig().getPythonCodePath() != null ?
+                pythonStep.pythonConfig().getPythonCodePath() : "<python step>";
+        try(PythonGIL ignored = PythonGIL.lock()) {
+            if(importCode != null) {
                 PythonExecutioner.exec(importCode);
             }
+
+            compiledCode = Py_CompileStringExFlags(this.code, codeName, Py_file_input, null, -1);
+            if(compiledCode == null) {
+                PyErr_Print();
+                throw new PythonException("Unable to compile python code from " + codeName);
+            }
         }
     }
 
     @Override
     public void close() {
-
+        if(compiledCode != null) {
+            try(PythonGIL ignored = PythonGIL.lock()) {
+                Py_DecRef(compiledCode);
+            }
+            compiledCode = null;
+        }
     }
 
     @Override
@@ -115,17 +134,61 @@ public class PythonRunner implements PipelineStepRunner {
         Data ret = Data.empty();
         PythonVariables outputs = KonduitPythonUtils.createOutputVariables(pythonStep.pythonConfig());
         PythonVariables pythonVariables = KonduitPythonUtils.createPythonVariablesFromDataInput(data, pythonStep.pythonConfig());
+        //Only setting the inputs, executing the code and getting the outputs requires the GIL
         try(PythonGIL ignored = PythonGIL.lock()) {
             log.debug("Thread " + Thread.currentThread().getId() + " has the GIL. Name of thread " + Thread.currentThread().getName());
             log.debug("Py gil state " + (PyGILState_Check() > 0));
-            runExec(ret, outputs, pythonVariables);
+            runExec(outputs, pythonVariables);
         }
 
+        convertOutputs(ret, outputs);
         return ret;
     }
 
-    private void runExec(Data ret, PythonVariables outputs, PythonVariables pythonVariables) throws IOException {
-        PythonExecutioner.exec(code, pythonVariables, outputs);
+    private void runExec(PythonVariables outputs, PythonVariables pythonVariables) {
+        Preconditions.checkState(compiledCode != null, "Python runner has been closed");
+        PyObject globals = PyModule_GetDict(PyImport_AddModule("__main__"));
+
+        PythonVariables toConvert = new PythonVariables();
+        List<String> buffers = new ArrayList<>();
+        try {
+            for(PythonVariable variable : pythonVariables) {
+                if(variable.getType() == NumpyBuffer.TYPE) {
+                    //Set directly, as a numpy array over the same memory
+                    PyObject arr = ((NumpyBuffer) variable.getValue()).toNumpy();
+                    int result = PyDict_SetItemString(globals, variable.getName(), arr);
+                    Py_DecRef(arr);
+                    if(result != 0) {
+                        PyErr_Print();
+                        throw new PythonException("Unable to set python variable " + variable.getName());
+                    }
+                    buffers.add(variable.getName());
+                } else {
+                    toConvert.add(variable);
+                }
+            }
+            PythonExecutioner.setVariables(toConvert);
+
+            PyObject result = PyEval_EvalCode(compiledCode, globals, globals);
+            if(result == null) {
+                PyErr_Print();
+                throw new PythonException("Execution of python code failed");
+            }
+            Py_DecRef(result);
+
+            PythonExecutioner.getVariables(outputs);
+        } finally {
+            //The memory of NumpyBuffer inputs is only valid for this request: don't leave it reachable from the globals
+            for(String name : buffers) {
+                if(PyDict_DelItemString(globals, name) != 0) {
+                    //Already deleted by the python code
+                    PyErr_Clear();
+                }
+            }
+        }
+    }
+
+    private void convertOutputs(Data ret, PythonVariables outputs) throws IOException {
         Preconditions.checkNotNull(outputs,"No outputs found!");
         for(PythonVariable variable : outputs) {
             PythonIO pythonIO = pythonStep.pythonConfig().getIoOutputs().get(variable.getName());
@@ -18,6 +18,7 @@ package ai.konduit.serving.python;
 import ai.konduit.serving.pipeline.api.step.PipelineStep;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
 import ai.konduit.serving.pipeline.api.step.PipelineStepRunnerFactory;
+import ai.konduit.serving.python.worker.PythonWorkerPoolRunner;
 import org.nd4j.common.base.Preconditions;
 
 public class PythonRunnerFactory implements PipelineStepRunnerFactory {
@@ -30,6 +31,9 @@ public class PythonRunnerFactory implements PipelineStepRunnerFactory {
     @Override
     public PipelineStepRunner create(PipelineStep step) {
         Preconditions.checkState(canRun(step), "Unable to run pipeline step: %s", step.getClass());
-        return new PythonRunner((PythonStep) step);
+        PythonStep pythonStep = (PythonStep) step;
+        if(pythonStep.pythonConfig() != null && pythonStep.pythonConfig().getWorkers() > 0)
+            return new PythonWorkerPoolRunner(pythonStep);
+        return new PythonRunner(pythonStep);
     }
 }
@@ -25,8 +25,7 @@ import ai.konduit.serving.pipeline.impl.data.image.*;
 import ai.konduit.serving.python.DictUtils;
 import ai.konduit.serving.python.PythonStep;
 import ai.konduit.serving.python.NoneType;
-import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.javacv.Frame;
+import ai.konduit.serving.python.NumpyBuffer;
 import org.bytedeco.opencv.opencv_core.Mat;
 
 import org.nd4j.common.base.Preconditions;
@@ -42,6 +41,7 @@ import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -321,22 +321,12 @@ public class KonduitPythonUtils {
             Bmp bmp = bmpImage.getAs(Bmp.class);
             return bmp.getBytes();
         }
-        else if(image instanceof FrameImage) {
-            FrameImage frameImage = (FrameImage) image;
-            Frame frame = frameImage.getAs(Frame.class);
-            ByteBuffer byteBuffer = frame.data;
-            int totalLen = frame.data.capacity();
-            byte[] convert = new byte[totalLen];
-            byteBuffer.get(convert.length);
-            return convert;
-        }
-        else if(image instanceof MatImage) {
-            MatImage matImage = (MatImage) image;
-            Mat mat = matImage.getAs(Mat.class);
-            int totalLen = (int) mat.elemSize() * mat.cols() * mat.depth() * mat.rows();
-            ByteBuffer byteBuffer = mat.data().asByteBuffer();
-            byte[] convert = new byte[totalLen];
-            byteBuffer.get(convert.length);
+        else if(image instanceof FrameImage || image instanceof MatImage) {
+            Mat mat = image.getAs(Mat.class);
+            if(!mat.isContinuous())
+                mat = mat.clone();
+            byte[] convert = new byte[(int) (mat.total() * mat.elemSize())];
+            mat.data().get(convert);
             return convert;
         }
 
@@ -344,15 +334,35 @@ public class KonduitPythonUtils {
     }
 
     /**
-     * Adds an image to a set of python variables.
-     * Also adds the length as key_len
+     * Adds an image to a set of python variables, as bytes
      * @param pythonVariables
      * @param key
      * @param image
      * @throws Exception
      */
     public static void addImageToPython(PythonVariables pythonVariables, String key, Image image) throws Exception {
-        addObjectToPythonVariables(pythonVariables,key,convertImageToBytes(image));
+        addImageToPython(pythonVariables,key,image,false);
+    }
+
+    /**
+     * Adds an image to a set of python variables.
+     * If zeroCopy is true, raw pixel images ({@link MatImage}, {@link FrameImage}, {@link BImage})
+     * are added as a {@link NumpyBuffer} - i.e., a numpy array over the image
+     * memory (HWC, BGR order). Otherwise, and for encoded images (PNG, JPEG, etc), the image is added as bytes
+     * @param pythonVariables
+     * @param key
+     * @param image
+     * @param zeroCopy see {@link PythonConfig#isZeroCopyInputs()}
+     * @throws Exception
+     */
+    public static void addImageToPython(PythonVariables pythonVariables, String key, Image image, boolean zeroCopy) throws Exception {
+        NumpyBuffer numpyBuffer = zeroCopy ? NumpyBuffer.fromImage(image) : null;
+        if(numpyBuffer != null) {
+            pythonVariables.add(key,NumpyBuffer.TYPE,numpyBuffer);
+        }
+        else {
+            addObjectToPythonVariables(pythonVariables,key,convertImageToBytes(image));
+        }
     }
 
     /**
@@ -492,42 +502,23 @@ public class KonduitPythonUtils {
         Preconditions.checkNotNull(length,"No byte pointer length found for variable");
         Preconditions.checkNotNull("No byte pointer length found for variable",variable);
 
-        BytePointer bytesValue = new BytePointer(getWithType(outputs,variable,byte[].class));
-        Preconditions.checkNotNull("No byte pointer found for variable",variable);
+        byte[] bytesValue = getWithType(outputs,variable,byte[].class);
+        Preconditions.checkNotNull(bytesValue,"No bytes found for variable %s",variable);
         //ensure length matches what's found in python
-        Long capacity = length;
-        bytesValue.capacity(capacity);
+        int capacity = (int) Math.min(length, bytesValue.length);
         switch(byteOutputValueType) {
             case IMAGE:
-                ByteBuffer byteBuffer1 = bytesValue.asBuffer();
-
-                if(byteBuffer1.hasArray()) {
-                    byte[] bytesContent = byteBuffer1.array();
-                    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytesContent);
-                    BufferedImage bufferedImage = ImageIO.read(byteArrayInputStream);
-                    ret.put(variable, Image.create(bufferedImage));
-                }
-                else {
-                    byte[] bytes = new byte[capacity.intValue()];
-                    byteBuffer1.get(bytes);
-                    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-                    BufferedImage bufferedImage = ImageIO.read(byteArrayInputStream);
-                    Preconditions.checkNotNull(bufferedImage,"Buffered image was not returned. Invalid image bytes passed in.");
-                    ret.put(variable,Image.create(bufferedImage));
-                }
+                ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytesValue, 0, capacity);
+                BufferedImage bufferedImage = ImageIO.read(byteArrayInputStream);
+                Preconditions.checkNotNull(bufferedImage,"Buffered image was not returned. Invalid image bytes passed in.");
+                ret.put(variable,Image.create(bufferedImage));
                 break;
             case BYTES:
-                ByteBuffer byteBuffer = bytesValue.asByteBuffer();
-                byte[] bytes = new byte[byteBuffer.capacity()];
-                byteBuffer.get(bytes);
-                ret.put(variable,bytes);
+            case STRING:
+                ret.put(variable,capacity == bytesValue.length ? bytesValue : Arrays.copyOf(bytesValue, capacity));
                 break;
             case BYTEBUFFER:
-                ByteBuffer byteBuffer2 = bytesValue.asByteBuffer();
-                ret.put(variable,byteBuffer2);
-                break;
-            case STRING:
-                ret.put(variable,bytesValue.getStringBytes());
+                ret.put(variable,ByteBuffer.wrap(bytesValue, 0, capacity).slice());
                 break;
             default:
                 throw new IllegalArgumentException("Illegal type found for output type conversion  " + byteOutputValueType);
@@ -550,8 +541,14 @@ public class KonduitPythonUtils {
             switch(data.type(key)) {
                 case NDARRAY:
                     NDArray ndArray = data.getNDArray(key);
-                    INDArray arr = ndArray.getAs(INDArray.class);
-                    pythonVariables.add(key, NumpyArray.INSTANCE,arr);
+                    NumpyBuffer numpyBuffer = pythonConfig.isZeroCopyInputs() ? NumpyBuffer.fromNDArray(ndArray) : null;
+                    if(numpyBuffer != null) {
+                        pythonVariables.add(key, NumpyBuffer.TYPE,numpyBuffer);
+                    }
+                    else {
+                        INDArray arr = ndArray.getAs(INDArray.class);
+                        pythonVariables.add(key, NumpyArray.INSTANCE,arr);
+                    }
                     break;
                 case BYTES:
                     byte[] bytes = data.getBytes(key);
@@ -595,7 +592,7 @@ public class KonduitPythonUtils {
                     break;
                 case IMAGE:
                     Image image = data.getImage(key);
-                    addImageToPython(pythonVariables,key,image);
+                    addImageToPython(pythonVariables,key,image,pythonConfig.isZeroCopyInputs());
                     break;
                 case BOUNDING_BOX:
                     BoundingBox boundingBox = data.getBoundingBox(key);
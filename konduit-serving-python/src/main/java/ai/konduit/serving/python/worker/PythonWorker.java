@@ -0,0 +1,270 @@
+/* ******************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package ai.konduit.serving.python.worker;
+
+import ai.konduit.serving.model.PythonConfig;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.python.PythonStep;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The serving process side of a single python worker process (see {@link PythonWorkerMain}).<br>
+ * Requests and results are transferred via two {@link SharedBuffer}s (one written by each side); only small control
+ * messages (operation/status and content length) are sent over a loopback socket.<br>
+ * A worker executes one request at a time: {@link #exec(Data)} is synchronized. Requests that take longer than
+ * {@link PythonConfig#getWorkerExecTimeoutMs()} cause the worker process to be killed and restarted, so that python code
+ * that hangs doesn't block the worker (and the requests waiting for it) indefinitely.
+ */
+@Slf4j
+public class PythonWorker implements Closeable {
+
+    public static final int OP_EXEC = 1;
+    public static final int OP_SHUTDOWN = 2;
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERROR = 1;
+
+    public static final long STARTUP_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final int index;
+    private final PythonStep step;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private File stepFile;
+    private SharedBuffer requestBuffer;
+    private SharedBuffer responseBuffer;
+    private Process process;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private boolean closed;
+
+    public PythonWorker(int index, PythonStep step) throws IOException {
+        this.index = index;
+        this.step = step;
+        start();
+    }
+
+    /**
+     * @return Number of requests in progress or waiting for this worker
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Execute the python step on the given input. If the worker process has died, times out or the connection to it
+     * fails, the worker is restarted and the exception is rethrown: the request is not retried.
+     *
+     * @return The output. NDArray values are backed by buffers allocated via
+     * {@link ai.konduit.serving.pipeline.impl.memory.BufferPool}
+     */
+    public Data exec(Data data) throws IOException {
+        pending.incrementAndGet();
+        try {
+            synchronized (this) {
+                if (closed)
+                    throw new IllegalStateException("Python worker " + index + " has been closed");
+                if (process == null)
+                    start();        //Previous restart failed
+                try {
+                    return execInternal(data);
+                } catch (SocketTimeoutException e) {
+                    log.warn("Python worker {} timed out after {} ms - killing and restarting", index, step.pythonConfig().getWorkerExecTimeoutMs());
+                    restart(true);
+                    throw new IOException("Python worker " + index + " timed out after " + step.pythonConfig().getWorkerExecTimeoutMs() + " ms", e);
+                } catch (IOException e) {
+                    log.warn("Python worker {} failed - restarting", index, e);
+                    restart(false);
+                    throw e;
+                }
+            }
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private Data execInternal(Data data) throws IOException {
+        if (!process.isAlive())
+            throw new IOException("Python worker process " + index + " has exited with code " + process.exitValue());
+
+        long length = requestBuffer.write(data);
+        out.writeInt(OP_EXEC);
+        out.writeLong(length);
+        out.flush();
+
+        int status = in.readInt();
+        long responseLength = in.readLong();
+        if (status == STATUS_ERROR)
+            throw new PythonWorkerException("Error executing python step in worker " + index + ": " + responseBuffer.readError(responseLength));
+        return responseBuffer.readCopy(responseLength);
+    }
+
+    private void start() throws IOException {
+        PythonConfig config = step.pythonConfig();
+        stepFile = File.createTempFile("konduit-python-step-", ".json");
+        stepFile.deleteOnExit();
+        FileUtils.writeStringToFile(stepFile, step.toJson(), StandardCharsets.UTF_8);
+        requestBuffer = SharedBuffer.create("konduit-python-" + index + "-in-", config.getWorkerBufferSize());
+        responseBuffer = SharedBuffer.create("konduit-python-" + index + "-out-", config.getWorkerBufferSize());
+
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            List<String> command = new ArrayList<>();
+            command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+            if (config.getWorkerJvmArgs() != null)
+                command.addAll(config.getWorkerJvmArgs());
+            command.add("-cp");
+            command.add(config.getWorkerClasspath() != null ? config.getWorkerClasspath() : workerClasspath());
+            command.add(PythonWorkerMain.class.getName());
+            command.add(String.valueOf(serverSocket.getLocalPort()));
+            command.add(stepFile.getAbsolutePath());
+            command.add(requestBuffer.getFile().getAbsolutePath());
+            command.add(responseBuffer.getFile().getAbsolutePath());
+
+            log.info("Starting python worker {}", index);
+            process = new ProcessBuilder(command).inheritIO().start();
+
+            //Wait for the worker process to connect
+            long start = System.currentTimeMillis();
+            serverSocket.setSoTimeout(1000);
+            while (socket == null) {
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    if (!process.isAlive())
+                        throw new IOException("Python worker process " + index + " exited during startup with code " + process.exitValue());
+                    if (System.currentTimeMillis() - start > STARTUP_TIMEOUT_MS)
+                        throw new IOException("Timed out waiting for python worker process " + index + " to start");
+                }
+            }
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            //Wait for the worker to initialize python and the step (including the step's import code)
+            socket.setSoTimeout((int) STARTUP_TIMEOUT_MS);
+            int status = in.readInt();
+            long length = in.readLong();
+            if (status == STATUS_ERROR)
+                throw new PythonWorkerException("Error initializing python worker " + index + ": " + responseBuffer.readError(length));
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(0, config.getWorkerExecTimeoutMs())));
+        } catch (IOException | RuntimeException e) {
+            stop(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Determine the class path for the worker processes: the locations of the class loaders that loaded this module
+     * (which may differ from the java.class.path system property - for example, with the CLI launcher or a custom
+     * class loader), followed by the system class path
+     */
+    static String workerClasspath() {
+        Set<String> entries = new LinkedHashSet<>();
+        CodeSource cs = PythonWorkerMain.class.getProtectionDomain().getCodeSource();
+        if (cs != null && cs.getLocation() != null)
+            addEntry(entries, cs.getLocation());
+        for (ClassLoader cl = PythonWorkerMain.class.getClassLoader(); cl != null; cl = cl.getParent()) {
+            if (cl instanceof URLClassLoader) {
+                for (URL u : ((URLClassLoader) cl).getURLs())
+                    addEntry(entries, u);
+            }
+        }
+        String cp = System.getProperty("java.class.path");
+        if (cp != null && !cp.isEmpty())
+            entries.addAll(Arrays.asList(cp.split(File.pathSeparator)));
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void addEntry(Set<String> entries, URL url) {
+        if (!"file".equals(url.getProtocol()))
+            return;
+        try {
+            entries.add(new File(url.toURI()).getAbsolutePath());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            log.warn("Unable to add {} to the python worker class path", url, e);
+        }
+    }
+
+    private void restart(boolean kill) {
+        stop(kill);
+        try {
+            start();
+        } catch (Exception e) {
+            //Will be retried on the next request
+            log.error("Failed to restart python worker {}", index, e);
+        }
+    }
+
+    /**
+     * @param kill If true, kill the process immediately rather than asking it to shut down - for example, if it is not
+     *             responding
+     */
+    private void stop(boolean kill) {
+        if (out != null && !kill) {
+            try {
+                out.writeInt(OP_SHUTDOWN);
+                out.writeLong(0);
+                out.flush();
+            } catch (IOException e) {
+                //Ignore - process may already be dead
+            }
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //Ignore
+            }
+        }
+        if (process != null) {
+            try {
+                if (kill || !process.waitFor(5, TimeUnit.SECONDS))
+                    process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (requestBuffer != null)
+            requestBuffer.delete();
+        if (responseBuffer != null)
+            responseBuffer.delete();
+        if (stepFile != null)
+            stepFile.delete();
+        socket = null;
+        in = null;
+        out = null;
+        process = null;
+        requestBuffer = null;
+        responseBuffer = null;
+        stepFile = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        stop(false);
+    }
+}
@@ -0,0 +1,106 @@
+/* ******************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package ai.konduit.serving.python.worker;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import ai.konduit.serving.pipeline.impl.memory.BufferScope;
+import ai.konduit.serving.pipeline.util.ObjectMappers;
+import ai.konduit.serving.python.PythonRunner;
+import ai.konduit.serving.python.PythonStep;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static ai.konduit.serving.python.worker.PythonWorker.*;
+
+/**
+ * Entry point of a python worker process, started by {@link PythonWorker}.<br>
+ * Arguments: control port, step JSON file, request buffer file, response buffer file.<br>
+ * The worker executes the python step in process (see {@link PythonRunner}) for each request until it is told to shut
+ * down, or the connection to the serving process is closed.
+ */
+@Slf4j
+public class PythonWorkerMain {
+
+    private PythonWorkerMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.err.println("Usage: PythonWorkerMain <port> <step JSON file> <request buffer file> <response buffer file>");
+            System.exit(1);
+        }
+
+        int port = Integer.parseInt(args[0]);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             SharedBuffer requestBuffer = new SharedBuffer(new File(args[2]), 0);
+             SharedBuffer responseBuffer = new SharedBuffer(new File(args[3]), 0)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            PythonRunner runner;
+            try {
+                String json = FileUtils.readFileToString(new File(args[1]), StandardCharsets.UTF_8);
+                PythonStep step = (PythonStep) ObjectMappers.fromJson(json, PipelineStep.class);
+                runner = new PythonRunner(step);
+            } catch (Throwable t) {
+                log.error("Error initializing python worker", t);
+                reply(out, STATUS_ERROR, responseBuffer.writeError(t.toString()));
+                return;
+            }
+            reply(out, STATUS_OK, 0);
+
+            try {
+                while (true) {
+                    int op;
+                    long length;
+                    try {
+                        op = in.readInt();
+                        length = in.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (op == OP_SHUTDOWN)
+                        break;
+
+                    //Buffers allocated while executing are released once the response has been written
+                    try (BufferScope scope = BufferScope.open()) {
+                        Data input = requestBuffer.readView(length);
+                        Data output = runner.exec(null, input);
+                        reply(out, STATUS_OK, responseBuffer.write(output));
+                    } catch (Throwable t) {
+                        log.error("Error executing python step", t);
+                        reply(out, STATUS_ERROR, responseBuffer.writeError(t.toString()));
+                    }
+                }
+            } finally {
+                runner.close();
+            }
+        }
+    }
+
+    private static void reply(DataOutputStream out, int status, long length) throws IOException {
+        out.writeInt(status);
+        out.writeLong(length);
+        out.flush();
+    }
+}
@@ -0,0 +1,105 @@
+/* ******************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package ai.konduit.serving.python.worker;
+
+import ai.konduit.serving.model.PythonConfig;
+import ai.konduit.serving.pipeline.api.context.Context;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.python.PythonStep;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes a {@link PythonStep} in a pool of separate python worker processes ({@link PythonConfig#getWorkers()}),
+ * each with its own python interpreter - and hence GIL - so that python code can be executed on multiple cores in
+ * parallel.<br>
+ * Requests are dispatched to workers according to {@link PythonConfig#getWorkerDispatch()}. Workers that crash are
+ * restarted (the request that was being executed fails).
+ */
+@Slf4j
+public class PythonWorkerPoolRunner implements PipelineStepRunner {
+
+    private final PythonStep step;
+    private final PythonConfig.WorkerDispatch dispatch;
+    private final List<PythonWorker> workers;
+    private final AtomicLong counter = new AtomicLong();
+
+    @SneakyThrows
+    public PythonWorkerPoolRunner(PythonStep step) {
+        this.step = step;
+        PythonConfig config = step.pythonConfig();
+        Preconditions.checkState(config.getWorkers() > 0, "Number of python workers must be positive, got %s", config.getWorkers());
+        this.dispatch = config.getWorkerDispatch() == null ? PythonConfig.WorkerDispatch.LEAST_LOADED : config.getWorkerDispatch();
+
+        workers = new ArrayList<>(config.getWorkers());
+        try {
+            for (int i = 0; i < config.getWorkers(); i++) {
+                workers.add(new PythonWorker(i, step));
+            }
+        } catch (Throwable t) {
+            close();
+            throw t;
+        }
+        log.info("Started {} python worker processes", workers.size());
+    }
+
+    @Override
+    public PipelineStep getPipelineStep() {
+        return step;
+    }
+
+    @SneakyThrows
+    @Override
+    public Data exec(Context ctx, Data data) {
+        return select().exec(data);
+    }
+
+    private PythonWorker select() {
+        if (dispatch == PythonConfig.WorkerDispatch.ROUND_ROBIN)
+            return workers.get((int) (counter.getAndIncrement() % workers.size()));
+
+        //Least loaded - starting the search at a different worker each time, to spread requests between idle workers
+        int n = workers.size();
+        int offset = (int) (counter.getAndIncrement() % n);
+        PythonWorker best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            PythonWorker w = workers.get((offset + i) % n);
+            int p = w.pending();
+            if (p < bestPending) {
+                best = w;
+                bestPending = p;
+                if (p == 0)
+                    break;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void close() {
+        for (PythonWorker w : workers) {
+            w.close();
+        }
+    }
+}
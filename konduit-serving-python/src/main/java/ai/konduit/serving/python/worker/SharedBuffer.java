@@ -0,0 +1,168 @@
+/* ******************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package ai.konduit.serving.python.worker;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.impl.data.ProtoData;
+import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage;
+import ai.konduit.serving.pipeline.impl.memory.BufferPool;
+import com.google.protobuf.CodedOutputStream;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A memory mapped file, shared between the serving process and a python worker process, used to transfer a single
+ * serialized {@link Data} instance (a DataProtoMessage, with NDArray data as raw bytes) or an error message at a time.<br>
+ * Only one side writes to a given buffer: the writer grows the file as required, and the reader remaps it when it is
+ * told (via the control message) that the content is longer than the current mapping.
+ */
+public class SharedBuffer implements Closeable {
+
+    @Getter
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    public SharedBuffer(File file, long initialSize) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        if (channel.size() < initialSize)
+            raf.setLength(initialSize);
+        map();
+    }
+
+    /**
+     * Create a new shared buffer in a temporary file - on Linux, in /dev/shm (i.e., in memory) when available
+     */
+    public static SharedBuffer create(String prefix, long initialSize) throws IOException {
+        File shm = new File("/dev/shm");
+        File dir = shm.isDirectory() && shm.canWrite() ? shm : null;
+        File f = File.createTempFile(prefix, ".buf", dir);
+        f.deleteOnExit();
+        return new SharedBuffer(f, initialSize);
+    }
+
+    /**
+     * Write the Data instance to the buffer
+     *
+     * @return The number of bytes written
+     */
+    public long write(Data data) throws IOException {
+        DataProtoMessage.DataMap msg = data.toProtoData().toProtoMessage();
+        int size = msg.getSerializedSize();
+        ensureCapacity(size);
+        ByteBuffer bb = buffer.duplicate();
+        bb.clear();
+        CodedOutputStream cos = CodedOutputStream.newInstance(bb);
+        msg.writeTo(cos);
+        cos.flush();
+        return size;
+    }
+
+    /**
+     * Write an error message to the buffer
+     *
+     * @return The number of bytes written
+     */
+    public long writeError(String message) throws IOException {
+        byte[] bytes = (message == null ? "" : message).getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(bytes.length);
+        ByteBuffer bb = buffer.duplicate();
+        bb.clear();
+        bb.put(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Read a Data instance of the given length. NDArray values are views of the shared memory, hence the returned
+     * Data instance is only valid until the buffer is written to again.
+     */
+    public Data readView(long length) throws IOException {
+        return ProtoData.fromBytes(slice(length));
+    }
+
+    /**
+     * Read a Data instance of the given length, copying the content first so that the returned Data instance remains
+     * valid after the buffer is written to again. The copy is allocated via {@link BufferPool}.
+     */
+    public Data readCopy(long length) throws IOException {
+        ByteBuffer copy = BufferPool.allocate(length);
+        copy.put(slice(length));
+        copy.flip();
+        return ProtoData.fromBytes(copy);
+    }
+
+    public String readError(long length) throws IOException {
+        ByteBuffer bb = slice(length);
+        byte[] bytes = new byte[bb.remaining()];
+        bb.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer slice(long length) throws IOException {
+        if (length > buffer.capacity())
+            map();
+        if (length > buffer.capacity())
+            throw new IOException("Shared buffer " + file + " is shorter than expected: " + buffer.capacity() + " < " + length);
+        ByteBuffer bb = buffer.duplicate();
+        bb.clear().limit((int) length);
+        return bb.slice();
+    }
+
+    private void ensureCapacity(long length) throws IOException {
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Data is too large to transfer to/from python worker: " + length + " bytes");
+        if (length <= buffer.capacity())
+            return;
+        long newSize = Math.max(length, Math.min(Integer.MAX_VALUE, 2L * buffer.capacity()));
+        raf.setLength(newSize);
+        map();
+    }
+
+    private void map() throws IOException {
+        long size = Math.min(Integer.MAX_VALUE, channel.size());
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+        raf.close();
+    }
+
+    /**
+     * Close the buffer, and delete the underlying file
+     */
+    public void delete() {
+        try {
+            close();
+        } catch (IOException e) {
+            //Ignore
+        }
+        file.delete();
+    }
+}
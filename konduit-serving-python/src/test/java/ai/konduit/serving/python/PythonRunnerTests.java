@@ -21,11 +21,11 @@ import ai.konduit.serving.model.PythonConfig;
 import ai.konduit.serving.model.PythonIO;
 import ai.konduit.serving.pipeline.api.data.*;
 import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
 import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
 import ai.konduit.serving.python.util.KonduitPythonUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.opencv.opencv_core.Mat;
 
 import org.junit.Rule;
@@ -371,14 +371,24 @@ public class PythonRunnerTests {
         Mat mat = imread(image.getAbsolutePath());
         MatImage matImage = new MatImage(mat);
 
-        KonduitPythonUtils.addImageToPython(pythonVariables,"image",matImage);
-        assertNotNull(KonduitPythonUtils.getWithType(pythonVariables,"image",byte[].class));
+        KonduitPythonUtils.addImageToPython(pythonVariables,"image",matImage,true);
+        NumpyBuffer numpyBuffer = KonduitPythonUtils.getWithType(pythonVariables,"image",NumpyBuffer.class);
+        assertNotNull(numpyBuffer);
 
-        BytePointer image1 = new BytePointer(KonduitPythonUtils.getWithType(pythonVariables,"image",byte[].class));
-        Mat mat2 = new Mat(mat.rows(),mat.cols(),mat.type(),image1,mat.step());
-        assertEquals(mat.rows(),mat2.rows());
-        assertEquals(mat.cols(),mat2.cols());
-        assertEquals(mat.step(),mat2.step());
+        //Exposed to python over the same memory, without a copy
+        assertEquals(mat.data().address(),numpyBuffer.getPointer().address());
+        assertArrayEquals(new long[]{mat.rows(),mat.cols(),mat.channels()},numpyBuffer.getShape());
+        assertEquals("|u1",numpyBuffer.getDtype());
+        assertEquals(mat.total() * mat.elemSize(),numpyBuffer.getLength());
+
+        //Encoded images are passed as bytes
+        Image png = Image.create(image);
+        KonduitPythonUtils.addImageToPython(pythonVariables,"png",png,true);
+        assertNotNull(KonduitPythonUtils.getWithType(pythonVariables,"png",byte[].class));
+
+        //Without zero copy inputs, raw images are passed as bytes, as before
+        KonduitPythonUtils.addImageToPython(pythonVariables,"copied",matImage);
+        assertNotNull(KonduitPythonUtils.getWithType(pythonVariables,"copied",byte[].class));
     }
 
     @Test
@@ -418,4 +428,38 @@ public class PythonRunnerTests {
         assertEquals(assertion.getNDArray("output"),exec.getNDArray("output"));
     }
 
+    @Test
+    public void testBufferInputsRemovedAfterExec() {
+        PythonConfig pythonConfig = PythonConfig.builder()
+                .ioInput("input", PythonIO.builder()
+                        .pythonType("numpy.ndarray")
+                        .type(ValueType.NDARRAY)
+                        .build())
+                .ioInput("other", PythonIO.builder()
+                        .pythonType("float")
+                        .type(ValueType.DOUBLE)
+                        .build())
+                .ioOutput("seen", PythonIO.builder()
+                        .pythonType("bool")
+                        .type(ValueType.BOOLEAN)
+                        .build())
+                .pythonCode("seen = 'input' in globals()\n")
+                .zeroCopyInputs(true)
+                .build();
+        PythonRunner runner = new PythonRunner(new PythonStep().pythonConfig(pythonConfig));
+        try {
+            //Passed as a numpy array over the (direct) buffer of the NDArray
+            NDArray arr = NDArray.create(NDArray.create(new float[]{1, 2, 3}).getAs(SerializedNDArray.class));
+            Data first = Data.singleton("input", arr);
+            assertNotNull(NumpyBuffer.fromNDArray(arr));
+            assertTrue(runner.exec(null, first).getBoolean("seen"));
+
+            //Second execution of the same code, without that input: the previous request's buffer is no longer reachable
+            Data second = Data.singleton("other", 1.0);
+            assertFalse(runner.exec(null, second).getBoolean("seen"));
+        } finally {
+            runner.close();
+        }
+    }
+
 }
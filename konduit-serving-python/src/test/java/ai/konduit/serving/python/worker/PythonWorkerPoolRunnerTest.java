@@ -0,0 +1,88 @@
+/* ******************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package ai.konduit.serving.python.worker;
+
+import ai.konduit.serving.model.PythonConfig;
+import ai.konduit.serving.model.PythonIO;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.ValueType;
+import ai.konduit.serving.python.PythonStep;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PythonWorkerPoolRunnerTest {
+
+    private static PythonStep sleepStep(long timeoutMs) {
+        PythonConfig config = PythonConfig.builder()
+                .ioInput("sleep", PythonIO.builder()
+                        .pythonType("float")
+                        .type(ValueType.DOUBLE)
+                        .build())
+                .ioOutput("pid", PythonIO.builder()
+                        .pythonType("int")
+                        .type(ValueType.INT64)
+                        .build())
+                .pythonCode("import os, time\ntime.sleep(sleep)\npid = os.getpid()\n")
+                .workers(2)
+                .workerExecTimeoutMs(timeoutMs)
+                .build();
+        return new PythonStep().pythonConfig(config);
+    }
+
+    @Test
+    public void testExecInWorkers() {
+        PythonWorkerPoolRunner runner = new PythonWorkerPoolRunner(sleepStep(60000));
+        try {
+            //Executed in the worker processes, not in this one
+            long pid1 = runner.exec(null, Data.singleton("sleep", 0.0)).getLong("pid");
+            long pid2 = runner.exec(null, Data.singleton("sleep", 0.0)).getLong("pid");
+            assertNotEquals(pid1, pid2);
+        } finally {
+            runner.close();
+        }
+    }
+
+    @Test
+    public void testTimeoutRestartsWorker() {
+        PythonWorkerPoolRunner runner = new PythonWorkerPoolRunner(sleepStep(2000));
+        try {
+            try {
+                runner.exec(null, Data.singleton("sleep", 3600.0));
+                fail("Expected exception");
+            } catch (Exception e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+            }
+
+            //Both workers (including the one that was killed and restarted) can still execute requests
+            for (int i = 0; i < 4; i++) {
+                assertTrue(runner.exec(null, Data.singleton("sleep", 0.0)).getLong("pid") > 0);
+            }
+        } finally {
+            runner.close();
+        }
+    }
+
+    @Test
+    public void testWorkerClasspath() {
+        String cp = PythonWorker.workerClasspath();
+        File location = new File(PythonWorkerMain.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        assertTrue(cp, Arrays.asList(cp.split(File.pathSeparator)).contains(location.getAbsolutePath()));
+    }
+}
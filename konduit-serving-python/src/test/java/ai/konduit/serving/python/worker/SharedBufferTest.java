@@ -0,0 +1,53 @@
+/* ******************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package ai.konduit.serving.python.worker;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class SharedBufferTest {
+
+    @Test
+    public void testWriteRead() throws Exception {
+        SharedBuffer writer = SharedBuffer.create("konduit-test-", 16);
+        File f = writer.getFile();
+        try (SharedBuffer reader = new SharedBuffer(f, 0)) {
+            float[] values = new float[1000];
+            for (int i = 0; i < values.length; i++)
+                values[i] = i;
+            Data d = Data.singleton("array", NDArray.create(values));
+            d.put("string", "value");
+
+            //Larger than the initial size: the writer grows the file, and the reader remaps it
+            long length = writer.write(d);
+            assertTrue(length > 4000);
+            Data out = reader.readCopy(length);
+            assertEquals("value", out.getString("string"));
+            assertArrayEquals(values, out.getNDArray("array").getAs(float[].class), 0.0f);
+
+            length = writer.writeError("Error message");
+            assertEquals("Error message", reader.readError(length));
+        } finally {
+            writer.delete();
+        }
+        assertFalse(f.exists());
+    }
+}
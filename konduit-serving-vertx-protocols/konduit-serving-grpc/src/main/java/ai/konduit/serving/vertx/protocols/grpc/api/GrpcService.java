@@ -25,11 +25,17 @@ public final class GrpcService {
     java.lang.String[] descriptorData = {
       "\n\022grpc-service.proto\022\022ai.konduit.serving" +
       "\0323ai/konduit/serving/pipeline/api/protob" +
-      "uf/data.proto2X\n\tInference\022K\n\007predict\022\036." +
-      "ai.konduit.serving.DataScheme\032\036.ai.kondu" +
-      "it.serving.DataScheme\"\000B:\n+ai.konduit.se" +
-      "rving.vertx.protocols.grpc.apiB\013GrpcServ" +
-      "iceb\006proto3"
+      "uf/data.proto2\276\002\n\tInference\022K\n\007predict\022\036" +
+      ".ai.konduit.serving.DataScheme\032\036.ai.kond" +
+      "uit.serving.DataScheme\"\000\022H\n\npredictMap\022\033" +
+      ".ai.konduit.serving.DataMap\032\033.ai.konduit" +
+      ".serving.DataMap\"\000\022O\n\rpredictStream\022\033.ai" +
+      ".konduit.serving.DataMap\032\033.ai.konduit.se" +
+      "rving.DataMap\"\000(\0010\001\022I\n\tsubscribe\022\033.ai.ko" +
+      "nduit.serving.DataMap\032\033.ai.konduit.servi" +
+      "ng.DataMap\"\0000\001B:\n+ai.konduit.serving.ver" +
+      "tx.protocols.grpc.apiB\013GrpcServiceb\006prot" +
+      "o3"
     };
     descriptor = com.google.protobuf.Descriptors.FileDescriptor
       .internalBuildGeneratedFileFrom(descriptorData,
@@ -86,6 +86,87 @@ public final class InferenceGrpc {
      return getPredictMethod;
   }
 
+  private static volatile io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+      ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getPredictMapMethod;
+
+  public static io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+      ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getPredictMapMethod() {
+    io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getPredictMapMethod;
+    if ((getPredictMapMethod = InferenceGrpc.getPredictMapMethod) == null) {
+      synchronized (InferenceGrpc.class) {
+        if ((getPredictMapMethod = InferenceGrpc.getPredictMapMethod) == null) {
+          InferenceGrpc.getPredictMapMethod = getPredictMapMethod = 
+              io.grpc.MethodDescriptor.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>newBuilder()
+              .setType(io.grpc.MethodDescriptor.MethodType.UNARY)
+              .setFullMethodName(generateFullMethodName(
+                  "ai.konduit.serving.Inference", "predictMap"))
+              .setSampledToLocalTracing(true)
+              .setRequestMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap.getDefaultInstance()))
+              .setResponseMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap.getDefaultInstance()))
+                  .setSchemaDescriptor(new InferenceMethodDescriptorSupplier("predictMap"))
+                  .build();
+          }
+        }
+     }
+     return getPredictMapMethod;
+  }
+
+  private static volatile io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+      ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getPredictStreamMethod;
+
+  public static io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+      ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getPredictStreamMethod() {
+    io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getPredictStreamMethod;
+    if ((getPredictStreamMethod = InferenceGrpc.getPredictStreamMethod) == null) {
+      synchronized (InferenceGrpc.class) {
+        if ((getPredictStreamMethod = InferenceGrpc.getPredictStreamMethod) == null) {
+          InferenceGrpc.getPredictStreamMethod = getPredictStreamMethod = 
+              io.grpc.MethodDescriptor.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>newBuilder()
+              .setType(io.grpc.MethodDescriptor.MethodType.BIDI_STREAMING)
+              .setFullMethodName(generateFullMethodName(
+                  "ai.konduit.serving.Inference", "predictStream"))
+              .setSampledToLocalTracing(true)
+              .setRequestMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap.getDefaultInstance()))
+              .setResponseMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap.getDefaultInstance()))
+                  .setSchemaDescriptor(new InferenceMethodDescriptorSupplier("predictStream"))
+                  .build();
+          }
+        }
+     }
+     return getPredictStreamMethod;
+  }
+
+  private static volatile io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+      ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getSubscribeMethod;
+
+  public static io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+      ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getSubscribeMethod() {
+    io.grpc.MethodDescriptor<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> getSubscribeMethod;
+    if ((getSubscribeMethod = InferenceGrpc.getSubscribeMethod) == null) {
+      synchronized (InferenceGrpc.class) {
+        if ((getSubscribeMethod = InferenceGrpc.getSubscribeMethod) == null) {
+          InferenceGrpc.getSubscribeMethod = getSubscribeMethod = 
+              io.grpc.MethodDescriptor.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>newBuilder()
+              .setType(io.grpc.MethodDescriptor.MethodType.SERVER_STREAMING)
+              .setFullMethodName(generateFullMethodName(
+                  "ai.konduit.serving.Inference", "subscribe"))
+              .setSampledToLocalTracing(true)
+              .setRequestMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap.getDefaultInstance()))
+              .setResponseMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap.getDefaultInstance()))
+                  .setSchemaDescriptor(new InferenceMethodDescriptorSupplier("subscribe"))
+                  .build();
+          }
+        }
+     }
+     return getSubscribeMethod;
+  }
+
   /**
    * Creates a new async stub that supports all call types for the service
    */
@@ -133,6 +214,37 @@ public final class InferenceGrpc {
       asyncUnimplementedUnaryCall(getPredictMethod(), responseObserver);
     }
 
+    /**
+     * <pre>
+     * predicts an output. Equivalent to predict, but declared with the message type that predict requests and
+     * responses contain (a serialized DataMap), so that inputs and outputs are converted without re-serializing them
+     * </pre>
+     */
+    public void predictMap(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> responseObserver) {
+      asyncUnimplementedUnaryCall(getPredictMapMethod(), responseObserver);
+    }
+
+    /**
+     * <pre>
+     * predicts an output for each input of a stream. Outputs are returned in the same order as the inputs
+     * </pre>
+     */
+    public io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> predictStream(
+        io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> responseObserver) {
+      return asyncUnimplementedStreamingCall(getPredictStreamMethod(), responseObserver);
+    }
+
+    /**
+     * <pre>
+     * streams the outputs of an AsyncPipeline as they are produced. The request message is ignored
+     * </pre>
+     */
+    public void subscribe(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> responseObserver) {
+      asyncUnimplementedUnaryCall(getSubscribeMethod(), responseObserver);
+    }
+
     @java.lang.Override public final io.grpc.ServerServiceDefinition bindService() {
       return io.grpc.ServerServiceDefinition.builder(getServiceDescriptor())
           .addMethod(
@@ -142,6 +254,27 @@ public final class InferenceGrpc {
                 ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme,
                 ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme>(
                   this, METHODID_PREDICT)))
+          .addMethod(
+            getPredictMapMethod(),
+            asyncUnaryCall(
+              new MethodHandlers<
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>(
+                  this, METHODID_PREDICT_MAP)))
+          .addMethod(
+            getPredictStreamMethod(),
+            asyncBidiStreamingCall(
+              new MethodHandlers<
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>(
+                  this, METHODID_PREDICT_STREAM)))
+          .addMethod(
+            getSubscribeMethod(),
+            asyncServerStreamingCall(
+              new MethodHandlers<
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>(
+                  this, METHODID_SUBSCRIBE)))
           .build();
     }
   }
@@ -177,6 +310,40 @@ public final class InferenceGrpc {
       asyncUnaryCall(
           getChannel().newCall(getPredictMethod(), getCallOptions()), request, responseObserver);
     }
+
+    /**
+     * <pre>
+     * predicts an output. Equivalent to predict, but declared with the message type that predict requests and
+     * responses contain (a serialized DataMap), so that inputs and outputs are converted without re-serializing them
+     * </pre>
+     */
+    public void predictMap(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> responseObserver) {
+      asyncUnaryCall(
+          getChannel().newCall(getPredictMapMethod(), getCallOptions()), request, responseObserver);
+    }
+
+    /**
+     * <pre>
+     * predicts an output for each input of a stream. Outputs are returned in the same order as the inputs
+     * </pre>
+     */
+    public io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> predictStream(
+        io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> responseObserver) {
+      return asyncBidiStreamingCall(
+          getChannel().newCall(getPredictStreamMethod(), getCallOptions()), responseObserver);
+    }
+
+    /**
+     * <pre>
+     * streams the outputs of an AsyncPipeline as they are produced. The request message is ignored
+     * </pre>
+     */
+    public void subscribe(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> responseObserver) {
+      asyncServerStreamingCall(
+          getChannel().newCall(getSubscribeMethod(), getCallOptions()), request, responseObserver);
+    }
   }
 
   /**
@@ -209,6 +376,28 @@ public final class InferenceGrpc {
       return blockingUnaryCall(
           getChannel(), getPredictMethod(), getCallOptions(), request);
     }
+
+    /**
+     * <pre>
+     * predicts an output. Equivalent to predict, but declared with the message type that predict requests and
+     * responses contain (a serialized DataMap), so that inputs and outputs are converted without re-serializing them
+     * </pre>
+     */
+    public ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap predictMap(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request) {
+      return blockingUnaryCall(
+          getChannel(), getPredictMapMethod(), getCallOptions(), request);
+    }
+
+    /**
+     * <pre>
+     * streams the outputs of an AsyncPipeline as they are produced. The request message is ignored
+     * </pre>
+     */
+    public java.util.Iterator<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> subscribe(
+        ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request) {
+      return blockingServerStreamingCall(
+          getChannel(), getSubscribeMethod(), getCallOptions(), request);
+    }
   }
 
   /**
@@ -242,6 +431,17 @@ public final class InferenceGrpc {
       return futureUnaryCall(
           getChannel().newCall(getPredictMethod(), getCallOptions()), request);
     }
+    /**
+     * <pre>
+     * predicts an output. Equivalent to predict, but declared with the message type that predict requests and
+     * responses contain (a serialized DataMap), so that inputs and outputs are converted without re-serializing them
+     * </pre>
+     */
+    public com.google.common.util.concurrent.ListenableFuture<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> predictMap(
+        ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request) {
+      return futureUnaryCall(
+          getChannel().newCall(getPredictMapMethod(), getCallOptions()), request);
+    }
   }
 
   /**
@@ -261,6 +461,37 @@ public final class InferenceGrpc {
       asyncUnimplementedUnaryCall(getPredictMethod(), InferenceGrpc.toObserver(response));
     }
 
+    /**
+     * <pre>
+     * predicts an output. Equivalent to predict, but declared with the message type that predict requests and
+     * responses contain (a serialized DataMap), so that inputs and outputs are converted without re-serializing them
+     * </pre>
+     */
+    public void predictMap(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.vertx.core.Promise<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> response) {
+      asyncUnimplementedUnaryCall(getPredictMapMethod(), InferenceGrpc.toObserver(response));
+    }
+
+    /**
+     * <pre>
+     * predicts an output for each input of a stream. Outputs are returned in the same order as the inputs
+     * </pre>
+     */
+    public void predictStream(
+        io.vertx.grpc.GrpcBidiExchange<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> exchange) {
+      exchange.setReadObserver(asyncUnimplementedStreamingCall(getPredictStreamMethod(), exchange.writeObserver()));
+    }
+
+    /**
+     * <pre>
+     * streams the outputs of an AsyncPipeline as they are produced. The request message is ignored
+     * </pre>
+     */
+    public void subscribe(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.vertx.grpc.GrpcWriteStream<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> response) {
+      asyncUnimplementedUnaryCall(getSubscribeMethod(), response.writeObserver());
+    }
+
     @java.lang.Override public final io.grpc.ServerServiceDefinition bindService() {
       return io.grpc.ServerServiceDefinition.builder(getServiceDescriptor())
           .addMethod(
@@ -270,6 +501,27 @@ public final class InferenceGrpc {
                 ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme,
                 ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme>(
                   this, METHODID_PREDICT)))
+          .addMethod(
+            getPredictMapMethod(),
+            asyncUnaryCall(
+              new VertxMethodHandlers<
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>(
+                  this, METHODID_PREDICT_MAP)))
+          .addMethod(
+            getPredictStreamMethod(),
+            asyncBidiStreamingCall(
+              new VertxMethodHandlers<
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>(
+                  this, METHODID_PREDICT_STREAM)))
+          .addMethod(
+            getSubscribeMethod(),
+            asyncServerStreamingCall(
+              new VertxMethodHandlers<
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap,
+                ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>(
+                  this, METHODID_SUBSCRIBE)))
           .build();
     }
   }
@@ -305,9 +557,53 @@ public final class InferenceGrpc {
       asyncUnaryCall(
           getChannel().newCall(getPredictMethod(), getCallOptions()), request, InferenceGrpc.toObserver(response));
     }
+
+    /**
+     * <pre>
+     * predicts an output. Equivalent to predict, but declared with the message type that predict requests and
+     * responses contain (a serialized DataMap), so that inputs and outputs are converted without re-serializing them
+     * </pre>
+     */
+    public void predictMap(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.vertx.core.Handler<io.vertx.core.AsyncResult<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>> response) {
+      asyncUnaryCall(
+          getChannel().newCall(getPredictMapMethod(), getCallOptions()), request, InferenceGrpc.toObserver(response));
+    }
+
+    /**
+     * <pre>
+     * predicts an output for each input of a stream. Outputs are returned in the same order as the inputs
+     * </pre>
+     */
+    public void predictStream(io.vertx.core.Handler<
+        io.vertx.grpc.GrpcBidiExchange<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>> handler) {
+      final io.vertx.grpc.GrpcReadStream<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> readStream =
+          io.vertx.grpc.GrpcReadStream.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>create();
+
+      handler.handle(io.vertx.grpc.GrpcBidiExchange.create(readStream, asyncBidiStreamingCall(
+          getChannel().newCall(getPredictStreamMethod(), getCallOptions()), readStream.readObserver())));
+    }
+
+    /**
+     * <pre>
+     * streams the outputs of an AsyncPipeline as they are produced. The request message is ignored
+     * </pre>
+     */
+    public void subscribe(ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap request,
+        io.vertx.core.Handler<io.vertx.grpc.GrpcReadStream<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>> handler) {
+      final io.vertx.grpc.GrpcReadStream<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> readStream =
+          io.vertx.grpc.GrpcReadStream.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>create();
+
+      handler.handle(readStream);
+      asyncServerStreamingCall(
+          getChannel().newCall(getSubscribeMethod(), getCallOptions()), request, readStream.readObserver());
+    }
   }
 
   private static final int METHODID_PREDICT = 0;
+  private static final int METHODID_PREDICT_MAP = 1;
+  private static final int METHODID_SUBSCRIBE = 2;
+  private static final int METHODID_PREDICT_STREAM = 3;
 
   private static final class MethodHandlers<Req, Resp> implements
       io.grpc.stub.ServerCalls.UnaryMethod<Req, Resp>,
@@ -330,6 +626,14 @@ public final class InferenceGrpc {
           serviceImpl.predict((ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme) request,
               (io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme>) responseObserver);
           break;
+        case METHODID_PREDICT_MAP:
+          serviceImpl.predictMap((ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap) request,
+              (io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>) responseObserver);
+          break;
+        case METHODID_SUBSCRIBE:
+          serviceImpl.subscribe((ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap) request,
+              (io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>) responseObserver);
+          break;
         default:
           throw new AssertionError();
       }
@@ -340,6 +644,9 @@ public final class InferenceGrpc {
     public io.grpc.stub.StreamObserver<Req> invoke(
         io.grpc.stub.StreamObserver<Resp> responseObserver) {
       switch (methodId) {
+        case METHODID_PREDICT_STREAM:
+          return (io.grpc.stub.StreamObserver<Req>) serviceImpl.predictStream(
+              (io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>) responseObserver);
         default:
           throw new AssertionError();
       }
@@ -374,6 +681,21 @@ public final class InferenceGrpc {
                 }
               }));
           break;
+        case METHODID_PREDICT_MAP:
+          serviceImpl.predictMap((ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap) request,
+              (io.vertx.core.Promise<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>) io.vertx.core.Promise.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>promise().future().setHandler(ar -> {
+                if (ar.succeeded()) {
+                  ((io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>) responseObserver).onNext(ar.result());
+                  responseObserver.onCompleted();
+                } else {
+                  responseObserver.onError(ar.cause());
+                }
+              }));
+          break;
+        case METHODID_SUBSCRIBE:
+          serviceImpl.subscribe((ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap) request,
+              (io.vertx.grpc.GrpcWriteStream<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>) io.vertx.grpc.GrpcWriteStream.create(responseObserver));
+          break;
         default:
           throw new AssertionError();
       }
@@ -384,6 +706,13 @@ public final class InferenceGrpc {
     public io.grpc.stub.StreamObserver<Req> invoke(
         io.grpc.stub.StreamObserver<Resp> responseObserver) {
       switch (methodId) {
+        case METHODID_PREDICT_STREAM:
+          io.vertx.grpc.GrpcReadStream<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap> request1 = io.vertx.grpc.GrpcReadStream.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>create();
+          serviceImpl.predictStream(
+             io.vertx.grpc.GrpcBidiExchange.<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap, ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>create(
+               request1,
+               (io.grpc.stub.StreamObserver<ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap>) responseObserver));
+          return (io.grpc.stub.StreamObserver<Req>) request1.readObserver();
         default:
           throw new AssertionError();
       }
@@ -436,6 +765,9 @@ public final class InferenceGrpc {
           serviceDescriptor = result = io.grpc.ServiceDescriptor.newBuilder(SERVICE_NAME)
               .setSchemaDescriptor(new InferenceFileDescriptorSupplier())
               .addMethod(getPredictMethod())
+              .addMethod(getPredictMapMethod())
+              .addMethod(getPredictStreamMethod())
+              .addMethod(getSubscribeMethod())
               .build();
         }
       }
@@ -0,0 +1,362 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.protocols.grpc.api;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.impl.data.ProtoData;
+import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap;
+import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme;
+import ai.konduit.serving.pipeline.impl.memory.BufferScope;
+import ai.konduit.serving.pipeline.impl.pipeline.AsyncPipelineExecutor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implementation of the gRPC inference service:<br>
+ * - predict: unary inference. Declared with the DataScheme message for compatibility with existing clients, but requests
+ * and responses contain serialized DataMap messages. {@link #serviceDefinition()} binds it with DataMap marshallers, so
+ * that it is executed in the same way as predictMap<br>
+ * - predictMap: unary inference, converting directly between DataMap messages and {@link Data} without copying NDArray
+ * data<br>
+ * - predictStream: bidirectional streaming inference. Up to {@code streamInFlight} messages of a stream are executed
+ * concurrently on the inference executor, and outputs are returned in the same order as the inputs. Flow control is
+ * based on the client's readiness: no more input messages are requested while outputs can't be sent.<br>
+ * For predict, predictMap and predictStream, the pipeline is executed on the inference executor rather than on the
+ * event loop, and calls fail with RESOURCE_EXHAUSTED when its queue is full. NDArray buffers allocated while executing
+ * the pipeline are pooled (see {@link BufferScope}), and released once the output has been sent.<br>
+ * - subscribe: pushes the outputs of an {@link AsyncPipelineExecutor} to the client as they are produced<br>
+ * <br>
+ * If an input's metadata contains a {@link #SEQUENCE_ID} value, it is copied to the metadata of the corresponding output
+ */
+@Slf4j
+@AllArgsConstructor
+@Getter
+public class InferenceGrpcApi extends InferenceGrpc.InferenceImplBase {
+
+    public static final String SEQUENCE_ID = "@SequenceId";
+
+    protected final Vertx vertx;
+    protected final PipelineExecutor pipelineExecutor;
+    protected final Executor inferenceExecutor;
+    protected final int streamInFlight;
+
+    /**
+     * The definition of this service to register with the gRPC server. This is the same as {@link #bindService()},
+     * except that predict is bound with DataMap marshallers: the DataMap messages that predict requests contain are
+     * parsed directly (and responses written directly), without re-serializing them via DataScheme.
+     */
+    public ServerServiceDefinition serviceDefinition() {
+        ServerServiceDefinition bound = bindService();
+        MethodDescriptor<DataMap, DataMap> predict = InferenceGrpc.getPredictMethod().toBuilder(
+                ProtoUtils.marshaller(DataMap.getDefaultInstance()),
+                ProtoUtils.marshaller(DataMap.getDefaultInstance()))
+                .build();
+
+        ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(InferenceGrpc.SERVICE_NAME)
+                .setSchemaDescriptor(bound.getServiceDescriptor().getSchemaDescriptor())
+                .addMethod(predict);
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> m : bound.getMethods()) {
+            if (!m.getMethodDescriptor().getFullMethodName().equals(predict.getFullMethodName())) {
+                descriptor.addMethod(m.getMethodDescriptor());
+                methods.add(m);
+            }
+        }
+
+        ServerServiceDefinition.Builder b = ServerServiceDefinition.builder(descriptor.build())
+                .addMethod(predict, ServerCalls.asyncUnaryCall(this::predictMap));
+        for (ServerMethodDefinition<?, ?> m : methods) {
+            b.addMethod(m);
+        }
+        return b.build();
+    }
+
+    /**
+     * Only used when this service is registered via {@link #bindService()}: the request is re-parsed as a DataMap.
+     * See {@link #serviceDefinition()}
+     */
+    @Override
+    public void predict(DataScheme request, StreamObserver<DataScheme> responseObserver) {
+        DataMap map;
+        try {
+            map = DataMap.parseFrom(request.toByteString());
+        } catch (InvalidProtocolBufferException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Request is not a serialized DataMap")
+                    .withCause(e).asRuntimeException());
+            return;
+        }
+        execUnary(map, responseObserver, output -> {
+            try {
+                return DataScheme.parseFrom(output.toByteString());
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Override
+    public void predictMap(DataMap request, StreamObserver<DataMap> responseObserver) {
+        execUnary(request, responseObserver, Function.identity());
+    }
+
+    /**
+     * Execute the pipeline for a unary call on the inference executor, so that the event loop is not blocked, and send
+     * the response back on the call's event loop context. Fails the call with RESOURCE_EXHAUSTED if the inference
+     * executor's queue is full.
+     */
+    protected <T> void execUnary(DataMap request, StreamObserver<T> responseObserver, Function<DataMap, T> toResponse) {
+        Context context = vertx.getOrCreateContext();
+        // Convert directly between the messages and Data: NDArray buffers are wrapped, not copied
+        Data input = ProtoData.fromProtoMessage(request);
+        try {
+            inferenceExecutor.execute(() -> {
+                T response;
+                // NDArray buffers allocated during execution are pooled, and released once the output has been sent
+                BufferScope scope = BufferScope.open();
+                try {
+                    response = toResponse.apply(pipelineExecutor.exec(input).toProtoData().toProtoMessage());
+                } catch (Throwable throwable) {
+                    scope.close();
+                    log.error("Failed to process the pipeline with the input data", throwable);
+                    context.runOnContext(v -> responseObserver.onError(throwable));
+                    return;
+                } finally {
+                    scope.detach();
+                }
+                context.runOnContext(v -> {
+                    try {
+                        responseObserver.onNext(response);
+                        responseObserver.onCompleted();
+                    } finally {
+                        scope.close();
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("All inference workers are busy and the request queue is full. Please retry later.")
+                    .asRuntimeException());
+        }
+    }
+
+    @Override
+    public StreamObserver<DataMap> predictStream(StreamObserver<DataMap> responseObserver) {
+        return new PredictStream((ServerCallStreamObserver<DataMap>) responseObserver, vertx.getOrCreateContext(),
+                Math.max(1, streamInFlight));
+    }
+
+    @Override
+    public void subscribe(DataMap request, StreamObserver<DataMap> responseObserver) {
+        if (!(pipelineExecutor instanceof AsyncPipelineExecutor)) {
+            responseObserver.onError(Status.UNIMPLEMENTED
+                    .withDescription("subscribe is only supported for AsyncPipeline instances")
+                    .asRuntimeException());
+            return;
+        }
+        new Subscription((ServerCallStreamObserver<DataMap>) responseObserver, vertx.getOrCreateContext(),
+                (AsyncPipelineExecutor) pipelineExecutor);
+    }
+
+    protected static Data withSequenceId(Data input, Data output) {
+        if (input.hasMetaData() && input.getMetaData().has(SEQUENCE_ID)) {
+            Data meta = output.hasMetaData() ? output.getMetaData() : Data.empty();
+            meta.copyFrom(SEQUENCE_ID, input.getMetaData());
+            output.setMetaData(meta);
+        }
+        return output;
+    }
+
+    /**
+     * State of a single predictStream call. All methods other than the pipeline execution itself are called on the
+     * call's event loop context, so no synchronization is required.
+     */
+    protected class PredictStream implements StreamObserver<DataMap> {
+        private final ServerCallStreamObserver<DataMap> out;
+        private final Context context;
+        private final Map<Long, Data> completed = new HashMap<>();
+        private final Map<Long, BufferScope> scopes = new HashMap<>();
+        private long received;
+        private long sent;
+        private boolean halfClosed;
+        private boolean finished;
+
+        protected PredictStream(ServerCallStreamObserver<DataMap> out, Context context, int inFlight) {
+            this.out = out;
+            this.context = context;
+            out.disableAutoInboundFlowControl();
+            out.setOnReadyHandler(this::drain);
+            out.setOnCancelHandler(this::discard);
+            out.request(inFlight);
+        }
+
+        @Override
+        public void onNext(DataMap request) {
+            if (finished)
+                return;
+
+            long seq = received++;
+            Data input = ProtoData.fromProtoMessage(request);
+            try {
+                inferenceExecutor.execute(() -> {
+                    Data output;
+                    BufferScope scope = BufferScope.open();
+                    try {
+                        output = withSequenceId(input, pipelineExecutor.exec(input));
+                    } catch (Throwable throwable) {
+                        scope.close();
+                        context.runOnContext(v -> fail(throwable));
+                        return;
+                    } finally {
+                        //Buffers are released once the output is sent, on the event loop
+                        scope.detach();
+                    }
+                    context.runOnContext(v -> {
+                        if (finished) {
+                            scope.close();
+                            return;
+                        }
+                        completed.put(seq, output);
+                        scopes.put(seq, scope);
+                        drain();
+                    });
+                });
+            } catch (RejectedExecutionException e) {
+                fail(Status.RESOURCE_EXHAUSTED
+                        .withDescription("All inference workers are busy and the request queue is full. Please retry later.")
+                        .asRuntimeException());
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            //Client cancelled or failed: outputs still being executed are discarded
+            discard();
+        }
+
+        @Override
+        public void onCompleted() {
+            halfClosed = true;
+            drain();
+        }
+
+        private void drain() {
+            //Send outputs in order, while the client can receive them. Each output sent frees a slot for another input
+            while (!finished && out.isReady() && completed.containsKey(sent)) {
+                BufferScope scope = scopes.remove(sent);
+                Data output = completed.remove(sent++);
+                try {
+                    out.onNext(output.toProtoData().toProtoMessage());
+                } catch (Throwable throwable) {
+                    fail(throwable);
+                    return;
+                } finally {
+                    scope.close();
+                }
+                out.request(1);
+            }
+
+            if (!finished && halfClosed && sent == received) {
+                finished = true;
+                out.onCompleted();
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            if (finished)
+                return;
+            log.error("Failed to process the pipeline with the input data", throwable);
+            discard();
+            out.onError(throwable);
+        }
+
+        private void discard() {
+            finished = true;
+            completed.clear();
+            for (BufferScope scope : scopes.values())
+                scope.close();
+            scopes.clear();
+        }
+    }
+
+    /**
+     * State of a single subscribe call. Only the latest output is kept while the client isn't ready to receive:
+     * slow subscribers skip outputs rather than buffering them.
+     */
+    protected static class Subscription {
+        private final ServerCallStreamObserver<DataMap> out;
+        private final AsyncPipelineExecutor executor;
+        private final Consumer<Data> listener;
+        private Data pending;
+        private boolean cancelled;
+
+        protected Subscription(ServerCallStreamObserver<DataMap> out, Context context, AsyncPipelineExecutor executor) {
+            this.out = out;
+            this.executor = executor;
+            this.listener = data -> context.runOnContext(v -> {
+                pending = data;
+                drain();
+            });
+            out.setOnReadyHandler(this::drain);
+            out.setOnCancelHandler(this::cancel);
+            executor.addListener(listener);
+        }
+
+        private void drain() {
+            if (cancelled || pending == null || !out.isReady())
+                return;
+            Data data = pending;
+            pending = null;
+            try {
+                out.onNext(data.toProtoData().toProtoMessage());
+            } catch (Throwable throwable) {
+                log.error("Failed to send AsyncPipeline output to subscriber", throwable);
+                cancel();
+                out.onError(throwable);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            executor.removeListener(listener);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package ai.konduit.serving.vertx.protocols.grpc;
 
 import ai.konduit.serving.pipeline.api.data.Data;
 import ai.konduit.serving.pipeline.impl.data.JData;
+import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataMap;
 import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage.DataScheme;
 import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
 import ai.konduit.serving.pipeline.impl.step.logging.LoggingStep;
@@ -27,9 +28,11 @@ import ai.konduit.serving.vertx.api.DeployKonduitServing;
 import ai.konduit.serving.vertx.config.InferenceConfiguration;
 import ai.konduit.serving.vertx.config.ServerProtocol;
 import ai.konduit.serving.vertx.protocols.grpc.api.InferenceGrpc;
+import ai.konduit.serving.vertx.protocols.grpc.api.InferenceGrpcApi;
 import ai.konduit.serving.vertx.protocols.grpc.test.FailureTestingPipelineStep;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
@@ -44,6 +47,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.event.Level;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @RunWith(VertxUnitRunner.class)
@@ -111,6 +116,26 @@ public class InferenceVerticleGrpcTest {
         });
     }
 
+    @Test
+    public void testGrpcServerPassMap(TestContext testContext) throws InvalidProtocolBufferException {
+        causeFailure.set(false);
+
+        Data input = JData.singleton("key", "value");
+        DataMap request = DataMap.parseFrom(input.asBytes());
+
+        Async async = testContext.async();
+
+        // Call the remote service
+        inferenceVertxStub.predictMap(request, ar -> {
+            if (ar.succeeded()) {
+                testContext.assertEquals(input, Data.fromBytes(ar.result().toByteArray()));
+                async.complete();
+            } else {
+                testContext.fail(ar.cause());
+            }
+        });
+    }
+
     @Test
     public void testGrpcServerFail(TestContext testContext) throws InvalidProtocolBufferException {
         causeFailure.set(true);
@@ -130,6 +155,46 @@ public class InferenceVerticleGrpcTest {
         });
     }
 
+    @Test
+    public void testGrpcStreaming(TestContext testContext) {
+        causeFailure.set(false);
+        int n = 20;
+
+        Async async = testContext.async();
+        List<Data> outputs = new ArrayList<>();
+
+        StreamObserver<DataMap> requests = InferenceGrpc.newStub(channel).predictStream(new StreamObserver<DataMap>() {
+            @Override
+            public void onNext(DataMap value) {
+                outputs.add(Data.fromBytes(value.toByteArray()));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                testContext.fail(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                // Outputs should be returned in order, with the sequence IDs of the corresponding inputs
+                testContext.assertEquals(n, outputs.size());
+                for (int i = 0; i < n; i++) {
+                    Data out = outputs.get(i);
+                    testContext.assertEquals((long) i, out.getLong("index"));
+                    testContext.assertEquals((long) i, out.getMetaData().getLong(InferenceGrpcApi.SEQUENCE_ID));
+                }
+                async.complete();
+            }
+        });
+
+        for (int i = 0; i < n; i++) {
+            Data input = JData.singleton("index", (long) i);
+            input.setMetaData(JData.singleton(InferenceGrpcApi.SEQUENCE_ID, (long) i));
+            requests.onNext(input.toProtoData().toProtoMessage());
+        }
+        requests.onCompleted();
+    }
+
     @AfterClass
     public static void tearDown(TestContext testContext) {
         channel.shutdownNow();
@@ -27,7 +27,10 @@ import io.swagger.v3.oas.annotations.media.Schema;
         "INVALID_CONTENT_TYPE_HEADER -> If the Content-Type header has an invalid value. Currently it should be either application/json or application/octet-stream " +
         "MISSING_OR_EMPTY_ACCEPT_HEADER -> If the request has no Accept header " +
         "INVALID_ACCEPT_HEADER -> If the Accept header has an invalid value. Currently it should be either application/json or application/octet-stream " +
-        "PIPELINE_PROCESSING_ERROR -> If there's an error while processing the data through the pipeline.")
+        "PIPELINE_PROCESSING_ERROR -> If there's an error while processing the data through the pipeline. " +
+        "SERVER_BUSY -> If all the inference workers are busy and the request queue is full. The request can be retried later. " +
+        "PIPELINE_NOT_FOUND -> If the named pipeline specified in the request path doesn't exist. " +
+        "PIPELINE_RELOAD_ERROR -> If the pipeline could not be reloaded via the admin endpoint. The current pipeline remains in use.")
 public enum HttpApiErrorCode {
     /**
      * If the incoming data cannot be parsed
@@ -57,5 +60,23 @@ public enum HttpApiErrorCode {
     /**
      * If there's an error while processing the data through the {@link Pipeline}.
      */
-    PIPELINE_PROCESSING_ERROR
+    PIPELINE_PROCESSING_ERROR,
+
+    /**
+     * If all the inference workers are busy and the request queue is full. Responded to with HTTP 503 and a
+     * "Retry-After" header.
+     */
+    SERVER_BUSY,
+
+    /**
+     * If the named pipeline specified in the request path (/predict/{pipeline}) doesn't exist. Responded to with
+     * HTTP 404.
+     */
+    PIPELINE_NOT_FOUND,
+
+    /**
+     * If the pipeline could not be reloaded (POST /admin/reload) - for example, because the new pipeline failed to
+     * load or to warm up. The current pipeline remains in use.
+     */
+    PIPELINE_RELOAD_ERROR
 }
@@ -19,14 +19,28 @@
 package ai.konduit.serving.vertx.protocols.http.api;
 
 import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.ImageEncoding;
+import ai.konduit.serving.pipeline.impl.data.protobuf.DataProtoMessage;
+import ai.konduit.serving.pipeline.impl.data.helpers.ImageSerdeUtils;
+import ai.konduit.serving.pipeline.impl.memory.BufferScope;
 import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.vertx.verticle.PipelineCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.web.RoutingContext;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.nd4j.shade.guava.base.Strings;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_JSON;
 import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_OCTET_STREAM;
@@ -38,13 +52,24 @@ import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
 public class InferenceHttpApi {
 
     protected final PipelineExecutor pipelineExecutor;
+    protected final Executor inferenceExecutor;
+    /**
+     * Named pipelines, executed via /predict/{pipeline}. May be null
+     */
+    protected final PipelineCache pipelineCache;
+
+    public InferenceHttpApi(PipelineExecutor pipelineExecutor, Executor inferenceExecutor) {
+        this(pipelineExecutor, inferenceExecutor, null);
+    }
 
     public static Data extractData(String contentType, RoutingContext ctx) {
         try {
             if (contentType.contains(APPLICATION_JSON.toString())) {
-                return Data.fromJson(ctx.getBodyAsString());
+                // Parse directly from the request body bytes, rather than from a copy of the body as a String
+                return Data.fromJsonStream(new ByteBufInputStream(ctx.getBody().getByteBuf().duplicate()));
             } else if (contentType.contains(APPLICATION_OCTET_STREAM.toString())) {
-                return Data.fromBytes(ctx.getBody().getBytes());
+                // Parse directly from the request body: NDArray values are views of the body rather than copies
+                return Data.fromBytes(ctx.getBody().getByteBuf().nioBuffer());
             } else {
                 throw new KonduitServingHttpException(HttpApiErrorCode.INVALID_CONTENT_TYPE_HEADER,
                         String.format("Invalid Content-Type header %s. Should be one of [application/json, application/octet-stream]", contentType));
@@ -56,6 +81,23 @@ public class InferenceHttpApi {
 
     //TODO: add swagger related annotations to this method or update this class for better swagger annotations support
     public void predict(RoutingContext ctx) {
+        predict(ctx, pipelineExecutor::exec);
+    }
+
+    /**
+     * Execute the named pipeline specified by the "pipeline" path parameter - see {@link PipelineCache}.
+     * If the pipeline isn't currently loaded, it is loaded on the inference executor before being executed.
+     */
+    public void predictNamed(RoutingContext ctx) {
+        String name = ctx.pathParam("pipeline");
+        if (pipelineCache == null || name == null || !pipelineCache.hasPipeline(name)) {
+            throw new KonduitServingHttpException(HttpApiErrorCode.PIPELINE_NOT_FOUND,
+                    String.format("No pipeline with name \"%s\" exists", name));
+        }
+        predict(ctx, input -> pipelineCache.exec(name, input));
+    }
+
+    protected void predict(RoutingContext ctx, Function<Data, Data> pipeline) {
         String contentType = ctx.request().headers().get(CONTENT_TYPE);
         String accept = ctx.request().headers().get(ACCEPT);
 
@@ -69,28 +111,70 @@ public class InferenceHttpApi {
                     "Accept header should not be null. Possible values are: [application/json, application/octet-stream]");
         }
 
+        if(!accept.contains(APPLICATION_JSON.toString()) && !accept.contains(APPLICATION_OCTET_STREAM.toString())) {
+            throw new KonduitServingHttpException(HttpApiErrorCode.INVALID_ACCEPT_HEADER,
+                    String.format("Invalid Accept header %s. Should be one of [application/json, application/octet-stream]", accept));
+        }
+
         Data input = extractData(contentType, ctx);
-        Data output;
 
+        // The pipeline is executed and its output serialized on the inference executor, while the response is written
+        // back on the event loop. NDArray buffers allocated during execution are pooled, and released once serialized
+        Context eventLoopContext = ctx.vertx().getOrCreateContext();
         try {
-            output = pipelineExecutor.exec(input);
-        } catch (Exception exception) {
-            throw new KonduitServingHttpException(HttpApiErrorCode.PIPELINE_PROCESSING_ERROR, exception);
+            inferenceExecutor.execute(() -> {
+                Buffer response;
+                try (BufferScope scope = BufferScope.open()) {
+                    Data output = pipeline.apply(input);
+                    response = serializeOutput(accept, output);
+                } catch (Throwable throwable) {
+                    eventLoopContext.runOnContext(v ->
+                            ctx.fail(new KonduitServingHttpException(HttpApiErrorCode.PIPELINE_PROCESSING_ERROR, throwable)));
+                    return;
+                }
+
+                eventLoopContext.runOnContext(v -> writeOutput(ctx, accept, response));
+            });
+        } catch (RejectedExecutionException exception) {
+            throw new KonduitServingHttpException(HttpApiErrorCode.SERVER_BUSY,
+                    "All inference workers are busy and the request queue is full. Please retry later.");
         }
+    }
 
-        if(accept.contains(APPLICATION_JSON.toString())) {
-            ctx.response()
-                    .setStatusCode(200)
-                    .putHeader(CONTENT_TYPE, APPLICATION_JSON.toString())
-                    .end(output.toJson(), StandardCharsets.UTF_8.name());
-        } else if(accept.contains(APPLICATION_OCTET_STREAM.toString())) {
-            ctx.response()
-                    .setStatusCode(200)
-                    .putHeader(CONTENT_TYPE, APPLICATION_OCTET_STREAM.toString())
-                    .end(Buffer.buffer(output.asBytes()));
+    protected Buffer serializeOutput(String accept, Data output) {
+        // Images are returned in their native encoding unless the client also accepts a specific image type,
+        // for example "Accept: application/json, image/jpeg"
+        ImageEncoding imageEncoding = ImageEncoding.fromAcceptHeader(accept);
+        if (accept.contains(APPLICATION_JSON.toString())) {
+            // Written as UTF-8 directly into the response buffer, rather than via a String
+            return ImageSerdeUtils.withEncoding(imageEncoding, () -> {
+                ByteBuf buf = Unpooled.buffer();
+                try {
+                    output.writeJson(new ByteBufOutputStream(buf));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return Buffer.buffer(buf);
+            });
         } else {
-            throw new KonduitServingHttpException(HttpApiErrorCode.INVALID_ACCEPT_HEADER,
-                    String.format("Invalid Accept header %s. Should be one of [application/json, application/octet-stream]", accept));
+            // Serialized directly into a response buffer of the exact size, rather than via a byte[] that is then copied
+            return ImageSerdeUtils.withEncoding(imageEncoding, () -> {
+                DataProtoMessage.DataMap message = output.toProtoData().toProtoMessage();
+                ByteBuf buf = Unpooled.buffer(message.getSerializedSize());
+                try {
+                    message.writeTo(new ByteBufOutputStream(buf));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return Buffer.buffer(buf);
+            });
         }
     }
+
+    protected void writeOutput(RoutingContext ctx, String accept, Buffer response) {
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader(CONTENT_TYPE, accept.contains(APPLICATION_JSON.toString()) ? APPLICATION_JSON.toString() : APPLICATION_OCTET_STREAM.toString())
+                .end(response);
+    }
 }
@@ -35,6 +35,7 @@ import ai.konduit.serving.vertx.verticle.InferenceVerticle;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.impl.ContextInternal;
 import io.vertx.core.json.JsonObject;
@@ -53,6 +54,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ServiceLoader;
 
+import static io.netty.handler.codec.http.HttpHeaderNames.RETRY_AFTER;
 import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_JSON;
 import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_OCTET_STREAM;
 import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
@@ -60,6 +62,11 @@ import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
 @Slf4j
 public class InferenceVerticleHttp extends InferenceVerticle {
 
+    /**
+     * Value of the "Retry-After" header sent when a request is rejected because the inference queue is full
+     */
+    public static final int RETRY_AFTER_SECONDS = 1;
+
     @Override
     public void start(Promise<Void> startPromise) {
         vertx.executeBlocking(handler -> {
@@ -123,7 +130,11 @@ public class InferenceVerticleHttp extends InferenceVerticle {
                                     saveInspectionDataIfRequired(pid);
 
                                     log.info("Inference HTTP server is listening on host: '{}'", inferenceConfiguration.host());
-                                    log.info("Inference HTTP server started on port {} with {} pipeline steps", actualPort, pipeline.size());
+                                    if (pipeline != null) {
+                                        log.info("Inference HTTP server started on port {} with {} pipeline steps", actualPort, pipeline.size());
+                                    } else {
+                                        log.info("Inference HTTP server started on port {}", actualPort);
+                                    }
                                     startPromise.complete();
                                 } catch (Throwable throwable) {
                                     startPromise.fail(throwable);
@@ -151,7 +162,7 @@ public class InferenceVerticleHttp extends InferenceVerticle {
     }
 
     public Router createRouter() {
-        InferenceHttpApi inferenceHttpApi = new InferenceHttpApi(pipelineExecutor);
+        InferenceHttpApi inferenceHttpApi = new InferenceHttpApi(pipelineExecutor, inferenceExecutor, pipelineCache);
 
         Router inferenceRouter = Router.router(vertx);
         ServiceLoader<MetricsProvider> sl = ServiceLoader.load(MetricsProvider.class);
@@ -208,30 +219,94 @@ public class InferenceVerticleHttp extends InferenceVerticle {
                     }
                 });
 
-        inferenceRouter.post("/predict")
-                .consumes(APPLICATION_JSON.toString())
-                .consumes(APPLICATION_OCTET_STREAM.toString())
-                .produces(APPLICATION_JSON.toString())
-                .produces(APPLICATION_OCTET_STREAM.toString())
-                .handler(inferenceHttpApi::predict);
+        if (pipelineExecutor != null) {
+            inferenceRouter.post("/predict")
+                    .consumes(APPLICATION_JSON.toString())
+                    .consumes(APPLICATION_OCTET_STREAM.toString())
+                    .produces(APPLICATION_JSON.toString())
+                    .produces(APPLICATION_OCTET_STREAM.toString())
+                    .handler(inferenceHttpApi::predict);
+        }
 
+        if (pipelineCache != null) {
+            inferenceRouter.post("/predict/:pipeline")
+                    .consumes(APPLICATION_JSON.toString())
+                    .consumes(APPLICATION_OCTET_STREAM.toString())
+                    .produces(APPLICATION_JSON.toString())
+                    .produces(APPLICATION_OCTET_STREAM.toString())
+                    .handler(inferenceHttpApi::predictNamed);
+        }
+
+        if (pipelineReloader != null && inferenceConfiguration.hotReload().adminEndpoint()) {
+            log.info("Hot reload admin endpoint enabled: POST /admin/reload");
+            inferenceRouter.post("/admin/reload")
+                    .produces(APPLICATION_JSON.toString())
+                    .handler(this::reloadPipeline);
+        }
 
         //Custom endpoints:
         if (inferenceConfiguration.customEndpoints() != null && !inferenceConfiguration.customEndpoints().isEmpty()) {
-            addCustomEndpoints(inferenceHttpApi, inferenceRouter);
+            if (pipelineExecutor != null) {
+                addCustomEndpoints(inferenceHttpApi, inferenceRouter);
+            } else {
+                log.warn("Custom endpoints are only supported for the main pipeline (InferenceConfiguration.pipeline), " +
+                        "which is not set. Skipping custom endpoints: {}", inferenceConfiguration.customEndpoints());
+            }
         }
 
         return inferenceRouter;
     }
 
+    /**
+     * Reload the main pipeline. An empty request body reloads the current pipeline configuration; otherwise, the body
+     * is the JSON of the pipeline to replace it with. Responds once the new pipeline is in use.
+     */
+    private void reloadPipeline(RoutingContext ctx) {
+        String body = ctx.getBodyAsString();
+        Pipeline pipeline;
+        try {
+            pipeline = body == null || body.trim().isEmpty() ? null : ObjectMappers.fromJson(body, Pipeline.class);
+        } catch (Throwable t) {
+            ctx.fail(new KonduitServingHttpException(HttpApiErrorCode.DATA_PARSING_ERROR, t));
+            return;
+        }
+
+        vertx.<Long>executeBlocking(promise -> {
+            try {
+                promise.complete(pipelineReloader.reload(pipeline));
+            } catch (Throwable t) {
+                promise.fail(t);
+            }
+        }, false, result -> {
+            if (result.succeeded()) {
+                ctx.response().setStatusCode(200)
+                        .putHeader(CONTENT_TYPE, APPLICATION_JSON.toString())
+                        .end(new JsonObject()
+                                .put("status", "OK")
+                                .put("reloadTimeMs", result.result())
+                                .encode());
+            } else {
+                ctx.fail(new KonduitServingHttpException(HttpApiErrorCode.PIPELINE_RELOAD_ERROR, result.cause()));
+            }
+        });
+    }
+
     private void sendErrorResponse(RoutingContext ctx, ErrorResponse errorResponse) {
         sendErrorResponse(ctx, errorResponse.getErrorCode(), errorResponse.getErrorMessage());
     }
 
     private void sendErrorResponse(RoutingContext ctx, HttpApiErrorCode errorCode, String errorMessage) {
-        ctx.response()
-                .setStatusCode(500)
-                .putHeader(CONTENT_TYPE, APPLICATION_JSON.toString())
+        HttpServerResponse response = ctx.response();
+        if (errorCode == HttpApiErrorCode.SERVER_BUSY) {
+            response.setStatusCode(503)
+                    .putHeader(RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS));
+        } else if (errorCode == HttpApiErrorCode.PIPELINE_NOT_FOUND) {
+            response.setStatusCode(404);
+        } else {
+            response.setStatusCode(500);
+        }
+
+        response.putHeader(CONTENT_TYPE, APPLICATION_JSON.toString())
                 .end(ObjectMappers.toJson(ErrorResponse.builder()
                         .errorCode(errorCode)
                         .errorMessage(errorMessage)
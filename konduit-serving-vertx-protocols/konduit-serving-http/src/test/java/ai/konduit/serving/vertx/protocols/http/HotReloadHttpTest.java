@@ -0,0 +1,126 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.protocols.http;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.impl.step.logging.LoggingStep;
+import ai.konduit.serving.vertx.api.DeployKonduitServing;
+import ai.konduit.serving.vertx.config.HotReloadConfiguration;
+import ai.konduit.serving.vertx.config.InferenceConfiguration;
+import ai.konduit.serving.vertx.config.InferenceDeploymentResult;
+import ai.konduit.serving.vertx.config.ServerProtocol;
+import ai.konduit.serving.vertx.protocols.http.api.ErrorResponse;
+import ai.konduit.serving.vertx.protocols.http.api.HttpApiErrorCode;
+import com.jayway.restassured.http.ContentType;
+import com.jayway.restassured.response.Response;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.jayway.restassured.RestAssured.given;
+
+@RunWith(VertxUnitRunner.class)
+public class HotReloadHttpTest {
+
+    static Vertx vertx;
+    static InferenceDeploymentResult inferenceDeploymentResult;
+
+    @BeforeClass
+    public static void setUp(TestContext testContext) {
+        InferenceConfiguration configuration = new InferenceConfiguration()
+                .protocol(ServerProtocol.HTTP)
+                .pipeline(SequencePipeline.builder().add(new LoggingStep().log(LoggingStep.Log.KEYS)).build())
+                .hotReload(new HotReloadConfiguration().adminEndpoint(true));
+
+        Async async = testContext.async();
+        vertx = DeployKonduitServing.deploy(new VertxOptions(), new DeploymentOptions(), configuration,
+                handler -> {
+                    if (handler.succeeded()) {
+                        inferenceDeploymentResult = handler.result();
+                        async.complete();
+                    } else {
+                        testContext.fail(handler.cause());
+                    }
+                });
+    }
+
+    private static Response reload(String body) {
+        return given().port(inferenceDeploymentResult.getActualPort())
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(body)
+                .post("/admin/reload")
+                .andReturn();
+    }
+
+    private static void assertPredict(TestContext testContext) {
+        Data input = Data.singleton("key", "value");
+        Response response = given().port(inferenceDeploymentResult.getActualPort())
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(input.toJson())
+                .post("/predict")
+                .andReturn();
+        testContext.assertEquals(200, response.statusCode());
+        testContext.assertEquals(input, Data.fromJson(response.asString()));
+    }
+
+    @Test
+    public void testReload(TestContext testContext) {
+        assertPredict(testContext);
+
+        //Empty body: reload the current pipeline
+        Response response = reload("");
+        testContext.assertEquals(200, response.statusCode());
+        JsonObject json = new JsonObject(response.asString());
+        testContext.assertEquals("OK", json.getString("status"));
+        testContext.assertTrue(json.getLong("reloadTimeMs") >= 0);
+        assertPredict(testContext);
+
+        //Replace the pipeline
+        Pipeline replacement = SequencePipeline.builder().add(new LoggingStep().log(LoggingStep.Log.KEYS_AND_VALUES)).build();
+        response = reload(replacement.toJson());
+        testContext.assertEquals(200, response.statusCode());
+        assertPredict(testContext);
+    }
+
+    @Test
+    public void testInvalidPipeline(TestContext testContext) {
+        Response response = reload("{\"not\": \"a pipeline\"}");
+        testContext.assertEquals(500, response.statusCode());
+        ErrorResponse error = response.as(ErrorResponse.class);
+        testContext.assertEquals(HttpApiErrorCode.DATA_PARSING_ERROR, error.getErrorCode());
+        assertPredict(testContext);
+    }
+
+    @AfterClass
+    public static void tearDown(TestContext testContext) {
+        vertx.close(testContext.asyncAssertSuccess());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.protocols.http;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.impl.step.logging.LoggingStep;
+import ai.konduit.serving.vertx.api.DeployKonduitServing;
+import ai.konduit.serving.vertx.config.InferenceConfiguration;
+import ai.konduit.serving.vertx.config.InferenceDeploymentResult;
+import ai.konduit.serving.vertx.config.ServerProtocol;
+import ai.konduit.serving.vertx.protocols.http.api.ErrorResponse;
+import ai.konduit.serving.vertx.protocols.http.api.HttpApiErrorCode;
+import com.jayway.restassured.http.ContentType;
+import com.jayway.restassured.response.Response;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.jayway.restassured.RestAssured.given;
+
+@RunWith(VertxUnitRunner.class)
+public class NamedPipelinesHttpTest {
+
+    static Vertx vertx;
+    static InferenceDeploymentResult inferenceDeploymentResult;
+
+    @BeforeClass
+    public static void setUp(TestContext testContext) {
+        Map<String, Pipeline> pipelines = new LinkedHashMap<>();
+        pipelines.put("first", SequencePipeline.builder().add(new LoggingStep().log(LoggingStep.Log.KEYS)).build());
+        pipelines.put("second", SequencePipeline.builder().add(new LoggingStep().log(LoggingStep.Log.KEYS)).build());
+
+        //No main pipeline: only named pipelines
+        InferenceConfiguration configuration = new InferenceConfiguration()
+                .protocol(ServerProtocol.HTTP)
+                .pipelines(pipelines);
+
+        Async async = testContext.async();
+        vertx = DeployKonduitServing.deploy(new VertxOptions(), new DeploymentOptions(), configuration,
+                handler -> {
+                    if (handler.succeeded()) {
+                        inferenceDeploymentResult = handler.result();
+                        async.complete();
+                    } else {
+                        testContext.fail(handler.cause());
+                    }
+                });
+    }
+
+    private static Response post(String path, Data input) {
+        return given().port(inferenceDeploymentResult.getActualPort())
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(input.toJson())
+                .post(path)
+                .andReturn();
+    }
+
+    @Test
+    public void testNamedPipelines(TestContext testContext) {
+        for (String name : new String[]{"first", "second", "first"}) {
+            Data input = Data.singleton("key", name);
+            Response response = post("/predict/" + name, input);
+            testContext.assertEquals(200, response.statusCode());
+            testContext.assertEquals(input, Data.fromJson(response.asString()));
+        }
+    }
+
+    @Test
+    public void testUnknownPipeline(TestContext testContext) {
+        Response response = post("/predict/doesNotExist", Data.singleton("key", "value"));
+        testContext.assertEquals(404, response.statusCode());
+        ErrorResponse error = response.as(ErrorResponse.class);
+        testContext.assertEquals(HttpApiErrorCode.PIPELINE_NOT_FOUND, error.getErrorCode());
+    }
+
+    @AfterClass
+    public static void tearDown(TestContext testContext) {
+        vertx.close(testContext.asyncAssertSuccess());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.protocols.http;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.vertx.api.DeployKonduitServing;
+import ai.konduit.serving.vertx.config.InferenceConfiguration;
+import ai.konduit.serving.vertx.config.ServerProtocol;
+import ai.konduit.serving.vertx.config.WarmupConfiguration;
+import ai.konduit.serving.vertx.protocols.http.test.FailureTestingPipelineStep;
+import com.jayway.restassured.http.ContentType;
+import com.jayway.restassured.response.Response;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.jayway.restassured.RestAssured.given;
+
+@RunWith(VertxUnitRunner.class)
+public class PipelineWarmupTest {
+
+    private Vertx vertx;
+
+    private static InferenceConfiguration configuration(WarmupConfiguration warmup) {
+        return new InferenceConfiguration()
+                .protocol(ServerProtocol.HTTP)
+                .inferenceWorkers(2)
+                .pipeline(SequencePipeline.builder()
+                        .add(new FailureTestingPipelineStep())
+                        .build())
+                .warmup(warmup);
+    }
+
+    @After
+    public void after(TestContext testContext) {
+        InferenceVerticleHttpTest.causeFailure.set(false);
+        if (vertx != null)
+            vertx.close(testContext.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testWarmup(TestContext testContext) {
+        WarmupConfiguration warmup = new WarmupConfiguration()
+                .iterations(5)
+                .inputs(new WarmupConfiguration.SyntheticInput("in", NDArrayType.FLOAT, new long[]{2, 3}));
+
+        Async async = testContext.async();
+        vertx = DeployKonduitServing.deploy(new VertxOptions(), new DeploymentOptions(), configuration(warmup),
+                handler -> {
+                    if (handler.failed()) {
+                        testContext.fail(handler.cause());
+                        return;
+                    }
+
+                    Data input = Data.singleton("key", "value");
+                    Response response = given().port(handler.result().getActualPort())
+                            .contentType(ContentType.JSON)
+                            .accept(ContentType.JSON)
+                            .body(input.toJson())
+                            .post(InferenceVerticleHttpTest.PREDICT_ENDPOINT)
+                            .andReturn();
+                    testContext.assertEquals(200, response.statusCode());
+                    testContext.assertEquals(input, Data.fromJson(response.asString()));
+                    async.complete();
+                });
+    }
+
+    @Test
+    public void testWarmupFailure(TestContext testContext) {
+        //A pipeline that fails during warm-up should fail the server start
+        InferenceVerticleHttpTest.causeFailure.set(true);
+        WarmupConfiguration warmup = new WarmupConfiguration()
+                .iterations(1)
+                .inputs(new WarmupConfiguration.SyntheticInput("in", NDArrayType.INT32, new long[]{4}));
+
+        Async async = testContext.async();
+        vertx = DeployKonduitServing.deploy(new VertxOptions(), new DeploymentOptions(), configuration(warmup),
+                handler -> {
+                    testContext.assertTrue(handler.failed());
+                    async.complete();
+                });
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.protocols.http;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.vertx.api.DeployKonduitServing;
+import ai.konduit.serving.vertx.config.InferenceConfiguration;
+import ai.konduit.serving.vertx.config.ServerProtocol;
+import ai.konduit.serving.vertx.protocols.http.api.ErrorResponse;
+import ai.konduit.serving.vertx.protocols.http.api.HttpApiErrorCode;
+import ai.konduit.serving.vertx.protocols.http.test.FailureTestingPipelineStep;
+import ai.konduit.serving.vertx.protocols.http.verticle.InferenceVerticleHttp;
+import com.jayway.restassured.http.ContentType;
+import com.jayway.restassured.response.Response;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.*;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(VertxUnitRunner.class)
+public class ServerBusyHttpTest {
+
+    private Vertx vertx;
+
+    @After
+    public void after(TestContext testContext) {
+        CountDownLatch block = FailureTestingPipelineStep.block;
+        if (block != null)
+            block.countDown();
+        FailureTestingPipelineStep.block = null;
+        if (vertx != null)
+            vertx.close(testContext.asyncAssertSuccess());
+    }
+
+    private static Response predict(int port) {
+        return given().port(port)
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(Data.singleton("key", "value").toJson())
+                .post(InferenceVerticleHttpTest.PREDICT_ENDPOINT)
+                .andReturn();
+    }
+
+    @Test(timeout = 120000L)
+    public void testServerBusy() throws Exception {
+        //A single inference worker, and no queue: a second request is rejected while the first one executes
+        InferenceConfiguration configuration = new InferenceConfiguration()
+                .protocol(ServerProtocol.HTTP)
+                .inferenceWorkers(1)
+                .inferenceQueueSize(0)
+                .pipeline(SequencePipeline.builder()
+                        .add(new FailureTestingPipelineStep())
+                        .build());
+
+        CompletableFuture<Integer> port = new CompletableFuture<>();
+        vertx = DeployKonduitServing.deploy(new VertxOptions(), new DeploymentOptions(), configuration,
+                handler -> {
+                    if (handler.succeeded())
+                        port.complete(handler.result().getActualPort());
+                    else
+                        port.completeExceptionally(handler.cause());
+                });
+        int p = port.get(60, TimeUnit.SECONDS);
+
+        FailureTestingPipelineStep.started = new CountDownLatch(1);
+        FailureTestingPipelineStep.block = new CountDownLatch(1);
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> first = es.submit(() -> predict(p));
+            assertTrue(FailureTestingPipelineStep.started.await(60, TimeUnit.SECONDS));
+
+            Response busy = predict(p);
+            assertEquals(503, busy.statusCode());
+            assertEquals(String.valueOf(InferenceVerticleHttp.RETRY_AFTER_SECONDS), busy.header("Retry-After"));
+            assertEquals(HttpApiErrorCode.SERVER_BUSY, ErrorResponse.fromJson(busy.asString()).getErrorCode());
+
+            //The request that was executing is unaffected
+            FailureTestingPipelineStep.block.countDown();
+            assertEquals(200, first.get(60, TimeUnit.SECONDS).statusCode());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+}
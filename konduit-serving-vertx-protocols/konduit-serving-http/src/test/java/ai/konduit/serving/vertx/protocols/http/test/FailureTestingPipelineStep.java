@@ -27,10 +27,17 @@ import ai.konduit.serving.vertx.protocols.http.InferenceVerticleHttpTest;
 import lombok.AllArgsConstructor;
 
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 
 @AllArgsConstructor
 public class FailureTestingPipelineStep implements PipelineStep {
 
+    /**
+     * If set, execution counts down {@link #started} and then blocks until this latch has been counted down
+     */
+    public static volatile CountDownLatch block;
+    public static volatile CountDownLatch started;
+
     static {
         PipelineRegistry.registerStepRunnerFactory(new Factory());
         ObjectMappers.registerSubtypes(Collections.singletonList(new JsonSubType("FAILURE_TESTING", FailureTestingPipelineStep.class, PipelineStep.class)));
@@ -65,6 +72,16 @@ public class FailureTestingPipelineStep implements PipelineStep {
 
         @Override
         public Data exec(Context ctx, Data data) {
+            CountDownLatch b = block;
+            if(b != null) {
+                started.countDown();
+                try {
+                    b.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
             if(InferenceVerticleHttpTest.causeFailure.get())
                 throw new IllegalStateException("Intentionally causing a pipeline execution failure!");
             return data;
@@ -32,7 +32,6 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import static ai.konduit.serving.vertx.config.ServerProtocol.*;
 
@@ -54,9 +53,8 @@ public class DeployKonduitServing {
                               DeploymentOptions deploymentOptions,
                               InferenceConfiguration inferenceConfiguration,
                               Handler<AsyncResult<InferenceDeploymentResult>> eventHandler) {
-        Vertx vertx = Vertx.vertx(vertxOptions
-                .setMaxEventLoopExecuteTime(10)
-                .setMaxEventLoopExecuteTimeUnit(TimeUnit.SECONDS));
+        // Pipelines are loaded and executed on worker threads, so the default blocked event loop threshold applies
+        Vertx vertx = Vertx.vertx(vertxOptions);
         registerInferenceVerticleFactory(vertx);
 
         JsonObject jsonConfiguration;
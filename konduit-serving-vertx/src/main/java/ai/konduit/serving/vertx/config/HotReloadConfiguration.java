@@ -0,0 +1,69 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.config;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import lombok.experimental.Tolerate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+@Accessors(fluent = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Configuration for reloading the main pipeline while the server is running, without downtime. " +
+        "A new pipeline executor is created (and warmed up, if InferenceConfiguration.warmup is set) in the " +
+        "background while requests continue to be served by the current one. The new executor is then swapped in " +
+        "atomically, and the old one is closed once the requests executing on it have completed. A reload can be " +
+        "triggered via the HTTP admin endpoint (POST /admin/reload) and/or by changes to the model files.")
+public class HotReloadConfiguration implements Serializable {
+
+    @Schema(description = "If true: enable the HTTP endpoint POST /admin/reload. A request with an empty body reloads " +
+            "the current pipeline configuration (for example, to pick up updated model files); a request with a " +
+            "pipeline JSON body replaces the pipeline with the provided one. Note that this endpoint has no " +
+            "authentication: it should only be enabled if the server port is not publicly accessible.",
+            defaultValue = "false")
+    private boolean adminEndpoint = false;
+
+    @Schema(description = "If true: the local model files of the pipeline (the modelUri values of the pipeline " +
+            "steps) are watched for changes, and the pipeline is reloaded when they change.", defaultValue = "false")
+    private boolean watchModelFiles = false;
+
+    @Schema(description = "Additional local files or directories to watch for changes. The pipeline is reloaded " +
+            "when they change.")
+    private List<String> watchPaths = new ArrayList<>();
+
+    @Schema(description = "Interval, in milliseconds, at which watched files are checked for changes. A reload is " +
+            "only triggered once a changed file has not changed again for one interval, so that files that are " +
+            "still being written aren't loaded.", defaultValue = "2000")
+    private long pollIntervalMs = 2000;
+
+    @Tolerate
+    public HotReloadConfiguration watchPaths(String... watchPaths) {
+        this.watchPaths = new ArrayList<>(Arrays.asList(watchPaths));
+        return this;
+    }
+}
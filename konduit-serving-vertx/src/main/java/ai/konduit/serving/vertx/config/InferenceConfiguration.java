@@ -29,7 +29,9 @@ import lombok.experimental.Accessors;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Accessors(fluent=true)
@@ -51,9 +53,44 @@ public class InferenceConfiguration implements Serializable, TextConfig {
             "provide custom endpoints functionality (fully qualified Java path - for example com.mycompany.MyEndpointsClass).")
     private List<String> customEndpoints = new ArrayList<>();
 
-    @Schema(description = "The main konduit serving pipeline configuration.")
+    @Schema(description = "The main konduit serving pipeline configuration. May be omitted (HTTP server only) if " +
+            "named pipelines are configured.")
     private Pipeline pipeline;
 
+    @Schema(description = "Additional named pipelines to host (HTTP server only), executed via the " +
+            "/predict/{pipeline name} endpoint. Each named pipeline is loaded on first use, and may be evicted " +
+            "(least recently used first) when pipelineMemoryBudget is exceeded.")
+    private Map<String, Pipeline> pipelines = new LinkedHashMap<>();
+
+    @Schema(description = "Maximum total estimated memory use, in bytes, of the loaded named pipelines. When exceeded, " +
+            "the least recently used pipelines are unloaded. The memory use of a pipeline is estimated as the " +
+            "increase in the server process' resident memory when the pipeline is loaded. 0 means no limit.",
+            defaultValue = "0")
+    private long pipelineMemoryBudget = 0;
+
+    @Schema(description = "Number of worker threads that execute the pipeline, off the server's event loop. " +
+            "0 means that the number of available processors will be used.", defaultValue = "0")
+    private int inferenceWorkers = 0;
+
+    @Schema(description = "Maximum number of requests that can wait for a free inference worker. Requests arriving " +
+            "while the queue is full are rejected (HTTP 503 with a Retry-After header). 0 means no queueing: a " +
+            "request is rejected if all the inference workers are busy.", defaultValue = "256")
+    private int inferenceQueueSize = 256;
+
+    @Schema(description = "Maximum number of messages of a single streaming call (currently, gRPC predictStream) that " +
+            "can be in flight at once - i.e., received but whose output hasn't been sent yet. Messages are executed " +
+            "concurrently up to this limit, and outputs are always returned in the order the inputs were received.",
+            defaultValue = "4")
+    private int streamInFlight = 4;
+
+    @Schema(description = "Optional pipeline warm-up, executed before the server starts listening. If not set, no " +
+            "warm-up is performed.")
+    private WarmupConfiguration warmup;
+
+    @Schema(description = "Optional hot reload of the main pipeline - via an admin endpoint and/or when model files " +
+            "change - without stopping the server. If not set, the pipeline cannot be reloaded.")
+    private HotReloadConfiguration hotReload;
+
     public static InferenceConfiguration fromJson(String json) {
         return ObjectMappers.fromJson(json, InferenceConfiguration.class);
     }
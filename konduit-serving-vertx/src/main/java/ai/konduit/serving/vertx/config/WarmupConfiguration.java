@@ -0,0 +1,94 @@
+/*
+ *  ******************************************************************************
+ *  * Copyright (c) 2020 Konduit K.K.
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.config;
+
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import lombok.experimental.Tolerate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+@Accessors(fluent = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Configuration for warming up the pipeline when the server starts: the pipeline is executed on " +
+        "sample inputs on the inference worker threads before the server starts listening, so that the first requests " +
+        "don't pay for one-time costs such as model graph optimization, memory allocation and JIT compilation. " +
+        "Inputs are read from sample data files, and/or generated from the specified synthetic inputs. Warm-up " +
+        "ends once each thread has executed the pipeline the specified number of iterations, or when the specified " +
+        "duration has passed - whichever comes first.")
+public class WarmupConfiguration implements Serializable {
+
+    @Schema(description = "Number of times each warm-up thread executes the pipeline. 0 for no limit (in which " +
+            "case durationMs must be set).", defaultValue = "10")
+    private int iterations = 10;
+
+    @Schema(description = "Maximum duration of the warm-up, in milliseconds. 0 for no limit (in which case " +
+            "iterations must be set).", defaultValue = "0")
+    private long durationMs = 0;
+
+    @Schema(description = "Number of threads to warm up the pipeline on. 0 means all inference worker threads.",
+            defaultValue = "0")
+    private int threads = 0;
+
+    @Schema(description = "Paths of files containing sample inputs for the pipeline, as serialized Data instances: " +
+            "JSON for files with a .json extension, protobuf (as written by Data.save) otherwise.")
+    private List<String> dataFiles = new ArrayList<>();
+
+    @Schema(description = "Synthetic NDArray inputs, filled with random values. If both dataFiles and inputs are " +
+            "set, the synthetic inputs are added to each sample input.")
+    private List<SyntheticInput> inputs = new ArrayList<>();
+
+    @Tolerate
+    public WarmupConfiguration dataFiles(String... dataFiles) {
+        this.dataFiles = new ArrayList<>(Arrays.asList(dataFiles));
+        return this;
+    }
+
+    @Tolerate
+    public WarmupConfiguration inputs(SyntheticInput... inputs) {
+        this.inputs = new ArrayList<>(Arrays.asList(inputs));
+        return this;
+    }
+
+    @Data
+    @Accessors(fluent = true)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "A synthetic NDArray input for pipeline warm-up, filled with random values.")
+    public static class SyntheticInput implements Serializable {
+
+        @Schema(description = "Name of the input.")
+        private String name;
+
+        @Schema(description = "Data type of the input array.", defaultValue = "FLOAT")
+        private NDArrayType type = NDArrayType.FLOAT;
+
+        @Schema(description = "Shape of the input array, including the minibatch dimension if any.")
+        private long[] shape;
+    }
+}
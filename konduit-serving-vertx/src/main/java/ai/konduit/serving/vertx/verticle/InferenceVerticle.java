@@ -20,11 +20,13 @@ package ai.konduit.serving.vertx.verticle;
 
 import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
 import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.impl.pipeline.AsyncPipelineExecutor;
 import ai.konduit.serving.vertx.config.InferenceConfiguration;
 import ai.konduit.serving.pipeline.settings.DirectoryFetcher;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
 import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonObject;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 
@@ -32,19 +34,67 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public abstract class InferenceVerticle extends AbstractVerticle {
 
     protected ai.konduit.serving.pipeline.api.context.Context pipelineContext;
     protected InferenceConfiguration inferenceConfiguration;
-    protected Pipeline pipeline;
+    /**
+     * The main pipeline configuration. Replaced (along with {@link InferenceConfiguration#pipeline()}) when a new
+     * configuration is loaded by {@link #pipelineReloader}
+     */
+    protected volatile Pipeline pipeline;
     protected PipelineExecutor pipelineExecutor;
+    /**
+     * The named pipelines ({@link InferenceConfiguration#pipelines()}), or null if none are configured
+     */
+    protected PipelineCache pipelineCache;
+    /**
+     * Reloads the main pipeline ({@link InferenceConfiguration#hotReload()}), or null if hot reload is not enabled.
+     * When set, {@link #pipelineExecutor} is a {@link ReloadablePipelineExecutor}
+     */
+    protected PipelineReloader pipelineReloader;
+    /**
+     * Bounded pool that runs {@link PipelineExecutor#exec(ai.konduit.serving.pipeline.api.data.Data)} so that model
+     * execution doesn't block the event loop. Submitting to it throws a
+     * {@link java.util.concurrent.RejectedExecutionException} when its queue is full.
+     */
+    protected ThreadPoolExecutor inferenceExecutor;
 
     protected void initialize() throws Exception {
         inferenceConfiguration = InferenceConfiguration.fromJson(context.config().encode());
         pipeline = inferenceConfiguration.pipeline();
-        pipelineExecutor = pipeline.executor();
+        boolean hasNamedPipelines = inferenceConfiguration.pipelines() != null && !inferenceConfiguration.pipelines().isEmpty();
+        if (pipeline == null && !hasNamedPipelines) {
+            throw new IllegalStateException("No pipeline is configured: at least one of InferenceConfiguration.pipeline " +
+                    "or InferenceConfiguration.pipelines must be set");
+        }
+        pipelineExecutor = pipeline == null ? null : pipeline.executor();
+        if (hasNamedPipelines) {
+            pipelineCache = new PipelineCache(inferenceConfiguration.pipelines(), inferenceConfiguration.pipelineMemoryBudget());
+            log.info("Hosting {} named pipeline(s), loaded on first use: {}", inferenceConfiguration.pipelines().size(),
+                    inferenceConfiguration.pipelines().keySet());
+        }
+        inferenceExecutor = createInferenceExecutor(inferenceConfiguration);
+
+        if (inferenceConfiguration.hotReload() != null && pipelineExecutor != null) {
+            if (pipelineExecutor instanceof AsyncPipelineExecutor) {
+                log.warn("Hot reload is not supported for asynchronous pipelines - the pipeline cannot be reloaded");
+            } else {
+                ReloadablePipelineExecutor reloadable = new ReloadablePipelineExecutor(pipelineExecutor);
+                pipelineExecutor = reloadable;
+                pipelineReloader = new PipelineReloader(reloadable, pipeline, inferenceConfiguration.hotReload(),
+                        inferenceConfiguration.warmup(), inferenceExecutor.getCorePoolSize());
+                pipelineReloader.onReload(this::onPipelineReloaded);
+            }
+        }
 
         log.info("\n\n" +
                 "####################################################################\n" +
@@ -56,10 +106,62 @@ public abstract class InferenceVerticle extends AbstractVerticle {
                 "####################################################################\n");
 
         log.info("Pending server start, please wait...");
+
+        if (inferenceConfiguration.warmup() != null && pipelineExecutor != null) {
+            PipelineWarmup.run(inferenceConfiguration.warmup(), pipelineExecutor, inferenceExecutor);
+        }
+
+        if (pipelineReloader != null) {
+            pipelineReloader.startWatching();
+        }
+    }
+
+    /**
+     * Called after {@link #pipelineReloader} has replaced the main pipeline configuration: updates the configuration
+     * of this verticle, and the saved inspection data
+     */
+    protected void onPipelineReloaded(Pipeline newPipeline) {
+        pipeline = newPipeline;
+        inferenceConfiguration.pipeline(newPipeline);
+        if (context != null) {
+            ((ContextInternal) context).getDeployment()
+                    .deploymentOptions()
+                    .setConfig(new JsonObject(inferenceConfiguration.toJson()));
+            saveInspectionDataIfRequired(getPid());
+        }
+    }
+
+    protected static ThreadPoolExecutor createInferenceExecutor(InferenceConfiguration configuration) {
+        int workers = configuration.inferenceWorkers() > 0 ? configuration.inferenceWorkers() :
+                Runtime.getRuntime().availableProcessors();
+        int queueSize = configuration.inferenceQueueSize();
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "konduit-inference-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        log.info("Pipeline will be executed on {} inference worker thread(s) with a queue size of {}", workers, Math.max(queueSize, 0));
+        return executor;
     }
 
     @Override
     public void stop(Promise<Void> stopPromise) {
+        if (inferenceExecutor != null) {
+            inferenceExecutor.shutdown();
+        }
+        if (pipelineCache != null) {
+            pipelineCache.close();
+        }
+        if (pipelineReloader != null) {
+            pipelineReloader.close();
+        }
+
         if (vertx != null) {
             vertx.close(handler -> {
                 if(handler.succeeded()) {
@@ -0,0 +1,357 @@
+/*
+ * *****************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * ****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.verticle;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts a set of named pipelines, each of which is loaded (i.e., its {@link PipelineExecutor} is created) on first
+ * use.<br>
+ * The memory used by each pipeline is estimated when it is loaded, as the increase in the process' resident memory
+ * (VmRSS on Linux; heap plus direct buffer usage elsewhere) - which includes both heap and native (model) memory.
+ * As pipelines may be loaded concurrently, this is an approximation. When the total exceeds the memory budget, the
+ * least recently used pipelines are evicted: their executors are closed once any requests currently executing on them
+ * have completed.<br>
+ * Concurrent requests for a pipeline that is not yet loaded are de-duplicated: the pipeline is loaded once, by the
+ * first request, and the other requests wait for it.<br>
+ * The following metrics are reported, tagged with the cache's {@link MicrometerRegistry#INSTANCE_TAG}, and removed
+ * from the registry when the cache is closed:<br>
+ * - konduit.pipelines.loads, konduit.pipelines.load.failures, konduit.pipelines.evictions (tagged with the pipeline
+ * name): number of times the pipeline was loaded, failed to load, or was evicted<br>
+ * - konduit.pipelines.load.time (tagged with the pipeline name): time taken to load the pipeline<br>
+ * - konduit.pipelines.loaded, konduit.pipelines.memory.bytes: number of loaded pipelines and their total estimated
+ * memory use
+ */
+@Slf4j
+public class PipelineCache {
+
+    private final Map<String, Pipeline> pipelines;
+    private final long memoryBudget;
+    private final MeterRegistry registry;
+    private final String instance = MicrometerRegistry.nextInstanceId();
+    private final Tags tags = Tags.of(MicrometerRegistry.INSTANCE_TAG, instance);
+
+    //Access ordered: iteration order is least recently used first
+    private final LinkedHashMap<String, Entry> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private long memoryBytes;
+    private boolean closed;
+
+    /**
+     * @param pipelines    Pipelines to host, by name
+     * @param memoryBudget Maximum total estimated memory use of the loaded pipelines, in bytes. 0 for no limit. The
+     *                     most recently used pipeline is never evicted, even if it alone exceeds the budget
+     */
+    public PipelineCache(@NonNull Map<String, Pipeline> pipelines, long memoryBudget) {
+        Preconditions.checkState(memoryBudget >= 0, "Pipeline memory budget must not be negative, got %s", memoryBudget);
+        this.pipelines = new HashMap<>(pipelines);
+        this.memoryBudget = memoryBudget;
+        this.registry = MicrometerRegistry.getRegistry();
+        Gauge.builder("konduit.pipelines.loaded", this, PipelineCache::loadedCount)
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("konduit.pipelines.memory.bytes", this, PipelineCache::memoryBytes)
+                .description("Estimated memory use of the loaded pipelines: the increase in process memory while each " +
+                        "was loaded, which also counts memory allocated concurrently by other loads and requests")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * @return True if a pipeline with the specified name is hosted (whether or not it is currently loaded)
+     */
+    public boolean hasPipeline(String name) {
+        return pipelines.containsKey(name);
+    }
+
+    /**
+     * @return Names of all hosted pipelines
+     */
+    public Set<String> pipelineNames() {
+        return Collections.unmodifiableSet(pipelines.keySet());
+    }
+
+    /**
+     * Execute the named pipeline, loading it first if necessary. Blocks while the pipeline is loaded.
+     *
+     * @param name Name of the pipeline
+     * @param data Input data
+     * @return Output of the pipeline
+     * @throws IllegalArgumentException If no pipeline with the specified name exists
+     */
+    public Data exec(String name, Data data) {
+        Entry e = acquire(name);
+        try {
+            return e.executor.exec(data);
+        } finally {
+            release(e);
+        }
+    }
+
+    /**
+     * @return Number of currently loaded pipelines
+     */
+    public int loadedCount() {
+        synchronized (loaded) {
+            return loaded.size();
+        }
+    }
+
+    /**
+     * @return True if the named pipeline is currently loaded
+     */
+    public boolean isLoaded(String name) {
+        synchronized (loaded) {
+            return loaded.containsKey(name);
+        }
+    }
+
+    /**
+     * @return Total estimated memory use of the loaded pipelines, in bytes
+     */
+    public long memoryBytes() {
+        synchronized (loaded) {
+            return memoryBytes;
+        }
+    }
+
+    /**
+     * Close all loaded pipelines, and remove this cache's metrics. Pipelines with requests currently executing are
+     * closed once those complete.
+     */
+    public void close() {
+        List<Entry> toClose;
+        synchronized (loaded) {
+            closed = true;
+            toClose = new ArrayList<>(loaded.values());
+            loaded.clear();
+            memoryBytes = 0;
+        }
+        for (Entry e : toClose) {
+            evicted(e);
+        }
+
+        for (Meter m : new ArrayList<>(registry.getMeters())) {
+            if (instance.equals(m.getId().getTag(MicrometerRegistry.INSTANCE_TAG)) &&
+                    m.getId().getName().startsWith("konduit.pipelines.")) {
+                registry.remove(m);
+            }
+        }
+    }
+
+    protected Entry acquire(String name) {
+        Pipeline p = pipelines.get(name);
+        if (p == null)
+            throw new IllegalArgumentException("No pipeline with name \"" + name + "\" exists");
+
+        while (true) {
+            synchronized (loaded) {
+                Preconditions.checkState(!closed, "Unable to execute pipeline \"%s\": pipelines have been closed", name);
+                Entry e = loaded.get(name);
+                if (e != null) {
+                    e.refs++;
+                    return e;
+                }
+            }
+
+            CompletableFuture<Entry> f = new CompletableFuture<>();
+            CompletableFuture<Entry> existing = loading.putIfAbsent(name, f);
+            if (existing == null) {
+                try {
+                    load(name, p, f);
+                } finally {
+                    loading.remove(name, f);
+                }
+            } else {
+                f = existing;
+            }
+
+            try {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for pipeline \"" + name + "\" to load", ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Error loading pipeline \"" + name + "\"", ex.getCause());
+            }
+            //Loop to acquire the loaded pipeline: it may (rarely) have been evicted again before it could be acquired
+        }
+    }
+
+    protected void release(Entry e) {
+        boolean close;
+        synchronized (loaded) {
+            e.refs--;
+            close = e.evicted && e.refs == 0;
+        }
+        if (close)
+            closeExecutor(e);
+    }
+
+    protected void load(String name, Pipeline p, CompletableFuture<Entry> f) {
+        synchronized (loaded) {
+            if (loaded.containsKey(name)) {
+                //Loaded by another thread between checking and registering as the loading thread
+                f.complete(loaded.get(name));
+                return;
+            }
+        }
+
+        log.info("Loading pipeline \"{}\"", name);
+        long start = System.nanoTime();
+        long memBefore = memoryUsed();
+        PipelineExecutor executor;
+        try {
+            executor = p.executor();
+        } catch (Throwable t) {
+            log.error("Error loading pipeline \"{}\"", name, t);
+            Counter.builder("konduit.pipelines.load.failures").tags(tags).tag("pipeline", name).register(registry).increment();
+            f.completeExceptionally(t);
+            return;
+        }
+        long loadNanos = System.nanoTime() - start;
+        long size = Math.max(0, memoryUsed() - memBefore);
+
+        Entry e = new Entry(name, executor, size);
+        List<Entry> evicted = new ArrayList<>();
+        boolean wasClosed;
+        synchronized (loaded) {
+            wasClosed = closed;
+            if (!closed) {
+                loaded.put(name, e);
+                memoryBytes += size;
+                if (memoryBudget > 0) {
+                    Iterator<Entry> iter = loaded.values().iterator();
+                    //Never evict the pipeline that was just loaded (the most recently used)
+                    while (memoryBytes > memoryBudget && loaded.size() > 1) {
+                        Entry lru = iter.next();
+                        iter.remove();
+                        memoryBytes -= lru.sizeBytes;
+                        evicted.add(lru);
+                    }
+                }
+            }
+        }
+
+        Counter.builder("konduit.pipelines.loads").tags(tags).tag("pipeline", name).register(registry).increment();
+        Timer.builder("konduit.pipelines.load.time").tags(tags).tag("pipeline", name).register(registry).record(loadNanos, TimeUnit.NANOSECONDS);
+        log.info("Loaded pipeline \"{}\" in {} ms, estimated memory use {} MB", name,
+                TimeUnit.NANOSECONDS.toMillis(loadNanos), size / (1024 * 1024));
+
+        for (Entry lru : evicted) {
+            log.info("Evicting pipeline \"{}\" (estimated memory use {} MB): pipeline memory budget of {} MB exceeded",
+                    lru.name, lru.sizeBytes / (1024 * 1024), memoryBudget / (1024 * 1024));
+            Counter.builder("konduit.pipelines.evictions").tags(tags).tag("pipeline", lru.name).register(registry).increment();
+            evicted(lru);
+        }
+
+        if (wasClosed) {
+            closeExecutor(e);
+            f.completeExceptionally(new IllegalStateException("Pipelines were closed while pipeline \"" + name + "\" was loading"));
+        } else {
+            f.complete(e);
+        }
+    }
+
+    protected void evicted(Entry e) {
+        boolean close;
+        synchronized (loaded) {
+            e.evicted = true;
+            close = e.refs == 0;
+        }
+        if (close)
+            closeExecutor(e);
+    }
+
+    protected void closeExecutor(Entry e) {
+        try {
+            e.executor.close();
+        } catch (Throwable t) {
+            log.error("Error closing pipeline \"{}\"", e.name, t);
+        }
+    }
+
+    /**
+     * @return Current memory use of the process, in bytes: the resident set size if available (Linux), otherwise
+     * the JVM's heap and direct buffer usage
+     */
+    protected long memoryUsed() {
+        File status = new File("/proc/self/status");
+        if (status.exists()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(status))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith("VmRSS:")) {
+                        //Format: "VmRSS:	  123456 kB"
+                        String[] split = line.substring(6).trim().split("\\s+");
+                        return Long.parseLong(split[0]) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Unable to read resident memory from {}", status, e);
+            }
+        }
+
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for (BufferPoolMXBean b : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            used += b.getMemoryUsed();
+        }
+        return used;
+    }
+
+    protected static class Entry {
+        private final String name;
+        private final PipelineExecutor executor;
+        private final long sizeBytes;
+        //Guarded by the loaded map's lock
+        private int refs;
+        private boolean evicted;
+
+        protected Entry(String name, PipelineExecutor executor, long sizeBytes) {
+            this.name = name;
+            this.executor = executor;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * *****************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * ****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.verticle;
+
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import ai.konduit.serving.pipeline.util.ObjectMappers;
+import ai.konduit.serving.vertx.config.HotReloadConfiguration;
+import ai.konduit.serving.vertx.config.WarmupConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.shade.jackson.databind.JsonNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Reloads the main pipeline of a server without downtime - see {@link HotReloadConfiguration}.<br>
+ * A reload creates a new {@link PipelineExecutor}, optionally warms it up (see {@link PipelineWarmup}) on a temporary
+ * set of threads, and then swaps it into the {@link ReloadablePipelineExecutor} used by the server. Requests continue
+ * to be served by the old executor until the swap; the old executor is closed once the requests executing on it have
+ * completed. If creating or warming up the new executor fails, the old executor remains in use.<br>
+ * Reloads are serialized: a reload requested while another is in progress waits for it to complete.<br>
+ * When the pipeline configuration is replaced, the watched files are recomputed from the new configuration, and the
+ * listeners registered via {@link #onReload(Consumer)} are notified.<br>
+ * The following metrics are reported: konduit.pipeline.reloads and konduit.pipeline.reload.failures (number of
+ * successful and failed reloads) and konduit.pipeline.reload.time (time to create and warm up the new executor).
+ */
+@Slf4j
+public class PipelineReloader {
+
+    private final ReloadablePipelineExecutor executor;
+    private final HotReloadConfiguration config;
+    private final WarmupConfiguration warmup;
+    private final int warmupThreads;
+
+    private final Counter reloads;
+    private final Counter reloadFailures;
+    private final Timer reloadTime;
+
+    private final List<Consumer<Pipeline>> listeners = new CopyOnWriteArrayList<>();
+
+    private Pipeline pipeline;
+    private boolean watching;
+    private ScheduledExecutorService watcher;
+    private List<File> files;
+    private Map<File, String> watchedState;
+    private Map<File, String> pendingState;
+
+    /**
+     * @param executor      Executor to swap reloaded pipelines into
+     * @param pipeline      The current pipeline configuration
+     * @param config        Hot reload configuration
+     * @param warmup        Warm-up configuration for the new executors. May be null
+     * @param warmupThreads Number of threads to warm up new executors on (unless set in the warm-up configuration)
+     */
+    public PipelineReloader(@NonNull ReloadablePipelineExecutor executor, @NonNull Pipeline pipeline,
+                            @NonNull HotReloadConfiguration config, WarmupConfiguration warmup, int warmupThreads) {
+        this.executor = executor;
+        this.pipeline = pipeline;
+        this.config = config;
+        this.warmup = warmup;
+        this.warmupThreads = warmupThreads;
+        reloads = Counter.builder("konduit.pipeline.reloads").register(MicrometerRegistry.getRegistry());
+        reloadFailures = Counter.builder("konduit.pipeline.reload.failures").register(MicrometerRegistry.getRegistry());
+        reloadTime = Timer.builder("konduit.pipeline.reload.time").register(MicrometerRegistry.getRegistry());
+    }
+
+    /**
+     * @return The current pipeline configuration
+     */
+    public synchronized Pipeline pipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Register a listener that is called with the new pipeline configuration after it has replaced the current one
+     * (i.e., after a successful {@link #reload(Pipeline)} with a non-null pipeline)
+     */
+    public void onReload(@NonNull Consumer<Pipeline> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reload the current pipeline configuration - for example, to pick up updated model files
+     *
+     * @return Time taken to create (and warm up) the new executor, in milliseconds
+     */
+    public long reload() throws Exception {
+        return reload(null);
+    }
+
+    /**
+     * Replace the pipeline, blocking until the new pipeline executor has been created, warmed up and swapped in.
+     *
+     * @param newPipeline New pipeline configuration. If null, the current pipeline configuration is reloaded
+     * @return Time taken to create (and warm up) the new executor, in milliseconds
+     * @throws Exception If the new executor could not be created or warmed up. The current executor remains in use
+     */
+    public synchronized long reload(Pipeline newPipeline) throws Exception {
+        Pipeline p = newPipeline == null ? pipeline : newPipeline;
+        log.info("Reloading pipeline");
+        long start = System.nanoTime();
+        PipelineExecutor next = null;
+        try {
+            next = p.executor();
+            if (warmup != null) {
+                warmup(next);
+            }
+        } catch (Throwable t) {
+            reloadFailures.increment();
+            log.error("Failed to reload pipeline - continuing to use the current pipeline", t);
+            if (next != null) {
+                next.close();
+            }
+            throw t;
+        }
+        long nanos = System.nanoTime() - start;
+
+        executor.swap(next);
+        pipeline = p;
+        reloads.increment();
+        reloadTime.record(nanos, TimeUnit.NANOSECONDS);
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        log.info("Reloaded pipeline in {} ms - new requests are now executed on the reloaded pipeline", ms);
+
+        if (newPipeline != null) {
+            if (watching) {
+                //The model files of the new configuration may differ from those of the old one
+                stopWatcher();
+                startWatching();
+            }
+            for (Consumer<Pipeline> l : listeners) {
+                try {
+                    l.accept(p);
+                } catch (Throwable t) {
+                    log.warn("Error notifying listener of pipeline reload", t);
+                }
+            }
+        }
+        return ms;
+    }
+
+    private void warmup(PipelineExecutor next) throws Exception {
+        int n = Math.max(1, warmupThreads);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor threads = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "konduit-reload-warmup-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            PipelineWarmup.run(warmup, next, threads);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Start watching the model files and watch paths for changes, if configured
+     */
+    public synchronized void startWatching() {
+        watching = true;
+        List<File> files = watchedFiles();
+        this.files = files;
+        pendingState = null;
+        if (files.isEmpty()) {
+            if (config.watchModelFiles())
+                log.warn("Hot reload: no local model files found to watch in the pipeline configuration");
+            return;
+        }
+        Preconditions.checkState(config.pollIntervalMs() > 0, "Hot reload pollIntervalMs must be positive, got %s", config.pollIntervalMs());
+
+        watchedState = state(files);
+        log.info("Hot reload: watching {} for changes", files);
+        watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "konduit-reload-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(() -> poll(files), config.pollIntervalMs(), config.pollIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void poll(List<File> files) {
+        if (files != this.files) {
+            //Watched files were recomputed after a reload: this task has been cancelled
+            return;
+        }
+        try {
+            Map<File, String> s = state(files);
+            if (s.equals(watchedState)) {
+                pendingState = null;
+                return;
+            }
+            if (!s.equals(pendingState)) {
+                //Changed since the last check: wait until the files are no longer being written
+                log.debug("Hot reload: change detected in watched files - waiting for them to stabilize");
+                pendingState = s;
+                return;
+            }
+
+            log.info("Hot reload: watched files have changed - reloading pipeline");
+            watchedState = s;
+            pendingState = null;
+            reload();
+        } catch (Throwable t) {
+            //Already logged by reload(). Not retried until the files change again
+            log.debug("Hot reload: reload after file change failed", t);
+        }
+    }
+
+    /**
+     * @return The local files/directories to watch: the watch paths, plus the model files of the current pipeline
+     * configuration if enabled
+     */
+    protected List<File> watchedFiles() {
+        Set<File> out = new LinkedHashSet<>();
+        if (config.watchPaths() != null) {
+            for (String s : config.watchPaths()) {
+                out.add(new File(s).getAbsoluteFile());
+            }
+        }
+        if (config.watchModelFiles()) {
+            for (String uri : modelUris(pipeline)) {
+                File f = localFile(uri);
+                if (f == null) {
+                    log.warn("Hot reload: model URI {} is not a local file and will not be watched", uri);
+                } else {
+                    out.add(f.getAbsoluteFile());
+                }
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    /**
+     * @return The modelUri values of the steps of the given pipeline configuration
+     */
+    protected List<String> modelUris(Pipeline p) {
+        List<String> uris = new ArrayList<>();
+        try {
+            findModelUris(ObjectMappers.json().readTree(p.toJson()), uris);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to parse pipeline configuration", e);
+        }
+        return uris;
+    }
+
+    private static void findModelUris(JsonNode node, List<String> out) {
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> iter = node.fields();
+            while (iter.hasNext()) {
+                Map.Entry<String, JsonNode> e = iter.next();
+                if ("modelUri".equals(e.getKey()) && e.getValue().isTextual()) {
+                    out.add(e.getValue().asText());
+                } else {
+                    findModelUris(e.getValue(), out);
+                }
+            }
+        } else if (node.isArray()) {
+            for (JsonNode n : node) {
+                findModelUris(n, out);
+            }
+        }
+    }
+
+    private static File localFile(String uri) {
+        if (uri.startsWith("file:"))
+            return new File(URI.create(uri));
+        if (uri.contains("://"))
+            return null;
+        return new File(uri);
+    }
+
+    /**
+     * @return For each file: its size and last modified time (for directories: those of all files in it)
+     */
+    private static Map<File, String> state(List<File> files) {
+        Map<File, String> out = new HashMap<>();
+        for (File f : files) {
+            StringBuilder sb = new StringBuilder();
+            appendState(f, sb);
+            out.put(f, sb.toString());
+        }
+        return out;
+    }
+
+    private static void appendState(File f, StringBuilder sb) {
+        if (f.isDirectory()) {
+            File[] children = f.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File c : children) {
+                    appendState(c, sb);
+                }
+            }
+        } else if (f.exists()) {
+            sb.append(f.getName()).append(':').append(f.length()).append(':').append(f.lastModified()).append(';');
+        }
+    }
+
+    /**
+     * Stop watching files for changes
+     */
+    public synchronized void close() {
+        watching = false;
+        stopWatcher();
+    }
+
+    private void stopWatcher() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+        files = null;
+    }
+}
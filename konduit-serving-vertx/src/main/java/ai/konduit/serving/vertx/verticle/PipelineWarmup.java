@@ -0,0 +1,222 @@
+/*
+ * *****************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * ****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.verticle;
+
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.data.NDArray;
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.impl.data.ndarray.SerializedNDArray;
+import ai.konduit.serving.pipeline.impl.memory.BufferScope;
+import ai.konduit.serving.vertx.config.WarmupConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.nd4j.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the pipeline on sample inputs before the server starts listening - see {@link WarmupConfiguration}.<br>
+ * Warm-up runs on the inference worker threads themselves, so that any per-thread state (for example, model sessions,
+ * memory workspaces and pooled buffers) is initialized on the threads that will later execute requests.<br>
+ * Each thread uses its own copy of the sample inputs.
+ */
+@Slf4j
+public class PipelineWarmup {
+
+    private PipelineWarmup() {
+    }
+
+    /**
+     * Warm up the pipeline, blocking until warm-up has completed
+     *
+     * @param config   Warm-up configuration
+     * @param executor Pipeline executor to warm up
+     * @param workers  Inference worker threads
+     * @throws IllegalStateException If the pipeline fails to execute on the warm-up inputs
+     */
+    public static void run(WarmupConfiguration config, PipelineExecutor executor, ThreadPoolExecutor workers) throws Exception {
+        Preconditions.checkState(config.iterations() >= 0, "Warm-up iterations must not be negative, got %s", config.iterations());
+        Preconditions.checkState(config.durationMs() >= 0, "Warm-up durationMs must not be negative, got %s", config.durationMs());
+        Preconditions.checkState(config.iterations() > 0 || config.durationMs() > 0, "At least one of warm-up iterations or durationMs must be set");
+        boolean hasFiles = config.dataFiles() != null && !config.dataFiles().isEmpty();
+        boolean hasInputs = config.inputs() != null && !config.inputs().isEmpty();
+        Preconditions.checkState(hasFiles || hasInputs, "At least one of warm-up dataFiles or inputs must be set");
+
+        int nThreads = workers.getCorePoolSize();
+        if (config.threads() > 0)
+            nThreads = Math.min(nThreads, config.threads());
+        int iterations = config.iterations() > 0 ? config.iterations() : Integer.MAX_VALUE;
+        long start = System.nanoTime();
+        long deadline = config.durationMs() > 0 ? start + TimeUnit.MILLISECONDS.toNanos(config.durationMs()) : Long.MAX_VALUE;
+
+        log.info("Warming up pipeline on {} thread(s): {} iteration(s) per thread, maximum duration {}", nThreads,
+                config.iterations() > 0 ? config.iterations() : "unlimited",
+                config.durationMs() > 0 ? config.durationMs() + " ms" : "unlimited");
+
+        List<Future<long[]>> futures = new ArrayList<>(nThreads);
+        for (int i = 0; i < nThreads; i++) {
+            long seed = i;
+            futures.add(workers.submit(() -> warmupThread(config, executor, iterations, deadline, seed)));
+        }
+
+        long count = 0;
+        long maxFirstNanos = 0;
+        long lastNanos = 0;
+        for (Future<long[]> f : futures) {
+            long[] r;
+            try {
+                r = f.get();
+            } catch (ExecutionException e) {
+                for (Future<long[]> other : futures)
+                    other.cancel(true);
+                throw new IllegalStateException("Pipeline warm-up failed", e.getCause());
+            }
+            count += r[0];
+            maxFirstNanos = Math.max(maxFirstNanos, r[1]);
+            lastNanos += r[2];
+        }
+
+        log.info("Pipeline warm-up completed in {} ms: {} execution(s) on {} thread(s). First execution: {} ms (slowest " +
+                        "thread), last execution: {} ms (average over threads)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), count, nThreads,
+                TimeUnit.NANOSECONDS.toMillis(maxFirstNanos), TimeUnit.NANOSECONDS.toMillis(lastNanos / nThreads));
+    }
+
+    /**
+     * @return Number of executions, duration of the first and of the last execution (nanoseconds)
+     */
+    private static long[] warmupThread(WarmupConfiguration config, PipelineExecutor executor, int iterations,
+                                       long deadline, long seed) throws IOException {
+        List<Data> inputs = createInputs(config, new Random(seed));
+        long first = 0;
+        long last = 0;
+        int n = 0;
+        while (n < iterations && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            Data in = inputs.get(n % inputs.size());
+            long t0 = System.nanoTime();
+            //As per request execution: buffers allocated during execution are released once it has completed
+            try (BufferScope scope = BufferScope.open()) {
+                executor.exec(in);
+            }
+            last = System.nanoTime() - t0;
+            if (n == 0)
+                first = last;
+            n++;
+        }
+        return new long[]{n, first, last};
+    }
+
+    /**
+     * Load the sample inputs and add the synthetic inputs to each of them
+     */
+    protected static List<Data> createInputs(WarmupConfiguration config, Random r) throws IOException {
+        List<Data> out = new ArrayList<>();
+        if (config.dataFiles() != null) {
+            for (String s : config.dataFiles()) {
+                File f = new File(s);
+                Preconditions.checkState(f.isFile(), "Warm-up data file does not exist: %s", f.getAbsolutePath());
+                if (s.toLowerCase().endsWith(".json")) {
+                    out.add(Data.fromJson(FileUtils.readFileToString(f, StandardCharsets.UTF_8)));
+                } else {
+                    out.add(Data.fromFile(f));
+                }
+            }
+        }
+        if (out.isEmpty())
+            out.add(Data.empty());
+
+        if (config.inputs() != null) {
+            for (Data d : out) {
+                for (WarmupConfiguration.SyntheticInput i : config.inputs()) {
+                    d.put(i.name(), randomArray(i.type(), i.shape(), r));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return An array of the specified type and shape with random values: in range [0, 1) for floating point types,
+     * and [0, 128) for integer types
+     */
+    protected static NDArray randomArray(NDArrayType type, long[] shape, Random r) {
+        Preconditions.checkState(type != null && type.isFixedWidth(), "Unable to generate warm-up input of type %s", type);
+        Preconditions.checkState(shape != null, "Shape must be specified for synthetic warm-up inputs");
+        long length = 1;
+        for (long l : shape) {
+            Preconditions.checkState(l >= 0, "Invalid shape for synthetic warm-up input: %s", shape);
+            length *= l;
+        }
+        Preconditions.checkState(length * type.width() <= Integer.MAX_VALUE, "Synthetic warm-up input is too large: %s", shape);
+
+        int n = (int) length;
+        ByteBuffer bb = ByteBuffer.allocateDirect(n * type.width()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < n; i++) {
+            switch (type) {
+                case DOUBLE:
+                    bb.putDouble(r.nextDouble());
+                    break;
+                case FLOAT:
+                    bb.putFloat(r.nextFloat());
+                    break;
+                case FLOAT16:
+                case BFLOAT16:
+                    //Upper 16 bits of the float (bfloat16) / half precision values in [0, 1)
+                    bb.putShort(type == NDArrayType.BFLOAT16 ? (short) (Float.floatToIntBits(r.nextFloat()) >>> 16)
+                            : (short) r.nextInt(0x3C00));
+                    break;
+                case INT64:
+                case UINT64:
+                    bb.putLong(r.nextInt(128));
+                    break;
+                case INT32:
+                case UINT32:
+                    bb.putInt(r.nextInt(128));
+                    break;
+                case INT16:
+                case UINT16:
+                    bb.putShort((short) r.nextInt(128));
+                    break;
+                case INT8:
+                case UINT8:
+                    bb.put((byte) r.nextInt(128));
+                    break;
+                case BOOL:
+                    bb.put((byte) (r.nextBoolean() ? 1 : 0));
+                    break;
+                default:
+                    throw new IllegalStateException("Unable to generate warm-up input of type " + type);
+            }
+        }
+        bb.rewind();
+        return NDArray.create(new SerializedNDArray(type, shape.clone(), bb));
+    }
+}
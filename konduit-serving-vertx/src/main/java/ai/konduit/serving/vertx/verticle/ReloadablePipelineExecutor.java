@@ -0,0 +1,171 @@
+/*
+ * *****************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * ****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.verticle;
+
+import ai.konduit.serving.pipeline.api.context.Profiler;
+import ai.konduit.serving.pipeline.api.context.ProfilerConfig;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.api.pipeline.PipelineExecutor;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link PipelineExecutor} that delegates to another executor, which can be replaced while requests are being
+ * executed - see {@link #swap(PipelineExecutor)}.<br>
+ * Each request executes entirely on the executor that was current when it started. A replaced executor is closed once
+ * all the requests executing on it have completed.<br>
+ * Once this executor has been closed, {@link #exec(Data)} and {@link #swap(PipelineExecutor)} throw an
+ * {@link IllegalStateException}.
+ */
+@Slf4j
+public class ReloadablePipelineExecutor implements PipelineExecutor {
+
+    private volatile Delegate current;
+    private volatile boolean closed;
+    private ProfilerConfig profilerConfig;
+
+    public ReloadablePipelineExecutor(@NonNull PipelineExecutor executor) {
+        this.current = new Delegate(executor);
+    }
+
+    /**
+     * @return The executor that new requests are currently executed on
+     */
+    public PipelineExecutor current() {
+        return current.executor;
+    }
+
+    /**
+     * Atomically replace the executor: requests started after this call are executed on the new executor. The old
+     * executor is closed once the requests currently executing on it have completed.
+     *
+     * @param executor New executor
+     * @throws IllegalStateException If this executor has been closed. The new executor is closed in this case
+     */
+    public synchronized void swap(@NonNull PipelineExecutor executor) {
+        if (closed) {
+            executor.close();
+            throw new IllegalStateException("Cannot swap the executor: ReloadablePipelineExecutor has been closed");
+        }
+        if (profilerConfig != null)
+            executor.profilerConfig(profilerConfig);
+        Delegate old = current;
+        current = new Delegate(executor);
+        old.retire();
+    }
+
+    @Override
+    public Data exec(Data data) {
+        Delegate d = acquire();
+        try {
+            return d.executor.exec(data);
+        } finally {
+            d.release();
+        }
+    }
+
+    private Delegate acquire() {
+        while (true) {
+            if (closed)
+                throw new IllegalStateException("Cannot execute pipeline: ReloadablePipelineExecutor has been closed");
+            Delegate d = current;
+            if (d.tryAcquire())
+                return d;
+            //Retired between reading and acquiring: retry with the new executor, or fail if closed
+        }
+    }
+
+    @Override
+    public Pipeline getPipeline() {
+        return current.executor.getPipeline();
+    }
+
+    @Override
+    public List<PipelineStepRunner> getRunners() {
+        return current.executor.getRunners();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        current.retire();
+    }
+
+    @Override
+    public Logger getLogger() {
+        return log;
+    }
+
+    @Override
+    public synchronized void profilerConfig(ProfilerConfig profilerConfig) {
+        this.profilerConfig = profilerConfig;
+        current.executor.profilerConfig(profilerConfig);
+    }
+
+    @Override
+    public Profiler profiler() {
+        return current.executor.profiler();
+    }
+
+    private static class Delegate {
+        private final PipelineExecutor executor;
+        //Number of requests executing, plus one until retired. 0 once retired and drained
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private final AtomicBoolean retired = new AtomicBoolean();
+
+        private Delegate(PipelineExecutor executor) {
+            this.executor = executor;
+        }
+
+        private boolean tryAcquire() {
+            while (true) {
+                int r = refs.get();
+                if (r == 0)
+                    return false;
+                if (refs.compareAndSet(r, r + 1))
+                    return true;
+            }
+        }
+
+        private void release() {
+            if (refs.decrementAndGet() == 0)
+                closeExecutor();
+        }
+
+        private void retire() {
+            if (retired.compareAndSet(false, true))
+                release();
+        }
+
+        private void closeExecutor() {
+            try {
+                executor.close();
+            } catch (Throwable t) {
+                log.error("Error closing replaced pipeline executor", t);
+            }
+        }
+    }
+}
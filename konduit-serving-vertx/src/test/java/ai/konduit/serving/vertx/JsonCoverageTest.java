@@ -18,11 +18,14 @@
 package ai.konduit.serving.vertx;
 
 import ai.konduit.serving.common.test.BaseJsonCoverageTest;
+import ai.konduit.serving.pipeline.api.data.NDArrayType;
 import ai.konduit.serving.pipeline.impl.pipeline.GraphPipeline;
 import ai.konduit.serving.pipeline.impl.pipeline.graph.GraphStep;
 import ai.konduit.serving.pipeline.util.ObjectMappers;
+import ai.konduit.serving.vertx.config.HotReloadConfiguration;
 import ai.konduit.serving.vertx.config.InferenceConfiguration;
 import ai.konduit.serving.vertx.config.ServerProtocol;
+import ai.konduit.serving.vertx.config.WarmupConfiguration;
 import org.junit.Test;
 
 import java.util.Collections;
@@ -53,6 +56,19 @@ public class JsonCoverageTest extends BaseJsonCoverageTest {
                .customEndpoints(Collections.singletonList("0"))
                .port(80).protocol(ServerProtocol.HTTP)
                .pipeline(new GraphPipeline(steps, "foo", "myGraphPipeline"))
+               .pipelines(Collections.singletonMap("named", new GraphPipeline(steps, "bar", "namedGraphPipeline")))
+               .pipelineMemoryBudget(1024L * 1024 * 1024)
+               .warmup(new WarmupConfiguration()
+                       .iterations(5)
+                       .durationMs(10_000)
+                       .threads(2)
+                       .dataFiles("sample.json")
+                       .inputs(new WarmupConfiguration.SyntheticInput("in", NDArrayType.FLOAT, new long[]{1, 3, 224, 224})))
+               .hotReload(new HotReloadConfiguration()
+                       .adminEndpoint(true)
+                       .watchModelFiles(true)
+                       .watchPaths("models/")
+                       .pollIntervalMs(5000))
        );
     }
 
@@ -18,14 +18,25 @@
 package ai.konduit.serving.vertx;
 
 import ai.konduit.serving.common.test.BaseSwaggerAnnotationCheck;
+import ai.konduit.serving.vertx.verticle.PipelineCacheTest;
+import ai.konduit.serving.vertx.verticle.PipelineReloaderTest;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 public class SwaggerAnnotationCheck extends BaseSwaggerAnnotationCheck {
     @Override
     public String getPackageName() {
         return "ai.konduit.serving.vertx";
     }
 
+    @Override
+    public Set<Class<?>> ignores() {
+        return new HashSet<>(Arrays.asList(PipelineCacheTest.NameStep.class, PipelineReloaderTest.VersionStep.class));
+    }
+
 
     @Test
     public void checkAnnotations() throws ClassNotFoundException {
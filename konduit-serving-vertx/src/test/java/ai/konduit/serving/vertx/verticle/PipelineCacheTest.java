@@ -0,0 +1,198 @@
+/*
+ * *****************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * ****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.verticle;
+
+import ai.konduit.serving.pipeline.api.context.Context;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunnerFactory;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.registry.MicrometerRegistry;
+import ai.konduit.serving.pipeline.registry.PipelineRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class PipelineCacheTest {
+
+    private static final Map<String, AtomicInteger> CREATED = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> CLOSED = new ConcurrentHashMap<>();
+
+    static {
+        PipelineRegistry.registerStepRunnerFactory(new PipelineStepRunnerFactory() {
+            @Override
+            public boolean canRun(PipelineStep step) {
+                return step instanceof NameStep;
+            }
+
+            @Override
+            public PipelineStepRunner create(PipelineStep step) {
+                return new NameRunner((NameStep) step);
+            }
+        });
+    }
+
+    /**
+     * Returns its name as output, and keeps track of how many times its runner was created and closed
+     */
+    @AllArgsConstructor
+    public static class NameStep implements PipelineStep {
+        private final String name;
+    }
+
+    public static class NameRunner implements PipelineStepRunner {
+        private final NameStep step;
+
+        public NameRunner(NameStep step) {
+            this.step = step;
+            CREATED.computeIfAbsent(step.name, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            CLOSED.computeIfAbsent(step.name, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        @Override
+        public PipelineStep getPipelineStep() {
+            return step;
+        }
+
+        @Override
+        public Data exec(Context ctx, Data data) {
+            return Data.singleton("name", step.name);
+        }
+    }
+
+    /**
+     * Each pipeline load appears to use 100 bytes
+     */
+    private static PipelineCache cache(Map<String, Pipeline> pipelines, long budget) {
+        AtomicLong memory = new AtomicLong();
+        return new PipelineCache(pipelines, budget) {
+            @Override
+            protected long memoryUsed() {
+                return memory.getAndAdd(100);
+            }
+        };
+    }
+
+    private static Map<String, Pipeline> pipelines(String prefix, int n) {
+        Map<String, Pipeline> m = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            String name = prefix + i;
+            m.put(name, SequencePipeline.builder().add(new NameStep(name)).build());
+        }
+        return m;
+    }
+
+    private static int count(Map<String, AtomicInteger> m, String name) {
+        AtomicInteger i = m.get(name);
+        return i == null ? 0 : i.get();
+    }
+
+    @Test
+    public void testLazyLoadingAndEviction() {
+        PipelineCache c = cache(pipelines("lru", 3), 250);
+        assertEquals(0, c.loadedCount());
+        assertEquals(0, count(CREATED, "lru0"));
+
+        assertEquals("lru0", c.exec("lru0", Data.empty()).getString("name"));
+        assertEquals("lru1", c.exec("lru1", Data.empty()).getString("name"));
+        assertEquals(1, count(CREATED, "lru0"));
+        assertEquals(2, c.loadedCount());
+        assertEquals(200, c.memoryBytes());
+
+        //lru0 is now the most recently used: loading lru2 exceeds the budget and evicts lru1
+        c.exec("lru0", Data.empty());
+        c.exec("lru2", Data.empty());
+        assertTrue(c.isLoaded("lru0"));
+        assertFalse(c.isLoaded("lru1"));
+        assertTrue(c.isLoaded("lru2"));
+        assertEquals(1, count(CLOSED, "lru1"));
+        assertEquals(0, count(CLOSED, "lru0"));
+        assertEquals(200, c.memoryBytes());
+
+        //Reloaded on next use
+        c.exec("lru1", Data.empty());
+        assertEquals(2, count(CREATED, "lru1"));
+        assertEquals(1, count(CREATED, "lru0"));
+
+        try {
+            c.exec("doesNotExist", Data.empty());
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("doesNotExist"));
+        }
+
+        MeterRegistry registry = MicrometerRegistry.getRegistry();
+        int gauges = registry.find("konduit.pipelines.loaded").gauges().size();
+        c.close();
+        assertEquals(0, c.loadedCount());
+        assertEquals(1, count(CLOSED, "lru0"));
+        assertEquals(2, count(CLOSED, "lru1"));
+        //Metrics of the closed cache are removed
+        assertEquals(gauges - 1, registry.find("konduit.pipelines.loaded").gauges().size());
+        assertTrue(registry.find("konduit.pipelines.loads").tag("pipeline", "lru0").counters().isEmpty());
+    }
+
+    @Test(timeout = 60000L)
+    public void testConcurrentLoading() throws Exception {
+        PipelineCache c = cache(pipelines("concurrent", 2), 0);
+        int nThreads = 8;
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            String name = "concurrent" + (i % 2);
+            Thread t = new Thread(() -> {
+                try {
+                    latch.await();
+                    for (int j = 0; j < 10; j++) {
+                        assertEquals(name, c.exec(name, Data.empty()).getString("name"));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        latch.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(1, count(CREATED, "concurrent0"));
+        assertEquals(1, count(CREATED, "concurrent1"));
+        assertEquals(2, c.loadedCount());
+        c.close();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * *****************************************************************************
+ * Copyright (c) 2020 Konduit K.K.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * ****************************************************************************
+ */
+
+package ai.konduit.serving.vertx.verticle;
+
+import ai.konduit.serving.pipeline.api.context.Context;
+import ai.konduit.serving.pipeline.api.data.Data;
+import ai.konduit.serving.pipeline.api.pipeline.Pipeline;
+import ai.konduit.serving.pipeline.api.step.PipelineStep;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunner;
+import ai.konduit.serving.pipeline.api.step.PipelineStepRunnerFactory;
+import ai.konduit.serving.pipeline.impl.pipeline.SequencePipeline;
+import ai.konduit.serving.pipeline.registry.PipelineRegistry;
+import ai.konduit.serving.vertx.config.HotReloadConfiguration;
+import lombok.AllArgsConstructor;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PipelineReloaderTest {
+
+    private static final Map<String, AtomicInteger> CREATED = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> CLOSED = new ConcurrentHashMap<>();
+    private static final Map<String, CountDownLatch> STARTED = new ConcurrentHashMap<>();
+    private static final Map<String, CountDownLatch> BLOCKED = new ConcurrentHashMap<>();
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    static {
+        PipelineRegistry.registerStepRunnerFactory(new PipelineStepRunnerFactory() {
+            @Override
+            public boolean canRun(PipelineStep step) {
+                return step instanceof VersionStep;
+            }
+
+            @Override
+            public PipelineStepRunner create(PipelineStep step) {
+                return new VersionRunner((VersionStep) step);
+            }
+        });
+    }
+
+    /**
+     * Returns its version as output. Its runner fails to be created if the version is "fail", and blocks while
+     * executing if a latch has been registered for the version in {@link #BLOCKED}
+     */
+    @AllArgsConstructor
+    public static class VersionStep implements PipelineStep {
+        private final String version;
+    }
+
+    public static class VersionRunner implements PipelineStepRunner {
+        private final VersionStep step;
+
+        public VersionRunner(VersionStep step) {
+            if ("fail".equals(step.version))
+                throw new IllegalStateException("Failed to load version " + step.version);
+            this.step = step;
+            CREATED.computeIfAbsent(step.version, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            CLOSED.computeIfAbsent(step.version, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        @Override
+        public PipelineStep getPipelineStep() {
+            return step;
+        }
+
+        @Override
+        public Data exec(Context ctx, Data data) {
+            CountDownLatch blocked = BLOCKED.get(step.version);
+            if (blocked != null) {
+                STARTED.get(step.version).countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return Data.singleton("version", step.version);
+        }
+    }
+
+    private static Pipeline pipeline(String version) {
+        return SequencePipeline.builder().add(new VersionStep(version)).build();
+    }
+
+    private static int count(Map<String, AtomicInteger> m, String version) {
+        AtomicInteger i = m.get(version);
+        return i == null ? 0 : i.get();
+    }
+
+    private static String exec(ReloadablePipelineExecutor executor) {
+        return executor.exec(Data.empty()).getString("version");
+    }
+
+    @Test(timeout = 60000L)
+    public void testSwapDrainsOldExecutor() throws Exception {
+        STARTED.put("drain1", new CountDownLatch(1));
+        BLOCKED.put("drain1", new CountDownLatch(1));
+        ReloadablePipelineExecutor executor = new ReloadablePipelineExecutor(pipeline("drain1").executor());
+
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> inFlight = es.submit(() -> exec(executor));
+            STARTED.get("drain1").await();
+
+            executor.swap(pipeline("drain2").executor());
+            assertEquals("drain2", exec(executor));
+            //Still executing a request: must not be closed yet
+            assertEquals(0, count(CLOSED, "drain1"));
+
+            BLOCKED.get("drain1").countDown();
+            assertEquals("drain1", inFlight.get());
+            assertEquals(1, count(CLOSED, "drain1"));
+            assertEquals(0, count(CLOSED, "drain2"));
+        } finally {
+            es.shutdownNow();
+        }
+
+        //Not executing anything: closed immediately
+        executor.swap(pipeline("drain3").executor());
+        assertEquals(1, count(CLOSED, "drain2"));
+        assertEquals("drain3", exec(executor));
+
+        executor.close();
+        assertEquals(1, count(CLOSED, "drain3"));
+    }
+
+    @Test(timeout = 60000L)
+    public void testExecAfterClose() {
+        ReloadablePipelineExecutor executor = new ReloadablePipelineExecutor(pipeline("closed1").executor());
+        assertEquals("closed1", exec(executor));
+        executor.close();
+        assertEquals(1, count(CLOSED, "closed1"));
+
+        try {
+            exec(executor);
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("closed"));
+        }
+
+        try {
+            executor.swap(pipeline("closed2").executor());
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("closed"));
+        }
+        //The executor passed to swap is not leaked
+        assertEquals(1, count(CLOSED, "closed2"));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        ReloadablePipelineExecutor executor = new ReloadablePipelineExecutor(pipeline("reload1").executor());
+        PipelineReloader reloader = new PipelineReloader(executor, pipeline("reload1"), new HotReloadConfiguration(), null, 1);
+        assertEquals("reload1", exec(executor));
+
+        //Reload the current configuration
+        reloader.reload();
+        assertEquals(2, count(CREATED, "reload1"));
+        assertEquals(1, count(CLOSED, "reload1"));
+        assertEquals("reload1", exec(executor));
+
+        //Failed reload: the current executor remains in use
+        try {
+            reloader.reload(pipeline("fail"));
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("fail"));
+        }
+        assertEquals("reload1", exec(executor));
+        assertEquals(1, count(CLOSED, "reload1"));
+
+        //Replace the configuration
+        reloader.reload(pipeline("reload2"));
+        assertEquals("reload2", exec(executor));
+        assertEquals(2, count(CLOSED, "reload1"));
+        assertEquals("reload2", ((VersionStep) ((SequencePipeline) reloader.pipeline()).steps().get(0)).version);
+        executor.close();
+    }
+
+    @Test(timeout = 60000L)
+    public void testWatchFiles() throws Exception {
+        File dir = testDir.newFolder();
+        File model = new File(dir, "model.bin");
+        FileUtils.writeStringToFile(model, "v1", StandardCharsets.UTF_8);
+
+        ReloadablePipelineExecutor executor = new ReloadablePipelineExecutor(pipeline("watch").executor());
+        PipelineReloader reloader = new PipelineReloader(executor, pipeline("watch"),
+                new HotReloadConfiguration().watchPaths(dir.getAbsolutePath()).pollIntervalMs(50), null, 1);
+        try {
+            reloader.startWatching();
+            Thread.sleep(300);
+            assertEquals(1, count(CREATED, "watch"));
+
+            FileUtils.writeStringToFile(model, "version 2", StandardCharsets.UTF_8);
+            //The old executor is closed once the new one has been swapped in
+            while (count(CLOSED, "watch") < 1) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, count(CREATED, "watch"));
+            assertEquals("watch", exec(executor));
+        } finally {
+            reloader.close();
+            executor.close();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testWatchedFilesUpdatedOnReload() throws Exception {
+        File dir = testDir.newFolder();
+        File oldModel = new File(dir, "old.bin");
+        File newModel = new File(dir, "new.bin");
+        FileUtils.writeStringToFile(oldModel, "v1", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(newModel, "v1", StandardCharsets.UTF_8);
+        String oldVersion = oldModel.getAbsolutePath();
+        String newVersion = newModel.getAbsolutePath();
+
+        //The version of the step is used as its model URI
+        ReloadablePipelineExecutor executor = new ReloadablePipelineExecutor(pipeline(oldVersion).executor());
+        PipelineReloader reloader = new PipelineReloader(executor, pipeline(oldVersion),
+                new HotReloadConfiguration().watchModelFiles(true).pollIntervalMs(50), null, 1) {
+            @Override
+            protected List<String> modelUris(Pipeline p) {
+                return Collections.singletonList(((VersionStep) ((SequencePipeline) p).steps().get(0)).version);
+            }
+        };
+        AtomicReference<Pipeline> reloaded = new AtomicReference<>();
+        reloader.onReload(reloaded::set);
+        try {
+            reloader.startWatching();
+            Pipeline newPipeline = pipeline(newVersion);
+            reloader.reload(newPipeline);
+            assertSame(newPipeline, reloaded.get());
+            assertEquals(1, count(CREATED, newVersion));
+
+            //The model file of the old configuration is no longer watched
+            FileUtils.writeStringToFile(oldModel, "version 2", StandardCharsets.UTF_8);
+            Thread.sleep(300);
+            assertEquals(1, count(CREATED, newVersion));
+
+            FileUtils.writeStringToFile(newModel, "version 2", StandardCharsets.UTF_8);
+            while (count(CLOSED, newVersion) < 1) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, count(CREATED, newVersion));
+            assertEquals(newVersion, exec(executor));
+            //Reloading the current configuration doesn't notify the listeners
+            assertSame(newPipeline, reloaded.get());
+            assertEquals(1, count(CREATED, oldVersion));
+        } finally {
+            reloader.close();
+            executor.close();
+        }
+    }
+}